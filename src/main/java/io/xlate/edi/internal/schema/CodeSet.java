@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright 2020 xlate.io LLC, http://www.xlate.io
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package io.xlate.edi.internal.schema;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Immutable set of the enumerated (code) values of an element. In addition to
+ * the {@link Set} operations, membership of any {@link CharSequence} may be
+ * tested without first converting it to a String. The codes are held in an
+ * array sorted by length and then by character and are located using a binary
+ * search, so that element data may be checked in place (e.g. in the reader's
+ * buffer) without allocation. Iteration follows the order in which the values
+ * were given.
+ */
+public final class CodeSet extends AbstractSet<String> {
+
+    private final Set<String> values;
+    private final char[][] codes;
+
+    private CodeSet(Collection<String> values) {
+        this.values = Collections.unmodifiableSet(new LinkedHashSet<>(values));
+        this.codes = new char[this.values.size()][];
+
+        int i = 0;
+
+        for (String value : this.values) {
+            codes[i++] = value.toCharArray();
+        }
+
+        Arrays.sort(codes, CodeSet::compare);
+    }
+
+    /**
+     * Create a set of the given values. Empty collections result in an empty
+     * (immutable) set and a CodeSet is returned as-is.
+     *
+     * @param values
+     *            the enumerated values
+     * @return an immutable set of the values
+     */
+    public static Set<String> of(Collection<String> values) {
+        if (values instanceof CodeSet) {
+            return (CodeSet) values;
+        }
+        if (values.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return new CodeSet(values);
+    }
+
+    /**
+     * Determine whether the set contains the value, without converting the
+     * value to a String when the set is a CodeSet.
+     *
+     * @param values
+     *            the set of values, possibly a CodeSet
+     * @param value
+     *            the value to find
+     * @return true if the set contains the value
+     */
+    public static boolean contains(Set<String> values, CharSequence value) {
+        if (values instanceof CodeSet) {
+            return ((CodeSet) values).contains(value);
+        }
+
+        return values.contains(value.toString());
+    }
+
+    /**
+     * Determine whether the set contains a value with the same characters as
+     * the given sequence.
+     *
+     * @param value
+     *            the value to find
+     * @return true if the set contains the value
+     */
+    public boolean contains(CharSequence value) {
+        int low = 0;
+        int high = codes.length - 1;
+
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int result = compare(codes[mid], value);
+
+            if (result < 0) {
+                low = mid + 1;
+            } else if (result > 0) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    static int compare(char[] code, char[] other) {
+        if (code.length != other.length) {
+            return code.length - other.length;
+        }
+
+        for (int i = 0; i < code.length; i++) {
+            if (code[i] != other[i]) {
+                return code[i] - other[i];
+            }
+        }
+
+        return 0;
+    }
+
+    static int compare(char[] code, CharSequence value) {
+        final int length = value.length();
+
+        if (code.length != length) {
+            return code.length - length;
+        }
+
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+
+            if (code[i] != c) {
+                return code[i] - c;
+            }
+        }
+
+        return 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return values.contains(o);
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return values.iterator();
+    }
+
+    @Override
+    public int size() {
+        return values.size();
+    }
+}
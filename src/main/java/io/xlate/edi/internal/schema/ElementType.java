@@ -17,12 +17,10 @@ package io.xlate.edi.internal.schema;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.function.BiFunction;
-import java.util.function.Supplier;
 
+import io.xlate.edi.internal.schema.VersionedProperty.Resolution;
 import io.xlate.edi.schema.EDISimpleType;
 
 //java:S107 : Constructor has 8 arguments
@@ -40,6 +38,16 @@ class ElementType extends BasicType implements EDISimpleType {
     final Set<String> values;
     final List<Version> versions;
 
+    /*
+     * The attributes of each entry in versions with those not specified taken
+     * from this element, followed by the attributes of this element for
+     * versions not matched by any entry.
+     */
+    private final Version[] resolvedVersions;
+
+    // The most recent resolution, inputs are read with a single version at a time
+    private Resolution<Version> lastResolution;
+
     static class Version extends VersionedProperty {
         final Long minLength;
         final Long maxLength;
@@ -72,18 +80,53 @@ class ElementType extends BasicType implements EDISimpleType {
         this.number = number;
         this.minLength = minLength;
         this.maxLength = maxLength;
-        this.values = Collections.unmodifiableSet(new LinkedHashSet<>(values));
+        this.values = CodeSet.of(values);
         this.versions = Collections.unmodifiableList(new ArrayList<>(versions));
+        this.resolvedVersions = new Version[versions.size() + 1];
+
+        for (int i = 0, m = versions.size(); i < m; i++) {
+            Version ver = versions.get(i);
+            resolvedVersions[i] = new Version(ver.minVersion,
+                                              ver.maxVersion,
+                                              ver.minLength != null ? ver.minLength : minLength,
+                                              ver.maxLength != null ? ver.maxLength : maxLength,
+                                              ver.values != null ? ver.values : this.values);
+        }
+
+        resolvedVersions[versions.size()] = new Version("", "", minLength, maxLength, this.values);
     }
 
-    <T> T getVersionAttribute(String version, BiFunction<Version, ElementType, T> versionedSupplier, Supplier<T> defaultSupplier) {
-        for (Version ver : versions) {
-            if (ver.appliesTo(version)) {
-                return versionedSupplier.apply(ver, this);
+    /**
+     * Retrieve the attributes applicable to the version, with those not
+     * specified by the version taken from this element. Only valid for
+     * elements having versions. The result for the most recent version
+     * requested is kept, avoiding the search of the version entries while an
+     * input of that version is read.
+     *
+     * @param version
+     *            the transaction version
+     * @return the resolved attributes of the first version entry applicable
+     *         to the version, or of this element when none applies
+     */
+    Version resolveVersion(String version) {
+        final Resolution<Version> previous = lastResolution;
+
+        if (previous != null && previous.isFor(version)) {
+            return previous.resolved;
+        }
+
+        final int last = resolvedVersions.length - 1;
+        Version resolved = resolvedVersions[last];
+
+        for (int i = 0; i < last; i++) {
+            if (versions.get(i).appliesTo(version)) {
+                resolved = resolvedVersions[i];
+                break;
             }
         }
 
-        return defaultSupplier.get();
+        lastResolution = new Resolution<>(version, resolved);
+        return resolved;
     }
 
     @Override
@@ -124,7 +167,7 @@ class ElementType extends BasicType implements EDISimpleType {
 
     @Override
     public long getMinLength(String version) {
-        return getVersionAttribute(version, Version::getMinLength, this::getMinLength);
+        return versions.isEmpty() ? minLength : resolveVersion(version).minLength;
     }
 
     @Override
@@ -134,7 +177,7 @@ class ElementType extends BasicType implements EDISimpleType {
 
     @Override
     public long getMaxLength(String version) {
-        return getVersionAttribute(version, Version::getMaxLength, this::getMaxLength);
+        return versions.isEmpty() ? maxLength : resolveVersion(version).maxLength;
     }
 
     @Override
@@ -144,6 +187,6 @@ class ElementType extends BasicType implements EDISimpleType {
 
     @Override
     public Set<String> getValueSet(String version) {
-        return getVersionAttribute(version, Version::getValueSet, this::getValueSet);
+        return versions.isEmpty() ? values : resolveVersion(version).values;
     }
 }
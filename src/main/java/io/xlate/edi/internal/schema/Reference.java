@@ -18,9 +18,8 @@ package io.xlate.edi.internal.schema;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.function.BiFunction;
-import java.util.function.Supplier;
 
+import io.xlate.edi.internal.schema.VersionedProperty.Resolution;
 import io.xlate.edi.schema.EDIReference;
 import io.xlate.edi.schema.EDIType;
 
@@ -36,6 +35,12 @@ class Reference implements EDIReference {
     final int maxOccurs;
     final List<Version> versions;
 
+    // The occurrences of each entry in versions, then those of this reference
+    private final Version[] resolvedVersions;
+
+    // The most recent resolution, inputs are read with a single version at a time
+    private Resolution<Version> lastResolution;
+
     static class Version extends VersionedProperty {
         final Integer minOccurs;
         final Integer maxOccurs;
@@ -61,6 +66,17 @@ class Reference implements EDIReference {
         this.minOccurs = minOccurs;
         this.maxOccurs = maxOccurs;
         this.versions = Collections.unmodifiableList(new ArrayList<>(versions));
+        this.resolvedVersions = new Version[versions.size() + 1];
+
+        for (int i = 0, m = versions.size(); i < m; i++) {
+            Version ver = versions.get(i);
+            resolvedVersions[i] = new Version(ver.minVersion,
+                                              ver.maxVersion,
+                                              ver.minOccurs != null ? ver.minOccurs : minOccurs,
+                                              ver.maxOccurs != null ? ver.maxOccurs : maxOccurs);
+        }
+
+        resolvedVersions[versions.size()] = new Version("", "", minOccurs, maxOccurs);
     }
 
     Reference(String refId, String refTag, int minOccurs, int maxOccurs) {
@@ -72,16 +88,28 @@ class Reference implements EDIReference {
         this.minOccurs = minOccurs;
         this.maxOccurs = maxOccurs;
         this.versions = Collections.emptyList();
+        this.resolvedVersions = new Version[] { new Version("", "", minOccurs, maxOccurs) };
     }
 
-    <T> T getVersionAttribute(String version, BiFunction<Version, Reference, T> versionedSupplier, Supplier<T> defaultSupplier) {
-        for (Version ver : versions) {
-            if (ver.appliesTo(version)) {
-                return versionedSupplier.apply(ver, this);
+    Version resolveVersion(String version) {
+        final Resolution<Version> previous = lastResolution;
+
+        if (previous != null && previous.isFor(version)) {
+            return previous.resolved;
+        }
+
+        final int last = resolvedVersions.length - 1;
+        Version resolved = resolvedVersions[last];
+
+        for (int i = 0; i < last; i++) {
+            if (versions.get(i).appliesTo(version)) {
+                resolved = resolvedVersions[i];
+                break;
             }
         }
 
-        return defaultSupplier.get();
+        lastResolution = new Resolution<>(version, resolved);
+        return resolved;
     }
 
     @Override
@@ -123,12 +151,12 @@ class Reference implements EDIReference {
 
     @Override
     public int getMinOccurs(String version) {
-        return getVersionAttribute(version, Version::getMinOccurs, this::getMinOccurs);
+        return versions.isEmpty() ? minOccurs : resolveVersion(version).minOccurs;
     }
 
     @Override
     public int getMaxOccurs(String version) {
-        return getVersionAttribute(version, Version::getMaxOccurs, this::getMaxOccurs);
+        return versions.isEmpty() ? maxOccurs : resolveVersion(version).maxOccurs;
     }
 
 }
@@ -620,7 +620,7 @@ abstract class SchemaReaderBase implements SchemaReader {
             }
         }
 
-        return values != null ? values : Collections.emptySet();
+        return values != null ? CodeSet.of(values) : Collections.emptySet();
     }
 
     Set<String> readEnumerationValue(XMLStreamReader reader, Set<String> values) {
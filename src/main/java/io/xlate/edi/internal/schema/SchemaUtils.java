@@ -72,7 +72,7 @@ public class SchemaUtils {
         return SchemaUtils.class.getResource(resource);
     }
 
-    public static Schema getControlSchema(String standard, String[] version) throws EDISchemaException {
+    public static synchronized Schema getControlSchema(String standard, String[] version) throws EDISchemaException {
         String key;
 
         if (Standards.EDIFACT.equals(standard)) {
@@ -18,6 +18,8 @@ package io.xlate.edi.internal.schema;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
@@ -49,6 +51,9 @@ public class StaEDISchema implements Schema {
     EDIComplexType standardLoop = null;
     LoopImplementation implementationLoop = null;
 
+    // Structures compiled from the types, shared by all users of the schema
+    private final Map<Class<?>, Object> compiled = new ConcurrentHashMap<>(2);
+
     public StaEDISchema(String interchangeName, String transactionStandardName, String implementationName) {
         super();
         this.interchangeName = interchangeName;
@@ -125,6 +130,25 @@ public class StaEDISchema implements Schema {
         }
     }
 
+    /**
+     * Retrieve a structure compiled from this schema's types, compiling it
+     * when first requested. The types of a schema do not change once loaded,
+     * so the structure is compiled once and shared by all readers and writers
+     * (and threads) using the schema.
+     *
+     * @param <T>
+     *            the type of the compiled structure
+     * @param type
+     *            the class of the compiled structure, identifying the
+     *            structure
+     * @param compiler
+     *            function compiling the structure from this schema
+     * @return the compiled structure
+     */
+    public <T> T getCompiled(Class<T> type, Function<Schema, T> compiler) {
+        return type.cast(compiled.computeIfAbsent(type, key -> compiler.apply(this)));
+    }
+
     @Override
     public EDIType getType(String name) {
         return types.get(name);
@@ -22,4 +22,26 @@ class VersionedProperty {
         return maxVersion.trim().isEmpty() || maxVersion.compareTo(version) >= 0;
     }
 
+    /**
+     * A version together with the properties resolved for it. Both are final,
+     * so a holder read by another thread without synchronization is always
+     * seen complete - it is either the latest holder or an earlier one.
+     *
+     * @param <T>
+     *            the type of the resolved properties
+     */
+    static final class Resolution<T> {
+        final String version;
+        final T resolved;
+
+        Resolution(String version, T resolved) {
+            this.version = version;
+            this.resolved = resolved;
+        }
+
+        boolean isFor(String version) {
+            return this.version == version || (this.version != null && this.version.equals(version));
+        }
+    }
+
 }
@@ -49,6 +49,10 @@ public class CharArraySequence implements CharSequence, Comparable<CharSequence>
         return text;
     }
 
+    public int getStart() {
+        return start;
+    }
+
     @Override
     public char charAt(int index) {
         if (index < 0 || index >= length) {
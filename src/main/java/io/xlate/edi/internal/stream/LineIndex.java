@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright 2020 xlate.io LLC, http://www.xlate.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package io.xlate.edi.internal.stream;
+
+import java.util.Arrays;
+
+/**
+ * Offsets of the line feeds read since the location's events were last
+ * released, used to compute the line and column of a character offset on
+ * request rather than as each character is read. Line feeds at or before the
+ * offset of the earliest location that may still be requested are folded
+ * into the base line.
+ */
+class LineIndex {
+
+    private int[] breaks = new int[16];
+    private int count;
+
+    // Line number and (offset of the first character - 1) of the base line
+    private int line;
+    private int lineStart;
+
+    LineIndex() {
+        reset();
+    }
+
+    void reset() {
+        count = 0;
+        line = 1;
+        lineStart = -1;
+    }
+
+    void lineBreak(int offset) {
+        if (count == breaks.length) {
+            breaks = Arrays.copyOf(breaks, count * 2);
+        }
+        breaks[count++] = offset;
+    }
+
+    int size() {
+        return count;
+    }
+
+    int getLineNumber(int offset) {
+        return line + breaksThrough(offset);
+    }
+
+    int getColumnNumber(int offset) {
+        final int n = breaksThrough(offset);
+        // A line feed is the first character of the line it begins
+        return offset - (n > 0 ? breaks[n - 1] - 1 : lineStart);
+    }
+
+    /**
+     * Fold the line feeds at or before the offset into the base line. Line
+     * and column numbers may no longer be requested for earlier offsets.
+     *
+     * @param offset
+     *            the offset of the earliest location that may be requested
+     */
+    void release(int offset) {
+        final int n = breaksThrough(offset);
+
+        if (n > 0) {
+            line += n;
+            lineStart = breaks[n - 1] - 1;
+            count -= n;
+            System.arraycopy(breaks, n, breaks, 0, count);
+        }
+    }
+
+    /**
+     * @return the number of line feeds at or before the offset
+     */
+    private int breaksThrough(int offset) {
+        int low = 0;
+        int high = count;
+
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+
+            if (breaks[mid] <= offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+}
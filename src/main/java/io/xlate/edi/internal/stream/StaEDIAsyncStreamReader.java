@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright 2020 xlate.io LLC, http://www.xlate.io
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package io.xlate.edi.internal.stream;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Map;
+
+import io.xlate.edi.internal.stream.tokenization.InputSource;
+import io.xlate.edi.schema.Schema;
+import io.xlate.edi.stream.EDIAsyncStreamReader;
+import io.xlate.edi.stream.EDIReporter;
+
+public class StaEDIAsyncStreamReader extends StaEDIStreamReader implements EDIAsyncStreamReader {
+
+    private final InputSource.AsyncSource source;
+
+    public StaEDIAsyncStreamReader(
+            InputSource.AsyncSource source,
+            Charset charset,
+            Schema schema,
+            Map<String, Object> properties,
+            EDIReporter reporter) {
+        super(source, charset, schema, properties, reporter);
+        this.source = source;
+    }
+
+    @Override
+    public void feedInput(byte[] data, int offset, int length) {
+        feedInput(ByteBuffer.wrap(data, offset, length));
+    }
+
+    @Override
+    public void feedInput(ByteBuffer data) {
+        ensureOpen();
+        source.feed(data);
+    }
+
+    @Override
+    public void reset(InputStream stream) {
+        throw new UnsupportedOperationException("Asynchronous reader input must be fed");
+    }
+
+    @Override
+    public void endOfInput() {
+        source.endOfInput();
+    }
+}
@@ -17,6 +17,7 @@ package io.xlate.edi.internal.stream;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
 import java.util.Map;
 
 import io.xlate.edi.schema.Schema;
@@ -26,6 +27,7 @@ import io.xlate.edi.stream.EDIStreamFilter;
 import io.xlate.edi.stream.EDIStreamReader;
 import io.xlate.edi.stream.EDIStreamValidationError;
 import io.xlate.edi.stream.Location;
+import io.xlate.edi.stream.SegmentView;
 
 class StaEDIFilteredStreamReader implements EDIStreamReader {
 
@@ -60,7 +62,7 @@ class StaEDIFilteredStreamReader implements EDIStreamReader {
 
         do {
             event = delegate.next();
-        } while (!filter.accept(delegate));
+        } while (event != EDIStreamEvent.NEED_MORE_INPUT && !filter.accept(delegate));
 
         return event;
     }
@@ -76,7 +78,7 @@ class StaEDIFilteredStreamReader implements EDIStreamReader {
 
         do {
             event = delegate.nextTag();
-        } while (!filter.accept(delegate));
+        } while (event != EDIStreamEvent.NEED_MORE_INPUT && !filter.accept(delegate));
 
         return event;
     }
@@ -86,7 +88,7 @@ class StaEDIFilteredStreamReader implements EDIStreamReader {
         while (delegate.hasNext()) {
             EDIStreamEvent event = delegate.next();
 
-            if (filter.accept(delegate)) {
+            if (event == EDIStreamEvent.NEED_MORE_INPUT || filter.accept(delegate)) {
                 peekEvent = event;
                 return true;
             }
@@ -100,6 +102,36 @@ class StaEDIFilteredStreamReader implements EDIStreamReader {
         delegate.close();
     }
 
+    @Override
+    public EDIStreamEvent skipSegment() throws EDIStreamException {
+        peekEvent = null;
+        return delegate.skipSegment();
+    }
+
+    @Override
+    public EDIStreamEvent skipLoop() throws EDIStreamException {
+        peekEvent = null;
+        return delegate.skipLoop();
+    }
+
+    @Override
+    public EDIStreamEvent skipTransaction() throws EDIStreamException {
+        peekEvent = null;
+        return delegate.skipTransaction();
+    }
+
+    @Override
+    public SegmentView nextSegment() throws EDIStreamException {
+        peekEvent = null;
+        return delegate.nextSegment();
+    }
+
+    @Override
+    public void reset(InputStream stream) throws EDIStreamException {
+        delegate.reset(stream);
+        peekEvent = null;
+    }
+
     @Override
     public EDIStreamEvent getEventType() {
         return delegate.getEventType();
@@ -176,6 +208,11 @@ class StaEDIFilteredStreamReader implements EDIStreamReader {
         return delegate.getTextLength();
     }
 
+    @Override
+    public CharSequence getTextSequence() {
+        return delegate.getTextSequence();
+    }
+
     @Override
     public Location getLocation() {
         return delegate.getLocation();
@@ -190,4 +227,9 @@ class StaEDIFilteredStreamReader implements EDIStreamReader {
     public InputStream getBinaryData() {
         return delegate.getBinaryData();
     }
+
+    @Override
+    public long transferBinaryData(WritableByteChannel target) throws EDIStreamException {
+        return delegate.transferBinaryData(target);
+    }
 }
@@ -15,29 +15,65 @@
  ******************************************************************************/
 package io.xlate.edi.internal.stream;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 
+import io.xlate.edi.internal.stream.tokenization.InputSource;
+import io.xlate.edi.internal.stream.tokenization.SegmentTags;
+import io.xlate.edi.internal.stream.tokenization.TransactionScanner;
 import io.xlate.edi.schema.Schema;
+import io.xlate.edi.stream.EDIAsyncStreamReader;
+import io.xlate.edi.stream.EDIEventFilter;
 import io.xlate.edi.stream.EDIInputFactory;
 import io.xlate.edi.stream.EDIReporter;
+import io.xlate.edi.stream.EDIStreamEvent;
 import io.xlate.edi.stream.EDIStreamException;
 import io.xlate.edi.stream.EDIStreamFilter;
 import io.xlate.edi.stream.EDIStreamReader;
+import io.xlate.edi.stream.EDITransactionProcessor;
 
 public class StaEDIInputFactory extends EDIInputFactory {
 
+    /*
+     * Maximum number of transactions submitted to a pool for each of its
+     * threads, see #processTransactions
+     */
+    static final int TASKS_PER_THREAD = 4;
+    static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
     private EDIReporter reporter;
+    private volatile StaEDIStreamReaderPool pool;
 
     public StaEDIInputFactory() {
         supportedProperties.add(EDI_VALIDATE_CONTROL_STRUCTURE);
         supportedProperties.add(EDI_VALIDATE_CONTROL_CODE_VALUES);
         supportedProperties.add(XML_DECLARE_TRANSACTION_XMLNS);
+        supportedProperties.add(EDI_ELEMENT_CHUNK_SIZE);
+        supportedProperties.add(EDI_ZERO_COPY_TEXT);
+        supportedProperties.add(EDI_LAZY_LOCATION);
+        supportedProperties.add(EDI_CONCATENATED_INTERCHANGES);
+        supportedProperties.add(EDI_DETECT_CHARSET);
     }
 
     @Override
@@ -59,9 +95,262 @@ public class StaEDIInputFactory extends EDIInputFactory {
     @Override
     public EDIStreamReader createEDIStreamReader(InputStream stream, String encoding, Schema schema) throws EDIStreamException {
         Objects.requireNonNull(stream);
+        return new StaEDIStreamReader(stream, toCharset(encoding), schema, properties, getEDIReporter());
+    }
+
+    @Override
+    public EDIStreamReader createEDIStreamReader(Path path) throws EDIStreamException {
+        return createEDIStreamReader(path, (Schema) null);
+    }
+
+    @Override
+    public EDIStreamReader createEDIStreamReader(Path path, String encoding) throws EDIStreamException {
+        return createEDIStreamReader(path, encoding, null);
+    }
+
+    @Override
+    public EDIStreamReader createEDIStreamReader(Path path, Schema schema) throws EDIStreamException {
+        return createEDIStreamReader(path, StandardCharsets.UTF_8.name(), schema);
+    }
+
+    @Override
+    public EDIStreamReader createEDIStreamReader(Path path, String encoding, Schema schema) throws EDIStreamException {
+        Objects.requireNonNull(path);
+        Charset charset = toCharset(encoding);
+
+        try {
+            return new StaEDIStreamReader(InputSource.of(path), charset, schema, properties, getEDIReporter());
+        } catch (IOException e) {
+            throw new EDIStreamException(e);
+        }
+    }
+
+    @Override
+    public EDIStreamReader createEDIStreamReader(ReadableByteChannel channel) throws EDIStreamException {
+        return createEDIStreamReader(channel, (Schema) null);
+    }
+
+    @Override
+    public EDIStreamReader createEDIStreamReader(ReadableByteChannel channel, String encoding) throws EDIStreamException {
+        return createEDIStreamReader(channel, encoding, null);
+    }
+
+    @Override
+    public EDIStreamReader createEDIStreamReader(ReadableByteChannel channel, Schema schema) throws EDIStreamException {
+        return createEDIStreamReader(channel, StandardCharsets.UTF_8.name(), schema);
+    }
+
+    @Override
+    public EDIStreamReader createEDIStreamReader(ReadableByteChannel channel, String encoding, Schema schema) throws EDIStreamException {
+        Objects.requireNonNull(channel);
+        Charset charset = toCharset(encoding);
+
+        try {
+            return new StaEDIStreamReader(InputSource.of(channel), charset, schema, properties, getEDIReporter());
+        } catch (IOException e) {
+            throw new EDIStreamException(e);
+        }
+    }
+
+    @Override
+    public EDIStreamReader createPooledEDIStreamReader(InputStream stream, Schema schema) throws EDIStreamException {
+        return pool().acquire(stream, StandardCharsets.UTF_8, schema);
+    }
+
+    @Override
+    public EDIStreamReader createPooledEDIStreamReader(InputStream stream, String encoding, Schema schema) throws EDIStreamException {
+        return pool().acquire(stream, toCharset(encoding), schema);
+    }
+
+    StaEDIStreamReaderPool pool() {
+        StaEDIStreamReaderPool current = pool;
+
+        if (current == null) {
+            synchronized (this) {
+                current = pool;
+
+                if (current == null) {
+                    current = new StaEDIStreamReaderPool(new HashMap<>(properties), reporter);
+                    pool = current;
+                }
+            }
+        }
+
+        return current;
+    }
+
+    @Override
+    public EDIAsyncStreamReader createEDIAsyncStreamReader() {
+        return new StaEDIAsyncStreamReader(InputSource.async(), StandardCharsets.UTF_8, null, properties, getEDIReporter());
+    }
+
+    @Override
+    public EDIAsyncStreamReader createEDIAsyncStreamReader(String encoding, Schema schema) throws EDIStreamException {
+        return new StaEDIAsyncStreamReader(InputSource.async(), toCharset(encoding), schema, properties, getEDIReporter());
+    }
+
+    @Override
+    public <T> List<T> processTransactions(InputStream stream, EDITransactionProcessor<T> processor) throws EDIStreamException {
+        return processTransactions(stream, StandardCharsets.UTF_8.name(), processor, ForkJoinPool.commonPool());
+    }
 
+    @Override
+    public <T> List<T> processTransactions(InputStream stream,
+                                           String encoding,
+                                           EDITransactionProcessor<T> processor,
+                                           ForkJoinPool pool) throws EDIStreamException {
+        Objects.requireNonNull(stream);
+        Objects.requireNonNull(processor);
+        Objects.requireNonNull(pool);
+        Charset charset = toScannableCharset(encoding);
+        final List<TransactionScanner.Transaction> transactions;
+
+        try {
+            transactions = new TransactionScanner(readFully(stream)).scan();
+        } catch (IOException e) {
+            throw new EDIStreamException(e);
+        }
+
+        return processTransactions(transactions, charset, processor, pool);
+    }
+
+    @Override
+    public <T> List<T> processTransactions(Path path, EDITransactionProcessor<T> processor) throws EDIStreamException {
+        return processTransactions(path, StandardCharsets.UTF_8.name(), processor, ForkJoinPool.commonPool());
+    }
+
+    @Override
+    public <T> List<T> processTransactions(Path path,
+                                           String encoding,
+                                           EDITransactionProcessor<T> processor,
+                                           ForkJoinPool pool) throws EDIStreamException {
+        Objects.requireNonNull(path);
+        Objects.requireNonNull(processor);
+        Objects.requireNonNull(pool);
+        Charset charset = toScannableCharset(encoding);
+        final List<TransactionScanner.Transaction> transactions;
+
+        // Mapped transactions remain readable once the channel is closed
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            transactions = new TransactionScanner(channel).scan();
+        } catch (IOException e) {
+            throw new EDIStreamException(e);
+        }
+
+        return processTransactions(transactions, charset, processor, pool);
+    }
+
+    /**
+     * Process the transactions using the pool, limiting the number of
+     * transactions submitted to the pool but not yet complete to
+     * {@link #TASKS_PER_THREAD} for each thread of the pool. Results are
+     * collected in the order of the transactions.
+     */
+    <T> List<T> processTransactions(List<TransactionScanner.Transaction> transactions,
+                                    Charset charset,
+                                    EDITransactionProcessor<T> processor,
+                                    ForkJoinPool pool) throws EDIStreamException {
+
+        final int limit = Math.max(1, pool.getParallelism() * TASKS_PER_THREAD);
+        final Deque<ForkJoinTask<T>> tasks = new ArrayDeque<>(limit);
+        final Iterator<TransactionScanner.Transaction> pending = transactions.iterator();
+        final List<T> results = new ArrayList<>(transactions.size());
+
+        try {
+            while (pending.hasNext() || !tasks.isEmpty()) {
+                while (tasks.size() < limit && pending.hasNext()) {
+                    TransactionScanner.Transaction transaction = pending.next();
+                    tasks.add(pool.submit(() -> processTransaction(transaction, charset, processor)));
+                }
+
+                results.add(tasks.peek().get());
+                tasks.remove();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            tasks.forEach(task -> task.cancel(true));
+            throw new EDIStreamException(e);
+        } catch (ExecutionException e) {
+            tasks.forEach(task -> task.cancel(true));
+            // Checked exceptions from the processor arrive wrapped by the pool
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof EDIStreamException) {
+                    throw (EDIStreamException) cause;
+                }
+            }
+            throw new EDIStreamException(e.getCause());
+        }
+
+        return results;
+    }
+
+    <T> T processTransaction(TransactionScanner.Transaction transaction,
+                             Charset charset,
+                             EDITransactionProcessor<T> processor) throws EDIStreamException, IOException {
+
+        try (EDIStreamReader reader = new StaEDIStreamReader(transaction.getInput(), charset, null, properties, getEDIReporter())) {
+            while (reader.hasNext() && !isTransactionStart(reader.next(), reader)) {
+                // Skip the interchange and group headers
+            }
+            return processor.process(reader);
+        }
+    }
+
+    /**
+     * Determine whether the reader is positioned at the start of its
+     * transaction: the START_TRANSACTION event, or the start of the ST/UNH
+     * segment when control structures are not validated (no
+     * START_TRANSACTION is reported).
+     */
+    static boolean isTransactionStart(EDIStreamEvent event, EDIStreamReader reader) {
+        if (event == EDIStreamEvent.START_TRANSACTION) {
+            return true;
+        }
+
+        if (event == EDIStreamEvent.START_SEGMENT) {
+            final int tagId = SegmentTags.of(reader.getTextSequence());
+            return tagId == SegmentTags.ST || tagId == SegmentTags.UNH;
+        }
+
+        return false;
+    }
+
+    /**
+     * Read the stream into a single array, growing the array as needed. The
+     * array is not copied again once the stream has been read.
+     */
+    static ByteBuffer readFully(InputStream stream) throws IOException {
+        byte[] buffer = new byte[Math.max(8192, stream.available() + 1)];
+        int length = 0;
+        int count;
+
+        while ((count = stream.read(buffer, length, buffer.length - length)) > -1) {
+            length += count;
+
+            if (length == buffer.length) {
+                if (length == MAX_ARRAY_SIZE) {
+                    throw new IOException("Stream too large to be held in memory, read from a file");
+                }
+                buffer = Arrays.copyOf(buffer, (int) Math.min(length * 2L, MAX_ARRAY_SIZE));
+            }
+        }
+
+        return ByteBuffer.wrap(buffer, 0, length);
+    }
+
+    static Charset toScannableCharset(String encoding) throws EDIStreamException {
+        Charset charset = toCharset(encoding);
+
+        if (!TransactionScanner.isSupported(charset)) {
+            throw new EDIStreamException("Unsupported encoding for parallel processing: " + encoding);
+        }
+
+        return charset;
+    }
+
+    static Charset toCharset(String encoding) throws EDIStreamException {
         if (Charset.isSupported(encoding)) {
-            return new StaEDIStreamReader(stream, Charset.forName(encoding), schema, properties, getEDIReporter());
+            return Charset.forName(encoding);
         }
 
         throw new EDIStreamException("Unsupported encoding: " + encoding);
@@ -69,6 +358,16 @@ public class StaEDIInputFactory extends EDIInputFactory {
 
     @Override
     public EDIStreamReader createFilteredReader(EDIStreamReader reader, EDIStreamFilter filter) {
+        if (filter instanceof EDIEventFilter && reader instanceof StaEDIStreamReader) {
+            StaEDIStreamReader source = (StaEDIStreamReader) reader;
+
+            if (source.getEventFilter() != null) {
+                // A second filter would replace the first, discarding events the first wrapper accepts
+                throw new IllegalArgumentException("Reader is already filtered by an EDIEventFilter");
+            }
+
+            source.setEventFilter((EDIEventFilter) filter);
+        }
         return new StaEDIFilteredStreamReader(reader, filter);
     }
 
@@ -85,5 +384,13 @@ public class StaEDIInputFactory extends EDIInputFactory {
     @Override
     public void setEDIReporter(EDIReporter reporter) {
         this.reporter = reporter;
+        this.pool = null;
+    }
+
+    @Override
+    public void setProperty(String name, Object value) {
+        super.setProperty(name, value);
+        // Pooled readers were configured with the previous properties
+        this.pool = null;
     }
 }
@@ -0,0 +1,318 @@
+/*******************************************************************************
+ * Copyright 2020 xlate.io LLC, http://www.xlate.io
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package io.xlate.edi.internal.stream;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+import io.xlate.edi.stream.EDIStreamValidationError;
+import io.xlate.edi.stream.Location;
+import io.xlate.edi.stream.SegmentView;
+
+/**
+ * Reusable {@link SegmentView} populated by the reader (and directly by the
+ * {@link io.xlate.edi.internal.stream.tokenization.ProxyEventHandler
+ * ProxyEventHandler} while capturing). Element text is copied into a single
+ * buffer and the arrays holding the offsets of the values only grow, so
+ * reading a segment does not allocate once the view has reached the size of
+ * the largest segment read.
+ */
+public class StaEDISegmentView implements SegmentView {
+
+    private static final int INITIAL_VALUES = 32;
+
+    private String tag;
+    private boolean capturing;
+    private boolean partial;
+
+    private char[] text = new char[256];
+    private int textLength;
+
+    private int valueCount;
+    private int[] valueStart = new int[INITIAL_VALUES];
+    private int[] valueLength = new int[INITIAL_VALUES];
+    private int[] valuePosition = new int[INITIAL_VALUES];
+    private int[] valueOccurrence = new int[INITIAL_VALUES];
+    private int[] valueComponent = new int[INITIAL_VALUES];
+    private CharArraySequence[] values = new CharArraySequence[0];
+
+    // Index of the first value of each element position up to elementCount, -1 when not present
+    private int[] firstValue = new int[INITIAL_VALUES];
+    private int elementCount;
+
+    private int errorCount;
+    private EDIStreamValidationError[] errorTypes = new EDIStreamValidationError[4];
+    private String[] errorCodes = new String[4];
+    private int[] errorPositions = new int[4];
+
+    /**
+     * Remove the contents of the view prior to reading the next segment.
+     */
+    public void clear() {
+        tag = null;
+        capturing = false;
+        partial = false;
+        textLength = 0;
+        valueCount = 0;
+        elementCount = 0;
+        errorCount = 0;
+    }
+
+    /**
+     * Begin capturing the values of a segment. Errors recorded since the view
+     * was last cleared are retained.
+     *
+     * @param tag
+     *            the segment tag
+     */
+    public void begin(String tag) {
+        this.tag = tag;
+        this.capturing = true;
+    }
+
+    public void end() {
+        this.capturing = false;
+        this.partial = false;
+    }
+
+    public boolean isCapturing() {
+        return capturing;
+    }
+
+    /**
+     * Record the value of an element or component. Partial values are
+     * combined with the value that follows.
+     *
+     * @param data
+     *            the value's text
+     * @param where
+     *            the location of the value
+     * @param partial
+     *            true if additional text of the value will follow
+     */
+    public void elementData(CharSequence data, Location where, boolean partial) {
+        if (!this.partial) {
+            addValue(where.getElementPosition(), where.getElementOccurrence(), where.getComponentPosition());
+        }
+
+        append(data);
+        valueLength[valueCount - 1] = textLength - valueStart[valueCount - 1];
+        this.partial = partial;
+    }
+
+    public void error(EDIStreamValidationError error, CharSequence code, Location where) {
+        if (errorCount == errorTypes.length) {
+            int size = errorCount * 2;
+            errorTypes = Arrays.copyOf(errorTypes, size);
+            errorCodes = Arrays.copyOf(errorCodes, size);
+            errorPositions = Arrays.copyOf(errorPositions, size);
+        }
+
+        errorTypes[errorCount] = error;
+        errorCodes[errorCount] = code != null ? code.toString() : null;
+        errorPositions[errorCount] = where.getElementPosition();
+        errorCount++;
+    }
+
+    void addValue(int position, int occurrence, int component) {
+        if (valueCount == valueStart.length) {
+            int size = valueCount * 2;
+            valueStart = Arrays.copyOf(valueStart, size);
+            valueLength = Arrays.copyOf(valueLength, size);
+            valuePosition = Arrays.copyOf(valuePosition, size);
+            valueOccurrence = Arrays.copyOf(valueOccurrence, size);
+            valueComponent = Arrays.copyOf(valueComponent, size);
+        }
+
+        if (position >= firstValue.length) {
+            int size = firstValue.length;
+            firstValue = Arrays.copyOf(firstValue, Math.max(size * 2, position + 1));
+            Arrays.fill(firstValue, size, firstValue.length, -1);
+        }
+
+        if (position > elementCount) {
+            Arrays.fill(firstValue, elementCount + 1, position, -1);
+            firstValue[position] = valueCount;
+            elementCount = position;
+        }
+
+        valueStart[valueCount] = textLength;
+        valueLength[valueCount] = 0;
+        valuePosition[valueCount] = position;
+        valueOccurrence[valueCount] = occurrence;
+        valueComponent[valueCount] = component;
+        valueCount++;
+    }
+
+    void append(CharSequence data) {
+        final int length = data.length();
+
+        if (textLength + length > text.length) {
+            text = Arrays.copyOf(text, Math.max(text.length * 2, textLength + length));
+        }
+
+        if (data instanceof CharArraySequence) {
+            CharArraySequence sequence = (CharArraySequence) data;
+            System.arraycopy(sequence.getText(), sequence.getStart(), text, textLength, length);
+        } else if (data instanceof CharBuffer && ((CharBuffer) data).hasArray()) {
+            CharBuffer buffer = (CharBuffer) data;
+            System.arraycopy(buffer.array(), buffer.arrayOffset() + buffer.position(), text, textLength, length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                text[textLength + i] = data.charAt(i);
+            }
+        }
+
+        textLength += length;
+    }
+
+    int find(int position, int occurrence, int component) {
+        if (position < 1 || position > elementCount) {
+            return -1;
+        }
+
+        for (int i = firstValue[position]; i > -1 && i < valueCount && valuePosition[i] == position; i++) {
+            if (valueOccurrence[i] == occurrence
+                    && (valueComponent[i] == component || (component == 1 && valueComponent[i] < 1))) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    CharSequence value(int index) {
+        if (index < 0) {
+            return null;
+        }
+
+        if (index >= values.length) {
+            int size = values.length;
+            values = Arrays.copyOf(values, valueStart.length);
+
+            for (int i = size; i < values.length; i++) {
+                values[i] = new CharArraySequence();
+            }
+        }
+
+        values[index].set(text, valueStart[index], valueLength[index]);
+        return values[index];
+    }
+
+    @Override
+    public String getTag() {
+        return tag;
+    }
+
+    @Override
+    public int getElementCount() {
+        return elementCount;
+    }
+
+    @Override
+    public int getRepetitionCount(int position) {
+        int count = 0;
+
+        if (position > 0 && position <= elementCount) {
+            for (int i = firstValue[position]; i > -1 && i < valueCount && valuePosition[i] == position; i++) {
+                count = Math.max(count, valueOccurrence[i]);
+            }
+        }
+
+        return count;
+    }
+
+    @Override
+    public int getComponentCount(int position) {
+        return getComponentCount(position, 1);
+    }
+
+    @Override
+    public int getComponentCount(int position, int repetition) {
+        int count = 0;
+
+        if (position > 0 && position <= elementCount) {
+            for (int i = firstValue[position]; i > -1 && i < valueCount && valuePosition[i] == position; i++) {
+                if (valueOccurrence[i] == repetition) {
+                    count = Math.max(count, Math.max(valueComponent[i], 1));
+                }
+            }
+        }
+
+        return count;
+    }
+
+    @Override
+    public CharSequence element(int position) {
+        return value(find(position, 1, 1));
+    }
+
+    @Override
+    public CharSequence component(int position, int component) {
+        return value(find(position, 1, component));
+    }
+
+    @Override
+    public CharSequence component(int position, int repetition, int component) {
+        return value(find(position, repetition, component));
+    }
+
+    @Override
+    public CharSequence repetition(int position, int repetition) {
+        return value(find(position, repetition, 1));
+    }
+
+    @Override
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    @Override
+    public EDIStreamValidationError getErrorType(int index) {
+        checkErrorIndex(index);
+        return errorTypes[index];
+    }
+
+    @Override
+    public String getErrorReferenceCode(int index) {
+        checkErrorIndex(index);
+        return errorCodes[index];
+    }
+
+    @Override
+    public int getErrorElementPosition(int index) {
+        checkErrorIndex(index);
+        return errorPositions[index];
+    }
+
+    void checkErrorIndex(int index) {
+        if (index < 0 || index >= errorCount) {
+            throw new IndexOutOfBoundsException(Integer.toString(index));
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder(String.valueOf(tag));
+
+        for (int i = 0; i < valueCount; i++) {
+            result.append(i > 0 && valuePosition[i] == valuePosition[i - 1] ? '|' : '*');
+            result.append(text, valueStart[i], valueLength[i]);
+        }
+
+        return result.toString();
+    }
+}
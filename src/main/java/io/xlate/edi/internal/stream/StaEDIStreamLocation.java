@@ -15,12 +15,20 @@
  ******************************************************************************/
 package io.xlate.edi.internal.stream;
 
+import java.nio.ByteBuffer;
+
 import io.xlate.edi.stream.Location;
 
 public class StaEDIStreamLocation extends LocationView implements Location {
 
     private boolean repeated = false;
 
+    /*
+     * When not null, the line and column are not tracked as characters are
+     * read. They are computed from the character offset when requested.
+     */
+    private LineIndex lines;
+
     public StaEDIStreamLocation() {
         super();
     }
@@ -29,10 +37,52 @@ public class StaEDIStreamLocation extends LocationView implements Location {
         super(source);
     }
 
+    /**
+     * Compute the line and column of each location from its character offset
+     * when requested rather than tracking them as characters are read.
+     * Locations set from this location share its line index, their line and
+     * column may be requested until {@link #releaseLines()} is next called.
+     *
+     * @param indexed
+     *            true if lines and columns should be computed on request
+     */
+    public void setLinesIndexed(boolean indexed) {
+        this.lines = indexed ? new LineIndex() : null;
+    }
+
+    /**
+     * Discard the line feeds preceding the current offset, after which lines
+     * and columns may only be requested for this location and those set from
+     * it later.
+     */
+    public void releaseLines() {
+        if (lines != null) {
+            lines.release(characterOffset);
+        }
+    }
+
+    /**
+     * @return the number of line feeds retained to compute lines and columns
+     *         on request, or 0 when lines are not indexed
+     */
+    int getIndexedLineBreaks() {
+        return lines != null ? lines.size() : 0;
+    }
+
+    @Override
+    public int getLineNumber() {
+        return lines != null ? lines.getLineNumber(characterOffset) : lineNumber;
+    }
+
+    @Override
+    public int getColumnNumber() {
+        return lines != null ? lines.getColumnNumber(characterOffset) : columnNumber;
+    }
+
     public StaEDIStreamLocation copy() {
         StaEDIStreamLocation copy = new StaEDIStreamLocation();
-        copy.lineNumber = this.lineNumber;
-        copy.columnNumber = this.columnNumber;
+        copy.lineNumber = getLineNumber();
+        copy.columnNumber = getColumnNumber();
         copy.characterOffset = this.characterOffset;
         copy.segmentPosition = this.segmentPosition;
         copy.segmentTag = this.segmentTag;
@@ -43,9 +93,36 @@ public class StaEDIStreamLocation extends LocationView implements Location {
         return copy;
     }
 
+    /**
+     * Return the location to the state of a newly created instance, before
+     * any input has been read.
+     */
+    public void reset() {
+        lineNumber = 1;
+        columnNumber = 0;
+        characterOffset = -1;
+        segmentPosition = -1;
+        segmentTag = null;
+        elementPosition = -1;
+        componentPosition = -1;
+        elementOccurrence = -1;
+        repeated = false;
+
+        if (lines != null) {
+            lines.reset();
+        }
+    }
+
     public void set(Location source) {
-        lineNumber = source.getLineNumber();
-        columnNumber = source.getColumnNumber();
+        if (source instanceof StaEDIStreamLocation && ((StaEDIStreamLocation) source).lines != null) {
+            // Only the offset is recorded, the line and column follow from it
+            lines = ((StaEDIStreamLocation) source).lines;
+        } else {
+            lines = null;
+            lineNumber = source.getLineNumber();
+            columnNumber = source.getColumnNumber();
+        }
+
         characterOffset = source.getCharacterOffset();
         segmentPosition = source.getSegmentPosition();
         segmentTag = source.getSegmentTag();
@@ -68,6 +145,14 @@ public class StaEDIStreamLocation extends LocationView implements Location {
 
     public void incrementOffset(int value) {
         this.characterOffset++;
+
+        if (lines != null) {
+            if (value == '\n') {
+                lines.lineBreak(characterOffset);
+            }
+            return;
+        }
+
         if (value == '\n') {
             this.lineNumber++;
             this.columnNumber = 0;
@@ -75,6 +160,73 @@ public class StaEDIStreamLocation extends LocationView implements Location {
         this.columnNumber++;
     }
 
+    /**
+     * Advance the location past a run of characters, equivalent to calling
+     * {@link #incrementOffset(int)} for each character in the range.
+     *
+     * @param text
+     *            array holding the characters
+     * @param start
+     *            index of the first character
+     * @param end
+     *            index following the last character
+     */
+    public void incrementOffset(char[] text, int start, int end) {
+        if (lines != null) {
+            for (int i = start; i < end; i++) {
+                if (text[i] == '\n') {
+                    lines.lineBreak(characterOffset + i - start + 1);
+                }
+            }
+            this.characterOffset += end - start;
+            return;
+        }
+
+        this.characterOffset += end - start;
+        this.columnNumber += end - start;
+
+        for (int i = start; i < end; i++) {
+            if (text[i] == '\n') {
+                this.lineNumber++;
+                this.columnNumber = end - i;
+            }
+        }
+    }
+
+    /**
+     * Advance the location past a run of binary data, equivalent to calling
+     * {@link #incrementOffset(int)} for each byte in the range. The buffer's
+     * position is not modified.
+     *
+     * @param bytes
+     *            buffer holding the bytes
+     * @param start
+     *            index of the first byte
+     * @param end
+     *            index following the last byte
+     */
+    public void incrementOffset(ByteBuffer bytes, int start, int end) {
+        if (lines != null) {
+            for (int i = start; i < end; i++) {
+                if (bytes.get(i) == '\n') {
+                    lines.lineBreak(characterOffset + i - start + 1);
+                }
+            }
+            this.characterOffset += end - start;
+            return;
+        }
+
+        this.characterOffset += end - start;
+        this.columnNumber += end - start;
+
+        for (int i = start; i < end; i++) {
+            if (bytes.get(i) == '\n') {
+                this.lineNumber++;
+                this.columnNumber = end - i;
+            }
+        }
+    }
+
     public void incrementSegmentPosition(String segmentTag) {
         if (this.segmentPosition < 0) {
             this.segmentPosition = 1;
@@ -18,6 +18,7 @@ package io.xlate.edi.internal.stream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.Collections;
@@ -30,10 +31,12 @@ import java.util.stream.Collectors;
 
 import io.xlate.edi.internal.schema.SchemaUtils;
 import io.xlate.edi.internal.stream.tokenization.Dialect;
+import io.xlate.edi.internal.stream.tokenization.InputSource;
 import io.xlate.edi.internal.stream.tokenization.Lexer;
 import io.xlate.edi.internal.stream.tokenization.ProxyEventHandler;
 import io.xlate.edi.schema.EDISchemaException;
 import io.xlate.edi.schema.Schema;
+import io.xlate.edi.stream.EDIEventFilter;
 import io.xlate.edi.stream.EDIInputFactory;
 import io.xlate.edi.stream.EDIReporter;
 import io.xlate.edi.stream.EDIStreamEvent;
@@ -41,36 +44,73 @@ import io.xlate.edi.stream.EDIStreamException;
 import io.xlate.edi.stream.EDIStreamReader;
 import io.xlate.edi.stream.EDIStreamValidationError;
 import io.xlate.edi.stream.Location;
+import io.xlate.edi.stream.SegmentView;
 
 public class StaEDIStreamReader implements EDIStreamReader {
 
     private static final Logger LOGGER = Logger.getLogger(StaEDIStreamReader.class.getName());
 
+    private final Schema initialControlSchema;
     private Schema controlSchema;
     private final Map<String, Object> properties;
     private final EDIReporter reporter;
     private final StaEDIStreamLocation location = new StaEDIStreamLocation();
     private final ProxyEventHandler proxy;
     private final Lexer lexer;
+    private final StaEDISegmentView segmentView = new StaEDISegmentView();
+
+    private final boolean zeroCopyText;
+    private final boolean concatenatedInterchanges;
+    private final boolean tracing = LOGGER.isLoggable(Level.FINER);
 
     private boolean complete = false;
     private boolean closed = false;
 
+    /*
+     * Set at the end of an interchange when reading concatenated interchanges,
+     * until the input following it is known. Remains set while an asynchronous
+     * source awaits more input.
+     */
+    private boolean betweenInterchanges = false;
+
+    // Structures containing the current event, the extent of skipSegment/skipTransaction
+    private boolean inSegment = false;
+    private boolean inTransaction = false;
+
     public StaEDIStreamReader(
             InputStream stream,
             Charset charset,
             Schema schema,
             Map<String, Object> properties,
             EDIReporter reporter) {
+        this(InputSource.of(stream), charset, schema, properties, reporter);
+    }
 
+    public StaEDIStreamReader(
+            InputSource source,
+            Charset charset,
+            Schema schema,
+            Map<String, Object> properties,
+            EDIReporter reporter) {
+
+        this.initialControlSchema = schema;
         this.controlSchema = schema;
         this.properties = new HashMap<>(properties);
         this.reporter = reporter;
         this.proxy = new ProxyEventHandler(location, this.controlSchema);
-        this.lexer = new Lexer(stream, charset, proxy, location);
-    }
-
-    private void ensureOpen() {
+        this.lexer = new Lexer(source, charset, proxy, location);
+        this.lexer.setElementChunkSize(getIntegerProperty(EDIInputFactory.EDI_ELEMENT_CHUNK_SIZE, 0));
+        final boolean lazyLocation = getBooleanProperty(EDIInputFactory.EDI_LAZY_LOCATION, false);
+        this.location.setLinesIndexed(lazyLocation);
+        this.lexer.setLocationDeferred(lazyLocation);
+        this.lexer.setCharsetDetected(getBooleanProperty(EDIInputFactory.EDI_DETECT_CHARSET, false));
+        this.zeroCopyText = getBooleanProperty(EDIInputFactory.EDI_ZERO_COPY_TEXT, false);
+        this.proxy.setTextReferenced(zeroCopyText);
+        this.concatenatedInterchanges = getBooleanProperty(EDIInputFactory.EDI_CONCATENATED_INTERCHANGES, false);
+        this.lexer.setInterchangesConcatenated(concatenatedInterchanges);
+    }
+
+    void ensureOpen() {
         if (closed) {
             throw new IllegalStateException("Reader is closed");
         }
@@ -120,8 +160,37 @@ public class StaEDIStreamReader implements EDIStreamReader {
         return Collections.unmodifiableMap(delimiters);
     }
 
+    /**
+     * When reading concatenated interchanges and positioned between
+     * interchanges, determine whether another interchange follows. If so, the
+     * control schema is returned to the reader's initial control schema so
+     * that the next interchange's schema may be determined from its header
+     * (validators already built for a schema are reused). If no input
+     * remains, the reader is complete. Otherwise, an asynchronous source is
+     * awaiting input and the check is repeated once more input is available.
+     */
+    private void checkInterchangeFollows() throws EDIStreamException {
+        if (!betweenInterchanges || complete) {
+            return;
+        }
+
+        try {
+            if (lexer.hasRemainingInput()) {
+                betweenInterchanges = false;
+                controlSchema = initialControlSchema;
+                proxy.resetControlSchema(controlSchema, true);
+            } else if (!lexer.isAwaitingInput()) {
+                betweenInterchanges = false;
+                complete = true;
+            }
+        } catch (IOException e) {
+            throw new EDIStreamException("Error parsing input", getLocation(), e);
+        }
+    }
+
     private EDIStreamEvent nextEvent() throws EDIStreamException {
         ensureOpen();
+        checkInterchangeFollows();
         ensureIncomplete();
 
         if (EDIStreamEvent.START_INTERCHANGE == proxy.getEvent() && useInternalControlSchema()) {
@@ -149,14 +218,45 @@ public class StaEDIStreamReader implements EDIStreamReader {
                 Location where = getLocation();
                 throw new EDIStreamException("Error parsing input", where, e);
             }
+
+            if (!proxy.hasEvents()) {
+                if (lexer.isAwaitingInput()) {
+                    // All input available from an asynchronous source has been consumed
+                    return EDIStreamEvent.NEED_MORE_INPUT;
+                }
+
+                // End of input following the last of concatenated interchanges
+                complete = true;
+                ensureIncomplete();
+            }
         }
 
         final EDIStreamEvent event = proxy.getEvent();
 
-        LOGGER.finer(() -> "EDI event: " + event);
+        if (tracing) {
+            LOGGER.finer("EDI event: " + event);
+        }
 
-        if (event == EDIStreamEvent.END_INTERCHANGE) {
-            complete = true;
+        switch (event) {
+        case START_SEGMENT:
+            inSegment = true;
+            break;
+        case END_SEGMENT:
+            inSegment = false;
+            break;
+        case START_TRANSACTION:
+            inTransaction = true;
+            break;
+        case END_TRANSACTION:
+            inTransaction = false;
+            break;
+        case END_INTERCHANGE:
+            complete = !concatenatedInterchanges;
+            betweenInterchanges = concatenatedInterchanges;
+            inTransaction = false;
+            break;
+        default:
+            break;
         }
 
         if (event == EDIStreamEvent.ELEMENT_DATA && proxy.isBinaryElementLength()) {
@@ -200,6 +300,7 @@ public class StaEDIStreamReader implements EDIStreamReader {
             case START_TRANSACTION:
             case START_LOOP:
             case START_SEGMENT:
+            case NEED_MORE_INPUT:
                 tagFound = true;
                 break;
             default:
@@ -214,22 +315,152 @@ public class StaEDIStreamReader implements EDIStreamReader {
         return event;
     }
 
+    /**
+     * Discard events rejected by the filter as they are parsed, see
+     * {@link ProxyEventHandler#setEventFilter(EDIEventFilter)}.
+     *
+     * @param filter
+     *            the filter of events
+     */
+    void setEventFilter(EDIEventFilter filter) {
+        proxy.setEventFilter(filter);
+    }
+
+    EDIEventFilter getEventFilter() {
+        return proxy.getEventFilter();
+    }
+
+    @Override
+    public EDIStreamEvent skipSegment() throws EDIStreamException {
+        ensureOpen();
+
+        if (!inSegment) {
+            throw new IllegalStateException("skipSegment must be called within a segment");
+        }
+
+        proxy.skipSegment();
+        return next();
+    }
+
+    @Override
+    public EDIStreamEvent skipLoop() throws EDIStreamException {
+        ensureOpen();
+
+        if (getEventType() != EDIStreamEvent.START_LOOP) {
+            throw new IllegalStateException("skipLoop must be called at START_LOOP");
+        }
+
+        proxy.skipLoop();
+        return next();
+    }
+
+    @Override
+    public EDIStreamEvent skipTransaction() throws EDIStreamException {
+        ensureOpen();
+
+        if (!inTransaction) {
+            throw new IllegalStateException("skipTransaction must be called within a transaction");
+        }
+
+        proxy.skipTransaction();
+        return next();
+    }
+
+    @Override
+    public SegmentView nextSegment() throws EDIStreamException {
+        ensureOpen();
+
+        if (!inSegment) {
+            segmentView.clear();
+        } else if (!segmentView.isCapturing()) {
+            throw new IllegalStateException("nextSegment must not be called within a segment");
+        }
+
+        /*
+         * Values and errors are captured by the proxy as the segment is
+         * parsed. Those already queued as events are added to the view here.
+         */
+        proxy.setSegmentView(segmentView);
+
+        try {
+            while (hasNext()) {
+                EDIStreamEvent event = nextEvent();
+
+                switch (event) {
+                case START_SEGMENT:
+                    if (!segmentView.isCapturing()) {
+                        segmentView.begin(getText());
+                    }
+                    break;
+                case ELEMENT_DATA:
+                case ELEMENT_DATA_PARTIAL:
+                    if (segmentView.isCapturing()) {
+                        segmentView.elementData(getBuffer(), getLocation(), event == EDIStreamEvent.ELEMENT_DATA_PARTIAL);
+                    }
+                    break;
+                case SEGMENT_ERROR:
+                case ELEMENT_DATA_ERROR:
+                case ELEMENT_OCCURRENCE_ERROR:
+                    segmentView.error(getErrorType(), getReferenceCode(), getLocation());
+                    break;
+                case END_SEGMENT:
+                    segmentView.end();
+                    return segmentView;
+                case NEED_MORE_INPUT:
+                    return null;
+                default:
+                    break;
+                }
+            }
+        } finally {
+            proxy.setSegmentView(null);
+        }
+
+        return null;
+    }
+
     @Override
     public boolean hasNext() throws EDIStreamException {
         ensureOpen();
+        checkInterchangeFollows();
         return !complete;
     }
 
     @Override
     public void close() throws IOException {
         this.closed = true;
-        // Do not close the stream
+        // Do not close the caller's stream or channel, only files opened by the reader
+        lexer.close();
+    }
+
+    @Override
+    public void reset(InputStream stream) throws EDIStreamException {
+        try {
+            lexer.reset(stream);
+        } catch (IOException e) {
+            throw new EDIStreamException("Exception resetting reader", location, e);
+        }
+
+        location.reset();
+        controlSchema = initialControlSchema;
+        proxy.reset(controlSchema, true);
+        complete = false;
+        closed = false;
+        betweenInterchanges = false;
+        inSegment = false;
+        inTransaction = false;
     }
 
     @Override
     public EDIStreamEvent getEventType() {
         ensureOpen();
-        return proxy.getEvent();
+        EDIStreamEvent event = proxy.getEvent();
+
+        if (event == null && lexer.isAwaitingInput()) {
+            return EDIStreamEvent.NEED_MORE_INPUT;
+        }
+
+        return event;
     }
 
     @Override
@@ -313,6 +544,7 @@ public class StaEDIStreamReader implements EDIStreamReader {
         case END_LOOP:
         case END_SEGMENT:
         case ELEMENT_DATA:
+        case ELEMENT_DATA_PARTIAL:
         case ELEMENT_DATA_ERROR:
         case SEGMENT_ERROR:
             break;
@@ -336,7 +568,11 @@ public class StaEDIStreamReader implements EDIStreamReader {
         checkTextState();
         final CharBuffer buffer = getBuffer();
 
-        return Arrays.copyOf(buffer.array(), buffer.length());
+        if (zeroCopyText) {
+            return buffer.array();
+        }
+
+        return Arrays.copyOfRange(buffer.array(), buffer.position(), buffer.limit());
     }
 
     @Override
@@ -366,6 +602,7 @@ public class StaEDIStreamReader implements EDIStreamReader {
 
         final CharBuffer buffer = getBuffer();
         final char[] contents = buffer.array();
+        final int offset = buffer.position();
         final int count = buffer.remaining();
 
         if (sourceStart < 0) {
@@ -377,7 +614,7 @@ public class StaEDIStreamReader implements EDIStreamReader {
         }
 
         int toCopy = Math.min(count - sourceStart, length);
-        System.arraycopy(contents, sourceStart, target, targetStart, toCopy);
+        System.arraycopy(contents, offset + sourceStart, target, targetStart, toCopy);
 
         return toCopy;
     }
@@ -397,7 +634,14 @@ public class StaEDIStreamReader implements EDIStreamReader {
         checkTextState();
         final CharBuffer buffer = getBuffer();
 
-        return buffer.limit();
+        return buffer.remaining();
+    }
+
+    @Override
+    public CharSequence getTextSequence() {
+        ensureOpen();
+        checkTextState();
+        return getBuffer();
     }
 
     @Override
@@ -433,8 +677,28 @@ public class StaEDIStreamReader implements EDIStreamReader {
         return proxy.getBinary();
     }
 
+    @Override
+    public long transferBinaryData(WritableByteChannel target) throws EDIStreamException {
+        // The proxy's binary data is always the lexer's stream of the current element
+        Lexer.BinaryDataStream binary = (Lexer.BinaryDataStream) getBinaryData();
+
+        try {
+            return binary.transferTo(target, null);
+        } catch (IOException e) {
+            throw new EDIStreamException("Exception transferring binary element data", location, e);
+        }
+    }
+
     /**************************************************************************/
 
+    Lexer getLexer() {
+        return lexer;
+    }
+
+    StaEDIStreamLocation getStreamLocation() {
+        return location;
+    }
+
     boolean validateControlCodeValues() {
         return getBooleanProperty(EDIInputFactory.EDI_VALIDATE_CONTROL_CODE_VALUES, true);
     }
@@ -456,4 +720,18 @@ public class StaEDIStreamReader implements EDIStreamReader {
 
         return Boolean.parseBoolean(property.toString());
     }
+
+    int getIntegerProperty(String propertyName, int defaultValue) {
+        Object property = properties.get(propertyName);
+
+        if (property == null) {
+            return defaultValue;
+        }
+
+        if (property instanceof Number) {
+            return ((Number) property).intValue();
+        }
+
+        return Integer.parseInt(property.toString());
+    }
 }
@@ -0,0 +1,355 @@
+/*******************************************************************************
+ * Copyright 2020 xlate.io LLC, http://www.xlate.io
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package io.xlate.edi.internal.stream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.xlate.edi.schema.Schema;
+import io.xlate.edi.stream.EDIReporter;
+import io.xlate.edi.stream.EDIStreamEvent;
+import io.xlate.edi.stream.EDIStreamException;
+import io.xlate.edi.stream.EDIStreamReader;
+import io.xlate.edi.stream.EDIStreamValidationError;
+import io.xlate.edi.stream.Location;
+import io.xlate.edi.stream.SegmentView;
+
+/**
+ * Thread-safe pool of idle readers, grouped by the encoding and control schema
+ * they were created for. Each acquisition hands out a new {@link PooledReader}
+ * wrapping a pooled reader. Closing the wrapper returns the reader to the pool,
+ * where it is reset for the next stream when next acquired, retaining its
+ * buffers and validation structures. A closed wrapper rejects all further
+ * calls, so it can not be used to drive a reader that has since been handed
+ * to another caller.
+ *
+ * A pool is bound to one set of reader properties and reporter. Factories
+ * replace their pool when either changes.
+ *
+ * At most {@link #MAX_IDLE_PER_KEY} idle readers are kept for each encoding
+ * and schema, further readers are dropped when closed. Idle readers are kept
+ * for at most {@link #MAX_KEYS} encoding and schema pairs, the readers of an
+ * arbitrary pair are dropped to make room for a new one so that schemas no
+ * longer in use are eventually released.
+ */
+class StaEDIStreamReaderPool {
+
+    static final int MAX_IDLE_PER_KEY = 8;
+    static final int MAX_KEYS = 32;
+
+    private final Map<String, Object> properties;
+    private final EDIReporter reporter;
+    private final Map<Key, Deque<StaEDIStreamReader>> idle = new ConcurrentHashMap<>();
+
+    StaEDIStreamReaderPool(Map<String, Object> properties, EDIReporter reporter) {
+        this.properties = properties;
+        this.reporter = reporter;
+    }
+
+    EDIStreamReader acquire(InputStream stream, Charset charset, Schema schema) throws EDIStreamException {
+        Objects.requireNonNull(stream);
+        final Key key = new Key(charset, schema);
+        final Deque<StaEDIStreamReader> readers = idle.get(key);
+        StaEDIStreamReader reader = readers != null ? readers.pollFirst() : null;
+
+        if (reader == null) {
+            reader = new StaEDIStreamReader(stream, charset, schema, properties, reporter);
+        } else {
+            reader.reset(stream);
+        }
+
+        return new PooledReader(reader, key);
+    }
+
+    int idleCount() {
+        return idle.values().stream().mapToInt(Deque::size).sum();
+    }
+
+    int keyCount() {
+        return idle.size();
+    }
+
+    void release(Key key, StaEDIStreamReader reader) {
+        Deque<StaEDIStreamReader> readers = idle.get(key);
+
+        if (readers == null) {
+            if (idle.size() >= MAX_KEYS) {
+                Iterator<Key> keys = idle.keySet().iterator();
+
+                if (keys.hasNext()) {
+                    keys.next();
+                    keys.remove();
+                }
+            }
+
+            readers = idle.computeIfAbsent(key, k -> new LinkedBlockingDeque<>(MAX_IDLE_PER_KEY));
+        }
+
+        // Readers beyond the limit are not retained
+        readers.offerFirst(reader);
+    }
+
+    /**
+     * Pool key, the schema is compared by identity since readers retain
+     * structures built for that specific instance.
+     */
+    static class Key {
+        final Charset charset;
+        final Schema schema;
+
+        Key(Charset charset, Schema schema) {
+            this.charset = charset;
+            this.schema = schema;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return charset.equals(other.charset) && schema == other.schema;
+        }
+
+        @Override
+        public int hashCode() {
+            return charset.hashCode() * 31 + System.identityHashCode(schema);
+        }
+    }
+
+    /**
+     * Reader handed out for a single acquisition of a pooled reader. Every
+     * call is checked against the handle's own closed state before being
+     * passed to the pooled reader.
+     */
+    class PooledReader implements EDIStreamReader {
+        final StaEDIStreamReader delegate;
+        final Key key;
+        final AtomicBoolean closed = new AtomicBoolean(false);
+
+        PooledReader(StaEDIStreamReader delegate, Key key) {
+            this.delegate = delegate;
+            this.key = key;
+        }
+
+        void ensureOpen() {
+            if (closed.get()) {
+                throw new IllegalStateException("Reader is closed");
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            // Return to the pool only once per acquisition
+            if (closed.compareAndSet(false, true)) {
+                try {
+                    delegate.close();
+                } finally {
+                    release(key, delegate);
+                }
+            }
+        }
+
+        @Override
+        public Object getProperty(String name) {
+            ensureOpen();
+            return delegate.getProperty(name);
+        }
+
+        @Override
+        public Map<String, Character> getDelimiters() {
+            ensureOpen();
+            return delegate.getDelimiters();
+        }
+
+        @Override
+        public EDIStreamEvent next() throws EDIStreamException {
+            ensureOpen();
+            return delegate.next();
+        }
+
+        @Override
+        public EDIStreamEvent nextTag() throws EDIStreamException {
+            ensureOpen();
+            return delegate.nextTag();
+        }
+
+        @Override
+        public EDIStreamEvent skipSegment() throws EDIStreamException {
+            ensureOpen();
+            return delegate.skipSegment();
+        }
+
+        @Override
+        public EDIStreamEvent skipLoop() throws EDIStreamException {
+            ensureOpen();
+            return delegate.skipLoop();
+        }
+
+        @Override
+        public EDIStreamEvent skipTransaction() throws EDIStreamException {
+            ensureOpen();
+            return delegate.skipTransaction();
+        }
+
+        @Override
+        public SegmentView nextSegment() throws EDIStreamException {
+            ensureOpen();
+            return delegate.nextSegment();
+        }
+
+        @Override
+        public boolean hasNext() throws EDIStreamException {
+            ensureOpen();
+            return delegate.hasNext();
+        }
+
+        @Override
+        public void reset(InputStream stream) throws EDIStreamException {
+            ensureOpen();
+            delegate.reset(stream);
+        }
+
+        @Override
+        public EDIStreamEvent getEventType() {
+            ensureOpen();
+            return delegate.getEventType();
+        }
+
+        @Override
+        public String getStandard() {
+            ensureOpen();
+            return delegate.getStandard();
+        }
+
+        @Override
+        public String[] getVersion() {
+            ensureOpen();
+            return delegate.getVersion();
+        }
+
+        @Override
+        public Schema getControlSchema() {
+            ensureOpen();
+            return delegate.getControlSchema();
+        }
+
+        @Override
+        public void setControlSchema(Schema schema) {
+            ensureOpen();
+            delegate.setControlSchema(schema);
+        }
+
+        @Override
+        public Schema getTransactionSchema() {
+            ensureOpen();
+            return delegate.getTransactionSchema();
+        }
+
+        @Override
+        public void setTransactionSchema(Schema schema) {
+            ensureOpen();
+            delegate.setTransactionSchema(schema);
+        }
+
+        @Override
+        public String getReferenceCode() {
+            ensureOpen();
+            return delegate.getReferenceCode();
+        }
+
+        @Override
+        public EDIStreamValidationError getErrorType() {
+            ensureOpen();
+            return delegate.getErrorType();
+        }
+
+        @Override
+        public String getText() {
+            ensureOpen();
+            return delegate.getText();
+        }
+
+        @Override
+        public char[] getTextCharacters() {
+            ensureOpen();
+            return delegate.getTextCharacters();
+        }
+
+        @Override
+        public int getTextCharacters(int sourceStart,
+                                     char[] target,
+                                     int targetStart,
+                                     int length) {
+            ensureOpen();
+            return delegate.getTextCharacters(sourceStart,
+                                              target,
+                                              targetStart,
+                                              length);
+        }
+
+        @Override
+        public int getTextStart() {
+            ensureOpen();
+            return delegate.getTextStart();
+        }
+
+        @Override
+        public int getTextLength() {
+            ensureOpen();
+            return delegate.getTextLength();
+        }
+
+        @Override
+        public CharSequence getTextSequence() {
+            ensureOpen();
+            return delegate.getTextSequence();
+        }
+
+        @Override
+        public Location getLocation() {
+            ensureOpen();
+            return delegate.getLocation();
+        }
+
+        @Override
+        public void setBinaryDataLength(long length) throws EDIStreamException {
+            ensureOpen();
+            delegate.setBinaryDataLength(length);
+        }
+
+        @Override
+        public InputStream getBinaryData() {
+            ensureOpen();
+            return delegate.getBinaryData();
+        }
+
+        @Override
+        public long transferBinaryData(WritableByteChannel target) throws EDIStreamException {
+            ensureOpen();
+            return delegate.transferBinaryData(target);
+        }
+    }
+}
@@ -15,12 +15,15 @@
  ******************************************************************************/
 package io.xlate.edi.internal.stream;
 
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -40,6 +43,8 @@ import io.xlate.edi.internal.stream.tokenization.DialectFactory;
 import io.xlate.edi.internal.stream.tokenization.EDIException;
 import io.xlate.edi.internal.stream.tokenization.EDIFACTDialect;
 import io.xlate.edi.internal.stream.tokenization.ElementDataHandler;
+import io.xlate.edi.internal.stream.tokenization.Lexer;
+import io.xlate.edi.internal.stream.tokenization.SegmentTags;
 import io.xlate.edi.internal.stream.tokenization.State;
 import io.xlate.edi.internal.stream.tokenization.ValidationEventHandler;
 import io.xlate.edi.internal.stream.validation.UsageError;
@@ -57,6 +62,8 @@ import io.xlate.edi.stream.Location;
 
 public class StaEDIStreamWriter implements EDIStreamWriter, ElementDataHandler, ValidationEventHandler {
 
+    private static final int BINARY_CHUNK_SIZE = 8192;
+
     private static final int LEVEL_INITIAL = 0;
     private static final int LEVEL_INTERCHANGE = 1;
     private static final int LEVEL_SEGMENT = 2;
@@ -70,11 +77,13 @@ public class StaEDIStreamWriter implements EDIStreamWriter, ElementDataHandler,
     private CharacterSet characters = new CharacterSet();
 
     private final OutputStream stream;
+    private WritableByteChannel binaryChannel;
     private final OutputStreamWriter writer;
     private final Map<String, Object> properties;
     private Dialect dialect;
 
     private final StaEDIStreamLocation location;
+    private int segmentTagId = SegmentTags.NONE;
     private Schema controlSchema;
     private Validator controlValidator;
     private boolean transactionSchemaAllowed = false;
@@ -84,6 +93,11 @@ public class StaEDIStreamWriter implements EDIStreamWriter, ElementDataHandler,
     private CharArraySequence dataHolder = new CharArraySequence();
     private boolean atomicElementWrite = false;
     private CharBuffer elementBuffer = CharBuffer.allocate(500);
+    /*
+     * Number of characters of the current element written prior to those held
+     * in the element buffer. Only the length of such an element is validated.
+     */
+    private int elementBufferOffset = 0;
     private List<EDIValidationException> errors = new ArrayList<>();
 
     private char segmentTerminator;
@@ -339,11 +353,12 @@ public class StaEDIStreamWriter implements EDIStreamWriter, ElementDataHandler,
     public EDIStreamWriter writeStartSegment(String name) throws EDIStreamException {
         ensureLevel(LEVEL_INTERCHANGE);
         location.incrementSegmentPosition(name);
-        validate(validator -> validator.validateSegment(this, name));
+        segmentTagId = SegmentTags.of(name);
+        validate(validator -> validator.validateSegment(this, name, segmentTagId));
 
         if (exitTransaction(name)) {
             transaction = false;
-            validate(validator -> validator.validateSegment(this, name));
+            validate(validator -> validator.validateSegment(this, name, segmentTagId));
         }
 
         if (state == State.INITIAL) {
@@ -404,7 +419,7 @@ public class StaEDIStreamWriter implements EDIStreamWriter, ElementDataHandler,
     public EDIStreamWriter writeEndSegment() throws EDIStreamException {
         ensureLevelAtLeast(LEVEL_SEGMENT);
         if (level > LEVEL_SEGMENT) {
-            validateElement(this.elementBuffer::flip, this.elementBuffer);
+            validateBufferedElement();
         }
         validate(validator -> validator.validateSyntax(dialect, this, this, location, false));
 
@@ -429,7 +444,7 @@ public class StaEDIStreamWriter implements EDIStreamWriter, ElementDataHandler,
         write(this.dataElementSeparator);
         level = LEVEL_ELEMENT;
         location.incrementElementPosition();
-        elementBuffer.clear();
+        clearElementBuffer();
         return this;
     }
 
@@ -457,7 +472,7 @@ public class StaEDIStreamWriter implements EDIStreamWriter, ElementDataHandler,
             if (level > LEVEL_ELEMENT) {
                 validate(validator -> validator.validateSyntax(dialect, this, this, location, true));
             } else {
-                validateElement(this.elementBuffer::flip, this.elementBuffer);
+                validateBufferedElement();
             }
         }
 
@@ -485,7 +500,7 @@ public class StaEDIStreamWriter implements EDIStreamWriter, ElementDataHandler,
 
         level = LEVEL_COMPONENT;
         location.incrementComponentPosition();
-        elementBuffer.clear();
+        clearElementBuffer();
         return this;
     }
 
@@ -493,7 +508,7 @@ public class StaEDIStreamWriter implements EDIStreamWriter, ElementDataHandler,
     public EDIStreamWriter endComponent() throws EDIStreamException {
         ensureLevel(LEVEL_COMPONENT);
         if (!atomicElementWrite) {
-            validateElement(this.elementBuffer::flip, this.elementBuffer);
+            validateBufferedElement();
         }
         level = LEVEL_COMPOSITE;
         return this;
@@ -578,7 +593,7 @@ public class StaEDIStreamWriter implements EDIStreamWriter, ElementDataHandler,
             }
 
             write(curr);
-            elementBuffer.put(curr);
+            bufferElementData(curr);
         }
         return this;
     }
@@ -594,7 +609,7 @@ public class StaEDIStreamWriter implements EDIStreamWriter, ElementDataHandler,
                 throw new IllegalArgumentException("Value contains separator");
             }
             write(curr);
-            elementBuffer.put(curr);
+            bufferElementData(curr);
         }
 
         return this;
@@ -604,14 +619,22 @@ public class StaEDIStreamWriter implements EDIStreamWriter, ElementDataHandler,
     public EDIStreamWriter writeBinaryData(InputStream binaryStream) throws EDIStreamException {
         ensureLevel(LEVEL_ELEMENT);
         ensureState(State.ELEMENT_DATA_BINARY);
-        int output;
 
         try {
             flush(); // Write `Writer` buffers to stream before writing binary
 
-            while ((output = binaryStream.read()) != -1) {
-                location.incrementOffset(output);
-                stream.write(output);
+            if (binaryStream instanceof Lexer.BinaryDataStream) {
+                // Binary data from a reader is transferred directly from its input
+                ((Lexer.BinaryDataStream) binaryStream).transferTo(binaryChannel(), location);
+            } else {
+                byte[] binary = new byte[BINARY_CHUNK_SIZE];
+                ByteBuffer wrapper = ByteBuffer.wrap(binary);
+                int count;
+
+                while ((count = binaryStream.read(binary)) != -1) {
+                    location.incrementOffset(wrapper, 0, count);
+                    stream.write(binary, 0, count);
+                }
             }
         } catch (IOException e) {
             throw new EDIStreamException("Exception writing binary element data", location, e);
@@ -628,11 +651,8 @@ public class StaEDIStreamWriter implements EDIStreamWriter, ElementDataHandler,
 
         try {
             flush(); // Write `Writer` buffers to stream before writing binary
-
-            for (int i = start; i < end; i++) {
-                location.incrementOffset(binary[i]);
-                stream.write(binary[i]);
-            }
+            location.incrementOffset(ByteBuffer.wrap(binary), start, end);
+            stream.write(binary, start, end - start);
         } catch (IOException e) {
             throw new EDIStreamException("Exception writing binary element data", location, e);
         }
@@ -645,13 +665,44 @@ public class StaEDIStreamWriter implements EDIStreamWriter, ElementDataHandler,
         ensureLevel(LEVEL_ELEMENT);
         ensureState(State.ELEMENT_DATA_BINARY);
 
-        while (binary.hasRemaining()) {
-            write(binary.get());
+        try {
+            flush(); // Write `Writer` buffers to stream before writing binary
+            location.incrementOffset(binary, binary.position(), binary.limit());
+
+            if (binary.hasArray()) {
+                stream.write(binary.array(), binary.arrayOffset() + binary.position(), binary.remaining());
+                binary.position(binary.limit());
+            } else {
+                WritableByteChannel channel = binaryChannel();
+
+                while (binary.hasRemaining()) {
+                    channel.write(binary);
+                }
+            }
+        } catch (IOException e) {
+            throw new EDIStreamException("Exception writing binary element data", location, e);
         }
 
         return this;
     }
 
+    /**
+     * Channel for writing binary data to the output stream. For a file, the
+     * file's own channel is used so that binary data from a reader of a file
+     * may be transferred without copying through the heap.
+     */
+    private WritableByteChannel binaryChannel() {
+        if (binaryChannel == null) {
+            if (stream instanceof FileOutputStream) {
+                binaryChannel = ((FileOutputStream) stream).getChannel();
+            } else {
+                binaryChannel = Channels.newChannel(stream);
+            }
+        }
+
+        return binaryChannel;
+    }
+
     @Override
     public boolean binaryData(InputStream binary) {
         // No operation
@@ -719,13 +770,36 @@ public class StaEDIStreamWriter implements EDIStreamWriter, ElementDataHandler,
         }
     }
 
+    private void clearElementBuffer() {
+        elementBuffer.clear();
+        elementBufferOffset = 0;
+    }
+
+    private void bufferElementData(char value) {
+        if (!elementBuffer.hasRemaining()) {
+            // Retain only the length of the earlier portion of very long elements
+            elementBufferOffset += elementBuffer.position();
+            elementBuffer.clear();
+        }
+
+        elementBuffer.put(value);
+    }
+
+    private void validateBufferedElement() {
+        validateElement(this.elementBuffer::flip, this.elementBuffer, elementBufferOffset);
+    }
+
     private void validateElement(Runnable setupCommand, CharSequence data) {
+        validateElement(setupCommand, data, 0);
+    }
+
+    private void validateElement(Runnable setupCommand, CharSequence data, int priorLength) {
         Validator validator = validator();
 
         if (validator != null) {
             setupCommand.run();
 
-            if (!validator.validateElement(dialect, location, data)) {
+            if (!validator.validateElement(dialect, location, data, priorLength)) {
                 for (UsageError error : validator.getElementErrors()) {
                     elementError(error.getError().getCategory(),
                                  error.getError(),
@@ -739,7 +813,9 @@ public class StaEDIStreamWriter implements EDIStreamWriter, ElementDataHandler,
                 throw validationExceptionChain(errors);
             }
 
-            dialect.elementData(data, location);
+            if (dialect.isTrackedSegment(segmentTagId)) {
+                dialect.elementData(segmentTagId, data, location);
+            }
         }
     }
 
@@ -60,6 +60,7 @@ final class StaEDIXMLStreamReader implements XMLStreamReader {
 
     private NamespaceContext namespaceContext;
     private String compositeCode = null;
+    private QName partialElement = null;
 
     private final StringBuilder cdataBuilder = new StringBuilder();
     private final OutputStream cdataStream = new OutputStream() {
@@ -150,12 +151,26 @@ final class StaEDIXMLStreamReader implements XMLStreamReader {
 
         switch (ediEvent) {
         case ELEMENT_DATA:
-            name = buildName(elementStack.getFirst(), EDINamespaces.ELEMENTS);
-            enqueueEvent(START_ELEMENT, name, false);
+            if (partialElement != null) {
+                // Final portion of an element delivered in chunks
+                name = partialElement;
+                partialElement = null;
+            } else {
+                name = buildName(elementStack.getFirst(), EDINamespaces.ELEMENTS);
+                enqueueEvent(START_ELEMENT, name, false);
+            }
             enqueueEvent(CHARACTERS, DUMMY_QNAME, false);
             enqueueEvent(END_ELEMENT, name, false);
             break;
 
+        case ELEMENT_DATA_PARTIAL:
+            if (partialElement == null) {
+                partialElement = buildName(elementStack.getFirst(), EDINamespaces.ELEMENTS);
+                enqueueEvent(START_ELEMENT, partialElement, false);
+            }
+            enqueueEvent(CHARACTERS, DUMMY_QNAME, false);
+            break;
+
         case ELEMENT_DATA_BINARY:
             /*
              * This section will read the binary data and Base64 the stream
@@ -303,7 +318,9 @@ final class StaEDIXMLStreamReader implements XMLStreamReader {
 
     @Override
     public String getElementText() throws XMLStreamException {
-        if (ediReader.getEventType() != EDIStreamEvent.ELEMENT_DATA) {
+        final EDIStreamEvent ediEvent = ediReader.getEventType();
+
+        if (ediEvent != EDIStreamEvent.ELEMENT_DATA && ediEvent != EDIStreamEvent.ELEMENT_DATA_PARTIAL) {
             throw streamException("Element text only available for simple element");
         }
 
@@ -312,9 +329,20 @@ final class StaEDIXMLStreamReader implements XMLStreamReader {
         }
 
         next(); // Advance to the text/CDATA
-        final String text = getText();
+        String text = getText();
         int eventType = next();
 
+        if (eventType == CHARACTERS) {
+            // Element data delivered in chunks
+            StringBuilder buffer = new StringBuilder(text);
+
+            do {
+                buffer.append(getText());
+            } while ((eventType = next()) == CHARACTERS);
+
+            text = buffer.toString();
+        }
+
         if (eventType != END_ELEMENT) {
             throw streamException("Unexpected event type after text " + eventType);
         }
@@ -0,0 +1,222 @@
+/*******************************************************************************
+ * Copyright 2020 xlate.io LLC, http://www.xlate.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package io.xlate.edi.internal.stream.tokenization;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Input stage of the {@link Lexer}. Bytes are obtained from the
+ * {@link InputSource} in large blocks and converted to characters that are
+ * handed to the lexer one at a time.
+ *
+ * The conversion is performed by one of two implementations, selected by
+ * {@link #getInstance(InputSource, Charset)}:
+ *
+ * <ul>
+ * <li>{@link SingleByteCharacterReader} for charsets where each byte maps
+ * directly to a single character, e.g. US-ASCII and ISO-8859-1
+ * <li>{@link DecodingCharacterReader} for all other charsets, e.g. UTF-8 and
+ * UTF-16
+ * </ul>
+ */
+abstract class CharacterReader implements Closeable {
+
+    static final int BLOCK_SIZE = 65536;
+
+    private InputSource source;
+    protected ByteBuffer bytes;
+    private boolean endOfStream;
+
+    protected CharacterReader(InputSource source) {
+        this.source = source;
+        this.bytes = source.initialBuffer();
+    }
+
+    static CharacterReader getInstance(InputSource source, Charset charset) {
+        if (SingleByteCharacterReader.isSupported(charset)) {
+            return new SingleByteCharacterReader(source, charset);
+        }
+        return new DecodingCharacterReader(source, charset);
+    }
+
+    /**
+     * Obtain a reader for a different charset that continues with the input
+     * following the last character returned by this reader. Characters
+     * converted by this reader but not yet read are released and will be
+     * converted again by the new reader. This reader must not be used
+     * afterwards, other than by passing it to this method as the reader to
+     * reuse.
+     *
+     * @param charset
+     *            the charset of the remaining input
+     * @param reuse
+     *            a reader for the charset that is no longer in use, rebound
+     *            to the input rather than creating a new reader, may be null
+     * @return the reader of the remaining input
+     */
+    CharacterReader withCharset(Charset charset, CharacterReader reuse) {
+        releaseCharacters();
+        CharacterReader next = reuse != null ? reuse : getInstance(source, charset);
+        next.reset(source);
+        next.bytes = bytes;
+        next.endOfStream = endOfStream;
+        return next;
+    }
+
+    /**
+     * Read the next character.
+     *
+     * @return the next character or -1 when the end of the stream has been
+     *         reached
+     * @throws IOException
+     *             when reading the stream fails or the input is not valid for
+     *             the reader's charset
+     */
+    abstract int read() throws IOException;
+
+    /**
+     * Step back over the character most recently returned by {@link #read()}
+     * so that it will be returned again by the next read. May only be called
+     * once following a read that returned a character.
+     */
+    abstract void unread();
+
+    /**
+     * Return any characters that have been converted but not yet read to the
+     * byte buffer. The byte buffer is re-positioned to the first byte
+     * following the last character returned by {@link #read()}.
+     */
+    abstract void releaseCharacters();
+
+    /**
+     * Read the next byte, bypassing any character conversion. Any characters
+     * already converted but not yet read must be released via
+     * {@link #releaseCharacters()} before binary data is read.
+     *
+     * @return the next byte or -1 when the end of the stream has been reached
+     * @throws IOException
+     *             when reading the stream fails
+     */
+    int readByte() throws IOException {
+        ByteBuffer input = readBytes();
+        return input != null ? input.get() & 0xFF : -1;
+    }
+
+    /**
+     * Retrieve the buffer holding the next bytes of input, bypassing any
+     * character conversion, for binary data consumed in bulk. The caller
+     * consumes bytes by advancing the buffer's position, directly or via
+     * {@link #transferBytes(int, WritableByteChannel)}. The same restriction
+     * as {@link #readByte()} applies to characters not yet read.
+     *
+     * @return the buffer positioned at the next byte, or null when the end of
+     *         the stream has been reached
+     * @throws IOException
+     *             when reading the stream fails
+     */
+    ByteBuffer readBytes() throws IOException {
+        while (!bytes.hasRemaining()) {
+            if (!readBlock()) {
+                return null;
+            }
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Write bytes of the buffer returned by {@link #readBytes()} to the target
+     * channel, advancing the buffer's position past the bytes written.
+     *
+     * @param count
+     *            maximum number of bytes to write, no more than the buffer's
+     *            remaining bytes
+     * @param target
+     *            the channel to write
+     * @return the number of bytes written
+     * @throws IOException
+     *             when writing to the channel fails
+     */
+    int transferBytes(int count, WritableByteChannel target) throws IOException {
+        return source.transfer(bytes, count, target);
+    }
+
+    /**
+     * Read the next block of bytes from the source, retaining any bytes in the
+     * buffer that have not yet been consumed.
+     *
+     * @return true if the stream has not yet reached its end, otherwise false
+     * @throws IOException
+     *             when reading the stream fails
+     */
+    boolean readBlock() throws IOException {
+        if (endOfStream) {
+            return false;
+        }
+
+        ByteBuffer next = source.nextBuffer(bytes);
+
+        if (next == null) {
+            // Input from an asynchronous source may yet arrive
+            endOfStream = !source.isAwaitingInput();
+            return false;
+        }
+
+        bytes = next;
+        return true;
+    }
+
+    /**
+     * Begin reading a new source, discarding any input not yet read from the
+     * current source. The current source is not closed.
+     *
+     * @param source
+     *            the new source of input
+     */
+    void reset(InputSource source) {
+        this.source = source;
+        this.bytes = source.initialBuffer();
+        this.endOfStream = false;
+    }
+
+    /**
+     * Retrieve the source currently being read.
+     *
+     * @return the current source
+     */
+    InputSource getSource() {
+        return source;
+    }
+
+    /**
+     * Determine whether reading has stopped only because no input is currently
+     * available from an asynchronous source.
+     *
+     * @return true if reading may continue once more input is available
+     */
+    boolean isAwaitingInput() {
+        return !endOfStream && source.isAwaitingInput();
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+}
@@ -170,11 +170,21 @@ public class CharacterSet {
                                                         _INVLD /* 7F DEL */
     };
 
+    private static final byte[] prototypeCodes = new byte[prototype.length];
+
+    static {
+        for (int i = 0; i < prototype.length; i++) {
+            prototypeCodes[i] = (byte) prototype[i].code;
+        }
+    }
+
     private final CharacterClass[] list;
+    private final byte[] codes;
     private final int size;
 
     public CharacterSet() {
         list = Arrays.copyOf(prototype, prototype.length);
+        codes = Arrays.copyOf(prototypeCodes, prototypeCodes.length);
         size = list.length;
     }
 
@@ -182,13 +192,26 @@ public class CharacterSet {
         return (character < size) ? list[character] : _OTHER;
     }
 
+    /**
+     * Primitive variant of {@link #getClass(int)}.
+     *
+     * @param character
+     *            the character to classify
+     * @return the code of the character's class
+     */
+    int getClassCode(int character) {
+        return (character < size) ? codes[character] : _OTHER.code;
+    }
+
     public void reset() {
         System.arraycopy(prototype, 0, list, 0, prototype.length);
+        System.arraycopy(prototypeCodes, 0, codes, 0, prototypeCodes.length);
     }
 
     public void setClass(int character, CharacterClass clazz) {
         if (character < size) {
             list[character] = clazz;
+            codes[character] = (byte) clazz.code;
         } else {
             throw new ArrayIndexOutOfBoundsException(character);
         }
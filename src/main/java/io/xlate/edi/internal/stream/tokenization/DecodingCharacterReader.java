@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright 2020 xlate.io LLC, http://www.xlate.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package io.xlate.edi.internal.stream.tokenization;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+
+/**
+ * Character reader that decodes each block of bytes into a reusable character
+ * buffer using a {@link CharsetDecoder}.
+ *
+ * Multi-byte sequences that are split across two blocks remain in the byte
+ * buffer and are decoded once the next block has been read. A sequence that
+ * is incomplete at the end of the stream is discarded, in which case the
+ * lexer will report an incomplete stream.
+ */
+class DecodingCharacterReader extends CharacterReader {
+
+    private final CharsetDecoder decoder;
+    private final CharBuffer chars;
+
+    /**
+     * Position in the byte buffer of the first byte used to decode the
+     * characters currently held in the character buffer.
+     */
+    private int blockStart;
+
+    DecodingCharacterReader(InputSource source, Charset charset) {
+        super(source);
+        this.decoder = charset.newDecoder();
+        this.chars = CharBuffer.allocate(BLOCK_SIZE);
+        this.chars.limit(0);
+    }
+
+    @Override
+    int read() throws IOException {
+        if (chars.hasRemaining() || decode()) {
+            return chars.get();
+        }
+
+        return -1;
+    }
+
+    @Override
+    void unread() {
+        chars.position(chars.position() - 1);
+    }
+
+    @Override
+    void reset(InputSource source) {
+        super.reset(source);
+        decoder.reset();
+        chars.clear();
+        chars.limit(0);
+        blockStart = 0;
+    }
+
+    @Override
+    void releaseCharacters() {
+        if (chars.hasRemaining()) {
+            final int consumed = chars.position();
+            bytes.position(blockStart);
+            decoder.reset();
+            chars.clear();
+            chars.limit(consumed);
+            // Decoding stops (overflow) once `consumed` characters have been re-read
+            decoder.decode(bytes, chars, false);
+        }
+
+        chars.clear();
+        chars.limit(0);
+        decoder.reset();
+    }
+
+    @Override
+    public void close() throws IOException {
+        // The source reports the buffer's position as the input consumed
+        releaseCharacters();
+        super.close();
+    }
+
+    boolean decode() throws IOException {
+        chars.clear();
+
+        for (;;) {
+            blockStart = bytes.position();
+            CoderResult result = decoder.decode(bytes, chars, false);
+
+            if (chars.position() > 0) {
+                /*
+                 * Deliver the characters decoded so far. Any error in the
+                 * input will be encountered again and reported on the next
+                 * call, once all preceding characters have been read.
+                 */
+                break;
+            }
+
+            if (result.isError()) {
+                chars.flip();
+                result.throwException();
+            }
+
+            if (!readBlock()) {
+                // Any remaining bytes are an incomplete sequence
+                chars.flip();
+                return false;
+            }
+        }
+
+        chars.flip();
+        return true;
+    }
+}
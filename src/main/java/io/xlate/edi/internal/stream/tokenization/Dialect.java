@@ -15,6 +15,8 @@
  ******************************************************************************/
 package io.xlate.edi.internal.stream.tokenization;
 
+import java.nio.charset.Charset;
+
 import io.xlate.edi.stream.Location;
 
 public interface Dialect {
@@ -29,9 +31,31 @@ public interface Dialect {
 
     boolean isConfirmed();
 
+    /**
+     * Returns the charset declared by the interchange header, e.g. by the
+     * syntax identifier of an EDIFACT UNB segment. Only meaningful once the
+     * dialect has been confirmed.
+     *
+     * @return the declared charset, or null when the header does not declare
+     *         a charset (or declares one not supported by the platform)
+     */
+    Charset getDeclaredCharset();
+
     boolean isRejected();
 
-    boolean isServiceAdviceSegment(String tag);
+    boolean isServiceAdviceSegment(int tagId);
+
+    /**
+     * Determine whether the dialect tracks the contents of the segment with
+     * the given tag, e.g. to determine the version of a transaction. Element
+     * data is passed to {@link #elementData(int, CharSequence, Location)} only
+     * for tracked segments.
+     *
+     * @param tagId
+     *            the ID of the segment tag from {@link SegmentTags}
+     * @return true if the segment's elements must be passed to the dialect
+     */
+    boolean isTrackedSegment(int tagId);
 
     boolean appendHeader(CharacterSet characters, char value);
 
@@ -51,12 +75,15 @@ public interface Dialect {
      * Notify the dialect of element data and its location in the stream. Does
      * not support binary elements.
      *
+     * @param tagId
+     *            the ID of the tag of the element's segment, a tracked segment
+     *            per {@link #isTrackedSegment(int)}
      * @param data
      *            the element data
      * @param location
      *            the location of the element
      */
-    void elementData(CharSequence data, Location location);
+    void elementData(int tagId, CharSequence data, Location location);
 
     /**
      * Notify the dialect that a transaction is complete.
@@ -15,6 +15,10 @@
  ******************************************************************************/
 package io.xlate.edi.internal.stream.tokenization;
 
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
 import io.xlate.edi.stream.Location;
 import io.xlate.edi.stream.EDIStreamConstants.Standards;
 
@@ -24,14 +28,44 @@ public class EDIFACTDialect implements Dialect {
     public static final String UNB = "UNB";
 
     private static final String[] EMPTY = new String[0];
-    private static final int EDIFACT_UNA_LENGTH = 9;
 
-    private char componentDelimiter = ':';
-    private char elementDelimiter = '+';
-    private char decimalMark = '.';
-    private char releaseIndicator = '?';
-    private char elementRepeater = '*';
-    private char segmentDelimiter = '\'';
+    /*
+     * Charsets corresponding to the syntax identifiers (UNB01-1) of ISO 9735.
+     * Levels A and B are subsets of ISO 646 and are read as ISO-8859-1, which
+     * also accepts the characters used in practice beyond the strict subsets.
+     */
+    private static final Map<String, String> SYNTAX_CHARSETS = new HashMap<>();
+
+    static {
+        SYNTAX_CHARSETS.put("UNOA", "ISO-8859-1");
+        SYNTAX_CHARSETS.put("UNOB", "ISO-8859-1");
+        SYNTAX_CHARSETS.put("UNOC", "ISO-8859-1");
+        SYNTAX_CHARSETS.put("UNOD", "ISO-8859-2");
+        SYNTAX_CHARSETS.put("UNOE", "ISO-8859-5");
+        SYNTAX_CHARSETS.put("UNOF", "ISO-8859-7");
+        SYNTAX_CHARSETS.put("UNOG", "ISO-8859-3");
+        SYNTAX_CHARSETS.put("UNOH", "ISO-8859-4");
+        SYNTAX_CHARSETS.put("UNOI", "ISO-8859-6");
+        SYNTAX_CHARSETS.put("UNOJ", "ISO-8859-8");
+        SYNTAX_CHARSETS.put("UNOK", "ISO-8859-9");
+        SYNTAX_CHARSETS.put("UNOW", "UTF-8");
+        SYNTAX_CHARSETS.put("UNOY", "UTF-8");
+    }
+    static final char DFLT_SEGMENT_TERMINATOR = '\'';
+    static final char DFLT_DATA_ELEMENT_SEPARATOR = '+';
+    static final char DFLT_COMPONENT_ELEMENT_SEPARATOR = ':';
+    static final char DFLT_REPETITION_SEPARATOR = '*';
+    static final char DFLT_RELEASE_CHARACTER = '?';
+    static final char DFLT_DECIMAL_MARK = '.';
+
+    static final int EDIFACT_UNA_LENGTH = 9;
+
+    private char componentDelimiter = DFLT_COMPONENT_ELEMENT_SEPARATOR;
+    private char elementDelimiter = DFLT_DATA_ELEMENT_SEPARATOR;
+    private char decimalMark = DFLT_DECIMAL_MARK;
+    private char releaseIndicator = DFLT_RELEASE_CHARACTER;
+    private char elementRepeater = DFLT_REPETITION_SEPARATOR;
+    private char segmentDelimiter = DFLT_SEGMENT_TERMINATOR;
 
     private String headerTag;
     private String[] version;
@@ -132,6 +166,16 @@ public class EDIFACTDialect implements Dialect {
                 buffer.charAt(position + 2) == 'B');
     }
 
+    @Override
+    public Charset getDeclaredCharset() {
+        if (version == null || version.length == 0) {
+            return null;
+        }
+
+        String name = SYNTAX_CHARSETS.get(version[0]);
+        return name != null && Charset.isSupported(name) ? Charset.forName(name) : null;
+    }
+
     @Override
     public boolean isConfirmed() {
         return initialized;
@@ -143,8 +187,13 @@ public class EDIFACTDialect implements Dialect {
     }
 
     @Override
-    public boolean isServiceAdviceSegment(String tag) {
-        return UNA.equals(tag);
+    public boolean isServiceAdviceSegment(int tagId) {
+        return tagId == SegmentTags.UNA;
+    }
+
+    @Override
+    public boolean isTrackedSegment(int tagId) {
+        return tagId == SegmentTags.UNH;
     }
 
     @Override
@@ -289,8 +338,8 @@ public class EDIFACTDialect implements Dialect {
     }
 
     @Override
-    public void elementData(CharSequence data, Location location) {
-        if ("UNH".equals(location.getSegmentTag())) {
+    public void elementData(int tagId, CharSequence data, Location location) {
+        if (tagId == SegmentTags.UNH) {
             if (location.getElementPosition() == 1) {
                 clearTransactionVersion();
             } else if (location.getElementPosition() == 2) {
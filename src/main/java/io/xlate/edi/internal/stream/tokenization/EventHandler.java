@@ -21,7 +21,16 @@ public interface EventHandler extends ElementDataHandler, ValidationEventHandler
 
     void interchangeEnd();
 
-    boolean segmentBegin(String tag);
+    /**
+     * Notify the handler of the start of a segment.
+     *
+     * @param tag
+     *            the segment tag
+     * @param tagId
+     *            the ID of the tag from {@link SegmentTags}
+     * @return true if events are ready to be returned to the reader
+     */
+    boolean segmentBegin(String tag, int tagId);
 
     boolean segmentEnd();
 
@@ -29,4 +38,45 @@ public interface EventHandler extends ElementDataHandler, ValidationEventHandler
 
     boolean compositeEnd(boolean isNil);
 
+    /**
+     * Notify the handler of a portion of an element's data that exceeded the
+     * lexer's element chunk size. The remainder of the element follows as
+     * further partial data and finally a call to
+     * {@link #elementData(char[], int, int)}.
+     *
+     * @param text
+     *            array holding the data
+     * @param start
+     *            offset of the data in text
+     * @param length
+     *            length of the data
+     * @return true if events are ready to be returned to the reader
+     */
+    boolean elementDataPartial(char[] text, int start, int length);
+
+    /**
+     * Determine whether the element currently being read may be delivered in
+     * chunks via {@link #elementDataPartial(char[], int, int)}. Elements that
+     * must be seen whole, e.g. to determine the version of a transaction or to
+     * select an implementation, are delivered in full regardless of any chunk
+     * size.
+     *
+     * @return true if the element may be delivered in chunks
+     */
+    default boolean isElementChunkingAllowed() {
+        return true;
+    }
+
+    /**
+     * Determine whether the handler still references text passed to it since
+     * the last time it reported events ready. When it does not, the lexer may
+     * reuse the space occupied by that text before returning to the reader,
+     * e.g. while the handler skips, discards, or copies the data.
+     *
+     * @return true if text passed to the handler may still be referenced
+     */
+    default boolean isTextRetained() {
+        return true;
+    }
+
 }
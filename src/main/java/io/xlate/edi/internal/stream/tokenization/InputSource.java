@@ -0,0 +1,371 @@
+/*******************************************************************************
+ * Copyright 2020 xlate.io LLC, http://www.xlate.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package io.xlate.edi.internal.stream.tokenization;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Source of the raw bytes read by a {@link CharacterReader}. Bytes are
+ * provided as a sequence of {@link ByteBuffer}s, each containing any bytes not
+ * yet consumed from the previous buffer followed by newly available input.
+ *
+ * Files are memory-mapped in large windows and read directly from the mapped
+ * buffers. Streams and other channels are read into a reusable heap buffer.
+ */
+public abstract class InputSource implements Closeable {
+
+    static final long MAPPED_WINDOW_SIZE = 1L << 27; // 128 MB
+
+    /**
+     * Create a source reading from the given stream. The stream will not be
+     * closed when the source is closed.
+     *
+     * @param stream
+     *            the stream to read
+     * @return a new source
+     */
+    public static InputSource of(InputStream stream) {
+        return new StreamSource(stream);
+    }
+
+    /**
+     * Create a source reading from the given channel. When the channel is a
+     * {@link FileChannel}, the remainder of the file from the channel's current
+     * position will be memory-mapped. The channel will not be closed when the
+     * source is closed. The position of a file channel is advanced past the
+     * input consumed when the end of the file is reached or the source is
+     * closed.
+     *
+     * @param channel
+     *            the channel to read
+     * @return a new source
+     * @throws IOException
+     *             when the position or size of a file channel can not be
+     *             determined
+     */
+    public static InputSource of(ReadableByteChannel channel) throws IOException {
+        if (channel instanceof FileChannel) {
+            return new MappedFileSource((FileChannel) channel, false, MAPPED_WINDOW_SIZE);
+        }
+        return new ChannelSource(channel);
+    }
+
+    /**
+     * Create a source reading the memory-mapped contents of the file at the
+     * given path. The file will be closed when the source is closed.
+     *
+     * @param path
+     *            the file to read
+     * @return a new source
+     * @throws IOException
+     *             when the file can not be opened
+     */
+    public static InputSource of(Path path) throws IOException {
+        return new MappedFileSource(FileChannel.open(path, StandardOpenOption.READ), true, MAPPED_WINDOW_SIZE);
+    }
+
+    /**
+     * Create a source of input provided by the caller as it becomes available.
+     * Reading never blocks, a source with no input available appears to have
+     * reached its end until further input is fed or the end of input is
+     * signaled.
+     *
+     * @return a new source
+     */
+    public static AsyncSource async() {
+        return new AsyncSource();
+    }
+
+    /**
+     * Retrieve the (empty) buffer from which reading begins.
+     *
+     * @return the initial buffer, ready for reading
+     */
+    abstract ByteBuffer initialBuffer();
+
+    /**
+     * Retrieve the next buffer of input.
+     *
+     * @param current
+     *            the buffer currently being read, positioned at the first
+     *            byte not yet consumed
+     * @return a buffer containing the unconsumed bytes of current followed by
+     *         newly available input, or null when the end of input has been
+     *         reached
+     * @throws IOException
+     *             when reading the input fails
+     */
+    abstract ByteBuffer nextBuffer(ByteBuffer current) throws IOException;
+
+    /**
+     * Write bytes from a buffer of this source's input to the target channel,
+     * advancing the buffer's position past the bytes written.
+     *
+     * @param current
+     *            the buffer currently being read, positioned at the first
+     *            byte to write
+     * @param count
+     *            maximum number of bytes to write, no more than the buffer's
+     *            remaining bytes
+     * @param target
+     *            the channel to write
+     * @return the number of bytes written
+     * @throws IOException
+     *             when writing to the channel fails
+     */
+    int transfer(ByteBuffer current, int count, WritableByteChannel target) throws IOException {
+        final int limit = current.limit();
+        current.limit(current.position() + count);
+
+        try {
+            return target.write(current);
+        } finally {
+            current.limit(limit);
+        }
+    }
+
+    /**
+     * Determine whether the source has no input currently available but has
+     * not yet reached the end of its input.
+     *
+     * @return true if reading may continue once more input is available
+     */
+    boolean isAwaitingInput() {
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Nothing to release by default
+    }
+
+    static class StreamSource extends InputSource {
+        private InputStream stream;
+        private final ByteBuffer buffer = ByteBuffer.allocate(CharacterReader.BLOCK_SIZE);
+
+        StreamSource(InputStream stream) {
+            this.stream = stream;
+            this.buffer.limit(0);
+        }
+
+        /**
+         * Read from a new stream, reusing this source's buffer. Any bytes not
+         * yet consumed from the previous stream are discarded.
+         *
+         * @param stream
+         *            the stream to read
+         */
+        void reset(InputStream stream) {
+            this.stream = stream;
+            this.buffer.clear();
+            this.buffer.limit(0);
+        }
+
+        @Override
+        ByteBuffer initialBuffer() {
+            return buffer;
+        }
+
+        @Override
+        ByteBuffer nextBuffer(ByteBuffer current) throws IOException {
+            buffer.compact();
+            int count = stream.read(buffer.array(), buffer.position(), buffer.remaining());
+
+            if (count > 0) {
+                buffer.position(buffer.position() + count);
+            }
+
+            buffer.flip();
+            return count < 0 ? null : buffer;
+        }
+    }
+
+    static class ChannelSource extends InputSource {
+        private final ReadableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(CharacterReader.BLOCK_SIZE);
+
+        ChannelSource(ReadableByteChannel channel) {
+            this.channel = channel;
+            this.buffer.limit(0);
+        }
+
+        @Override
+        ByteBuffer initialBuffer() {
+            return buffer;
+        }
+
+        @Override
+        ByteBuffer nextBuffer(ByteBuffer current) throws IOException {
+            buffer.compact();
+            int count = channel.read(buffer);
+            buffer.flip();
+            return count < 0 ? null : buffer;
+        }
+    }
+
+    static class MappedFileSource extends InputSource {
+        private final FileChannel channel;
+        private final boolean owned;
+        private final long windowSize;
+        private final long size;
+        private long windowStart;
+        // The buffer most recently handed to the reader
+        private ByteBuffer window = ByteBuffer.allocate(0);
+
+        MappedFileSource(FileChannel channel, boolean owned, long windowSize) throws IOException {
+            this.channel = channel;
+            this.owned = owned;
+            this.windowSize = windowSize;
+            this.size = channel.size();
+            this.windowStart = channel.position();
+        }
+
+        @Override
+        ByteBuffer initialBuffer() {
+            return window;
+        }
+
+        @Override
+        ByteBuffer nextBuffer(ByteBuffer current) throws IOException {
+            if (windowStart + current.limit() >= size) {
+                // The current window already extends to the end of the file
+                updatePosition(current);
+                return null;
+            }
+
+            /*
+             * Map the next window starting from the first unconsumed byte so
+             * that sequences split at the end of the current window are
+             * carried over.
+             */
+            windowStart += current.position();
+            long length = Math.min(size - windowStart, windowSize);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, length);
+            return window;
+        }
+
+        /**
+         * Advance the position of a channel provided by the caller to the
+         * first byte not yet consumed, as if the input had been read from the
+         * channel.
+         */
+        void updatePosition(ByteBuffer current) throws IOException {
+            if (!owned && channel.isOpen()) {
+                channel.position(windowStart + current.position());
+            }
+        }
+
+        /**
+         * Transfer directly from the file's channel, allowing the operating
+         * system to copy the bytes without reading them into memory when the
+         * target is a file or socket.
+         */
+        @Override
+        int transfer(ByteBuffer current, int count, WritableByteChannel target) throws IOException {
+            int written = (int) channel.transferTo(windowStart + current.position(), count, target);
+            current.position(current.position() + written);
+            return written;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (owned) {
+                channel.close();
+            } else {
+                updatePosition(window);
+            }
+        }
+    }
+
+    public static class AsyncSource extends InputSource {
+        private ByteBuffer buffer = ByteBuffer.allocate(CharacterReader.BLOCK_SIZE);
+        // Input fed but not yet handed to the reader, in write mode
+        private ByteBuffer received = ByteBuffer.allocate(CharacterReader.BLOCK_SIZE);
+        private boolean ended;
+
+        AsyncSource() {
+            this.buffer.limit(0);
+        }
+
+        /**
+         * Add input to the source. The bytes are copied, the caller may reuse
+         * the buffer once this method returns.
+         *
+         * @param input
+         *            buffer containing the bytes between its position and
+         *            limit, the buffer's position is advanced to its limit
+         */
+        public void feed(ByteBuffer input) {
+            if (ended) {
+                throw new IllegalStateException("End of input already signaled");
+            }
+
+            received = ensureCapacity(received, received.position() + input.remaining());
+            received.put(input);
+        }
+
+        /**
+         * Signal that no further input will be fed to the source.
+         */
+        public void endOfInput() {
+            ended = true;
+        }
+
+        @Override
+        ByteBuffer initialBuffer() {
+            return buffer;
+        }
+
+        @Override
+        ByteBuffer nextBuffer(ByteBuffer current) throws IOException {
+            if (received.position() == 0) {
+                return null;
+            }
+
+            buffer.compact();
+            buffer = ensureCapacity(buffer, buffer.position() + received.position());
+            received.flip();
+            buffer.put(received);
+            received.clear();
+            buffer.flip();
+            return buffer;
+        }
+
+        @Override
+        boolean isAwaitingInput() {
+            return !ended && received.position() == 0;
+        }
+
+        static ByteBuffer ensureCapacity(ByteBuffer target, int required) {
+            if (required <= target.capacity()) {
+                return target;
+            }
+
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(required, target.capacity() * 2));
+            target.flip();
+            larger.put(target);
+            return larger;
+        }
+    }
+}
@@ -15,16 +15,22 @@
  ******************************************************************************/
 package io.xlate.edi.internal.stream.tokenization;
 
-import java.io.BufferedInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
-import java.nio.charset.CharsetDecoder;
-import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import io.xlate.edi.internal.stream.LocationView;
@@ -45,305 +51,741 @@ public class Lexer {
     private State state = State.INITIAL;
     private State previous;
 
-    private interface Notifier {
-        boolean execute(State state, int start, int length);
-    }
-
-    private final Deque<Notifier> events = new ArrayDeque<>(20);
-    private final Deque<State> stateQueue = new ArrayDeque<>(20);
-    private final Deque<Integer> startQueue = new ArrayDeque<>(20);
-    private final Deque<Integer> lengthQueue = new ArrayDeque<>(20);
-
-    private final InputStream stream;
-    private CharsetDecoder decoder;
-    private char[] readChar = new char[1];
-    private CharBuffer readCharBuf = CharBuffer.wrap(readChar);
-    private ByteBuffer readByteBuf = ByteBuffer.allocate(4);
-
+    /*
+     * Kinds of events held in the event queue, dispatched by #nextEvent
+     */
+    private static final int INTERCHANGE_START = 0;
+    private static final int INTERCHANGE_END = 1;
+    private static final int SEGMENT_START = 2;
+    private static final int SEGMENT_END = 3;
+    private static final int COMPOSITE_START = 4;
+    private static final int COMPOSITE_END = 5;
+    private static final int ELEMENT_DATA = 6;
+    private static final int BINARY_DATA = 7;
+    private static final int ELEMENT_DATA_PARTIAL = 8;
+
+    /*
+     * Event queue, a ring buffer of (kind, state, start, length) records held
+     * in parallel arrays. The capacity is a power of 2 and doubles in the rare
+     * case that a segment produces more events than fit.
+     */
+    private int[] eventKinds = new int[32];
+    private State[] eventStates = new State[32];
+    private int[] eventStarts = new int[32];
+    private int[] eventLengths = new int[32];
+    private int eventHead = 0;
+    private int eventCount = 0;
+
+    private CharacterReader reader;
+
+    /*
+     * Charset given when the lexer was created and the charset of the current
+     * reader. When the charset is detected, interchange headers are read as
+     * ISO-8859-1 and the remainder of each interchange in the charset declared
+     * by its header, falling back to the configured charset.
+     */
+    private final Charset configuredCharset;
+    private Charset readerCharset;
+    private boolean charsetDetected = false;
+
+    /*
+     * The reader for each charset used so far, reused when the charset is
+     * used again. Charsets are limited to the configured charset and those
+     * declared by interchange headers.
+     */
+    private final Map<Charset, CharacterReader> readers = new HashMap<>(4);
+
+    private final EventHandler handler;
     private final StaEDIStreamLocation location;
 
     private CharacterSet characters = new CharacterSet();
+    private final SegmentTags segmentTags = new SegmentTags();
     private CharBuffer buffer = CharBuffer.allocate(4096);
     private Dialect dialect;
 
-    private long binaryRemain = -1;
-    private InputStream binaryStream = null;
+    /*
+     * Offset in the buffer of the first character not yet part of a
+     * dispatched event. The text of dispatched events is passed to the
+     * handler by reference and remains unmodified until the next call to
+     * #parse, when the space it occupies is reclaimed.
+     */
+    private int bufferStart = 0;
+
+    /*
+     * Maximum number of element characters held before the data is delivered
+     * as a partial element event, 0 when elements are never split.
+     */
+    private int elementChunkSize = 0;
+    private boolean elementChunked = false;
+    private boolean elementChunkedInComposite = false;
+    private boolean elementChunkedRepeated = false;
+
+    /*
+     * When true, the location is not updated for each buffered tag or element
+     * character. The characters are accounted for in bulk at the next
+     * delimiter (or other unbuffered character), before any event is
+     * dispatched.
+     */
+    private boolean locationDeferred = false;
+
+    /*
+     * When true, the end of input following a complete interchange is the
+     * normal end of the stream rather than an error. Set once an interchange
+     * has ended, cleared when the next interchange begins.
+     */
+    private boolean interchangesConcatenated = false;
+    private boolean interchangeEnded = false;
+
+    /*
+     * Whether state transitions are logged, determined once when the lexer is
+     * created. The check in the parse loop avoids creating a message supplier
+     * for every character when tracing is not enabled.
+     */
+    private final boolean tracing = LOGGER.isLoggable(Level.FINER);
 
-    private Notifier isn;
-    private Notifier ien;
-    private Notifier ssn;
-    private Notifier sen;
-    private Notifier csn;
-    private Notifier cen;
-    private Notifier en;
-    private Notifier bn;
+    private long binaryRemain = -1;
+    private BinaryDataStream binaryStream = null;
 
     public Lexer(InputStream stream, Charset charset, EventHandler handler, StaEDIStreamLocation location) {
-        if (stream.markSupported()) {
-            this.stream = stream;
+        this(InputSource.of(stream), charset, handler, location);
+    }
+
+    public Lexer(InputSource source, Charset charset, EventHandler handler, StaEDIStreamLocation location) {
+        this.reader = CharacterReader.getInstance(source, charset);
+        this.configuredCharset = charset;
+        this.readerCharset = charset;
+        this.readers.put(charset, reader);
+        this.handler = handler;
+        this.location = location;
+    }
+
+    /**
+     * Release the input source. Streams and channels provided by the caller
+     * remain open.
+     *
+     * @throws IOException
+     *             when the source can not be closed
+     */
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Begin lexing a new stream, returning the lexer to its initial state.
+     * Buffers and the table of segment tags are retained. The current input
+     * source is closed (streams and channels provided by the caller remain
+     * open).
+     *
+     * @param stream
+     *            the stream to read
+     * @throws IOException
+     *             when the current source can not be closed
+     */
+    public void reset(InputStream stream) throws IOException {
+        InputSource source = reader.getSource();
+        source.close();
+
+        if (source instanceof InputSource.StreamSource) {
+            ((InputSource.StreamSource) source).reset(stream);
         } else {
-            this.stream = new BufferedInputStream(stream);
+            source = InputSource.of(stream);
         }
 
-        this.decoder = charset.newDecoder();
+        reader.reset(source);
+        useCharset(charsetDetected ? StandardCharsets.ISO_8859_1 : configuredCharset);
 
-        this.location = location;
-
-        isn = (notifyState, start, length) -> {
-            handler.interchangeBegin(dialect);
-            return true;
-        };
+        state = State.INITIAL;
+        previous = null;
+        modes.clear();
+        clearQueues();
+        buffer.clear();
+        bufferStart = 0;
 
-        ien = (notifyState, start, length) -> {
-            handler.interchangeEnd();
-            dialect = null;
-            characters.reset();
-            return true;
-        };
+        if (elementChunkSize > 0) {
+            buffer.limit(Math.min(elementChunkSize, buffer.capacity()));
+        }
 
-        ssn = (notifyState, start, length) -> {
-            String segmentTag = new String(buffer.array(), start, length);
-            location.incrementSegmentPosition(segmentTag);
-            return handler.segmentBegin(segmentTag);
-        };
+        dialect = null;
+        characters.reset();
+        interchangeEnded = false;
+        elementChunked = false;
+        elementChunkedInComposite = false;
+        elementChunkedRepeated = false;
+        binaryRemain = -1;
+        binaryStream = null;
+    }
 
-        sen = (notifyState, start, length) -> {
-            boolean eventsReady = handler.segmentEnd();
-            location.clearSegmentLocations();
-            return eventsReady;
-        };
+    /**
+     * Determine whether parsing stopped because all input currently available
+     * from an asynchronous source has been consumed.
+     *
+     * @return true if parsing may continue once more input is available
+     */
+    public boolean isAwaitingInput() {
+        return reader.isAwaitingInput();
+    }
 
-        csn = (notifyState, start, length) -> {
-            if (location.isRepeated()) {
-                location.incrementElementOccurrence();
-            } else {
-                location.incrementElementPosition();
-            }
+    /**
+     * Enable or disable the detection of the charset from each interchange
+     * header. Must be set before parsing begins.
+     *
+     * @param detected
+     *            true when the charset declared by the header is used to read
+     *            the interchange
+     */
+    public void setCharsetDetected(boolean detected) {
+        this.charsetDetected = detected;
+        useCharset(detected ? StandardCharsets.ISO_8859_1 : configuredCharset);
+    }
 
-            return handler.compositeBegin(false);
-        };
+    /**
+     * Retrieve the charset currently used to read the input.
+     *
+     * @return the charset of the current reader
+     */
+    public Charset getCharset() {
+        return readerCharset;
+    }
 
-        cen = (notifyState, start, length) -> {
-            boolean eventsReady = handler.compositeEnd(false);
-            location.clearComponentPosition();
-            return eventsReady;
-        };
+    CharacterReader getCharacterReader() {
+        return reader;
+    }
 
-        en = (notifyState, start, length) -> {
-            updateLocation(notifyState, location);
-            return handler.elementData(buffer.array(), start, length);
-        };
+    void useCharset(Charset charset) {
+        if (!charset.equals(readerCharset)) {
+            reader = reader.withCharset(charset, readers.get(charset));
+            readers.putIfAbsent(charset, reader);
+            readerCharset = charset;
+        }
+    }
 
-        bn = (notifyState, start, length) -> {
-            updateLocation(notifyState, location);
-            return handler.binaryData(binaryStream);
-        };
+    /**
+     * Retrieve the number of characters the buffer holding tag and element
+     * text may currently contain.
+     *
+     * @return the capacity of the text buffer
+     */
+    public int getBufferCapacity() {
+        return buffer.capacity();
     }
 
     public Dialect getDialect() {
         return dialect;
     }
 
+    /**
+     * Set the maximum number of characters of an element's data that will be
+     * held by the lexer. Longer elements are delivered to the handler as a
+     * sequence of partial events followed by the final element data event.
+     *
+     * @param elementChunkSize
+     *            the maximum size of element data held in memory, or 0 to
+     *            hold elements of any size
+     */
+    public void setElementChunkSize(int elementChunkSize) {
+        if (elementChunkSize < 0) {
+            throw new IllegalArgumentException("elementChunkSize must not be negative");
+        }
+
+        this.elementChunkSize = elementChunkSize;
+
+        if (elementChunkSize >= buffer.capacity()) {
+            // Leave room for the character following a full chunk
+            buffer = CharBuffer.allocate(elementChunkSize + 1);
+        }
+
+        clearBuffer();
+    }
+
+    /**
+     * Defer the location updates for buffered tag and element characters to
+     * the next character that is not buffered. Locations observed by the
+     * handler are unchanged, but the per-character bookkeeping is replaced by
+     * a single update for each tag or element.
+     *
+     * @param locationDeferred
+     *            true if location updates for buffered characters should be
+     *            deferred
+     */
+    public void setLocationDeferred(boolean locationDeferred) {
+        this.locationDeferred = locationDeferred;
+    }
+
+    /**
+     * Allow the input to contain several interchanges, one following the
+     * other. The end of input between interchanges ends the stream normally.
+     *
+     * @param interchangesConcatenated
+     *            true if the input may contain concatenated interchanges
+     */
+    public void setInterchangesConcatenated(boolean interchangesConcatenated) {
+        this.interchangesConcatenated = interchangesConcatenated;
+    }
+
     public void setBinaryLength(long binaryLength) {
         this.binaryRemain = binaryLength;
+        // Binary data begins immediately following the last character read
+        reader.releaseCharacters();
 
-        this.binaryStream = new InputStream() {
-            @Override
-            public int read() throws IOException {
-                int input = -1;
+        this.binaryStream = new BinaryDataStream();
 
-                if (binaryRemain-- < 1 || (input = stream.read()) < 0) {
-                    state = State.ELEMENT_END_BINARY;
-                } else {
-                    location.incrementOffset(input);
-                }
+        enqueue(BINARY_DATA, 0);
+        state = State.ELEMENT_DATA_BINARY;
+    }
 
-                return input;
+    /**
+     * Binary data element content, read directly from the bytes of the input.
+     * Bulk reads, skips, and transfers consume the input's buffer a block at a
+     * time rather than byte by byte.
+     */
+    public class BinaryDataStream extends InputStream {
+
+        @Override
+        public int read() throws IOException {
+            int input = -1;
+
+            if (binaryRemain-- < 1 || (input = reader.readByte()) < 0) {
+                state = State.ELEMENT_END_BINARY;
+            } else {
+                location.incrementOffset(input);
             }
-        };
 
-        enqueue(bn, 0);
-        state = State.ELEMENT_DATA_BINARY;
+            return input;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) throws IOException {
+            if (offset < 0 || length < 0 || length > target.length - offset) {
+                throw new IndexOutOfBoundsException();
+            }
+
+            if (length == 0) {
+                return 0;
+            }
+
+            final ByteBuffer input = nextBytes();
+
+            if (input == null) {
+                return -1;
+            }
+
+            final int start = input.position();
+            final int count = available(input, length);
+            input.get(target, offset, count);
+            consumed(input, start, count, null);
+            return count;
+        }
+
+        @Override
+        public long skip(long length) throws IOException {
+            long total = 0;
+            ByteBuffer input;
+
+            while (total < length && (input = nextBytes()) != null) {
+                final int start = input.position();
+                final int count = available(input, length - total);
+                input.position(start + count);
+                consumed(input, start, count, null);
+                total += count;
+            }
+
+            return total;
+        }
+
+        /**
+         * Write the remaining binary data to the target stream. Data is
+         * transferred without copying through the heap when the stream is a
+         * {@link FileOutputStream} and the input is a file.
+         *
+         * @param target
+         *            the stream to write
+         * @return the number of bytes written
+         * @throws IOException
+         *             when reading the input or writing the stream fails
+         */
+        public long transferTo(OutputStream target) throws IOException {
+            if (target instanceof FileOutputStream) {
+                return transferTo(((FileOutputStream) target).getChannel(), null);
+            }
+            return transferTo(Channels.newChannel(target), null);
+        }
+
+        /**
+         * Write the remaining binary data to the target channel. Data is
+         * transferred without copying through the heap when the input is a
+         * file and the channel is a file or socket.
+         *
+         * @param target
+         *            the channel to write
+         * @param targetLocation
+         *            location of the writer of the target, advanced past the
+         *            bytes written, may be null
+         * @return the number of bytes written
+         * @throws IOException
+         *             when reading the input or writing the channel fails
+         */
+        public long transferTo(WritableByteChannel target, StaEDIStreamLocation targetLocation) throws IOException {
+            long total = 0;
+            ByteBuffer input;
+
+            while ((input = nextBytes()) != null) {
+                final int start = input.position();
+                final int count = reader.transferBytes(available(input, Long.MAX_VALUE), target);
+                consumed(input, start, count, targetLocation);
+                total += count;
+            }
+
+            return total;
+        }
+
+        ByteBuffer nextBytes() throws IOException {
+            final ByteBuffer input = binaryRemain > 0 ? reader.readBytes() : null;
+
+            if (input == null) {
+                state = State.ELEMENT_END_BINARY;
+            }
+
+            return input;
+        }
+
+        int available(ByteBuffer input, long length) {
+            return (int) Math.min(Math.min(input.remaining(), length), binaryRemain);
+        }
+
+        void consumed(ByteBuffer input, int start, int count, StaEDIStreamLocation targetLocation) {
+            location.incrementOffset(input, start, start + count);
+
+            if (targetLocation != null) {
+                targetLocation.incrementOffset(input, start, start + count);
+            }
+
+            binaryRemain -= count;
+        }
     }
 
     public void parse() throws IOException, EDIException {
-        if (nextEvent()) {
+        if (eventCount == 0) {
+            compactBuffer();
+        } else if (!isHeaderPending() && nextEvent()) {
             return;
         }
 
+        if (state == State.ELEMENT_DATA_BINARY) {
+            // Binary data not consumed by the caller is skipped in bulk
+            binaryStream.skip(binaryRemain);
+
+            if (binaryRemain < 1) {
+                state = State.ELEMENT_END_BINARY;
+            }
+        }
+
         int input = 0;
+        int current = state.ordinal();
+        int deferred = 0;
         boolean eventsReady = false;
 
-        while (!eventsReady && (input = readCharacter()) > -1) {
-            location.incrementOffset(input);
+        try {
+            while (!eventsReady && (input = readCharacter()) > -1) {
+                final int from = current;
+                final int clazz = characters.getClassCode(input);
+                final int next = State.transition(from, clazz);
 
-            CharacterClass clazz = characters.getClass(input);
-            previous = state;
-            state = state.transition(clazz);
-            LOGGER.finer(() -> "State " + previous + "(" + clazz + ") -> " + state);
-
-            switch (state) {
-            case INITIAL:
-            case TAG_SEARCH:
-            case HEADER_TAG_SEARCH:
-                break;
-            case HEADER_TAG_I:
-            case HEADER_TAG_N:
-            case HEADER_TAG_S:
-            case HEADER_TAG_U:
-            case TAG_1:
-            case TAG_2:
-            case TAG_3:
-            case TRAILER_TAG_I:
-            case TRAILER_TAG_E:
-            case TRAILER_TAG_A:
-            case TRAILER_TAG_U:
-            case TRAILER_TAG_N:
-            case TRAILER_TAG_Z:
-            case ELEMENT_DATA:
-            case ELEMENT_INVALID_DATA:
-            case TRAILER_ELEMENT_DATA:
-                buffer.put((char) input);
-                break;
-            case HEADER_TAG_1:
-            case HEADER_TAG_2:
-            case HEADER_TAG_3:
-                handleStateHeaderTag(input);
-                break;
-            case DATA_RELEASE:
-                // Skip this character - next character will be literal value
-                break;
-            case ELEMENT_DATA_BINARY:
-                handleStateElementDataBinary();
-                break;
-            case INTERCHANGE_CANDIDATE:
-                handleStateInterchangeCandidate(input);
-                break;
-            case HEADER_DATA:
-            case HEADER_INVALID_DATA:
-                handleStateHeaderData(input);
-                eventsReady = dialectConfirmed(State.TAG_SEARCH);
-                break;
-            case HEADER_SEGMENT_BEGIN:
-                dialect.appendHeader(characters, (char) input);
-                openSegment();
-                eventsReady = dialectConfirmed(State.ELEMENT_END);
-                break;
-            case HEADER_ELEMENT_END:
-                dialect.appendHeader(characters, (char) input);
-                handleElement();
-                eventsReady = dialectConfirmed(State.ELEMENT_END);
-                break;
-            case HEADER_COMPONENT_END:
-                dialect.appendHeader(characters, (char) input);
-                handleComponent();
-                eventsReady = dialectConfirmed(State.COMPONENT_END);
-                break;
-            case SEGMENT_BEGIN:
-            case TRAILER_BEGIN:
-                openSegment();
-                eventsReady = nextEvent();
-                break;
-            case SEGMENT_END:
-                closeSegment();
-                eventsReady = nextEvent();
-                break;
-            case SEGMENT_EMPTY:
-                emptySegment();
-                eventsReady = nextEvent();
-                break;
-            case COMPONENT_END:
-                handleComponent();
-                eventsReady = nextEvent();
-                break;
-            case ELEMENT_END:
-            case TRAILER_ELEMENT_END:
-            case ELEMENT_REPEAT:
-                handleElement();
-                eventsReady = nextEvent();
-                break;
-            case INTERCHANGE_END:
-                closeInterchange();
-                eventsReady = nextEvent();
-                break;
-            default:
-                if (clazz != CharacterClass.INVALID) {
-                    StringBuilder message = new StringBuilder();
-                    message.append(": ");
-                    message.append(state);
-                    message.append(" (previous: ");
-                    message.append(previous);
-                    message.append("); input: '");
-                    message.append((char) input);
-                    message.append('\'');
-                    throw error(EDIException.INVALID_STATE, message);
-                } else {
-                    throw error(EDIException.INVALID_CHARACTER);
+                if (tracing) {
+                    traceTransition(from, clazz, next);
                 }
+
+                if (State.isBuffered(next)) {
+                    // Tag and element data characters, by far the most frequent case
+                    if (!buffer.hasRemaining()) {
+                        deferred = advanceLocation(deferred);
+                        location.incrementOffset(input);
+                        eventsReady = handleBufferFull(next);
+                    } else if (locationDeferred) {
+                        deferred++;
+                    } else {
+                        location.incrementOffset(input);
+                    }
+
+                    buffer.put((char) input);
+                    current = next;
+                    continue;
+                }
+
+                deferred = advanceLocation(deferred);
+                location.incrementOffset(input);
+
+                previous = State.valueOf(from);
+                state = State.valueOf(next);
+
+                switch (state) {
+                case INITIAL:
+                case TAG_SEARCH:
+                case HEADER_TAG_SEARCH:
+                    break;
+                case HEADER_TAG_1:
+                case HEADER_TAG_2:
+                case HEADER_TAG_3:
+                    handleStateHeaderTag(input);
+                    break;
+                case DATA_RELEASE:
+                    // Skip this character - next character will be literal value
+                    break;
+                case ELEMENT_DATA_BINARY:
+                    handleStateElementDataBinary();
+                    break;
+                case INTERCHANGE_CANDIDATE:
+                    handleStateInterchangeCandidate(input);
+                    break;
+                case HEADER_DATA:
+                case HEADER_INVALID_DATA:
+                    handleStateHeaderData(input);
+                    eventsReady = dialectConfirmed(State.TAG_SEARCH);
+                    break;
+                case HEADER_SEGMENT_BEGIN:
+                    dialect.appendHeader(characters, (char) input);
+                    openSegment();
+                    eventsReady = dialectConfirmed(State.ELEMENT_END);
+                    break;
+                case HEADER_ELEMENT_END:
+                    dialect.appendHeader(characters, (char) input);
+                    handleElement();
+                    eventsReady = dialectConfirmed(State.ELEMENT_END);
+                    break;
+                case HEADER_COMPONENT_END:
+                    dialect.appendHeader(characters, (char) input);
+                    handleComponent();
+                    eventsReady = dialectConfirmed(State.COMPONENT_END);
+                    break;
+                case SEGMENT_BEGIN:
+                case TRAILER_BEGIN:
+                    openSegment();
+                    eventsReady = nextEvent();
+                    break;
+                case SEGMENT_END:
+                    closeSegment();
+                    eventsReady = nextEvent();
+                    break;
+                case SEGMENT_EMPTY:
+                    emptySegment();
+                    eventsReady = nextEvent();
+                    break;
+                case COMPONENT_END:
+                    handleComponent();
+                    eventsReady = nextEvent();
+                    break;
+                case ELEMENT_END:
+                case TRAILER_ELEMENT_END:
+                case ELEMENT_REPEAT:
+                    handleElement();
+                    eventsReady = nextEvent();
+                    break;
+                case INTERCHANGE_END:
+                    closeInterchange();
+
+                    if (charsetDetected) {
+                        // The next interchange header is read with the neutral charset
+                        useCharset(StandardCharsets.ISO_8859_1);
+                    }
+
+                    eventsReady = nextEvent();
+                    break;
+                default:
+                    if (clazz != CharacterClass.INVALID.code) {
+                        StringBuilder message = new StringBuilder();
+                        message.append(": ");
+                        message.append(state);
+                        message.append(" (previous: ");
+                        message.append(previous);
+                        message.append("); input: '");
+                        message.append((char) input);
+                        message.append('\'');
+                        throw error(EDIException.INVALID_STATE, message);
+                    } else {
+                        throw error(EDIException.INVALID_CHARACTER);
+                    }
+                }
+
+                // The state may be modified by the handling above
+                current = state.ordinal();
             }
+        } catch (IOException e) {
+            // Keep the state consistent with the characters consumed so far
+            state = State.valueOf(current);
+            advanceLocation(deferred);
+            throw e;
         }
 
-        if (input < 0) {
+        state = State.valueOf(current);
+        advanceLocation(deferred);
+
+        if (input < 0 && !reader.isAwaitingInput() && !isBetweenInterchanges()) {
             throw error(EDIException.INCOMPLETE_STREAM);
         }
     }
 
-    int readCharacter() throws IOException {
-        int next = stream.read();
+    /**
+     * Determine whether the input read so far ends with a complete interchange
+     * followed by nothing more than white space, when interchanges may be
+     * concatenated.
+     */
+    boolean isBetweenInterchanges() {
+        return interchangesConcatenated
+                && interchangeEnded
+                && (state == State.INITIAL || state == State.INTERCHANGE_END);
+    }
 
-        if (next < 0) {
-            return -1;
+    /**
+     * Account for buffered characters for which the location update was
+     * deferred. The characters are the last <code>count</code> characters
+     * in the buffer.
+     *
+     * @param count
+     *            the number of characters not yet reflected in the location
+     * @return the number of characters remaining to be accounted for (always
+     *         0)
+     */
+    int advanceLocation(int count) {
+        if (count > 0) {
+            final int end = buffer.position();
+            location.incrementOffset(buffer.array(), end - count, end);
         }
+        return 0;
+    }
 
-        boolean endOfInput = false;
-        boolean complete = false;
-        int position = 0;
-
-        readCharBuf.clear();
-        readByteBuf.clear();
-        readByteBuf.put((byte) next);
+    /**
+     * Skip any white space following the end of an interchange and determine
+     * whether further input remains to be parsed. Input that is not white
+     * space is left to be read by the next call to {@link #parse()}. When
+     * false is returned, {@link #isAwaitingInput()} distinguishes the end of
+     * the input from input not yet available from an asynchronous source.
+     *
+     * @return true if input other than white space remains
+     * @throws IOException
+     *             when reading the stream fails
+     */
+    public boolean hasRemainingInput() throws IOException {
+        if (state != State.INITIAL && state != State.INTERCHANGE_END) {
+            return true;
+        }
 
-        do {
-            readByteBuf.flip();
-            CoderResult cr = decoder.decode(readByteBuf, readCharBuf, endOfInput);
+        final int initial = State.INITIAL.ordinal();
+        int input;
 
-            if (!cr.isUnderflow()) {
-                cr.throwException();
+        while ((input = readCharacter()) > -1) {
+            if (State.transition(initial, characters.getClassCode(input)) != initial) {
+                reader.unread();
+                return true;
             }
 
-            if (endOfInput) {
-                complete = true;
-            } else if (readCharBuf.position() > 0) {
-                // Single character successfully written to the CharBuffer
-                complete = true;
-            } else {
-                next = stream.read();
-
-                if (next < 0) {
-                    endOfInput = true;
-                    decoder.reset();
-                } else {
-                    readByteBuf.limit(readByteBuf.capacity());
-                    readByteBuf.position(++position);
-                    readByteBuf.put((byte) next);
-                }
+            location.incrementOffset(input);
+        }
+
+        return false;
+    }
+
+    /**
+     * Determine whether an interchange header has been started but not yet
+     * confirmed. Events of the header remain queued until the dialect is
+     * confirmed, which may span several calls to {@link #parse()} when input
+     * is read from an asynchronous source.
+     *
+     * @return true if the header of an interchange is incomplete
+     */
+    boolean isHeaderPending() {
+        return dialect != null && !dialect.isConfirmed();
+    }
+
+    int readCharacter() throws IOException {
+        return reader.read();
+    }
+
+    /**
+     * Make room in the buffer for another character. Element data that has
+     * reached the chunk size is delivered as a partial element, otherwise the
+     * buffer is enlarged.
+     *
+     * @param next
+     *            the (ordinal of the) state of the character to be buffered
+     * @return true if events are ready to be returned to the reader
+     */
+    boolean handleBufferFull(int next) {
+        boolean eventsReady = false;
+
+        if (eventCount == 0 && isChunkedState(next) && buffer.position() > bufferStart) {
+            enqueue(ELEMENT_DATA_PARTIAL, buffer.position());
+            eventsReady = nextEvent();
+        }
+
+        if (!eventsReady && eventCount == 0 && bufferStart > 0 && !handler.isTextRetained()) {
+            /*
+             * The text of the events dispatched so far was skipped, discarded,
+             * or copied by the handler. Its space is reused rather than
+             * enlarging the buffer while parsing continues.
+             */
+            compactBuffer();
+
+            if (buffer.hasRemaining()) {
+                return false;
             }
-        } while (!complete);
+        }
 
-        if (endOfInput) {
-            decoder.reset();
+        if (buffer.limit() < buffer.capacity()) {
+            buffer.limit(buffer.capacity());
+        } else {
+            /*
+             * The handler may still reference the text in the current buffer,
+             * it is copied rather than re-used.
+             */
+            CharBuffer larger = CharBuffer.allocate(buffer.capacity() * 2);
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
         }
 
-        if (readCharBuf.position() == 0 && endOfInput) {
-            // Nothing was written to the CharBuffer
-            return -1;
+        return eventsReady;
+    }
+
+    boolean isChunkedState(int next) {
+        return elementChunkSize > 0
+                && (next == State.ELEMENT_DATA.ordinal() || next == State.ELEMENT_INVALID_DATA.ordinal())
+                && handler.isElementChunkingAllowed();
+    }
+
+    private void clearBuffer() {
+        bufferStart = buffer.position();
+        compactBuffer();
+    }
+
+    /**
+     * Move any characters not yet part of an event to the start of the buffer.
+     */
+    private void compactBuffer() {
+        final int pending = buffer.position() - bufferStart;
+
+        if (pending > 0 && bufferStart > 0) {
+            final char[] array = buffer.array();
+            System.arraycopy(array, bufferStart, array, 0, pending);
+        }
+
+        buffer.clear();
+
+        if (elementChunkSize > 0 && elementChunkSize < buffer.capacity()) {
+            buffer.limit(Math.max(elementChunkSize, pending));
         }
 
-        return readChar[0];
+        buffer.position(pending);
+        bufferStart = 0;
     }
 
-    void handleStateHeaderTag(int input) {
+    private void putBuffer(int input) {
+        if (!buffer.hasRemaining()) {
+            handleBufferFull(State.INITIAL.ordinal());
+        }
         buffer.put((char) input);
+    }
+
+    void handleStateHeaderTag(int input) {
+        putBuffer(input);
         dialect.appendHeader(characters, (char) input);
     }
 
@@ -358,11 +800,11 @@ public class Lexer {
     }
 
     void handleStateInterchangeCandidate(int input) throws EDIException {
-        buffer.put((char) input);
+        putBuffer(input);
         final char[] header = buffer.array();
         final int length = buffer.position();
-        dialect = DialectFactory.getDialect(header, 0, length);
-        for (int i = 0; i < length; i++) {
+        dialect = DialectFactory.getDialect(header, bufferStart, length - bufferStart);
+        for (int i = bufferStart; i < length; i++) {
             dialect.appendHeader(characters, header[i]);
         }
         openInterchange();
@@ -378,17 +820,26 @@ public class Lexer {
                 state = State.HEADER_TAG_SEARCH;
             }
         } else if (!characters.isRelease(input) && dialect.getDecimalMark() != input) {
-            buffer.put((char) input);
+            putBuffer(input);
         }
     }
 
+    private static void traceTransition(int from, int clazz, int next) {
+        LOGGER.finer("State " + State.valueOf(from) + "(" + clazz + ") -> " + State.valueOf(next));
+    }
+
     private boolean dialectConfirmed(State confirmed) throws EDIException {
         if (dialect.isConfirmed()) {
+            if (charsetDetected) {
+                Charset declared = dialect.getDeclaredCharset();
+                useCharset(declared != null ? declared : configuredCharset);
+            }
+
             state = confirmed;
             nextEvent();
             return true;
         } else if (dialect.isRejected()) {
-            buffer.clear();
+            clearBuffer();
             clearQueues();
             dialect = null;
             state = State.INITIAL;
@@ -441,6 +892,28 @@ public class Lexer {
         }
     }
 
+    static void incrementElement(StaEDIStreamLocation location) {
+        if (location.isRepeated()) {
+            location.incrementElementOccurrence();
+        } else {
+            location.incrementElementPosition();
+        }
+    }
+
+    private void updateChunkedLocation(State state) {
+        if (state == State.ELEMENT_REPEAT) {
+            location.setRepeated(true);
+        } else if (state == State.COMPONENT_END) {
+            if (!elementChunkedInComposite) {
+                // The partial data was the first component of a composite
+                location.setRepeated(elementChunkedRepeated);
+                location.incrementComponentPosition();
+            }
+        } else {
+            location.setRepeated(false);
+        }
+    }
+
     static void updateElementOccurrence(StaEDIStreamLocation location) {
         /*
          * Only increment the position if we have not yet started
@@ -452,75 +925,165 @@ public class Lexer {
     }
 
     private boolean nextEvent() {
-        Notifier event = events.peek();
         boolean eventsReady = false;
 
-        if (event != null) {
-            events.remove();
-            State nextState = stateQueue.remove();
-            int start = startQueue.remove();
-            int length = lengthQueue.remove();
-            eventsReady = event.execute(nextState, start, length);
-        }
-
-        if (events.isEmpty()) {
-            buffer.clear();
+        // Events not ready for the reader (e.g. while skipping) are dispatched without delay
+        while (!eventsReady && eventCount > 0) {
+            final int index = eventHead;
+            eventHead = (eventHead + 1) & (eventKinds.length - 1);
+            eventCount--;
+            eventsReady = dispatch(eventKinds[index], eventStates[index], eventStarts[index], eventLengths[index]);
+            eventStates[index] = null;
+            bufferStart = eventStarts[index] + eventLengths[index];
         }
 
         return eventsReady;
     }
 
-    private void enqueue(Notifier task, int position) {
+    private boolean dispatch(int kind, State eventState, int start, int length) {
+        boolean eventsReady;
+
+        switch (kind) {
+        case INTERCHANGE_START:
+            interchangeEnded = false;
+            handler.interchangeBegin(dialect);
+            return true;
+        case INTERCHANGE_END:
+            handler.interchangeEnd();
+            interchangeEnded = true;
+            dialect = null;
+            characters.reset();
+            return true;
+        case SEGMENT_START:
+            final int segmentId = segmentTags.intern(buffer.array(), start, length);
+            String segmentTag = segmentTags.getTag(segmentId);
+
+            if (segmentTag == null) {
+                segmentTag = new String(buffer.array(), start, length);
+            }
+
+            location.incrementSegmentPosition(segmentTag);
+            return handler.segmentBegin(segmentTag, segmentId);
+        case SEGMENT_END:
+            eventsReady = handler.segmentEnd();
+            location.clearSegmentLocations();
+            return eventsReady;
+        case COMPOSITE_START:
+            // A chunked first component has already located the element
+            if (!elementChunked) {
+                incrementElement(location);
+            }
+            return handler.compositeBegin(false);
+        case COMPOSITE_END:
+            eventsReady = handler.compositeEnd(false);
+            location.clearComponentPosition();
+            return eventsReady;
+        case ELEMENT_DATA:
+            if (elementChunked) {
+                updateChunkedLocation(eventState);
+                elementChunked = false;
+            } else {
+                updateLocation(eventState, location);
+            }
+            return handler.elementData(buffer.array(), start, length);
+        case ELEMENT_DATA_PARTIAL:
+            if (!elementChunked) {
+                /*
+                 * The delimiter ending the element has not yet been read.
+                 * Locate the element as if it ends the current element or
+                 * component, corrected once the actual delimiter is known.
+                 */
+                elementChunked = true;
+                elementChunkedInComposite = inComposite();
+                elementChunkedRepeated = location.isRepeated();
+                updateLocation(elementChunkedInComposite ? State.COMPONENT_END : State.ELEMENT_END, location);
+            }
+            return handler.elementDataPartial(buffer.array(), start, length);
+        case BINARY_DATA:
+            updateLocation(eventState, location);
+            return handler.binaryData(binaryStream);
+        default:
+            throw new IllegalStateException("Unknown event kind: " + kind);
+        }
+    }
+
+    private void enqueue(int kind, int position) {
         int start;
         int length;
 
-        if (startQueue.isEmpty()) {
-            start = 0;
-            length = position;
+        if (eventCount == 0) {
+            start = bufferStart;
         } else {
-            start = startQueue.peekLast() + lengthQueue.peekLast();
-            length = position > 0 ? position - start : 0;
+            final int last = (eventHead + eventCount - 1) & (eventKinds.length - 1);
+            start = eventStarts[last] + eventLengths[last];
+        }
+
+        length = position > 0 ? position - start : 0;
+
+        if (eventCount == eventKinds.length) {
+            growQueue();
         }
 
-        events.add(task);
-        stateQueue.add(this.state);
-        startQueue.add(start);
-        lengthQueue.add(length);
+        final int index = (eventHead + eventCount) & (eventKinds.length - 1);
+        eventKinds[index] = kind;
+        eventStates[index] = this.state;
+        eventStarts[index] = start;
+        eventLengths[index] = length;
+        eventCount++;
+    }
+
+    private void growQueue() {
+        final int capacity = eventKinds.length;
+        eventKinds = unwrap(eventKinds, new int[capacity * 2], capacity);
+        eventStates = unwrap(eventStates, new State[capacity * 2], capacity);
+        eventStarts = unwrap(eventStarts, new int[capacity * 2], capacity);
+        eventLengths = unwrap(eventLengths, new int[capacity * 2], capacity);
+        eventHead = 0;
+    }
+
+    /**
+     * Copy the full ring buffer from source to the beginning of target, oldest
+     * entry first.
+     */
+    private <T> T unwrap(T source, T target, int capacity) {
+        final int headLength = capacity - eventHead;
+        System.arraycopy(source, eventHead, target, 0, headLength);
+        System.arraycopy(source, 0, target, headLength, eventHead);
+        return target;
     }
 
     private void clearQueues() {
-        events.clear();
-        stateQueue.clear();
-        startQueue.clear();
-        lengthQueue.clear();
+        Arrays.fill(eventStates, null);
+        eventHead = 0;
+        eventCount = 0;
     }
 
     private void openInterchange() {
         modes.push(Mode.INTERCHANGE);
-        enqueue(isn, 0);
+        enqueue(INTERCHANGE_START, 0);
     }
 
     private void closeInterchange() throws EDIException {
         closeSegment();
         popMode(Mode.INTERCHANGE);
-        enqueue(ien, 0);
+        enqueue(INTERCHANGE_END, 0);
     }
 
     private void openSegment() {
         modes.push(Mode.SEGMENT);
-        enqueue(ssn, buffer.position());
+        enqueue(SEGMENT_START, buffer.position());
     }
 
     private void closeSegment() throws EDIException {
         handleElement();
         popMode(Mode.SEGMENT);
-        enqueue(sen, 0);
+        enqueue(SEGMENT_END, 0);
     }
 
     private void emptySegment() throws EDIException {
         openSegment();
         popMode(Mode.SEGMENT);
-        enqueue(sen, 0);
+        enqueue(SEGMENT_END, 0);
     }
 
     private void handleElement() throws EDIException {
@@ -535,7 +1098,7 @@ public class Lexer {
 
     private void openComposite() {
         modes.push(Mode.COMPOSITE);
-        enqueue(csn, 0);
+        enqueue(COMPOSITE_START, 0);
     }
 
     private void handleComponent() {
@@ -547,7 +1110,7 @@ public class Lexer {
     }
 
     private void addElementEvent() {
-        enqueue(en, buffer.position());
+        enqueue(ELEMENT_DATA, buffer.position());
     }
 
     private boolean inComposite() {
@@ -556,7 +1119,7 @@ public class Lexer {
 
     private void closeComposite() throws EDIException {
         popMode(Mode.COMPOSITE);
-        enqueue(cen, 0);
+        enqueue(COMPOSITE_END, 0);
     }
 
     void popMode(Mode expected) throws EDIException {
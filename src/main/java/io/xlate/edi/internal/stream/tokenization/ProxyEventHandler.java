@@ -17,36 +17,84 @@ package io.xlate.edi.internal.stream.tokenization;
 
 import java.io.InputStream;
 import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.stream.StreamSupport;
 
 import io.xlate.edi.internal.stream.CharArraySequence;
+import io.xlate.edi.internal.stream.StaEDISegmentView;
 import io.xlate.edi.internal.stream.StaEDIStreamLocation;
 import io.xlate.edi.internal.stream.validation.UsageError;
 import io.xlate.edi.internal.stream.validation.Validator;
 import io.xlate.edi.schema.EDIType;
 import io.xlate.edi.schema.Schema;
+import io.xlate.edi.stream.EDIEventFilter;
 import io.xlate.edi.stream.EDIStreamEvent;
 import io.xlate.edi.stream.EDIStreamValidationError;
 import io.xlate.edi.stream.Location;
 
 public class ProxyEventHandler implements EventHandler {
 
+    private static final int SKIP_NONE = 0;
+    private static final int SKIP_SEGMENT = 1;
+    private static final int SKIP_LOOP = 2;
+    private static final int SKIP_TRANSACTION = 3;
+
+    /*
+     * Events required by the reader itself, never discarded by the filter.
+     */
+    private static final Set<EDIStreamEvent> RETAINED_EVENTS = EnumSet.of(EDIStreamEvent.START_INTERCHANGE,
+                                                                          EDIStreamEvent.END_INTERCHANGE,
+                                                                          EDIStreamEvent.START_TRANSACTION,
+                                                                          EDIStreamEvent.END_TRANSACTION,
+                                                                          EDIStreamEvent.START_SEGMENT,
+                                                                          EDIStreamEvent.END_SEGMENT,
+                                                                          EDIStreamEvent.ELEMENT_DATA_BINARY);
+
     private final StaEDIStreamLocation location;
 
     private Schema controlSchema;
+    private int[] controlSegmentIds = new int[0];
     private Validator controlValidator;
 
     private Schema transactionSchema;
     private Validator transactionValidator;
 
+    /*
+     * Validators of the most recently used schemas, retained across calls to
+     * reset so that a reused reader need not rebuild them.
+     */
+    private Schema retainedControlSchema;
+    private boolean retainedControlCodeValues;
+    private int[] retainedControlSegmentIds;
+    private Validator retainedControlValidator;
+    private Schema retainedTransactionSchema;
+    private Schema retainedTransactionContainer;
+    private Validator retainedTransactionValidator;
+
     private boolean transactionSchemaAllowed = false;
     private boolean transaction = false;
 
     private InputStream binary;
     private String segmentTag;
+    private int segmentId;
+    private boolean trackedSegment;
     private CharArraySequence elementHolder = new CharArraySequence();
+    private int partialLength = 0;
+    private boolean textReferenced = false;
+
+    /*
+     * While skipping, events are neither validated nor enqueued until the
+     * end of the skipped structure is reached.
+     */
+    private int skipping = SKIP_NONE;
+    private int skipDepth = 0;
+    private EDIEventFilter filter;
+    private StaEDISegmentView segmentView;
 
     private StreamEvent[] events = new StreamEvent[99];
     private int eventCount = 0;
@@ -67,7 +115,198 @@ public class ProxyEventHandler implements EventHandler {
         }
 
         this.controlSchema = controlSchema;
-        controlValidator = controlSchema != null ? new Validator(controlSchema, validateCodeValues, null) : null;
+
+        if (controlSchema != null
+                && controlSchema == retainedControlSchema
+                && validateCodeValues == retainedControlCodeValues) {
+            this.controlSegmentIds = retainedControlSegmentIds;
+            this.controlValidator = retainedControlValidator;
+            this.controlValidator.reset();
+        } else {
+            this.controlSegmentIds = segmentIds(controlSchema);
+            this.controlValidator = controlSchema != null ? new Validator(controlSchema, validateCodeValues, null) : null;
+
+            if (controlSchema != null) {
+                retainedControlSchema = controlSchema;
+                retainedControlCodeValues = validateCodeValues;
+                retainedControlSegmentIds = controlSegmentIds;
+                retainedControlValidator = controlValidator;
+            }
+        }
+    }
+
+    /**
+     * Replace the control schema for the next interchange read from the
+     * stream. The validator of the current control schema is retained and
+     * will be reused if the same schema is set again. Any transaction schema
+     * remains in effect, validated within the new control schema.
+     *
+     * @param controlSchema
+     *            the control schema to use for the next interchange, may be
+     *            null
+     * @param validateCodeValues
+     *            whether code values are validated by the control schema
+     */
+    public void resetControlSchema(Schema controlSchema, boolean validateCodeValues) {
+        final Schema previousControlSchema = this.controlSchema;
+        this.controlValidator = null;
+        setControlSchema(controlSchema, validateCodeValues);
+
+        if (transactionSchema != null && controlSchema != previousControlSchema) {
+            final Schema schema = transactionSchema;
+            transactionSchema = null;
+            setTransactionSchema(schema);
+        }
+    }
+
+    /**
+     * Return the handler to its initial state so that a new stream may be
+     * read. The validators of the previously used schemas are retained and
+     * will be reused if the same schemas are set again.
+     *
+     * @param controlSchema
+     *            the control schema to use initially, may be null
+     * @param validateCodeValues
+     *            whether code values are validated by the control schema
+     */
+    public void reset(Schema controlSchema, boolean validateCodeValues) {
+        this.transactionSchema = null;
+        this.transactionValidator = null;
+        resetControlSchema(controlSchema, validateCodeValues);
+
+        this.transactionSchemaAllowed = false;
+        this.transaction = false;
+
+        this.binary = null;
+        this.segmentTag = null;
+        this.segmentId = SegmentTags.NONE;
+        this.trackedSegment = false;
+        this.partialLength = 0;
+        this.dialect = null;
+        this.skipping = SKIP_NONE;
+        resetEvents();
+    }
+
+    /**
+     * Skip the remainder of the current segment. The next event will be the
+     * segment's END_SEGMENT.
+     */
+    public void skipSegment() {
+        beginSkip(SKIP_SEGMENT);
+    }
+
+    /**
+     * Skip the remainder of the loop started by the current event. The next
+     * event will be the loop's END_LOOP.
+     */
+    public void skipLoop() {
+        beginSkip(SKIP_LOOP);
+    }
+
+    /**
+     * Skip the remainder of the current transaction. Only the transaction's
+     * trailer segment is validated. The next event will be the transaction's
+     * END_TRANSACTION.
+     */
+    public void skipTransaction() {
+        beginSkip(SKIP_TRANSACTION);
+    }
+
+    void beginSkip(int mode) {
+        int depth = 1;
+
+        // The end of the skipped structure may already be among the pending events
+        for (int i = eventIndex + 1; i < eventCount; i++) {
+            final EDIStreamEvent type = events[i].type;
+
+            if (mode == SKIP_LOOP && type == EDIStreamEvent.START_LOOP) {
+                depth++;
+            } else if (mode == SKIP_LOOP && type == EDIStreamEvent.END_LOOP) {
+                depth--;
+            }
+
+            if (isSkipEnd(mode, type, depth)) {
+                eventIndex = i - 1;
+                return;
+            }
+        }
+
+        eventCount = eventIndex + 1;
+        skipping = mode;
+        skipDepth = depth;
+    }
+
+    static boolean isSkipEnd(int mode, EDIStreamEvent type, int depth) {
+        switch (mode) {
+        case SKIP_SEGMENT:
+            return type == EDIStreamEvent.END_SEGMENT;
+        case SKIP_LOOP:
+            return depth == 0 || type == EDIStreamEvent.END_TRANSACTION || type == EDIStreamEvent.END_GROUP;
+        default:
+            return type == EDIStreamEvent.END_TRANSACTION;
+        }
+    }
+
+    /**
+     * Determine whether events handled are ready to be returned to the reader.
+     * Events are never ready while skipping or when all have been discarded
+     * by the filter, allowing the lexer to continue.
+     */
+    private boolean ready(boolean eventsReady) {
+        return eventsReady && skipping == SKIP_NONE && hasEvents();
+    }
+
+    static int[] segmentIds(Schema schema) {
+        if (schema == null) {
+            return new int[0];
+        }
+
+        return StreamSupport.stream(schema.spliterator(), false)
+                            .filter(type -> type.isType(EDIType.Type.SEGMENT))
+                            .mapToInt(type -> SegmentTags.of(type.getId()))
+                            .filter(id -> id != SegmentTags.NONE)
+                            .sorted()
+                            .toArray();
+    }
+
+    /**
+     * When set, the text of element events references the lexer's buffer
+     * rather than a copy. The text remains valid until the lexer next parses.
+     *
+     * @param textReferenced
+     *            true if element text should be referenced, false if copied
+     */
+    public void setTextReferenced(boolean textReferenced) {
+        this.textReferenced = textReferenced;
+    }
+
+    /**
+     * Set a filter for the events of the reader. Events rejected by the filter
+     * are discarded before their data is copied, unless needed by the reader.
+     * When the filter does not require it, the elements of rejected segments
+     * are not validated.
+     *
+     * @param filter
+     *            the filter of events, may be null
+     */
+    public void setEventFilter(EDIEventFilter filter) {
+        this.filter = filter;
+    }
+
+    public EDIEventFilter getEventFilter() {
+        return filter;
+    }
+
+    /**
+     * Set the view to receive the values and errors of segments directly,
+     * rather than as events. While set, the lexer continues through each
+     * segment until its end without returning to the reader.
+     *
+     * @param segmentView
+     *            the view of the current segment, may be null
+     */
+    public void setSegmentView(StaEDISegmentView segmentView) {
+        this.segmentView = segmentView;
     }
 
     public boolean isTransactionSchemaAllowed() {
@@ -81,13 +320,26 @@ public class ProxyEventHandler implements EventHandler {
     public void setTransactionSchema(Schema transactionSchema) {
         if (!Objects.equals(this.transactionSchema, transactionSchema)) {
             this.transactionSchema = transactionSchema;
-            transactionValidator = transactionSchema != null ? new Validator(transactionSchema, true, controlSchema) : null;
+
+            if (transactionSchema == null) {
+                transactionValidator = null;
+            } else if (transactionSchema == retainedTransactionSchema && controlSchema == retainedTransactionContainer) {
+                transactionValidator = retainedTransactionValidator;
+                transactionValidator.reset();
+            } else {
+                transactionValidator = new Validator(transactionSchema, true, controlSchema);
+                retainedTransactionSchema = transactionSchema;
+                retainedTransactionContainer = controlSchema;
+                retainedTransactionValidator = transactionValidator;
+            }
         }
     }
 
     public void resetEvents() {
         eventCount = 0;
         eventIndex = 0;
+        // Locations of the previous events are no longer available
+        location.releaseLines();
     }
 
     public EDIStreamEvent getEvent() {
@@ -146,6 +398,7 @@ public class ProxyEventHandler implements EventHandler {
 
     @Override
     public void interchangeEnd() {
+        skipping = SKIP_NONE;
         enqueueEvent(EDIStreamEvent.END_INTERCHANGE, EDIStreamValidationError.NONE, "", null);
     }
 
@@ -161,6 +414,9 @@ public class ProxyEventHandler implements EventHandler {
         } else if (EDIType.Type.GROUP.toString().equals(id)) {
             enqueueEvent(EDIStreamEvent.START_GROUP, EDIStreamValidationError.NONE, id, null);
         } else {
+            if (skipping == SKIP_LOOP) {
+                skipDepth++;
+            }
             enqueueEvent(EDIStreamEvent.START_LOOP, EDIStreamValidationError.NONE, id, id);
         }
     }
@@ -169,64 +425,108 @@ public class ProxyEventHandler implements EventHandler {
     public void loopEnd(CharSequence id) {
         if (EDIType.Type.TRANSACTION.toString().equals(id)) {
             transaction = false;
+            skipping = SKIP_NONE;
             dialect.transactionEnd();
             enqueueEvent(EDIStreamEvent.END_TRANSACTION, EDIStreamValidationError.NONE, id, null);
         } else if (EDIType.Type.GROUP.toString().equals(id)) {
+            skipping = SKIP_NONE;
             dialect.groupEnd();
             enqueueEvent(EDIStreamEvent.END_GROUP, EDIStreamValidationError.NONE, id, null);
         } else {
+            if (skipping == SKIP_LOOP && --skipDepth == 0) {
+                skipping = SKIP_NONE;
+            }
             enqueueEvent(EDIStreamEvent.END_LOOP, EDIStreamValidationError.NONE, id, id);
         }
     }
 
     @Override
-    public boolean segmentBegin(String segmentTag) {
+    public boolean segmentBegin(String segmentTag, int segmentId) {
         this.segmentTag = segmentTag;
+        this.segmentId = segmentId;
+        this.trackedSegment = dialect.isTrackedSegment(segmentId);
 
         /*
          * If this is the start of a transaction, loopStart will be called from the validator and
          * transactionSchemaAllowed will be `true` for the duration of the start-transaction segment.
          */
         transactionSchemaAllowed = false;
+
+        if (skipping == SKIP_TRANSACTION && transaction) {
+            // Only the trailer is validated, ending the transaction at the next control segment
+            if (exitTransaction(segmentTag, segmentId)) {
+                transaction = false;
+                controlValidator.validateSegment(this, segmentTag, segmentId);
+            }
+            return false;
+        }
+
+        if (segmentView != null) {
+            segmentView.begin(segmentTag);
+        }
+
         Validator validator = validator();
         boolean eventsReady = true;
         String code = null;
 
-        if (validator != null && !dialect.isServiceAdviceSegment(segmentTag)) {
-            validator.validateSegment(this, segmentTag);
+        if (validator != null && !dialect.isServiceAdviceSegment(segmentId)) {
+            validator.validateSegment(this, segmentTag, segmentId);
             code = validator.getSegmentReferenceCode();
             eventsReady = !validator.isPendingDiscrimination();
         }
 
-        if (exitTransaction(segmentTag)) {
+        if (exitTransaction(segmentTag, segmentId)) {
             transaction = false;
-            validator().validateSegment(this, segmentTag);
+            validator().validateSegment(this, segmentTag, segmentId);
             code = validator().getSegmentReferenceCode();
         }
 
         enqueueEvent(EDIStreamEvent.START_SEGMENT, EDIStreamValidationError.NONE, segmentTag, code, location);
-        return eventsReady;
+
+        if (eventsReady && skipping == SKIP_NONE && filter != null
+                && !filter.isRejectedSegmentValidated() && !filter.acceptsSegment(segmentTag)) {
+            // Rejected by the filter, only the end of the segment is required
+            skipping = SKIP_SEGMENT;
+        }
+
+        return ready(eventsReady);
     }
 
-    boolean exitTransaction(CharSequence tag) {
-        return transaction && !transactionSchemaAllowed && controlSchema != null
-                && controlSchema.containsSegment(tag.toString());
+    boolean exitTransaction(CharSequence tag, int tagId) {
+        return transaction && !transactionSchemaAllowed && controlSchema != null && isControlSegment(tag, tagId);
+    }
+
+    boolean isControlSegment(CharSequence tag, int tagId) {
+        if (tagId != SegmentTags.NONE) {
+            return Arrays.binarySearch(controlSegmentIds, tagId) >= 0;
+        }
+        return controlSchema.containsSegment(tag.toString());
     }
 
     @Override
     public boolean segmentEnd() {
-        if (validator() != null) {
+        if (skipping == SKIP_SEGMENT) {
+            skipping = SKIP_NONE;
+        } else if (skipping == SKIP_NONE && validator() != null) {
             validator().validateSyntax(dialect, this, this, location, false);
             validator().validateVersionConstraints(dialect, this);
         }
 
+        if (segmentView != null) {
+            segmentView.end();
+        }
+
         location.clearSegmentLocations();
         enqueueEvent(EDIStreamEvent.END_SEGMENT, EDIStreamValidationError.NONE, segmentTag, null, location);
-        return true;
+        return ready(true);
     }
 
     @Override
     public boolean compositeBegin(boolean isNil) {
+        if (skipping != SKIP_NONE) {
+            return false;
+        }
+
         String code = null;
         boolean eventsReady = true;
 
@@ -247,11 +547,16 @@ public class ProxyEventHandler implements EventHandler {
         }
 
         enqueueEvent(EDIStreamEvent.START_COMPOSITE, EDIStreamValidationError.NONE, "", code);
-        return eventsReady;
+        return ready(eventsReady);
     }
 
     @Override
     public boolean compositeEnd(boolean isNil) {
+        if (skipping != SKIP_NONE) {
+            location.clearComponentPosition();
+            return false;
+        }
+
         boolean eventsReady = true;
 
         if (validator() != null && !isNil) {
@@ -261,7 +566,31 @@ public class ProxyEventHandler implements EventHandler {
 
         location.clearComponentPosition();
         enqueueEvent(EDIStreamEvent.END_COMPOSITE, EDIStreamValidationError.NONE, "", null);
-        return eventsReady;
+        return ready(eventsReady);
+    }
+
+    @Override
+    public boolean isElementChunkingAllowed() {
+        // Dialect version tracking and implementation discriminators require the complete value
+        return !trackedSegment && (validator() == null || !validator().isPendingDiscrimination());
+    }
+
+    @Override
+    public boolean isTextRetained() {
+        // Text is copied into the events unless referenced
+        return textReferenced && hasEvents();
+    }
+
+    @Override
+    public boolean elementDataPartial(char[] text, int start, int length) {
+        if (skipping != SKIP_NONE) {
+            return false;
+        }
+
+        elementHolder.set(text, start, length);
+        partialLength += length;
+        enqueueEvent(EDIStreamEvent.ELEMENT_DATA_PARTIAL, EDIStreamValidationError.NONE, elementHolder, null, location);
+        return ready(true);
     }
 
     @Override
@@ -269,13 +598,23 @@ public class ProxyEventHandler implements EventHandler {
         boolean derivedComposite;
         String code;
         boolean eventsReady = true;
+        final int priorLength = partialLength;
 
+        partialLength = 0;
         elementHolder.set(text, start, length);
-        dialect.elementData(elementHolder, location);
+
+        if (trackedSegment) {
+            dialect.elementData(segmentId, elementHolder, location);
+        }
+
+        if (skipping != SKIP_NONE) {
+            return false;
+        }
+
         Validator validator = validator();
 
         if (validator != null) {
-            derivedComposite = validateElement(validator);
+            derivedComposite = validateElement(validator, priorLength);
             code = validator.getElementReferenceCode();
         } else {
             derivedComposite = false;
@@ -299,12 +638,12 @@ public class ProxyEventHandler implements EventHandler {
             location.clearComponentPosition();
         }
 
-        return eventsReady;
+        return ready(eventsReady);
     }
 
-    boolean validateElement(Validator validator) {
+    boolean validateElement(Validator validator, int priorLength) {
         final boolean composite = location.getComponentPosition() > -1;
-        boolean valid = validator.validateElement(dialect, location, elementHolder);
+        boolean valid = validator.validateElement(dialect, location, elementHolder, priorLength);
         boolean derivedComposite = !composite && validator.isComposite();
 
         if (!valid) {
@@ -362,7 +701,7 @@ public class ProxyEventHandler implements EventHandler {
     public boolean binaryData(InputStream binaryStream) {
         enqueueEvent(EDIStreamEvent.ELEMENT_DATA_BINARY, EDIStreamValidationError.NONE, "", null);
         setBinary(binaryStream);
-        return true;
+        return ready(true);
     }
 
     @Override
@@ -398,13 +737,100 @@ public class ProxyEventHandler implements EventHandler {
                               CharSequence code,
                               Location location) {
 
-        enqueueEvent(eventCount, event, error, holder, code, location);
-        eventCount++;
+        if (skipping == SKIP_NONE && !isFiltered(event, location) && !isCaptured(event, error, holder, code, location)) {
+            enqueueEvent(eventCount, event, error, holder, code, location);
+            eventCount++;
+        } else {
+            eventDiscarded();
+        }
     }
 
     private void enqueueEvent(EDIStreamEvent event, EDIStreamValidationError error, CharSequence text, CharSequence code) {
-        enqueueEvent(eventCount, event, error, text, code, location);
-        eventCount++;
+        if (skipping == SKIP_NONE && !isFiltered(event, location) && !isCaptured(event, error, text, code, location)) {
+            enqueueEvent(eventCount, event, error, text, code, location);
+            eventCount++;
+        } else {
+            eventDiscarded();
+        }
+    }
+
+    /**
+     * Release the line feeds preceding an event that was skipped, filtered,
+     * or captured. While no events are queued, the locations of earlier
+     * events may no longer be requested.
+     */
+    private void eventDiscarded() {
+        if (eventCount == 0) {
+            location.releaseLines();
+        }
+    }
+
+    /**
+     * Determine whether an event is rejected by the filter and may be
+     * discarded.
+     */
+    private boolean isFiltered(EDIStreamEvent event, Location where) {
+        if (filter == null || RETAINED_EVENTS.contains(event) || filter.accept(event, where)) {
+            return false;
+        }
+
+        final Validator validator = validator();
+
+        if (validator != null) {
+            /*
+             * Element events are examined to select an implementation and the
+             * reader obtains the length of binary data from its element.
+             */
+            return !validator.isPendingDiscrimination()
+                    && !(event == EDIStreamEvent.ELEMENT_DATA && validator.isBinaryElementLength());
+        }
+
+        return true;
+    }
+
+    /**
+     * Record element data and errors of the current segment in the segment
+     * view, when capturing. Events examined to select an implementation or to
+     * obtain the length of binary data are not captured and remain queued for
+     * the reader.
+     */
+    private boolean isCaptured(EDIStreamEvent event,
+                               EDIStreamValidationError error,
+                               CharSequence data,
+                               CharSequence code,
+                               Location where) {
+
+        if (segmentView == null || !segmentView.isCapturing()) {
+            return false;
+        }
+
+        final Validator validator = validator();
+
+        if (validator != null && (validator.isPendingDiscrimination()
+                || (event == EDIStreamEvent.ELEMENT_DATA && validator.isBinaryElementLength()))) {
+            return false;
+        }
+
+        switch (event) {
+        case ELEMENT_DATA:
+            segmentView.elementData(data, where, false);
+            break;
+        case ELEMENT_DATA_PARTIAL:
+            segmentView.elementData(data, where, true);
+            break;
+        case START_COMPOSITE:
+        case END_COMPOSITE:
+            break;
+        case SEGMENT_ERROR:
+        case ELEMENT_DATA_ERROR:
+        case ELEMENT_OCCURRENCE_ERROR:
+            segmentView.error(error, code, where);
+            break;
+        default:
+            return false;
+        }
+
+        return true;
     }
 
     private void enqueueEvent(int index,
@@ -439,7 +865,13 @@ public class ProxyEventHandler implements EventHandler {
 
         target.type = event;
         target.errorType = error;
-        target.setData(data);
+
+        if (textReferenced && data instanceof CharArraySequence && ((CharArraySequence) data).getText() != null) {
+            target.setDataReference((CharArraySequence) data);
+        } else {
+            target.setData(data);
+        }
+
         target.setReferenceCode(code);
         target.setLocation(location);
     }
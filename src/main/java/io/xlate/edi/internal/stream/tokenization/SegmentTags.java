@@ -0,0 +1,179 @@
+/*******************************************************************************
+ * Copyright 2020 xlate.io LLC, http://www.xlate.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package io.xlate.edi.internal.stream.tokenization;
+
+/**
+ * Symbol table of segment tags. Each 2 or 3 character ASCII tag is identified
+ * by an int ID formed from the tag's characters, allowing tags to be compared
+ * without allocating or comparing Strings. The ID of a tag is the same in
+ * every table, the table itself holds a single String instance for each tag
+ * seen by a reader.
+ */
+public class SegmentTags {
+
+    /**
+     * ID of any tag that can not be represented, e.g. due to its length.
+     */
+    public static final int NONE = -1;
+
+    public static final int ISA = ('I' << 16) | ('S' << 8) | 'A';
+    public static final int GS = ('G' << 16) | ('S' << 8);
+    public static final int ST = ('S' << 16) | ('T' << 8);
+    public static final int UNA = ('U' << 16) | ('N' << 8) | 'A';
+    public static final int UNH = ('U' << 16) | ('N' << 8) | 'H';
+
+    private int[] ids = new int[64];
+    private String[] tags = new String[64];
+    private int count = 0;
+
+    /**
+     * Retrieve the ID of a tag.
+     *
+     * @param tag
+     *            the segment tag
+     * @return the ID of the tag, or {@link #NONE} when the tag is not 2 or 3
+     *         ASCII characters
+     */
+    public static int of(CharSequence tag) {
+        final int length = tag.length();
+
+        if (length < 2 || length > 3) {
+            return NONE;
+        }
+
+        int id = 0;
+
+        for (int i = 0; i < 3; i++) {
+            final char c = i < length ? tag.charAt(i) : 0;
+
+            if (c > 0x7F || (c == 0 && i < length)) {
+                return NONE;
+            }
+
+            id = (id << 8) | c;
+        }
+
+        return id;
+    }
+
+    static int of(char[] text, int start, int length) {
+        if (length < 2 || length > 3) {
+            return NONE;
+        }
+
+        int id = 0;
+
+        for (int i = 0; i < 3; i++) {
+            final char c = i < length ? text[start + i] : 0;
+
+            if (c > 0x7F || (c == 0 && i < length)) {
+                return NONE;
+            }
+
+            id = (id << 8) | c;
+        }
+
+        return id;
+    }
+
+    /**
+     * Add a tag to the table if not already present.
+     *
+     * @param text
+     *            array holding the tag's characters
+     * @param start
+     *            offset of the tag in text
+     * @param length
+     *            length of the tag
+     * @return the ID of the tag, or {@link #NONE} when the tag is not 2 or 3
+     *         ASCII characters
+     */
+    public int intern(char[] text, int start, int length) {
+        final int id = of(text, start, length);
+
+        if (id != NONE && indexOf(id) < 0) {
+            if (count == ids.length / 2) {
+                rehash(ids.length * 2);
+            }
+
+            insert(id, new String(text, start, length));
+        }
+
+        return id;
+    }
+
+    /**
+     * Retrieve the String for a tag previously added to the table.
+     *
+     * @param id
+     *            the tag's ID
+     * @return the tag, or null if the tag has not been added
+     */
+    public String getTag(int id) {
+        final int index = indexOf(id);
+        return index < 0 ? null : tags[index];
+    }
+
+    private int indexOf(int id) {
+        if (id == NONE) {
+            return -1;
+        }
+
+        final int mask = ids.length - 1;
+        int index = hash(id) & mask;
+
+        while (tags[index] != null) {
+            if (ids[index] == id) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    private void insert(int id, String tag) {
+        final int mask = ids.length - 1;
+        int index = hash(id) & mask;
+
+        while (tags[index] != null) {
+            index = (index + 1) & mask;
+        }
+
+        ids[index] = id;
+        tags[index] = tag;
+        count++;
+    }
+
+    private void rehash(int capacity) {
+        final int[] oldIds = ids;
+        final String[] oldTags = tags;
+
+        ids = new int[capacity];
+        tags = new String[capacity];
+        count = 0;
+
+        for (int i = 0; i < oldTags.length; i++) {
+            if (oldTags[i] != null) {
+                insert(oldIds[i], oldTags[i]);
+            }
+        }
+    }
+
+    private static int hash(int id) {
+        return (id * 0x9E3779B1) >>> 16;
+    }
+}
@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright 2020 xlate.io LLC, http://www.xlate.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package io.xlate.edi.internal.stream.tokenization;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.UnmappableCharacterException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Character reader for charsets where every byte maps directly to one
+ * character, e.g. US-ASCII, ISO-8859-1, or the EDIFACT UNOA/UNOB syntax
+ * levels read as either of those. Raw bytes are translated via a 256-entry
+ * table and the {@link CharsetDecoder} is bypassed entirely.
+ */
+class SingleByteCharacterReader extends CharacterReader {
+
+    private static final int MALFORMED = -1;
+    private static final int UNMAPPABLE = -2;
+
+    private static final Map<String, int[]> tables = new ConcurrentHashMap<>();
+
+    private final int[] table;
+
+    /*
+     * Backing array of heap buffers, null for direct (e.g. memory-mapped)
+     * buffers which are read via absolute gets.
+     */
+    private byte[] array;
+
+    /*
+     * Read position and limit within the byte buffer, tracked separately from
+     * the buffer to keep the per-character path short.
+     */
+    private int position;
+    private int limit;
+
+    /*
+     * When false, the buffer's own position is current, e.g. after bytes
+     * were consumed in bulk via #readBytes, and position/limit must be
+     * loaded from the buffer before the next read.
+     */
+    private boolean attached;
+
+    SingleByteCharacterReader(InputSource source, Charset charset) {
+        super(source);
+        this.table = tables.computeIfAbsent(charset.name(), name -> buildTable(charset));
+    }
+
+    static boolean isSupported(Charset charset) {
+        return charset.canEncode()
+                && charset.newEncoder().maxBytesPerChar() == 1f
+                && charset.newDecoder().maxCharsPerByte() == 1f;
+    }
+
+    static int[] buildTable(Charset charset) {
+        final CharsetDecoder decoder = charset.newDecoder();
+        final ByteBuffer in = ByteBuffer.allocate(1);
+        final CharBuffer out = CharBuffer.allocate(1);
+        final int[] result = new int[256];
+
+        for (int i = 0; i < result.length; i++) {
+            in.clear();
+            in.put((byte) i);
+            in.flip();
+            out.clear();
+            decoder.reset();
+
+            CoderResult cr = decoder.decode(in, out, true);
+
+            if (cr.isMalformed()) {
+                result[i] = MALFORMED;
+            } else if (cr.isUnmappable()) {
+                result[i] = UNMAPPABLE;
+            } else {
+                result[i] = out.get(0);
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    int read() throws IOException {
+        if (position >= limit && !fill()) {
+            return -1;
+        }
+
+        final int next = table[byteAt(position)];
+
+        if (next < 0) {
+            // Leave the invalid byte in place, it will be reported on each read
+            throw invalidInput(next);
+        }
+
+        position++;
+        return next;
+    }
+
+    @Override
+    void unread() {
+        position--;
+    }
+
+    @Override
+    int readByte() throws IOException {
+        if (position >= limit && !fill()) {
+            return -1;
+        }
+
+        return byteAt(position++);
+    }
+
+    @Override
+    void reset(InputSource source) {
+        super.reset(source);
+        array = null;
+        position = 0;
+        limit = 0;
+        attached = false;
+    }
+
+    @Override
+    void releaseCharacters() {
+        // No read-ahead, only the buffer's position must be brought up to date
+        detach();
+    }
+
+    @Override
+    ByteBuffer readBytes() throws IOException {
+        detach();
+        return super.readBytes();
+    }
+
+    @Override
+    public void close() throws IOException {
+        // The source reports the buffer's position as the input consumed
+        detach();
+        super.close();
+    }
+
+    void detach() {
+        if (attached) {
+            bytes.position(position);
+            attached = false;
+            position = 0;
+            limit = 0;
+        }
+    }
+
+    int byteAt(int index) {
+        return (array != null ? array[index] : bytes.get(index)) & 0xFF;
+    }
+
+    boolean fill() throws IOException {
+        if (attached) {
+            bytes.position(position);
+        }
+
+        while (!bytes.hasRemaining()) {
+            if (!readBlock()) {
+                position = limit = bytes.position();
+                return false;
+            }
+        }
+
+        array = bytes.hasArray() && bytes.arrayOffset() == 0 ? bytes.array() : null;
+        position = bytes.position();
+        limit = bytes.limit();
+        attached = true;
+        return true;
+    }
+
+    static CharacterCodingException invalidInput(int type) {
+        if (type == UNMAPPABLE) {
+            return new UnmappableCharacterException(1);
+        }
+        return new MalformedInputException(1);
+    }
+}
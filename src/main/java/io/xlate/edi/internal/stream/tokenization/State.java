@@ -178,6 +178,39 @@ public enum State {
         };
     // @formatter:on
 
+    private static final State[] VALUES = values();
+    private static final int CLASS_COUNT = CharacterClass.values().length;
+
+    /*
+     * The transition table compiled to a single array indexed by state ordinal
+     * and character class code, giving the ordinal of the next state. Used by
+     * the Lexer to run its per-character loop on primitive values.
+     */
+    private static final byte[] TRANSITIONS = new byte[VALUES.length * CLASS_COUNT];
+
+    /*
+     * States where the only action taken is to append the current character
+     * to the lexer's buffer, indexed by ordinal.
+     */
+    private static final boolean[] BUFFERED = new boolean[VALUES.length];
+
+    static {
+        for (State state : VALUES) {
+            for (int clazz = 0; clazz < CLASS_COUNT; clazz++) {
+                State next = state.code < 0 ? INVALID : TRANSITION_TABLE[state.code][clazz];
+                TRANSITIONS[state.ordinal() * CLASS_COUNT + clazz] = (byte) next.ordinal();
+            }
+        }
+
+        for (State state : new State[] { HEADER_TAG_I, HEADER_TAG_N, HEADER_TAG_S, HEADER_TAG_U,
+                                         TAG_1, TAG_2, TAG_3,
+                                         TRAILER_TAG_I, TRAILER_TAG_E, TRAILER_TAG_A,
+                                         TRAILER_TAG_U, TRAILER_TAG_N, TRAILER_TAG_Z,
+                                         ELEMENT_DATA, ELEMENT_INVALID_DATA, TRAILER_ELEMENT_DATA }) {
+            BUFFERED[state.ordinal()] = true;
+        }
+    }
+
     private int code;
 
     State(int code) {
@@ -187,4 +220,25 @@ public enum State {
     public State transition(CharacterClass clazz) {
         return TRANSITION_TABLE[code][clazz.code];
     }
+
+    /**
+     * Primitive variant of {@link #transition(CharacterClass)}.
+     *
+     * @param state
+     *            ordinal of the current state
+     * @param clazz
+     *            code of the current character's class
+     * @return ordinal of the next state
+     */
+    static int transition(int state, int clazz) {
+        return TRANSITIONS[state * CLASS_COUNT + clazz];
+    }
+
+    static boolean isBuffered(int state) {
+        return BUFFERED[state];
+    }
+
+    static State valueOf(int ordinal) {
+        return VALUES[ordinal];
+    }
 }
@@ -18,6 +18,13 @@ public class StreamEvent {
     CharBuffer data;
     boolean dataNull = true;
 
+    /*
+     * View of text owned by the lexer, used in place of `data` when the
+     * text is referenced rather than copied.
+     */
+    CharBuffer dataView;
+    boolean dataReferenced = false;
+
     CharBuffer referenceCode;
     boolean referenceCodeNull = true;
 
@@ -25,7 +32,7 @@ public class StreamEvent {
 
     @Override
     public String toString() {
-        return String.format(TOSTRING_FORMAT, type, errorType, data, referenceCode, location);
+        return String.format(TOSTRING_FORMAT, type, errorType, getData(), referenceCode, location);
     }
 
     public EDIStreamEvent getType() {
@@ -33,10 +40,35 @@ public class StreamEvent {
     }
 
     public CharBuffer getData() {
-        return dataNull ? null : data;
+        if (dataNull) {
+            return null;
+        }
+        return dataReferenced ? dataView : data;
+    }
+
+    /**
+     * Reference the given text without copying it. The text must remain
+     * unmodified for as long as this event is in use.
+     *
+     * @param text
+     *            the text to reference
+     */
+    public void setDataReference(CharArraySequence text) {
+        final char[] array = text.getText();
+
+        if (dataView == null || dataView.array() != array) {
+            dataView = CharBuffer.wrap(array);
+        }
+
+        final int start = text.getStart();
+        dataView.limit(start + text.length());
+        dataView.position(start);
+        dataReferenced = true;
+        dataNull = false;
     }
 
     public void setData(CharSequence data) {
+        this.dataReferenced = false;
         if (data instanceof CharArraySequence) {
             this.data = put(this.data, (CharArraySequence) data);
             this.dataNull = false;
@@ -0,0 +1,542 @@
+/*******************************************************************************
+ * Copyright 2020 xlate.io LLC, http://www.xlate.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package io.xlate.edi.internal.stream.tokenization;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.xlate.edi.internal.stream.tokenization.DialectFactory.DialectTag;
+
+/**
+ * Locates the interchanges, functional groups and transactions in EDI input
+ * held in memory or in a memory-mapped file. Only the delimiters given by each
+ * interchange header are examined, segments are not lexed or validated. Each
+ * transaction found can be read independently of the others, together with
+ * the header and trailer segments of the interchange and group that enclose
+ * it.
+ *
+ * The scan operates on the encoded bytes, so the encoding must be ASCII
+ * compatible and the delimiters must each be encoded as a single byte that can
+ * not occur within the encoding of another character (see
+ * {@link #isSupported(Charset)}). Binary data elements are not supported.
+ */
+public class TransactionScanner {
+
+    private static final int NONE = -1;
+
+    // Offsets of the delimiters in the service string advice, UNA
+    private static final int UNA_ELEMENT_OFFSET = 4;
+    private static final int UNA_RELEASE_OFFSET = 6;
+    private static final int UNA_SEGMENT_OFFSET = 8;
+
+    private static final int UNA = tagCode(EDIFACTDialect.UNA);
+    private static final int[] X12_TAGS = tagCodes("ISA", "IEA", "GS", "GE", "ST", "SE");
+    private static final int[] EDIFACT_TAGS = tagCodes("UNB", "UNZ", "UNG", "UNE", "UNH", "UNT");
+
+    // Mapped file, null when the input is held in memory
+    private final FileChannel channel;
+    private final long windowSize;
+    private final long size;
+
+    /*
+     * The mapped window of the file (or all input held in memory) and the
+     * position of its first byte. The anchor is the first byte that must
+     * remain in the window when the next window is mapped: the start of the
+     * current segment, of the open transaction, or of an interchange whose
+     * header is not yet complete.
+     */
+    private ByteBuffer window;
+    private long windowStart = 0;
+    private long anchor = 0;
+
+    /**
+     * Create a scanner of input held in memory.
+     *
+     * @param data
+     *            the input, between the buffer's position and limit
+     */
+    public TransactionScanner(ByteBuffer data) {
+        this.channel = null;
+        this.windowSize = 0;
+        this.window = data.slice();
+        this.size = window.limit();
+    }
+
+    /**
+     * Create a scanner of the contents of a file. The file is memory-mapped
+     * in large windows, the channel may be closed once the scan is complete.
+     *
+     * @param channel
+     *            the channel of the file
+     * @throws IOException
+     *             when the size of the file can not be determined
+     */
+    public TransactionScanner(FileChannel channel) throws IOException {
+        this(channel, InputSource.MAPPED_WINDOW_SIZE);
+    }
+
+    TransactionScanner(FileChannel channel, long windowSize) throws IOException {
+        this.channel = channel;
+        this.windowSize = windowSize;
+        this.window = ByteBuffer.allocate(0);
+        this.size = channel.size();
+    }
+
+    /**
+     * Determine whether input in the given encoding can be scanned. The
+     * encoding must be ASCII compatible, i.e. segment tags and white space
+     * are encoded as their ASCII values, and either encode each character
+     * with a single byte or be UTF-8.
+     *
+     * @param charset
+     *            the encoding of the input
+     * @return true if each delimiter is always encoded as a single byte
+     */
+    public static boolean isSupported(Charset charset) {
+        if (StandardCharsets.UTF_8.equals(charset)) {
+            return true;
+        }
+        return charset.canEncode() && charset.newEncoder().maxBytesPerChar() <= 1f && isAsciiCompatible(charset);
+    }
+
+    static boolean isAsciiCompatible(Charset charset) {
+        final char[] ascii = new char[0x80];
+
+        for (int i = 0; i < ascii.length; i++) {
+            ascii[i] = (char) i;
+        }
+
+        final byte[] encoded = new String(ascii).getBytes(charset);
+
+        if (encoded.length != ascii.length) {
+            return false;
+        }
+
+        for (int i = 0; i < encoded.length; i++) {
+            if (encoded[i] != i) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Scan the input for transactions.
+     *
+     * @return the transactions of all interchanges in the input, in the order
+     *         they occur
+     * @throws EDIException
+     *             when an interchange header can not be recognized
+     * @throws IOException
+     *             when the file can not be mapped
+     */
+    public List<Transaction> scan() throws EDIException, IOException {
+        List<Transaction> transactions = new ArrayList<>();
+        long offset = skipWhitespace(0, NONE);
+
+        while (offset < size) {
+            offset = scanInterchange(offset, transactions);
+            offset = skipWhitespace(offset, NONE);
+        }
+
+        return transactions;
+    }
+
+    long scanInterchange(long start, List<Transaction> transactions) throws EDIException, IOException {
+        anchor = start;
+
+        final DialectTag type = DialectTag.fromValue(tagAt(start));
+        final int segmentTerminator;
+        final int elementSeparator;
+        final int releaseIndicator;
+        final int[] tags;
+
+        if (type == DialectTag.X12) {
+            checkHeader(start);
+            segmentTerminator = delimiterAt(start + X12Dialect.X12_SEGMENT_OFFSET);
+            elementSeparator = delimiterAt(start + X12Dialect.X12_ELEMENT_OFFSET);
+            releaseIndicator = NONE;
+            tags = X12_TAGS;
+        } else if (type == DialectTag.EDIFACT_A) {
+            requireInput(start, EDIFACTDialect.EDIFACT_UNA_LENGTH);
+            segmentTerminator = delimiterAt(start + UNA_SEGMENT_OFFSET);
+            elementSeparator = delimiterAt(start + UNA_ELEMENT_OFFSET);
+            releaseIndicator = isDelimiter(byteAt(start + UNA_RELEASE_OFFSET)) ? delimiterAt(start + UNA_RELEASE_OFFSET) : NONE;
+            tags = EDIFACT_TAGS;
+        } else if (type == DialectTag.EDIFACT_B) {
+            segmentTerminator = EDIFACTDialect.DFLT_SEGMENT_TERMINATOR;
+            elementSeparator = EDIFACTDialect.DFLT_DATA_ELEMENT_SEPARATOR;
+            releaseIndicator = EDIFACTDialect.DFLT_RELEASE_CHARACTER;
+            tags = EDIFACT_TAGS;
+        } else {
+            throw new EDIException(EDIException.UNSUPPORTED_DIALECT, tagAt(start));
+        }
+
+        final Envelope interchange = new Envelope();
+        Envelope group = null;
+        long transactionStart = NONE;
+        long offset = start;
+
+        while (offset < size) {
+            final long segmentStart = skipWhitespace(offset, segmentTerminator);
+
+            if (segmentStart >= size) {
+                offset = segmentStart;
+                break;
+            }
+
+            if (transactionStart != NONE) {
+                anchor = transactionStart;
+            } else if (interchange.header != null) {
+                anchor = segmentStart;
+            }
+
+            final long tagEnd = scanTag(segmentStart, elementSeparator, segmentTerminator);
+            final int tag = tagCode(segmentStart, tagEnd);
+            final long segmentEnd;
+
+            if (tag == UNA) {
+                // Service string advice is fixed length and contains the delimiters themselves
+                segmentEnd = Math.min(segmentStart + EDIFACTDialect.EDIFACT_UNA_LENGTH, size);
+            } else {
+                segmentEnd = scanSegment(tagEnd, segmentTerminator, releaseIndicator);
+            }
+
+            offset = segmentEnd;
+
+            /*
+             * A transaction missing its trailer ends at the next control
+             * segment. It is retained so that its reader reports the error.
+             */
+            if (tag == tags[0]) {
+                // Header segment, preceded by the service string advice (if any)
+                interchange.header = slice(start, segmentEnd);
+            } else if (tag == tags[2]) {
+                transactionStart = endTransaction(transactions, interchange, group, transactionStart, segmentStart);
+                group = new Envelope();
+                group.header = slice(segmentStart, segmentEnd);
+            } else if (tag == tags[4]) {
+                endTransaction(transactions, interchange, group, transactionStart, segmentStart);
+                transactionStart = segmentStart;
+            } else if (tag == tags[5]) {
+                transactionStart = endTransaction(transactions, interchange, group, transactionStart, segmentEnd);
+            } else if (tag == tags[3]) {
+                transactionStart = endTransaction(transactions, interchange, group, transactionStart, segmentStart);
+
+                if (group != null) {
+                    group.trailer = slice(segmentStart, segmentEnd);
+                    group = null;
+                }
+            } else if (tag == tags[1]) {
+                transactionStart = endTransaction(transactions, interchange, group, transactionStart, segmentStart);
+                interchange.trailer = slice(segmentStart, segmentEnd);
+                break;
+            }
+        }
+
+        // Input ended within a transaction
+        endTransaction(transactions, interchange, group, transactionStart, offset);
+        return offset;
+    }
+
+    /**
+     * Add the transaction beginning at the given start, if any, to the list of
+     * transactions.
+     *
+     * @return {@link #NONE}, no transaction remains open
+     */
+    long endTransaction(List<Transaction> transactions, Envelope interchange, Envelope group, long start, long end) {
+        if (start != NONE) {
+            transactions.add(new Transaction(interchange, group, slice(start, end)));
+        }
+        return NONE;
+    }
+
+    /**
+     * Verify that the X12 interchange header is complete and that the element
+     * separator occurs only at the fixed positions of its elements.
+     */
+    void checkHeader(long start) throws EDIException, IOException {
+        requireInput(start, X12Dialect.X12_ISA_LENGTH);
+        final int elementSeparator = byteAt(start + X12Dialect.X12_ELEMENT_OFFSET);
+        int e = 0;
+
+        for (int i = 0; i < X12Dialect.X12_ISA_LENGTH; i++) {
+            if (byteAt(start + i) == elementSeparator && X12Dialect.X12_ISA_TOKENS[e++] != i) {
+                throw new EDIException(EDIException.INVALID_STATE, "Invalid header segment");
+            }
+        }
+    }
+
+    void requireInput(long start, int length) throws EDIException {
+        if (size - start < length) {
+            throw new EDIException(EDIException.INCOMPLETE_STREAM, "Incomplete header segment");
+        }
+    }
+
+    /**
+     * Retrieve the value of a delimiter from the input. Delimiters are ASCII
+     * characters, encoded as their ASCII value by every supported encoding.
+     *
+     * @param position
+     *            position of the delimiter in the input
+     * @return the value of the byte encoding the delimiter
+     * @throws EDIException
+     *             when the delimiter is not an ASCII character
+     */
+    int delimiterAt(long position) throws EDIException, IOException {
+        final int delimiter = byteAt(position);
+
+        if (delimiter >= 0x80) {
+            throw new EDIException(EDIException.UNSUPPORTED_DIALECT, "Delimiters must be ASCII characters");
+        }
+
+        return delimiter;
+    }
+
+    static boolean isDelimiter(int value) {
+        return value != 0 && value != ' ';
+    }
+
+    /**
+     * Read the (up to three character) tag beginning at the given position.
+     */
+    String tagAt(long position) throws IOException {
+        final StringBuilder tag = new StringBuilder(3);
+
+        for (long i = position, m = Math.min(position + 3, size); i < m; i++) {
+            tag.append((char) byteAt(i));
+        }
+
+        return tag.toString();
+    }
+
+    /**
+     * Pack the bytes of a segment tag into an int. Tags longer than three
+     * characters, never those of control segments, are represented as
+     * {@link #NONE}.
+     */
+    int tagCode(long start, long end) throws IOException {
+        if (end - start > 3) {
+            return NONE;
+        }
+
+        int code = 0;
+
+        for (long i = start; i < end; i++) {
+            code = (code << 8) | byteAt(i);
+        }
+
+        return code;
+    }
+
+    static int tagCode(String tag) {
+        int code = 0;
+
+        for (int i = 0; i < tag.length(); i++) {
+            code = (code << 8) | tag.charAt(i);
+        }
+
+        return code;
+    }
+
+    static int[] tagCodes(String... tags) {
+        int[] codes = new int[tags.length];
+
+        for (int i = 0; i < tags.length; i++) {
+            codes[i] = tagCode(tags[i]);
+        }
+
+        return codes;
+    }
+
+    long skipWhitespace(long offset, int segmentTerminator) throws IOException {
+        while (offset < size) {
+            final int value = byteAt(offset);
+
+            if (value == segmentTerminator || value > ' ') {
+                break;
+            }
+
+            offset++;
+        }
+        return offset;
+    }
+
+    long scanTag(long offset, int elementSeparator, int segmentTerminator) throws IOException {
+        while (offset < size) {
+            final int value = byteAt(offset);
+
+            if (value == elementSeparator || value == segmentTerminator) {
+                break;
+            }
+
+            offset++;
+        }
+        return offset;
+    }
+
+    long scanSegment(long offset, int segmentTerminator, int releaseIndicator) throws IOException {
+        while (offset < size) {
+            final int value = byteAt(offset++);
+
+            if (value == segmentTerminator) {
+                break;
+            }
+
+            if (value == releaseIndicator) {
+                // The next character is literal
+                offset++;
+            }
+        }
+
+        return Math.min(offset, size);
+    }
+
+    int byteAt(long position) throws IOException {
+        long index = position - windowStart;
+
+        if (index >= window.limit()) {
+            map(position);
+            index = position - windowStart;
+        }
+
+        return window.get((int) index) & 0xFF;
+    }
+
+    /**
+     * Map the window of the file beginning at the anchor and containing the
+     * given position. Windows are enlarged as needed to hold transactions
+     * larger than the window size.
+     */
+    void map(long position) throws IOException {
+        final long required = position - anchor + 1;
+
+        if (required > Integer.MAX_VALUE) {
+            throw new IOException("Transactions larger than 2 GB are not supported");
+        }
+
+        final long length = Math.min(size - anchor, Math.min(Math.max(windowSize, required * 2), Integer.MAX_VALUE));
+        window = channel.map(FileChannel.MapMode.READ_ONLY, anchor, length);
+        windowStart = anchor;
+    }
+
+    /**
+     * Create a view of part of the input, sharing the bytes of the window
+     * (which remain mapped until no longer referenced).
+     */
+    ByteBuffer slice(long start, long end) {
+        final ByteBuffer part = window.duplicate();
+        part.limit((int) (end - windowStart));
+        part.position((int) (start - windowStart));
+        return part.slice();
+    }
+
+    /**
+     * Header and trailer segments of an interchange or functional group.
+     */
+    static class Envelope {
+        ByteBuffer header;
+        ByteBuffer trailer;
+    }
+
+    /**
+     * A single transaction located by the scanner.
+     */
+    public static class Transaction {
+        private final Envelope interchange;
+        private final Envelope group;
+        private final ByteBuffer segments;
+
+        Transaction(Envelope interchange, Envelope group, ByteBuffer segments) {
+            this.interchange = interchange;
+            this.group = group;
+            this.segments = segments;
+        }
+
+        /**
+         * Open a stream over the transaction's segments, preceded by the
+         * headers of its interchange and group and followed by their
+         * trailers. The bytes are not copied.
+         *
+         * @return stream of the standalone transaction
+         */
+        public InputStream getInput() {
+            List<InputStream> parts = new ArrayList<>(5);
+            add(parts, interchange.header);
+
+            if (group != null) {
+                add(parts, group.header);
+            }
+
+            add(parts, segments);
+
+            if (group != null) {
+                add(parts, group.trailer);
+            }
+
+            add(parts, interchange.trailer);
+            return new SequenceInputStream(Collections.enumeration(parts));
+        }
+
+        static void add(List<InputStream> parts, ByteBuffer part) {
+            if (part != null) {
+                parts.add(new BufferInputStream(part.duplicate()));
+            }
+        }
+    }
+
+    /**
+     * Stream of the bytes of a buffer.
+     */
+    static class BufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return length == 0 ? 0 : -1;
+            }
+
+            final int count = Math.min(length, buffer.remaining());
+            buffer.get(target, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
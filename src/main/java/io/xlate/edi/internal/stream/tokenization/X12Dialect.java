@@ -15,6 +15,8 @@
  ******************************************************************************/
 package io.xlate.edi.internal.stream.tokenization;
 
+import java.nio.charset.Charset;
+
 import io.xlate.edi.stream.EDIStreamConstants.Standards;
 import io.xlate.edi.stream.Location;
 
@@ -26,13 +28,13 @@ public class X12Dialect implements Dialect {
     static final char DFLT_COMPONENT_ELEMENT_SEPARATOR = ':';
     static final char DFLT_REPETITION_SEPARATOR = '^';
 
-    private static final int X12_ISA_LENGTH = 106;
-    private static final int X12_ELEMENT_OFFSET = 3;
+    static final int X12_ISA_LENGTH = 106;
+    static final int X12_ELEMENT_OFFSET = 3;
     private static final int X12_COMPONENT_OFFSET = 104;
-    private static final int X12_SEGMENT_OFFSET = 105;
+    static final int X12_SEGMENT_OFFSET = 105;
     private static final int X12_REPEAT_OFFSET = 82;
 
-    private static final int[] X12_ISA_TOKENS = { 3, 6, 17, 20, 31, 34, 50, 53, 69, 76, 81, 83, 89, 99, 101, 103 };
+    static final int[] X12_ISA_TOKENS = { 3, 6, 17, 20, 31, 34, 50, 53, 69, 76, 81, 83, 89, 99, 101, 103 };
 
     private String[] version;
     char[] header;
@@ -113,6 +115,12 @@ public class X12Dialect implements Dialect {
         return ISA;
     }
 
+    @Override
+    public Charset getDeclaredCharset() {
+        // ISA does not identify a charset, it is agreed upon by the trading partners
+        return null;
+    }
+
     @Override
     public boolean isConfirmed() {
         return initialized;
@@ -124,10 +132,15 @@ public class X12Dialect implements Dialect {
     }
 
     @Override
-    public boolean isServiceAdviceSegment(String tag) {
+    public boolean isServiceAdviceSegment(int tagId) {
         return false; // X12 does not use a service advice string
     }
 
+    @Override
+    public boolean isTrackedSegment(int tagId) {
+        return tagId == SegmentTags.GS || tagId == SegmentTags.ST;
+    }
+
     @Override
     public boolean appendHeader(CharacterSet characters, char value) {
         index++;
@@ -202,8 +215,8 @@ public class X12Dialect implements Dialect {
     }
 
     @Override
-    public void elementData(CharSequence data, Location location) {
-        if ("GS".equals(location.getSegmentTag())) {
+    public void elementData(int tagId, CharSequence data, Location location) {
+        if (tagId == SegmentTags.GS) {
             switch (location.getElementPosition()) {
             case 1:
                 clearTransactionVersion();
@@ -220,7 +233,7 @@ public class X12Dialect implements Dialect {
             default:
                 break;
             }
-        } else if ("ST".equals(location.getSegmentTag()) && location.getElementPosition() == 3 && data.length() > 0) {
+        } else if (tagId == SegmentTags.ST && location.getElementPosition() == 3 && data.length() > 0) {
             transactionVersion[TX_VERSION] = data.toString();
             updateTransactionVersionString(transactionVersion);
         }
@@ -19,6 +19,7 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Set;
 
+import io.xlate.edi.internal.schema.CodeSet;
 import io.xlate.edi.internal.stream.tokenization.CharacterSet;
 import io.xlate.edi.internal.stream.tokenization.Dialect;
 import io.xlate.edi.internal.stream.tokenization.EDIException;
@@ -49,7 +50,7 @@ class AlphaNumericValidator extends ElementValidator {
 
         Set<String> valueSet = element.getValueSet(dialect.getTransactionVersionString());
 
-        if (!valueSet.isEmpty() && !valueSet.contains(value.toString())) {
+        if (!valueSet.isEmpty() && !CodeSet.contains(valueSet, value)) {
             errors.add(EDIStreamValidationError.INVALID_CODE_VALUE);
         } else {
             for (int i = 0; i < length; i++) {
@@ -70,7 +71,7 @@ class AlphaNumericValidator extends ElementValidator {
 
         Set<String> valueSet = element.getValueSet();
 
-        if (!valueSet.isEmpty() && !valueSet.contains(value.toString())) {
+        if (!valueSet.isEmpty() && !CodeSet.contains(valueSet, value)) {
             throw new EDIValidationException(EDIStreamEvent.ELEMENT_DATA, EDIStreamValidationError.INVALID_CODE_VALUE, null, value);
         }
 
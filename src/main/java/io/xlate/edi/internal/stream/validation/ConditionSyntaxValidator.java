@@ -30,11 +30,11 @@ class ConditionSyntaxValidator implements SyntaxValidator {
     }
 
     @Override
-    public void validate(EDISyntaxRule syntax, UsageNode structure, ValidationEventHandler handler) {
-        SyntaxStatus status = scanSyntax(syntax, structure.getChildren());
+    public void validate(EDISyntaxRule syntax, UsageNode structure, int[] usage, ValidationEventHandler handler) {
+        SyntaxStatus status = scanSyntax(syntax, structure.getChildren(), usage);
 
         if (status.anchorPresent && status.elementCount < syntax.getPositions().size()) {
-            signalConditionError(syntax, structure, handler);
+            signalConditionError(syntax, structure, usage, handler);
         }
     }
 }
@@ -30,11 +30,11 @@ class RequiredSyntaxValidator implements SyntaxValidator {
     }
 
     @Override
-    public void validate(EDISyntaxRule syntax, UsageNode structure, ValidationEventHandler handler) {
-        SyntaxStatus status = scanSyntax(syntax, structure.getChildren());
+    public void validate(EDISyntaxRule syntax, UsageNode structure, int[] usage, ValidationEventHandler handler) {
+        SyntaxStatus status = scanSyntax(syntax, structure.getChildren(), usage);
 
         if (status.elementCount < 1) {
-            signalConditionError(syntax, structure, handler);
+            signalConditionError(syntax, structure, usage, handler);
         }
     }
 }
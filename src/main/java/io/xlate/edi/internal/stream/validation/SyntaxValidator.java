@@ -50,7 +50,7 @@ interface SyntaxValidator {
         protected boolean anchorPresent = false;
     }
 
-    default SyntaxStatus scanSyntax(EDISyntaxRule syntax, List<UsageNode> children) {
+    default SyntaxStatus scanSyntax(EDISyntaxRule syntax, List<UsageNode> children, int[] usage) {
         final SyntaxStatus status = new SyntaxStatus();
         final AtomicBoolean anchorPosition = new AtomicBoolean(true);
 
@@ -59,7 +59,7 @@ interface SyntaxValidator {
               .filter(position -> position < children.size() + 1)
               .map(position -> children.get(position - 1))
               .forEach(node -> {
-                  if (node.isUsed()) {
+                  if (node.isUsed(usage)) {
                       status.elementCount++;
 
                       if (anchorPosition.get()) {
@@ -73,7 +73,7 @@ interface SyntaxValidator {
         return status;
     }
 
-    default void signalConditionError(EDISyntaxRule syntax, UsageNode structure, ValidationEventHandler handler) {
+    default void signalConditionError(EDISyntaxRule syntax, UsageNode structure, int[] usage, ValidationEventHandler handler) {
         final List<UsageNode> children = structure.getChildren();
         final int limit = children.size() + 1;
 
@@ -83,7 +83,7 @@ interface SyntaxValidator {
 
             if (position < limit) {
                 UsageNode node = children.get(position - 1);
-                used = node.isUsed();
+                used = node.isUsed(usage);
                 referenceCode = node.getCode();
             } else {
                 used = false;
@@ -105,13 +105,13 @@ interface SyntaxValidator {
         }
     }
 
-    default void signalExclusionError(EDISyntaxRule syntax, UsageNode structure, ValidationEventHandler handler) {
+    default void signalExclusionError(EDISyntaxRule syntax, UsageNode structure, int[] usage, ValidationEventHandler handler) {
         final List<UsageNode> children = structure.getChildren();
         final int limit = children.size() + 1;
         int tally = 0;
 
         for (int position : syntax.getPositions()) {
-            if (position < limit && children.get(position - 1).isUsed() && ++tally > 1) {
+            if (position < limit && children.get(position - 1).isUsed(usage) && ++tally > 1) {
                 final int element = getElementPosition(structure, position);
                 final int component = getComponentPosition(structure, position);
 
@@ -138,5 +138,5 @@ interface SyntaxValidator {
         return position;
     }
 
-    void validate(EDISyntaxRule syntax, UsageNode structure, ValidationEventHandler handler);
+    void validate(EDISyntaxRule syntax, UsageNode structure, int[] usage, ValidationEventHandler handler);
 }
@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright 2020 xlate.io LLC, http://www.xlate.io
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package io.xlate.edi.internal.stream.validation;
+
+import java.util.Arrays;
+
+import io.xlate.edi.internal.stream.tokenization.SegmentTags;
+
+/**
+ * Immutable map of segment tag IDs (see {@link SegmentTags}) to usage nodes,
+ * using open addressing in parallel arrays so that lookups neither box the
+ * key nor allocate. When several nodes have the same tag, the first node
+ * added is retained.
+ */
+final class TagIndex {
+
+    private final int[] keys;
+    private final UsageNode[] values;
+    private final int mask;
+
+    TagIndex(Iterable<UsageNode> nodes, int count) {
+        int capacity = Integer.highestOneBit(Math.max(count, 2) * 2 - 1) << 1;
+        keys = new int[capacity];
+        values = new UsageNode[capacity];
+        mask = capacity - 1;
+        Arrays.fill(keys, SegmentTags.NONE);
+
+        for (UsageNode node : nodes) {
+            if (node != null && node.getTagId() != SegmentTags.NONE) {
+                put(node.getTagId(), node);
+            }
+        }
+    }
+
+    static int hash(int tagId) {
+        final int h = tagId * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void put(int tagId, UsageNode node) {
+        int i = hash(tagId) & mask;
+
+        while (keys[i] != SegmentTags.NONE) {
+            if (keys[i] == tagId) {
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+
+        keys[i] = tagId;
+        values[i] = node;
+    }
+
+    /**
+     * Retrieve the first node added with the given tag ID.
+     *
+     * @param tagId
+     *            the ID of the segment tag
+     * @return the node with the tag, or null if no such node was added
+     */
+    UsageNode get(int tagId) {
+        int i = hash(tagId) & mask;
+        int key;
+
+        while ((key = keys[i]) != SegmentTags.NONE) {
+            if (key == tagId) {
+                return values[i];
+            }
+            i = (i + 1) & mask;
+        }
+
+        return null;
+    }
+}
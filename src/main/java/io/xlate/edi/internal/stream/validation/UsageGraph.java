@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * Copyright 2020 xlate.io LLC, http://www.xlate.io
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package io.xlate.edi.internal.stream.validation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.xlate.edi.internal.schema.StaEDISchema;
+import io.xlate.edi.internal.stream.tokenization.SegmentTags;
+import io.xlate.edi.schema.EDIComplexType;
+import io.xlate.edi.schema.EDIReference;
+import io.xlate.edi.schema.EDIType;
+import io.xlate.edi.schema.Schema;
+import io.xlate.edi.schema.implementation.CompositeImplementation;
+import io.xlate.edi.schema.implementation.EDITypeImplementation;
+import io.xlate.edi.schema.implementation.LoopImplementation;
+import io.xlate.edi.schema.implementation.SegmentImplementation;
+
+/**
+ * The usage trees of a schema's standard and implementation, compiled once per
+ * schema and shared by all validators of the schema. The nodes do not hold
+ * the state of a validator, each validator counts the usage of the nodes in
+ * an array of {@link #size()} entries indexed by {@link UsageNode#getNumber()}.
+ */
+final class UsageGraph {
+
+    private final UsageNode root;
+    private final UsageNode implRoot;
+    private final int size;
+
+    // All segments of the standard tree, by tag
+    private final TagIndex segments;
+
+    // Number of the next node and the segments found while the graph is being built
+    private int nextNumber = 0;
+    private final List<UsageNode> segmentNodes = new ArrayList<>();
+
+    private UsageGraph(Schema schema) {
+        Validator.LOGGER.finer(() -> "Creating usage tree");
+        root = buildTree(null, 0, referenceOf(schema.getStandard(), 1, 1), -1);
+
+        if (schema.getImplementation() != null) {
+            implRoot = buildImplTree(null, 0, schema.getImplementation(), -1);
+        } else {
+            implRoot = null;
+        }
+
+        size = nextNumber;
+        segments = new TagIndex(segmentNodes, segmentNodes.size());
+        segmentNodes.clear();
+        Validator.LOGGER.finer(() -> "Done creating usage tree");
+    }
+
+    /**
+     * Retrieve the graph of the schema, compiling it if the schema does not
+     * already hold a compiled graph.
+     *
+     * @param schema
+     *            the schema
+     * @return the usage graph of the schema
+     */
+    static UsageGraph of(Schema schema) {
+        if (schema instanceof StaEDISchema) {
+            return ((StaEDISchema) schema).getCompiled(UsageGraph.class, UsageGraph::new);
+        }
+
+        return new UsageGraph(schema);
+    }
+
+    UsageNode getRoot() {
+        return root;
+    }
+
+    UsageNode getImplRoot() {
+        return implRoot;
+    }
+
+    /**
+     * Returns the number of nodes in the graph (standard and implementation),
+     * the size of the usage count array of a validator.
+     *
+     * @return the number of nodes
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Determine whether a segment with the given tag occurs anywhere in the
+     * standard tree.
+     *
+     * @param tagId
+     *            the ID of the segment tag, not {@link SegmentTags#NONE}
+     * @return true if the tree contains a segment with the tag
+     */
+    boolean containsSegment(int tagId) {
+        return segments.get(tagId) != null;
+    }
+
+    private static EDIReference referenceOf(EDIComplexType type, int minOccurs, int maxOccurs) {
+        return new EDIReference() {
+            @Override
+            public EDIType getReferencedType() {
+                return type;
+            }
+
+            @Override
+            public int getMinOccurs() {
+                return minOccurs;
+            }
+
+            @Override
+            public int getMaxOccurs() {
+                return maxOccurs;
+            }
+        };
+    }
+
+    private UsageNode buildTree(UsageNode parent, int parentDepth, EDIReference link, int index) {
+        int depth = parentDepth + 1;
+        EDIType referencedNode = link.getReferencedType();
+
+        UsageNode node = new UsageNode(parent, depth, link, index, nextNumber++);
+
+        if (!(referencedNode instanceof EDIComplexType)) {
+            return node;
+        }
+
+        if (referencedNode.isType(EDIType.Type.SEGMENT)) {
+            segmentNodes.add(node);
+        }
+
+        EDIComplexType structure = (EDIComplexType) referencedNode;
+
+        List<? extends EDIReference> children = structure.getReferences();
+        List<UsageNode> childUsages = node.getChildren();
+
+        int childIndex = -1;
+
+        for (EDIReference child : children) {
+            childUsages.add(buildTree(node, depth, child, ++childIndex));
+        }
+
+        node.setLastDescendant(nextNumber - 1);
+        node.indexChildren();
+        return node;
+    }
+
+    private UsageNode buildImplTree(UsageNode parent, int parentDepth, EDITypeImplementation impl, int index) {
+        int depth = parentDepth + 1;
+        final UsageNode node = new UsageNode(parent, depth, impl, index, nextNumber++);
+        final List<EDITypeImplementation> children;
+
+        switch (impl.getType()) {
+        case COMPOSITE:
+            children = CompositeImplementation.class.cast(impl).getSequence();
+            break;
+        case ELEMENT:
+            children = Collections.emptyList();
+            break;
+        case TRANSACTION:
+        case LOOP:
+            children = LoopImplementation.class.cast(impl).getSequence();
+            break;
+        case SEGMENT:
+            children = SegmentImplementation.class.cast(impl).getSequence();
+            break;
+        default:
+            throw new IllegalArgumentException("Illegal type of EDITypeImplementation: " + impl.getType());
+        }
+
+        List<UsageNode> childUsages = node.getChildren();
+
+        int childIndex = -1;
+
+        for (EDITypeImplementation child : children) {
+            ++childIndex;
+
+            UsageNode childNode = null;
+
+            if (child != null) {
+                childNode = buildImplTree(node, depth, child, childIndex);
+            }
+
+            childUsages.add(childNode);
+        }
+
+        node.setLastDescendant(nextNumber - 1);
+        node.indexChildren();
+        return node;
+    }
+}
@@ -16,12 +16,15 @@
 package io.xlate.edi.internal.stream.validation;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
 import io.xlate.edi.internal.stream.tokenization.Dialect;
+import io.xlate.edi.internal.stream.tokenization.SegmentTags;
 import io.xlate.edi.schema.EDIComplexType;
 import io.xlate.edi.schema.EDIReference;
 import io.xlate.edi.schema.EDISimpleType;
@@ -32,18 +35,39 @@ import io.xlate.edi.stream.EDIStreamValidationError;
 
 class UsageNode {
 
-    private static final String TOSTRING_FORMAT = "usageCount: %d, depth: %d, link: { %s }";
+    private static final String TOSTRING_FORMAT = "number: %d, depth: %d, link: { %s }";
+
+    /*
+     * Limit on the number of versions for which the children of a node are
+     * retained. Versions are read from the input, children for versions
+     * beyond the limit are selected on each request.
+     */
+    static final int MAX_CACHED_VERSIONS = 16;
 
     private final UsageNode parent;
     private final int depth;
     private final EDIReference link;
     private final int siblingIndex;
 
+    /*
+     * Position of the node in a pre-order walk of its graph, the index of
+     * its usage count in the array of each validator. The descendants of the
+     * node are numbered (number, lastDescendant].
+     */
+    private final int number;
+    private int lastDescendant;
+
     private final ElementValidator validator;
     private final List<UsageNode> children = new ArrayList<>();
-    private int usageCount;
+    private final int tagId;
+
+    // Children by segment tag, for nodes containing segments (e.g. loops)
+    private TagIndex childIndex;
 
-    UsageNode(UsageNode parent, int depth, EDIReference link, int siblingIndex) {
+    // Children used by each transaction version, nodes are shared by threads
+    private final Map<String, UsageNode[]> childrenByVersion = new ConcurrentHashMap<>(2);
+
+    UsageNode(UsageNode parent, int depth, EDIReference link, int siblingIndex, int number) {
         if (link == null) {
             throw new NullPointerException();
         }
@@ -51,6 +75,8 @@ class UsageNode {
         this.parent = parent;
         this.depth = depth;
         this.link = link;
+        this.number = number;
+        this.lastDescendant = number;
 
         EDIType referencedType = link.getReferencedType();
 
@@ -62,10 +88,13 @@ class UsageNode {
         }
 
         this.siblingIndex = siblingIndex;
+
+        final String id = getId();
+        this.tagId = id != null ? SegmentTags.of(id) : SegmentTags.NONE;
     }
 
-    public static boolean hasMinimumUsage(String version, UsageNode node) {
-        return node == null || node.hasMinimumUsage(version);
+    public static boolean hasMinimumUsage(int[] usage, String version, UsageNode node) {
+        return node == null || node.hasMinimumUsage(usage, version);
     }
 
     public static UsageNode getParent(UsageNode node) {
@@ -76,17 +105,17 @@ class UsageNode {
         return node != null ? node.getFirstChild() : null;
     }
 
-    public static void resetChildren(UsageNode... nodes) {
+    public static void resetChildren(int[] usage, UsageNode... nodes) {
         for (UsageNode node : nodes) {
             if (node != null) {
-                node.resetChildren();
+                node.resetChildren(usage);
             }
         }
     }
 
     @Override
     public String toString() {
-        return String.format(TOSTRING_FORMAT, usageCount, depth, link);
+        return String.format(TOSTRING_FORMAT, number, depth, link);
     }
 
     UsageNode getParent() {
@@ -97,6 +126,38 @@ class UsageNode {
         return depth;
     }
 
+    int getNumber() {
+        return number;
+    }
+
+    /**
+     * Record the number of the last node added to the graph beneath this
+     * node. Called once all descendants have been created.
+     *
+     * @param lastDescendant
+     *            the highest number of the node's descendants
+     */
+    void setLastDescendant(int lastDescendant) {
+        this.lastDescendant = lastDescendant;
+    }
+
+    /**
+     * Index the children of a node containing segments by tag. Called once
+     * all children have been added.
+     */
+    void indexChildren() {
+        switch (getNodeType()) {
+        case INTERCHANGE:
+        case GROUP:
+        case TRANSACTION:
+        case LOOP:
+            childIndex = new TagIndex(children, children.size());
+            break;
+        default:
+            break;
+        }
+    }
+
     EDIReference getLink() {
         return link;
     }
@@ -113,13 +174,52 @@ class UsageNode {
         return (index < children.size()) ? children.get(index) : null;
     }
 
-    List<UsageNode> getChildren(String version) {
-        return children.stream().filter(c -> c == null || c.link.getMaxOccurs(version) > 0).collect(Collectors.toList());
+    /**
+     * Retrieve the children of this node that are used by the given version,
+     * i.e. those with a maximum number of occurrences greater than zero. The
+     * array for each version is determined when the version is first
+     * requested (by any thread) and must not be modified by the caller. At
+     * most {@link #MAX_CACHED_VERSIONS} versions are retained.
+     *
+     * @param version
+     *            the transaction version
+     * @return the children used by the version
+     */
+    UsageNode[] getChildren(String version) {
+        if (version == null) {
+            return selectChildren(null);
+        }
+
+        UsageNode[] selected = childrenByVersion.get(version);
+
+        if (selected == null) {
+            selected = selectChildren(version);
+
+            if (childrenByVersion.size() < MAX_CACHED_VERSIONS) {
+                UsageNode[] existing = childrenByVersion.putIfAbsent(version, selected);
+
+                if (existing != null) {
+                    selected = existing;
+                }
+            }
+        }
+
+        return selected;
+    }
+
+    int getCachedVersionCount() {
+        return childrenByVersion.size();
+    }
+
+    private UsageNode[] selectChildren(String version) {
+        return children.stream()
+                       .filter(c -> c == null || c.link.getMaxOccurs(version) > 0)
+                       .toArray(UsageNode[]::new);
     }
 
     UsageNode getChild(String version, int index) {
-        final List<UsageNode> versionedChildren = getChildren(version);
-        return (index < versionedChildren.size()) ? versionedChildren.get(index) : null;
+        final UsageNode[] selected = getChildren(version);
+        return (index < selected.length) ? selected[index] : null;
     }
 
     boolean isImplementation() {
@@ -134,6 +234,31 @@ class UsageNode {
         return link.getReferencedType().getId();
     }
 
+    /**
+     * Determine whether the ID of this node is the given segment tag.
+     *
+     * @param tag
+     *            the segment tag
+     * @param tagId
+     *            the ID of the tag from {@link SegmentTags}
+     * @return true if this node's ID is equal to the tag
+     */
+    boolean hasId(CharSequence tag, int tagId) {
+        if (tagId == SegmentTags.NONE) {
+            return getId().contentEquals(tag);
+        }
+
+        return this.tagId == tagId;
+    }
+
+    /**
+     * @return the ID of this node's tag from {@link SegmentTags}, or
+     *         {@link SegmentTags#NONE} when the ID is not a segment tag
+     */
+    int getTagId() {
+        return tagId;
+    }
+
     String getCode() {
         if (link instanceof EDITypeImplementation) {
             return ((EDITypeImplementation) link).getCode();
@@ -163,6 +288,14 @@ class UsageNode {
         }
     }
 
+    void validateLength(Dialect dialect, int length, List<EDIStreamValidationError> errors) {
+        if (validator == null) {
+            throw new UnsupportedOperationException("simple type only");
+        }
+
+        ElementValidator.validateLength(dialect, getSimpleType(), length, errors);
+    }
+
     List<EDISyntaxRule> getSyntaxRules() {
         EDIType referencedNode = link.getReferencedType();
 
@@ -177,28 +310,28 @@ class UsageNode {
         return siblingIndex;
     }
 
-    void incrementUsage() {
-        usageCount++;
+    void incrementUsage(int[] usage) {
+        usage[number]++;
     }
 
-    boolean isUsed() {
-        return usageCount > 0;
+    boolean isUsed(int[] usage) {
+        return usage[number] > 0;
     }
 
     boolean isFirstChild() {
         return this == getFirstSibling();
     }
 
-    boolean hasMinimumUsage(String version) {
-        return usageCount >= link.getMinOccurs(version);
+    boolean hasMinimumUsage(int[] usage, String version) {
+        return usage[number] >= link.getMinOccurs(version);
     }
 
     boolean hasVersions() {
         return getSimpleType().hasVersions();
     }
 
-    boolean exceedsMaximumUsage(String version) {
-        return usageCount > link.getMaxOccurs(version);
+    boolean exceedsMaximumUsage(int[] usage, String version) {
+        return usage[number] > link.getMaxOccurs(version);
     }
 
     boolean isNodeType(EDIType.Type type) {
@@ -209,17 +342,12 @@ class UsageNode {
         return link.getReferencedType().getType();
     }
 
-    void reset() {
-        usageCount = 0;
-        resetChildren();
+    void reset(int[] usage) {
+        Arrays.fill(usage, number, lastDescendant + 1, 0);
     }
 
-    void resetChildren() {
-        for (UsageNode node : children) {
-            if (node != null) {
-                node.reset();
-            }
-        }
+    void resetChildren(int[] usage) {
+        Arrays.fill(usage, number + 1, lastDescendant + 1, 0);
     }
 
     private UsageNode getSibling(int index) {
@@ -240,15 +368,22 @@ class UsageNode {
         return (!children.isEmpty()) ? children.get(0) : null;
     }
 
-    UsageNode getChildById(CharSequence id) {
-        return children.stream()
-                       .filter(c -> c != null && c.getId().contentEquals(id))
-                       .findFirst()
-                       .orElse(null);
+    UsageNode getChildById(CharSequence id, int tagId) {
+        if (childIndex != null && tagId != SegmentTags.NONE) {
+            return childIndex.get(tagId);
+        }
+
+        for (UsageNode child : children) {
+            if (child != null && child.hasId(id, tagId)) {
+                return child;
+            }
+        }
+
+        return null;
     }
 
-    UsageNode getSiblingById(CharSequence id) {
-        return parent != null ? parent.getChildById(id) : null;
+    UsageNode getSiblingById(CharSequence id, int tagId) {
+        return parent != null ? parent.getChildById(id, tagId) : null;
     }
 
     private static class UnenumeratedElement implements EDISimpleType {
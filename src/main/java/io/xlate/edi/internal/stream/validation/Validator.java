@@ -36,7 +36,7 @@ import static io.xlate.edi.stream.EDIStreamValidationError.UNEXPECTED_SEGMENT;
 import java.nio.CharBuffer;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Deque;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -44,25 +44,22 @@ import java.util.List;
 import java.util.Queue;
 import java.util.logging.Logger;
 
+import io.xlate.edi.internal.schema.CodeSet;
 import io.xlate.edi.internal.schema.StaEDISchema;
 import io.xlate.edi.internal.stream.StaEDIStreamLocation;
 import io.xlate.edi.internal.stream.tokenization.Dialect;
 import io.xlate.edi.internal.stream.tokenization.ElementDataHandler;
+import io.xlate.edi.internal.stream.tokenization.SegmentTags;
 import io.xlate.edi.internal.stream.tokenization.StreamEvent;
 import io.xlate.edi.internal.stream.tokenization.ValidationEventHandler;
 import io.xlate.edi.schema.EDIComplexType;
-import io.xlate.edi.schema.EDIReference;
 import io.xlate.edi.schema.EDISimpleType;
 import io.xlate.edi.schema.EDISyntaxRule;
 import io.xlate.edi.schema.EDIType;
 import io.xlate.edi.schema.EDIType.Type;
 import io.xlate.edi.schema.Schema;
-import io.xlate.edi.schema.implementation.CompositeImplementation;
 import io.xlate.edi.schema.implementation.Discriminator;
-import io.xlate.edi.schema.implementation.EDITypeImplementation;
-import io.xlate.edi.schema.implementation.LoopImplementation;
 import io.xlate.edi.schema.implementation.PolymorphicImplementation;
-import io.xlate.edi.schema.implementation.SegmentImplementation;
 import io.xlate.edi.stream.EDIStreamEvent;
 import io.xlate.edi.stream.EDIStreamValidationError;
 import io.xlate.edi.stream.Location;
@@ -78,10 +75,15 @@ public class Validator {
     private final boolean validateCodeValues;
     private boolean initial = true;
 
+    private final UsageGraph graph;
     private final UsageNode root;
     private final UsageNode implRoot;
 
+    // Usage count of each node of the schema's shared usage graph
+    private final int[] usage;
+
     private boolean segmentExpected;
+    private int segmentTagId = SegmentTags.NONE;
     private UsageNode segment;
     private UsageNode correctSegment;
     private UsageNode composite;
@@ -153,18 +155,12 @@ public class Validator {
         this.validateCodeValues = validateCodeValues;
         this.containerSchema = containerSchema;
 
-        LOGGER.finer(() -> "Creating usage tree");
-        root = buildTree(schema.getStandard());
-        LOGGER.finer(() -> "Done creating usage tree");
+        graph = UsageGraph.of(schema);
+        root = graph.getRoot();
+        implRoot = graph.getImplRoot();
+        usage = new int[graph.size()];
         correctSegment = segment = root.getFirstChild();
-
-        if (schema.getImplementation() != null) {
-            implRoot = buildImplTree(null, 0, schema.getImplementation(), -1);
-            implNode = implRoot.getFirstChild();
-        } else {
-            implRoot = null;
-            implNode = null;
-        }
+        implNode = UsageNode.getFirstChild(implRoot);
     }
 
     public void reset() {
@@ -172,13 +168,9 @@ public class Validator {
             return;
         }
 
-        root.reset();
+        Arrays.fill(usage, 0);
         correctSegment = segment = root.getFirstChild();
-
-        if (implRoot != null) {
-            implRoot.reset();
-            implNode = implRoot.getFirstChild();
-        }
+        implNode = UsageNode.getFirstChild(implRoot);
 
         cursor.reset(root, implRoot);
         depth = 1;
@@ -194,6 +186,9 @@ public class Validator {
         implSegmentCandidates.clear();
         useErrors.clear();
         elementErrors.clear();
+        loopStack.clear();
+        revalidationQueue.clear();
+        segmentTagId = SegmentTags.NONE;
         initial = true;
     }
 
@@ -235,103 +230,14 @@ public class Validator {
         return null;
     }
 
-    private static EDIReference referenceOf(EDIComplexType type, int minOccurs, int maxOccurs) {
-        return new EDIReference() {
-            @Override
-            public EDIType getReferencedType() {
-                return type;
-            }
-
-            @Override
-            public int getMinOccurs() {
-                return minOccurs;
-            }
-
-            @Override
-            public int getMaxOccurs() {
-                return maxOccurs;
-            }
-        };
-    }
-
-    private static UsageNode buildTree(final EDIComplexType root) {
-        return buildTree(null, 0, referenceOf(root, 1, 1), -1);
-    }
-
-    private static UsageNode buildTree(UsageNode parent, int parentDepth, EDIReference link, int index) {
-        int depth = parentDepth + 1;
-        EDIType referencedNode = link.getReferencedType();
-
-        UsageNode node = new UsageNode(parent, depth, link, index);
-
-        if (!(referencedNode instanceof EDIComplexType)) {
-            return node;
-        }
-
-        EDIComplexType structure = (EDIComplexType) referencedNode;
-
-        List<? extends EDIReference> children = structure.getReferences();
-        List<UsageNode> childUsages = node.getChildren();
-
-        int childIndex = -1;
-
-        for (EDIReference child : children) {
-            childUsages.add(buildTree(node, depth, child, ++childIndex));
-        }
-
-        return node;
-    }
-
-    private static UsageNode buildImplTree(UsageNode parent, int parentDepth, EDITypeImplementation impl, int index) {
-        int depth = parentDepth + 1;
-        final UsageNode node = new UsageNode(parent, depth, impl, index);
-        final List<EDITypeImplementation> children;
-
-        switch (impl.getType()) {
-        case COMPOSITE:
-            children = CompositeImplementation.class.cast(impl).getSequence();
-            break;
-        case ELEMENT:
-            children = Collections.emptyList();
-            break;
-        case TRANSACTION:
-        case LOOP:
-            children = LoopImplementation.class.cast(impl).getSequence();
-            break;
-        case SEGMENT:
-            children = SegmentImplementation.class.cast(impl).getSequence();
-            break;
-        default:
-            throw new IllegalArgumentException("Illegal type of EDITypeImplementation: " + impl.getType());
-        }
-
-        List<UsageNode> childUsages = node.getChildren();
-
-        int childIndex = -1;
-
-        for (EDITypeImplementation child : children) {
-            ++childIndex;
-
-            UsageNode childNode = null;
-
-            if (child != null) {
-                childNode = buildImplTree(node, depth, child, childIndex);
-            }
-
-            childUsages.add(childNode);
-        }
-
-        return node;
-    }
-
     private UsageNode startLoop(UsageNode loop) {
-        loop.incrementUsage();
-        loop.resetChildren();
+        loop.incrementUsage(usage);
+        loop.resetChildren(usage);
 
         UsageNode startSegment = loop.getFirstChild();
 
-        startSegment.reset();
-        startSegment.incrementUsage();
+        startSegment.reset(usage);
+        startSegment.incrementUsage(usage);
 
         depth++;
 
@@ -352,6 +258,11 @@ public class Validator {
     }
 
     public void validateSegment(ValidationEventHandler handler, CharSequence tag) {
+        validateSegment(handler, tag, SegmentTags.of(tag));
+    }
+
+    public void validateSegment(ValidationEventHandler handler, CharSequence tag, int tagId) {
+        segmentTagId = tagId;
         initial = false;
         segmentExpected = true;
         implSegmentSelected = false;
@@ -364,6 +275,13 @@ public class Validator {
         // Version specific validation must be complete by the end of a segment
         revalidationQueue.clear();
         useErrors.clear();
+
+        if (isUndefinedSegment(tag, tagId)) {
+            // No node can match, searching the tree would only lead back to the root
+            checkUnexpectedSegment(tag, root.getFirstChild(), startDepth, handler);
+            return;
+        }
+
         boolean handled = false;
 
         while (!handled && cursor.standard != null) {
@@ -396,6 +314,19 @@ public class Validator {
         handleMissingMandatory(handler);
     }
 
+    /**
+     * Determine whether the segment appears nowhere in the schema or the
+     * containing schema, in which case the segment is unexpected wherever the
+     * search for it would begin.
+     */
+    boolean isUndefinedSegment(CharSequence tag, int tagId) {
+        if (tagId == SegmentTags.NONE || graph.containsSegment(tagId)) {
+            return false;
+        }
+
+        return containerSchema == null || !containerSchema.containsSegment(tag.toString());
+    }
+
     UsageNode checkMinimumImplUsage(UsageNode nextImpl, UsageNode current) {
         while (nextImpl != null && nextImpl.getReferencedType().equals(current.getReferencedType())) {
             // Advance past multiple implementations of the 'current' standard node
@@ -427,7 +358,7 @@ public class Validator {
     }
 
     boolean handleSegment(CharSequence tag, UsageNode current, UsageNode currentImpl, int startDepth, ValidationEventHandler handler) {
-        if (!current.getId().contentEquals(tag)) {
+        if (!current.hasId(tag, segmentTagId)) {
             /*
              * The schema segment does not match the segment tag found
              * in the stream.
@@ -435,7 +366,7 @@ public class Validator {
             return false;
         }
 
-        if (current.isUsed() && current.isFirstChild() &&
+        if (current.isUsed(usage) && current.isFirstChild() &&
                 current.getParent().isNodeType(EDIType.Type.LOOP)) {
             /*
              * The current segment is the first segment in the loop and
@@ -447,10 +378,10 @@ public class Validator {
         }
 
         completeLoops(handler, startDepth);
-        current.incrementUsage();
-        current.resetChildren();
+        current.incrementUsage(usage);
+        current.resetChildren(usage);
 
-        if (current.exceedsMaximumUsage(SEGMENT_VERSION)) {
+        if (current.exceedsMaximumUsage(usage, SEGMENT_VERSION)) {
             handleMissingMandatory(handler);
             handler.segmentError(current.getId(), SEGMENT_EXCEEDS_MAXIMUM_USE);
         }
@@ -471,10 +402,10 @@ public class Validator {
                 // Save the currentImpl so that the search is resumed from the correct location
                 implNode = currentImpl;
             } else if (implSegmentCandidates.size() == 1) {
-                currentImpl.incrementUsage();
-                currentImpl.resetChildren();
+                currentImpl.incrementUsage(usage);
+                currentImpl.resetChildren(usage);
 
-                if (currentImpl.exceedsMaximumUsage(SEGMENT_VERSION)) {
+                if (currentImpl.exceedsMaximumUsage(usage, SEGMENT_VERSION)) {
                     handler.segmentError(currentImpl.getId(), SEGMENT_EXCEEDS_MAXIMUM_USE);
                 }
 
@@ -507,7 +438,7 @@ public class Validator {
     }
 
     void checkMinimumUsage(UsageNode node) {
-        if (!node.hasMinimumUsage(SEGMENT_VERSION)) {
+        if (!node.hasMinimumUsage(usage, SEGMENT_VERSION)) {
             /*
              * The schema segment has not met it's minimum usage
              * requirement.
@@ -526,7 +457,7 @@ public class Validator {
     }
 
     boolean handleLoop(CharSequence tag, UsageNode current, UsageNode currentImpl, int startDepth, ValidationEventHandler handler) {
-        if (!current.getFirstChild().getId().contentEquals(tag)) {
+        if (!current.getFirstChild().hasId(tag, segmentTagId)) {
             return false;
         }
 
@@ -535,7 +466,7 @@ public class Validator {
         handler.loopBegin(current.getCode());
         correctSegment = segment = startLoop(current);
 
-        if (current.exceedsMaximumUsage(SEGMENT_VERSION)) {
+        if (current.exceedsMaximumUsage(usage, SEGMENT_VERSION)) {
             handleMissingMandatory(handler);
             handler.segmentError(tag, LOOP_OCCURS_OVER_MAXIMUM_TIMES);
         }
@@ -570,15 +501,15 @@ public class Validator {
              * here. Rather, go up a level and continue searching from
              * there.
              */
-            UsageNode next = current.getSiblingById(tag);
+            UsageNode next = current.getSiblingById(tag, segmentTagId);
 
             if (next != null && !next.isFirstChild()) {
                 useErrors.clear();
                 handler.segmentError(next.getId(), SEGMENT_NOT_IN_PROPER_SEQUENCE);
 
-                next.incrementUsage();
+                next.incrementUsage(usage);
 
-                if (next.exceedsMaximumUsage(SEGMENT_VERSION)) {
+                if (next.exceedsMaximumUsage(usage, SEGMENT_VERSION)) {
                     handler.segmentError(next.getId(), SEGMENT_EXCEEDS_MAXIMUM_USE);
                 }
 
@@ -607,7 +538,7 @@ public class Validator {
     boolean checkUnexpectedSegment(CharSequence tag, UsageNode current, int startDepth, ValidationEventHandler handler) {
         boolean handled = false;
 
-        if (!current.getId().contentEquals(tag)) {
+        if (!current.hasId(tag, segmentTagId)) {
             final String tagString = tag.toString();
 
             if (containerSchema != null && containerSchema.containsSegment(tagString)) {
@@ -694,17 +625,17 @@ public class Validator {
         implSegmentSelected = true;
 
         if (candidate.isNodeType(Type.LOOP)) {
-            candidate.incrementUsage();
-            candidate.resetChildren();
-            implSeg.incrementUsage();
+            candidate.incrementUsage(usage);
+            candidate.resetChildren(usage);
+            implSeg.incrementUsage(usage);
 
-            if (candidate.exceedsMaximumUsage(SEGMENT_VERSION)) {
+            if (candidate.exceedsMaximumUsage(usage, SEGMENT_VERSION)) {
                 handler.segmentError(implSeg.getId(), LOOP_OCCURS_OVER_MAXIMUM_TIMES);
             }
         } else {
-            candidate.incrementUsage();
+            candidate.incrementUsage(usage);
 
-            if (candidate.exceedsMaximumUsage(SEGMENT_VERSION)) {
+            if (candidate.exceedsMaximumUsage(usage, SEGMENT_VERSION)) {
                 handler.segmentError(implSeg.getId(), SEGMENT_EXCEEDS_MAXIMUM_USE);
             }
         }
@@ -726,7 +657,7 @@ public class Validator {
             return true;
         }
 
-        if (discr.getValueSet().contains(currentEvent.getData().toString())) {
+        if (CodeSet.contains(discr.getValueSet(), currentEvent.getData())) {
             int eleLoc = discr.getElementPosition();
             int comLoc = discr.getComponentPosition() == 0 ? -1 : discr.getComponentPosition();
             Location location = currentEvent.getLocation();
@@ -818,9 +749,9 @@ public class Validator {
             elementErrors.add(new UsageError(TOO_MANY_DATA_ELEMENTS));
             return false;
         } else if (!element.isNodeType(EDIType.Type.COMPOSITE)) {
-            this.element.incrementUsage();
+            this.element.incrementUsage(usage);
 
-            if (this.element.exceedsMaximumUsage(version)) {
+            if (this.element.exceedsMaximumUsage(usage, version)) {
                 elementErrors.add(new UsageError(this.element, TOO_MANY_REPETITIONS));
                 return false;
             }
@@ -833,9 +764,9 @@ public class Validator {
 
         this.composite = this.element;
         this.element = null;
-        this.composite.incrementUsage();
+        this.composite.incrementUsage(usage);
 
-        if (this.composite.exceedsMaximumUsage(version)) {
+        if (this.composite.exceedsMaximumUsage(usage, version)) {
             elementErrors.add(new UsageError(this.composite, TOO_MANY_REPETITIONS));
             return false;
         }
@@ -848,7 +779,7 @@ public class Validator {
         this.implElement = null;
 
         if (implSegmentSelected) {
-            this.implComposite.incrementUsage();
+            this.implComposite.incrementUsage(usage);
         }
 
         return elementErrors.isEmpty();
@@ -859,11 +790,31 @@ public class Validator {
     }
 
     public boolean validateElement(Dialect dialect, StaEDIStreamLocation position, CharSequence value) {
+        return validateElement(dialect, position, value, 0);
+    }
+
+    /**
+     * Validate an element, the leading portion of which may no longer be
+     * available, e.g. when delivered in chunks. Only the total length of such
+     * an element is validated, its content is not checked against code values
+     * or the element's type.
+     *
+     * @param dialect
+     *            the dialect of the interchange
+     * @param position
+     *            the location of the element
+     * @param value
+     *            the (remaining) value of the element
+     * @param priorLength
+     *            the number of characters of the element that preceded value
+     * @return true if the element is valid, otherwise false
+     */
+    public boolean validateElement(Dialect dialect, StaEDIStreamLocation position, CharSequence value, int priorLength) {
         if (!segmentExpected) {
             return true;
         }
 
-        boolean valueReceived = value != null && value.length() > 0;
+        boolean valueReceived = priorLength > 0 || (value != null && value.length() > 0);
         elementErrors.clear();
         this.composite = null;
         this.element = null;
@@ -877,7 +828,7 @@ public class Validator {
 
         validateImplRepetitions(version, elementPosition, componentIndex);
 
-        if (elementPosition >= segment.getChildren(version).size()) {
+        if (elementPosition >= segment.getChildren(version).length) {
             if (componentIndex < 0) {
                 /*
                  * Only notify if this is not a composite - handled in
@@ -917,7 +868,7 @@ public class Validator {
         }
 
         if (valueReceived) {
-            validateElementValue(dialect, position, value);
+            validateElementValue(dialect, position, value, priorLength);
         } else {
             validateDataElementRequirement(version);
         }
@@ -934,12 +885,12 @@ public class Validator {
             elementErrors.add(new UsageError(this.element, TOO_MANY_COMPONENTS));
         } else {
             if (componentIndex == 0) {
-                UsageNode.resetChildren(this.element, this.implElement);
+                UsageNode.resetChildren(usage, this.element, this.implElement);
             }
 
             String version = dialect.getTransactionVersionString();
 
-            if (componentIndex < element.getChildren(version).size()) {
+            if (componentIndex < element.getChildren(version).length) {
                 if (valueReceived || componentIndex != 0 /* Derived component*/) {
                     this.element = this.element.getChild(version, componentIndex);
 
@@ -954,21 +905,31 @@ public class Validator {
         }
     }
 
-    void validateElementValue(Dialect dialect, StaEDIStreamLocation position, CharSequence value) {
+    void validateElementValue(Dialect dialect, StaEDIStreamLocation position, CharSequence value, int priorLength) {
         final String version = dialect.getTransactionVersionString();
 
         if (!element.isNodeType(EDIType.Type.COMPOSITE)) {
-            this.element.incrementUsage();
+            this.element.incrementUsage(usage);
 
             if (this.implElement != null) {
-                this.implElement.incrementUsage();
+                this.implElement.incrementUsage(usage);
             }
 
-            if (this.element.exceedsMaximumUsage(version)) {
+            if (this.element.exceedsMaximumUsage(usage, version)) {
                 elementErrors.add(new UsageError(this.element, TOO_MANY_REPETITIONS));
             }
         }
 
+        if (priorLength > 0) {
+            List<EDIStreamValidationError> errors = new ArrayList<>();
+            this.element.validateLength(dialect, priorLength + value.length(), errors);
+
+            for (EDIStreamValidationError error : errors) {
+                elementErrors.add(new UsageError(this.element, error));
+            }
+            return;
+        }
+
         if (version.isEmpty() && this.element.hasVersions()) {
             // This element value can not be validated until the version is determined
             revalidationQueue.add(new RevalidationNode(this.element, this.implElement, value, position));
@@ -1029,10 +990,10 @@ public class Validator {
         final int index = getCurrentIndex(location, isComposite);
         final int elementPosition = location.getElementPosition() - 1;
         final int componentIndex = location.getComponentPosition() - 1;
-        final List<UsageNode> children = structure.getChildren(version);
+        final UsageNode[] children = structure.getChildren(version);
 
         // Ensure the start index is at least zero. Index may be -1 for empty segments
-        for (int i = Math.max(index, 0), max = children.size(); i < max; i++) {
+        for (int i = Math.max(index, 0), max = children.length; i < max; i++) {
             if (isComposite) {
                 location.incrementComponentPosition();
             } else {
@@ -1042,7 +1003,7 @@ public class Validator {
             handler.elementData(null, 0, 0);
         }
 
-        if (!isComposite && implSegmentSelected && index == children.size()) {
+        if (!isComposite && implSegmentSelected && index == children.length) {
             UsageNode previousImpl = implNode.getChild(elementPosition);
 
             if (tooFewRepetitions(version, previousImpl)) {
@@ -1059,7 +1020,7 @@ public class Validator {
         for (EDISyntaxRule rule : structure.getSyntaxRules()) {
             final EDISyntaxRule.Type ruleType = rule.getType();
             SyntaxValidator validator = SyntaxValidator.getInstance(ruleType);
-            validator.validate(rule, structure, validationHandler);
+            validator.validate(rule, structure, usage, validationHandler);
         }
     }
 
@@ -1083,13 +1044,13 @@ public class Validator {
     }
 
     void validateDataElementRequirement(String version) {
-        if (!UsageNode.hasMinimumUsage(version, element) || !UsageNode.hasMinimumUsage(version, implElement)) {
+        if (!UsageNode.hasMinimumUsage(usage, version, element) || !UsageNode.hasMinimumUsage(usage, version, implElement)) {
             elementErrors.add(new UsageError(this.element, REQUIRED_DATA_ELEMENT_MISSING));
         }
     }
 
     boolean tooFewRepetitions(String version, UsageNode node) {
-        if (!UsageNode.hasMinimumUsage(version, node)) {
+        if (!UsageNode.hasMinimumUsage(usage, version, node)) {
             return node.getLink().getMinOccurs(version) > 1;
         }
 
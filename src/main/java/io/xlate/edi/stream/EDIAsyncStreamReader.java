@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright 2020 xlate.io LLC, http://www.xlate.io
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package io.xlate.edi.stream;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link EDIStreamReader} that never blocks waiting for input. Input is fed
+ * to the reader by the caller as it becomes available, e.g. from a
+ * non-blocking channel. When the input fed so far has been consumed,
+ * {@link #next()} and {@link #nextTag()} return
+ * {@link EDIStreamEvent#NEED_MORE_INPUT NEED_MORE_INPUT} rather than waiting.
+ * Parsing resumes where it stopped once more input is fed, regardless of
+ * where the boundaries between the chunks of input fall.
+ *
+ * Binary data elements are not supported by asynchronous readers, nor may an
+ * asynchronous reader be wrapped by an XMLStreamReader.
+ *
+ * @since 1.8
+ */
+public interface EDIAsyncStreamReader extends EDIStreamReader {
+
+    /**
+     * Feed input to the reader. The bytes are copied, the caller may reuse
+     * the array once this method returns.
+     *
+     * @param data
+     *            array containing the input
+     * @param offset
+     *            offset of the first byte of input in data
+     * @param length
+     *            number of bytes of input
+     * @throws IllegalStateException
+     *             if the reader is closed or {@link #endOfInput()} has been
+     *             called
+     */
+    void feedInput(byte[] data, int offset, int length);
+
+    /**
+     * Feed input to the reader. The bytes between the buffer's position and
+     * limit are copied and the position is advanced to the limit.
+     *
+     * @param data
+     *            buffer containing the input
+     * @throws IllegalStateException
+     *             if the reader is closed or {@link #endOfInput()} has been
+     *             called
+     */
+    void feedInput(ByteBuffer data);
+
+    /**
+     * Signal that no further input will be fed to the reader. Once the
+     * remaining input has been consumed, the reader reports the end of the
+     * stream (or an error if the input is incomplete) rather than
+     * {@link EDIStreamEvent#NEED_MORE_INPUT NEED_MORE_INPUT}.
+     */
+    void endOfInput();
+
+}
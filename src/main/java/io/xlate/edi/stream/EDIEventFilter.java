@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright 2020 xlate.io LLC, http://www.xlate.io
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package io.xlate.edi.stream;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A declarative {@link EDIStreamFilter} that accepts events by their type,
+ * the tag of the segment they occur in, and the position of the element they
+ * occur in. Unlike an arbitrary filter, the criteria of an EDIEventFilter are
+ * known in advance. When used with
+ * {@link EDIInputFactory#createFilteredReader(EDIStreamReader, EDIStreamFilter)},
+ * the reader is able to discard rejected events as they are parsed, without
+ * first copying their text, rather than the filter being applied only once
+ * each event has been fully read.
+ *
+ * Instances are immutable, each of the <code>with</code> methods returns a
+ * new filter.
+ *
+ * <pre>
+ * EDIEventFilter filter = EDIEventFilter.of(EDIStreamEvent.START_SEGMENT, EDIStreamEvent.ELEMENT_DATA)
+ *                                       .withSegments("N1", "REF")
+ *                                       .withElements(1, 2);
+ * </pre>
+ *
+ * @since 1.8
+ */
+public final class EDIEventFilter implements EDIStreamFilter {
+
+    private static final Set<EDIStreamEvent> SEGMENT_EVENTS = Collections.unmodifiableSet(EnumSet.of(EDIStreamEvent.START_SEGMENT,
+                                                                                                      EDIStreamEvent.END_SEGMENT,
+                                                                                                      EDIStreamEvent.SEGMENT_ERROR,
+                                                                                                      EDIStreamEvent.START_COMPOSITE,
+                                                                                                      EDIStreamEvent.END_COMPOSITE,
+                                                                                                      EDIStreamEvent.ELEMENT_DATA,
+                                                                                                      EDIStreamEvent.ELEMENT_DATA_PARTIAL,
+                                                                                                      EDIStreamEvent.ELEMENT_DATA_BINARY,
+                                                                                                      EDIStreamEvent.ELEMENT_DATA_ERROR,
+                                                                                                      EDIStreamEvent.ELEMENT_OCCURRENCE_ERROR));
+
+    private static final Set<EDIStreamEvent> ELEMENT_EVENTS = Collections.unmodifiableSet(EnumSet.of(EDIStreamEvent.START_COMPOSITE,
+                                                                                                      EDIStreamEvent.END_COMPOSITE,
+                                                                                                      EDIStreamEvent.ELEMENT_DATA,
+                                                                                                      EDIStreamEvent.ELEMENT_DATA_PARTIAL,
+                                                                                                      EDIStreamEvent.ELEMENT_DATA_BINARY,
+                                                                                                      EDIStreamEvent.ELEMENT_DATA_ERROR,
+                                                                                                      EDIStreamEvent.ELEMENT_OCCURRENCE_ERROR));
+
+    private final Set<EDIStreamEvent> events;
+    private final Set<String> segments;
+    private final int[] elements;
+    private final boolean rejectedSegmentsValidated;
+
+    private EDIEventFilter(Set<EDIStreamEvent> events, Set<String> segments, int[] elements, boolean rejectedSegmentsValidated) {
+        this.events = events;
+        this.segments = segments;
+        this.elements = elements;
+        this.rejectedSegmentsValidated = rejectedSegmentsValidated;
+    }
+
+    /**
+     * Create a filter accepting events of the given types. When no types are
+     * given, events of all types are accepted.
+     *
+     * @param types
+     *            the types of events to accept
+     * @return a new filter
+     */
+    public static EDIEventFilter of(EDIStreamEvent... types) {
+        Set<EDIStreamEvent> events = EnumSet.noneOf(EDIStreamEvent.class);
+        events.addAll(types.length > 0 ? Arrays.asList(types) : EnumSet.allOf(EDIStreamEvent.class));
+        return new EDIEventFilter(Collections.unmodifiableSet(events), Collections.emptySet(), new int[0], true);
+    }
+
+    /**
+     * Create a filter that additionally rejects events occurring within a
+     * segment (segment, composite, element and related error events) unless
+     * the segment's tag is one of those given. Events outside of segments, such
+     * as loop and transaction events, are not affected.
+     *
+     * @param tags
+     *            tags of the segments to accept, an empty list accepts all
+     *            segments
+     * @return a new filter
+     */
+    public EDIEventFilter withSegments(String... tags) {
+        Set<String> accepted = new HashSet<>(Arrays.asList(tags));
+        return new EDIEventFilter(events, Collections.unmodifiableSet(accepted), elements, rejectedSegmentsValidated);
+    }
+
+    /**
+     * Create a filter that additionally rejects composite and element events
+     * (including element errors) unless the element's position in its segment
+     * is one of those given.
+     *
+     * @param positions
+     *            positions (1-based) of the elements to accept, an empty list
+     *            accepts all elements
+     * @return a new filter
+     */
+    public EDIEventFilter withElements(int... positions) {
+        int[] accepted = positions.clone();
+        Arrays.sort(accepted);
+        return new EDIEventFilter(events, segments, accepted, rejectedSegmentsValidated);
+    }
+
+    /**
+     * Create a filter that allows a reader to skip the validation of element
+     * data in segments rejected by this filter. The position of each rejected
+     * segment (e.g. sequence and occurrence) is still validated, but its
+     * elements, syntax rules, and version constraints are not. Errors in the
+     * rejected segments' elements will not be detected. Segments containing
+     * binary data must not be rejected when validation is skipped.
+     *
+     * @return a new filter
+     */
+    public EDIEventFilter withoutRejectedSegmentValidation() {
+        return new EDIEventFilter(events, segments, elements, false);
+    }
+
+    /**
+     * Determine whether the element data of segments rejected by this filter
+     * is validated.
+     *
+     * @return false if the validation of element data in rejected segments
+     *         may be skipped, otherwise true
+     */
+    public boolean isRejectedSegmentValidated() {
+        return rejectedSegmentsValidated;
+    }
+
+    /**
+     * Tests whether events occurring in the segment with the given tag may be
+     * accepted by this filter.
+     *
+     * @param tag
+     *            the segment tag
+     * @return true if events in the segment may be accepted, otherwise false
+     */
+    public boolean acceptsSegment(String tag) {
+        return segments.isEmpty() || segments.contains(tag);
+    }
+
+    /**
+     * Tests whether an event of the given type at the given location is
+     * accepted by this filter.
+     *
+     * @param event
+     *            the type of event
+     * @param location
+     *            the location of the event
+     * @return true if this filter accepts the event, false otherwise
+     */
+    public boolean accept(EDIStreamEvent event, Location location) {
+        if (event == EDIStreamEvent.NEED_MORE_INPUT) {
+            return true;
+        }
+
+        if (!events.contains(event)) {
+            return false;
+        }
+
+        if (!segments.isEmpty() && SEGMENT_EVENTS.contains(event) && !segments.contains(location.getSegmentTag())) {
+            return false;
+        }
+
+        return elements.length == 0
+                || !ELEMENT_EVENTS.contains(event)
+                || Arrays.binarySearch(elements, location.getElementPosition()) >= 0;
+    }
+
+    @Override
+    public boolean accept(EDIStreamReader reader) {
+        return accept(reader.getEventType(), reader.getLocation());
+    }
+}
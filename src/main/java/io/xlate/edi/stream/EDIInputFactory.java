@@ -16,6 +16,10 @@
 package io.xlate.edi.stream;
 
 import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
@@ -39,6 +43,83 @@ public abstract class EDIInputFactory extends PropertySupport {
      */
     public static final String XML_DECLARE_TRANSACTION_XMLNS = "io.xlate.edi.stream.XML_DECLARE_TRANSACTION_XMLNS";
 
+    /**
+     * When set to a positive integer, element data longer than the given
+     * number of characters will be delivered by an EDIStreamReader as a
+     * sequence of {@link EDIStreamEvent#ELEMENT_DATA_PARTIAL ELEMENT_DATA_PARTIAL}
+     * events, each containing at most that number of characters, followed by
+     * an {@link EDIStreamEvent#ELEMENT_DATA ELEMENT_DATA} event with the
+     * remainder of the element. Memory used by the reader for element data is
+     * limited to the chunk size regardless of the size of the element.
+     * Elements that must be read whole are not chunked: those of segments
+     * declaring the version of a group or transaction (e.g. GS, ST, UNH) and
+     * those of segments awaiting the selection of an implementation by a
+     * discriminator.
+     *
+     * Only the total length of a chunked element is validated, its content is
+     * not checked against code values or the element's type. Default is 0, the
+     * data of each element is delivered in a single event.
+     *
+     * @since 1.8
+     */
+    public static final String EDI_ELEMENT_CHUNK_SIZE = "io.xlate.edi.stream.EDI_ELEMENT_CHUNK_SIZE";
+
+    /**
+     * When set to true, the text of element data events is not copied from the
+     * EDIStreamReader's internal buffer. {@link EDIStreamReader#getTextCharacters()}
+     * returns the buffer itself, with the text located by
+     * {@link EDIStreamReader#getTextStart()} and
+     * {@link EDIStreamReader#getTextLength()}. The contents of the buffer are
+     * only valid until the reader advances past the event. Default is false.
+     *
+     * @since 1.8
+     */
+    public static final String EDI_ZERO_COPY_TEXT = "io.xlate.edi.stream.EDI_ZERO_COPY_TEXT";
+
+    /**
+     * When set to true, the EDIStreamReader does not update its location for
+     * each character of tag and element data. Instead, the characters are
+     * accounted for together when the delimiter following the data is read.
+     * Only the character offset and the segment and element positions are
+     * recorded for each event, the line and column numbers are computed from
+     * the offset when requested. The locations reported by the reader are the
+     * same in either mode, deferring the updates only reduces the work
+     * performed for each character of input and each event. Default is false.
+     *
+     * @since 1.8
+     */
+    public static final String EDI_LAZY_LOCATION = "io.xlate.edi.stream.EDI_LAZY_LOCATION";
+
+    /**
+     * When set to true, the EDIStreamReader continues reading when the end of
+     * an interchange is followed by another interchange in the same stream.
+     * The START_INTERCHANGE and END_INTERCHANGE events are generated for each
+     * interchange and the control schema is determined anew for each (unless
+     * one was given when the reader was created). White space between
+     * interchanges is ignored. The reader is complete when no further input
+     * follows an interchange. Default is false, where the reader is complete
+     * following the end of the first interchange.
+     *
+     * @since 1.8
+     */
+    public static final String EDI_CONCATENATED_INTERCHANGES = "io.xlate.edi.stream.EDI_CONCATENATED_INTERCHANGES";
+
+    /**
+     * When set to true, the EDIStreamReader determines the encoding of each
+     * interchange from its header rather than using the encoding given when
+     * the reader was created. The header itself is read as ISO-8859-1. For
+     * EDIFACT, the syntax identifier of the UNB segment (e.g. UNOC or UNOW)
+     * selects the encoding of the remainder of the interchange. X12 headers
+     * do not declare an encoding, in which case the encoding given when the
+     * reader was created is used. Detection is only suitable for input where
+     * each US-ASCII character is encoded as a single byte, and characters of
+     * the header outside of US-ASCII are not decoded again once the encoding
+     * is known. Default is false.
+     *
+     * @since 1.8
+     */
+    public static final String EDI_DETECT_CHARSET = "io.xlate.edi.stream.EDI_DETECT_CHARSET";
+
     /**
      * Create a new instance of the factory. This static method creates a new
      * factory instance.
@@ -123,15 +204,433 @@ public abstract class EDIInputFactory extends PropertySupport {
                                                           Schema schema)
             throws EDIStreamException;
 
+    /**
+     * Creates a new {@link EDIStreamReader} using the file at the given
+     * {@link Path} (with default encoding). The file is memory-mapped and will
+     * be closed when the reader is closed.
+     *
+     * @param path
+     *            {@link Path} of the file from which the EDI data will be read
+     * @return a new {@link EDIStreamReader} which reads from the file
+     * @throws EDIStreamException
+     *             when the file can not be opened
+     *
+     * @since 1.8
+     */
+    public abstract EDIStreamReader createEDIStreamReader(Path path) throws EDIStreamException;
+
+    /**
+     * Creates a new {@link EDIStreamReader} using the file at the given
+     * {@link Path} and encoding. The encoding must be a valid
+     * {@link java.nio.charset.Charset Charset}. The file is memory-mapped and
+     * will be closed when the reader is closed.
+     *
+     * @param path
+     *            {@link Path} of the file from which the EDI data will be read
+     * @param encoding
+     *            character encoding of the file, must be a valid
+     *            {@link java.nio.charset.Charset Charset}.
+     * @return a new {@link EDIStreamReader} which reads from the file
+     * @throws EDIStreamException
+     *             when encoding is not supported or the file can not be opened
+     *
+     * @since 1.8
+     */
+    public abstract EDIStreamReader createEDIStreamReader(Path path,
+                                                          String encoding)
+            throws EDIStreamException;
+
+    /**
+     * Creates a new {@link EDIStreamReader} using the file at the given
+     * {@link Path} (with default encoding) which uses the {@link Schema} for
+     * validation of the input's control structures (interchange, group,
+     * transaction). The file is memory-mapped and will be closed when the
+     * reader is closed.
+     *
+     * @param path
+     *            {@link Path} of the file from which the EDI data will be read
+     * @param schema
+     *            {@link Schema} for control structure validation
+     * @return a new {@link EDIStreamReader} which reads from the file
+     * @throws EDIStreamException
+     *             when the file can not be opened
+     *
+     * @since 1.8
+     */
+    public abstract EDIStreamReader createEDIStreamReader(Path path, Schema schema) throws EDIStreamException;
+
+    /**
+     * Creates a new {@link EDIStreamReader} using the file at the given
+     * {@link Path} and encoding which uses the {@link Schema} for validation
+     * of the input's control structures (interchange, group, transaction).
+     * The encoding must be a valid {@link java.nio.charset.Charset Charset}.
+     * The file is memory-mapped and will be closed when the reader is closed.
+     *
+     * @param path
+     *            {@link Path} of the file from which the EDI data will be read
+     * @param encoding
+     *            character encoding of the file, must be a valid
+     *            {@link java.nio.charset.Charset Charset}.
+     * @param schema
+     *            {@link Schema} for control structure validation
+     * @return a new {@link EDIStreamReader} which reads from the file
+     * @throws EDIStreamException
+     *             when encoding is not supported or the file can not be opened
+     *
+     * @since 1.8
+     */
+    public abstract EDIStreamReader createEDIStreamReader(Path path,
+                                                          String encoding,
+                                                          Schema schema)
+            throws EDIStreamException;
+
+    /**
+     * Creates a new {@link EDIStreamReader} using the given
+     * {@link ReadableByteChannel} (with default encoding). When the channel is
+     * a {@link java.nio.channels.FileChannel FileChannel}, the remainder of
+     * the file from the channel's current position is memory-mapped and the
+     * channel's position is advanced past the input read when the end of the
+     * file is reached or the reader is closed. The channel is not closed when
+     * the reader is closed.
+     *
+     * @param channel
+     *            {@link ReadableByteChannel} from which the EDI data will be
+     *            read
+     * @return a new {@link EDIStreamReader} which reads from the channel
+     * @throws EDIStreamException
+     *             when the size or position of a file channel can not be
+     *             determined
+     *
+     * @since 1.8
+     */
+    public abstract EDIStreamReader createEDIStreamReader(ReadableByteChannel channel) throws EDIStreamException;
+
+    /**
+     * Creates a new {@link EDIStreamReader} using the given
+     * {@link ReadableByteChannel} and encoding. The encoding must be a valid
+     * {@link java.nio.charset.Charset Charset}. When the channel is a
+     * {@link java.nio.channels.FileChannel FileChannel}, the remainder of the
+     * file from the channel's current position is memory-mapped and the
+     * channel's position is advanced past the input read when the end of the
+     * file is reached or the reader is closed. The channel is not closed when
+     * the reader is closed.
+     *
+     * @param channel
+     *            {@link ReadableByteChannel} from which the EDI data will be
+     *            read
+     * @param encoding
+     *            character encoding of the channel, must be a valid
+     *            {@link java.nio.charset.Charset Charset}.
+     * @return a new {@link EDIStreamReader} which reads from the channel
+     * @throws EDIStreamException
+     *             when encoding is not supported or the size or position of
+     *             a file channel can not be determined
+     *
+     * @since 1.8
+     */
+    public abstract EDIStreamReader createEDIStreamReader(ReadableByteChannel channel,
+                                                          String encoding)
+            throws EDIStreamException;
+
+    /**
+     * Creates a new {@link EDIStreamReader} using the given
+     * {@link ReadableByteChannel} (with default encoding) which uses the
+     * {@link Schema} for validation of the input's control structures
+     * (interchange, group, transaction). When the channel is a
+     * {@link java.nio.channels.FileChannel FileChannel}, the remainder of the
+     * file from the channel's current position is memory-mapped and the
+     * channel's position is advanced past the input read when the end of the
+     * file is reached or the reader is closed. The channel is not closed when
+     * the reader is closed.
+     *
+     * @param channel
+     *            {@link ReadableByteChannel} from which the EDI data will be
+     *            read
+     * @param schema
+     *            {@link Schema} for control structure validation
+     * @return a new {@link EDIStreamReader} which reads from the channel
+     * @throws EDIStreamException
+     *             when the size or position of a file channel can not be
+     *             determined
+     *
+     * @since 1.8
+     */
+    public abstract EDIStreamReader createEDIStreamReader(ReadableByteChannel channel, Schema schema)
+            throws EDIStreamException;
+
+    /**
+     * Creates a new {@link EDIStreamReader} using the given
+     * {@link ReadableByteChannel} and encoding which uses the {@link Schema}
+     * for validation of the input's control structures (interchange, group,
+     * transaction). The encoding must be a valid
+     * {@link java.nio.charset.Charset Charset}. When the channel is a
+     * {@link java.nio.channels.FileChannel FileChannel}, the remainder of the
+     * file from the channel's current position is memory-mapped and the
+     * channel's position is advanced past the input read when the end of the
+     * file is reached or the reader is closed. The channel is not closed when
+     * the reader is closed.
+     *
+     * @param channel
+     *            {@link ReadableByteChannel} from which the EDI data will be
+     *            read
+     * @param encoding
+     *            character encoding of the channel, must be a valid
+     *            {@link java.nio.charset.Charset Charset}.
+     * @param schema
+     *            {@link Schema} for control structure validation
+     * @return a new {@link EDIStreamReader} which reads from the channel
+     * @throws EDIStreamException
+     *             when encoding is not supported or the size or position of
+     *             a file channel can not be determined
+     *
+     * @since 1.8
+     */
+    public abstract EDIStreamReader createEDIStreamReader(ReadableByteChannel channel,
+                                                          String encoding,
+                                                          Schema schema)
+            throws EDIStreamException;
+
+    /**
+     * Obtains an {@link EDIStreamReader} for the given stream (with default
+     * encoding) from this factory's pool of idle readers, creating a new reader
+     * if none is available. The {@link Schema} is used for validation of the
+     * input's control structures (interchange, group, transaction).
+     *
+     * Closing the returned reader returns it to the pool, where it may be
+     * reset and handed out by a later call for the same schema instance. Any
+     * call other than {@code close} on the returned reader once it has been
+     * closed throws {@link IllegalStateException}. Readers reuse their
+     * internal buffers and the validation structures built for previously
+     * read schemas, avoiding the cost of constructing them for every stream.
+     *
+     * The pool may be used concurrently by multiple threads. Only a small
+     * number of idle readers is kept for each schema and encoding, readers
+     * closed beyond that number are discarded. Setting a property or reporter
+     * on this factory discards the pooled readers.
+     *
+     * @param stream
+     *            the input stream to read
+     * @param schema
+     *            {@link Schema} for control structure validation, may be null
+     * @return a reset, possibly reused {@link EDIStreamReader}
+     * @throws EDIStreamException
+     *             when a pooled reader can not be reset
+     *
+     * @since 1.8
+     */
+    public abstract EDIStreamReader createPooledEDIStreamReader(InputStream stream, Schema schema)
+            throws EDIStreamException;
+
+    /**
+     * Obtains an {@link EDIStreamReader} for the given stream and encoding
+     * from this factory's pool of idle readers, creating a new reader if none
+     * is available. The encoding must be a valid
+     * {@link java.nio.charset.Charset Charset}. See
+     * {@link #createPooledEDIStreamReader(InputStream, Schema)} for details of
+     * the pool.
+     *
+     * @param stream
+     *            the input stream to read
+     * @param encoding
+     *            character encoding of the stream, must be a valid
+     *            {@link java.nio.charset.Charset Charset}.
+     * @param schema
+     *            {@link Schema} for control structure validation, may be null
+     * @return a reset, possibly reused {@link EDIStreamReader}
+     * @throws EDIStreamException
+     *             when encoding is not supported or a pooled reader can not be
+     *             reset
+     *
+     * @since 1.8
+     */
+    public abstract EDIStreamReader createPooledEDIStreamReader(InputStream stream, String encoding, Schema schema)
+            throws EDIStreamException;
+
+    /**
+     * Creates a new {@link EDIAsyncStreamReader} (with default encoding). Input
+     * is fed to the reader as it becomes available.
+     *
+     * @return a new {@link EDIAsyncStreamReader}
+     *
+     * @since 1.8
+     */
+    public abstract EDIAsyncStreamReader createEDIAsyncStreamReader();
+
+    /**
+     * Creates a new {@link EDIAsyncStreamReader} using the given encoding and
+     * {@link Schema} for validation of the input's control structures
+     * (interchange, group, transaction). The encoding must be a valid
+     * {@link java.nio.charset.Charset Charset}. Input is fed to the reader as
+     * it becomes available.
+     *
+     * @param encoding
+     *            character encoding of the input, must be a valid
+     *            {@link java.nio.charset.Charset Charset}.
+     * @param schema
+     *            {@link Schema} for control structure validation, may be null
+     * @return a new {@link EDIAsyncStreamReader}
+     * @throws EDIStreamException
+     *             when encoding is not supported
+     *
+     * @since 1.8
+     */
+    public abstract EDIAsyncStreamReader createEDIAsyncStreamReader(String encoding, Schema schema)
+            throws EDIStreamException;
+
+    /**
+     * Reads the given {@link InputStream} (with default encoding) and processes
+     * each of its transactions in parallel using the
+     * {@link ForkJoinPool#commonPool() common pool}.
+     *
+     * @param <T>
+     *            the type of the result of processing a transaction
+     * @param stream
+     *            {@link InputStream} from which the EDI data will be read
+     * @param processor
+     *            processor invoked with a reader for each transaction
+     * @return the results of the processor for each transaction, in the order
+     *         the transactions occur in the stream
+     * @throws EDIStreamException
+     *             when the stream can not be read or scanned for transactions,
+     *             or when thrown by the processor
+     *
+     * @see #processTransactions(InputStream, String, EDITransactionProcessor,
+     *      ForkJoinPool)
+     *
+     * @since 1.8
+     */
+    public abstract <T> List<T> processTransactions(InputStream stream, EDITransactionProcessor<T> processor)
+            throws EDIStreamException;
+
+    /**
+     * Reads the given {@link InputStream} and encoding and processes each of
+     * its transactions in parallel using the given pool. The encoding must be
+     * a valid {@link java.nio.charset.Charset Charset}.
+     *
+     * The entire stream is first read into memory and scanned for the
+     * boundaries of its interchanges, functional groups and transactions using
+     * only the delimiters given by each interchange header. Input too large to
+     * be held in memory should be read from a file, see
+     * {@link #processTransactions(Path, String, EDITransactionProcessor, ForkJoinPool)}. Each transaction is
+     * then read and validated by a separate {@link EDIStreamReader}, created
+     * with the properties and reporter of this factory, and passed to the
+     * processor. The reader for a transaction reads the transaction together
+     * with the header and trailer segments of the interchange and group
+     * enclosing it, so the locations it reports are relative to that input
+     * rather than the original stream. Segments outside of transactions,
+     * other than the headers and trailers, are not processed. No more than a
+     * few transactions for each thread of the pool are submitted to the pool
+     * at once.
+     *
+     * The encoding must be UTF-8 or an ASCII compatible single-byte character
+     * set (e.g. ISO-8859-1, but not EBCDIC) and the input must not contain
+     * binary data elements.
+     *
+     * @param <T>
+     *            the type of the result of processing a transaction
+     * @param stream
+     *            {@link InputStream} from which the EDI data will be read
+     * @param encoding
+     *            character encoding of the stream, must be a valid
+     *            {@link java.nio.charset.Charset Charset}.
+     * @param processor
+     *            processor invoked with a reader for each transaction
+     * @param pool
+     *            pool used to process the transactions
+     * @return the results of the processor for each transaction, in the order
+     *         the transactions occur in the stream
+     * @throws EDIStreamException
+     *             when encoding is not supported, when the stream can not be
+     *             read or scanned for transactions, or when thrown by the
+     *             processor
+     *
+     * @since 1.8
+     */
+    public abstract <T> List<T> processTransactions(InputStream stream,
+                                                    String encoding,
+                                                    EDITransactionProcessor<T> processor,
+                                                    ForkJoinPool pool)
+            throws EDIStreamException;
+
+    /**
+     * Reads the file at the given {@link Path} (with default encoding) and
+     * processes each of its transactions in parallel using the
+     * {@link ForkJoinPool#commonPool() common pool}.
+     *
+     * @param <T>
+     *            the type of the result of processing a transaction
+     * @param path
+     *            {@link Path} of the file from which the EDI data will be read
+     * @param processor
+     *            processor invoked with a reader for each transaction
+     * @return the results of the processor for each transaction, in the order
+     *         the transactions occur in the file
+     * @throws EDIStreamException
+     *             when the file can not be read or scanned for transactions,
+     *             or when thrown by the processor
+     *
+     * @see #processTransactions(Path, String, EDITransactionProcessor,
+     *      ForkJoinPool)
+     *
+     * @since 1.8
+     */
+    public abstract <T> List<T> processTransactions(Path path, EDITransactionProcessor<T> processor)
+            throws EDIStreamException;
+
+    /**
+     * Reads the file at the given {@link Path} and encoding and processes each
+     * of its transactions in parallel using the given pool, as described for
+     * {@link #processTransactions(InputStream, String, EDITransactionProcessor, ForkJoinPool)}.
+     * Rather than being read into memory, the file is memory-mapped and
+     * scanned in large windows, so its size is not limited by the memory
+     * available. Each transaction is read directly from the mapped file.
+     *
+     * @param <T>
+     *            the type of the result of processing a transaction
+     * @param path
+     *            {@link Path} of the file from which the EDI data will be read
+     * @param encoding
+     *            character encoding of the file, must be a valid
+     *            {@link java.nio.charset.Charset Charset}.
+     * @param processor
+     *            processor invoked with a reader for each transaction
+     * @param pool
+     *            pool used to process the transactions
+     * @return the results of the processor for each transaction, in the order
+     *         the transactions occur in the file
+     * @throws EDIStreamException
+     *             when encoding is not supported, when the file can not be
+     *             read or scanned for transactions, or when thrown by the
+     *             processor
+     *
+     * @since 1.8
+     */
+    public abstract <T> List<T> processTransactions(Path path,
+                                                    String encoding,
+                                                    EDITransactionProcessor<T> processor,
+                                                    ForkJoinPool pool)
+            throws EDIStreamException;
+
     /**
      * Creates a new {@link EDIStreamReader} by wrapping the given reader with
      * the {@link EDIStreamFilter} filter.
      *
+     * When the filter is an {@link EDIEventFilter} and the reader was created
+     * by this factory, the filter is also applied by the wrapped reader as
+     * events are parsed: rejected events are discarded before their data is
+     * copied and, if permitted by the filter, the element data of rejected
+     * segments is not validated. The given reader is modified to do so, it
+     * must not be used directly once it has been wrapped and may be wrapped
+     * with an {@link EDIEventFilter} only once.
+     *
      * @param reader
      *            the reader to wrap
      * @param filter
      *            a filter to wrap the given reader
      * @return a new {@link EDIStreamReader} which uses filter
+     * @throws IllegalArgumentException
+     *             if the filter is an {@link EDIEventFilter} and the reader has
+     *             already been wrapped with an {@link EDIEventFilter}
      */
     public abstract EDIStreamReader createFilteredReader(EDIStreamReader reader, EDIStreamFilter filter);
 
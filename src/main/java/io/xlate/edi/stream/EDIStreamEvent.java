@@ -24,7 +24,27 @@ public enum EDIStreamEvent {
 
     SEGMENT_ERROR(true),
     ELEMENT_DATA_ERROR(true),
-    ELEMENT_OCCURRENCE_ERROR(true);
+    ELEMENT_OCCURRENCE_ERROR(true),
+
+    /**
+     * A portion of an element's data, reported only when the
+     * {@link EDIInputFactory#EDI_ELEMENT_CHUNK_SIZE} property is set and the
+     * element is larger than the chunk size. The remainder of the element
+     * follows as further ELEMENT_DATA_PARTIAL events and a final ELEMENT_DATA
+     * event.
+     *
+     * @since 1.8
+     */
+    ELEMENT_DATA_PARTIAL,
+
+    /**
+     * Not an event of the input, reported by an {@link EDIAsyncStreamReader}
+     * when the input fed to the reader so far has been consumed and more input
+     * is required to determine the next event.
+     *
+     * @since 1.8
+     */
+    NEED_MORE_INPUT;
 
     private final boolean error;
 
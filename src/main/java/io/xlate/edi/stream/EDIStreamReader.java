@@ -18,6 +18,7 @@ package io.xlate.edi.stream;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
 import java.util.Map;
 import java.util.NoSuchElementException;
 
@@ -70,6 +71,95 @@ public interface EDIStreamReader extends Closeable, EDIStreamConstants {
      */
     EDIStreamEvent nextTag() throws EDIStreamException;
 
+    /**
+     * Skips the remainder of the current segment, advancing to its
+     * END_SEGMENT event. The skipped elements are neither validated nor
+     * reported. Segments containing binary data elements may not be skipped.
+     *
+     * @return the event type of the element read - END_SEGMENT, or
+     *         NEED_MORE_INPUT when reading asynchronously and the end of the
+     *         segment has not yet been received (subsequent calls to
+     *         {@link #next()} complete the skip)
+     * @throws IllegalStateException
+     *             if the current event is not within a segment
+     * @throws EDIStreamException
+     *             if there is an error processing the underlying EDI source
+     *
+     * @since 1.8
+     */
+    EDIStreamEvent skipSegment() throws EDIStreamException;
+
+    /**
+     * Skips the loop started by the current START_LOOP event, advancing to
+     * the loop's END_LOOP event. The segments of the loop are validated only
+     * to the extent needed to locate the end of the loop, no events (including
+     * errors) within the loop are reported.
+     *
+     * @return the event type of the element read - END_LOOP, or
+     *         NEED_MORE_INPUT when reading asynchronously and the end of the
+     *         loop has not yet been received (subsequent calls to
+     *         {@link #next()} complete the skip)
+     * @throws IllegalStateException
+     *             if the current event is not START_LOOP
+     * @throws EDIStreamException
+     *             if there is an error processing the underlying EDI source
+     *
+     * @since 1.8
+     */
+    EDIStreamEvent skipLoop() throws EDIStreamException;
+
+    /**
+     * Skips the remainder of the current transaction, advancing to its
+     * END_TRANSACTION event. Only the delimiters of the skipped segments are
+     * examined, the transaction's segments are neither validated nor reported
+     * with the exception of the transaction trailer segment, which is
+     * validated against the control schema.
+     *
+     * @return the event type of the element read - END_TRANSACTION, or
+     *         NEED_MORE_INPUT when reading asynchronously and the end of the
+     *         transaction has not yet been received (subsequent calls to
+     *         {@link #next()} complete the skip)
+     * @throws IllegalStateException
+     *             if the current event is not within a transaction
+     * @throws EDIStreamException
+     *             if there is an error processing the underlying EDI source
+     *
+     * @since 1.8
+     */
+    EDIStreamEvent skipTransaction() throws EDIStreamException;
+
+    /**
+     * Reads through the end of the next segment, returning a view of its
+     * element values and the validation errors reported for it. Events
+     * preceding the segment such as the start or end of loops and
+     * transactions are passed over. On return, the current event is the
+     * segment's END_SEGMENT. Validation errors are available from the view
+     * and are not reported to the {@link EDIReporter}, if any.
+     *
+     * The view is reused by the reader for each segment; it and the values
+     * obtained from it are valid only until the reader is next advanced. The
+     * content of binary data elements is not available from the view.
+     * Element data is copied into the view as it is read, so when
+     * {@link EDIInputFactory#EDI_ELEMENT_CHUNK_SIZE chunking} is enabled the
+     * reader itself holds no more than a chunk of an element at a time.
+     *
+     * A transaction schema may be set by calling {@link #next()} until
+     * START_TRANSACTION, then {@link #setTransactionSchema(Schema)} prior to
+     * reading the transaction's segments with this method.
+     *
+     * @return a view of the segment read, or null when no segments remain or
+     *         when reading asynchronously and more input is required to
+     *         complete the segment (subsequent calls complete the segment)
+     * @throws IllegalStateException
+     *             if the current event is within a segment not being read by
+     *             this method
+     * @throws EDIStreamException
+     *             if there is an error processing the underlying EDI source
+     *
+     * @since 1.8
+     */
+    SegmentView nextSegment() throws EDIStreamException;
+
     /**
      * Returns true if there are more parsing events and false if there are no
      * more events. This method will return false if the current state of the
@@ -91,6 +181,27 @@ public interface EDIStreamReader extends Closeable, EDIStreamConstants {
     @Override
     void close() throws IOException;
 
+    /**
+     * Prepare this reader to read a new stream from its beginning, as if the
+     * reader had been newly created for the stream with the same properties,
+     * reporter and control schema. Internal buffers and the validation
+     * structures built for previously used schemas are retained and reused.
+     * Any transaction schema set on the reader is cleared. The previous input
+     * stream is not closed.
+     *
+     * This method may be called whether or not the reader has been closed.
+     *
+     * @param stream
+     *            the input stream to read
+     * @throws EDIStreamException
+     *             if the reader can not be reset
+     * @throws UnsupportedOperationException
+     *             if the reader does not read from an {@link InputStream}
+     *
+     * @since 1.8
+     */
+    void reset(InputStream stream) throws EDIStreamException;
+
     /**
      * Returns an integer code that indicates the type of the event the cursor
      * is pointing to.
@@ -210,9 +321,9 @@ public interface EDIStreamReader extends Closeable, EDIStreamConstants {
 
     /**
      * Returns the current value of the parse event as a string. This returns
-     * the string value of an ELEMENT_DATA event, and the string value of a
-     * segment tag in a START_SEGMENT event. During an ELEMENT_ERROR event, this
-     * contains the invalid element (when available).
+     * the string value of an ELEMENT_DATA or ELEMENT_DATA_PARTIAL event, and
+     * the string value of a segment tag in a START_SEGMENT event. During an
+     * ELEMENT_ERROR event, this contains the invalid element (when available).
      *
      * @return the current text or null
      * @throws IllegalStateException
@@ -228,6 +339,11 @@ public interface EDIStreamReader extends Closeable, EDIStreamConstants {
      * modify the contents of the array are breaches of the contract for this
      * interface.
      *
+     * When the {@link EDIInputFactory#EDI_ZERO_COPY_TEXT} property is set, the
+     * array returned for element data is the reader's internal buffer and the
+     * text occupies the range given by {@link #getTextStart()} and
+     * {@link #getTextLength()}.
+     *
      * @return the current text or an empty array
      * @throws IllegalStateException
      *             if this state is not a valid text state
@@ -308,6 +424,20 @@ public interface EDIStreamReader extends Closeable, EDIStreamConstants {
      */
     int getTextLength();
 
+    /**
+     * Returns the text of the current event as a CharSequence without
+     * allocating a String. The sequence is only valid until next() is called
+     * and the same instance may be re-used for later events. It must not be
+     * retained or modified by the caller.
+     *
+     * @return the current text
+     * @throws IllegalStateException
+     *             if this state is not a valid text state
+     *
+     * @since 1.8
+     */
+    CharSequence getTextSequence();
+
     /**
      * Return the current location of the processor. If the Location is unknown
      * the processor should return an implementation of Location that returns -1
@@ -359,4 +489,24 @@ public interface EDIStreamReader extends Closeable, EDIStreamConstants {
      *             binary data element immediately preceding this call.
      */
     InputStream getBinaryData();
+
+    /**
+     * Writes the remaining content of the current binary data element to the
+     * target channel. When the reader's input is a file and the target is a
+     * {@link java.nio.channels.FileChannel FileChannel} or socket channel, the
+     * data is transferred by the operating system without being copied
+     * through the Java heap.
+     *
+     * @param target
+     *            the channel to write
+     * @return the number of bytes written
+     * @throws IllegalStateException
+     *             if the current event is not ELEMENT_DATA_BINARY
+     * @throws EDIStreamException
+     *             if there is an error reading the binary data or writing to
+     *             the target
+     *
+     * @since 1.8
+     */
+    long transferBinaryData(WritableByteChannel target) throws EDIStreamException;
 }
@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * Copyright 2017 xlate.io LLC, http://www.xlate.io
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package io.xlate.edi.stream;
+
+/**
+ * Processes a single transaction (X12 ST/SE or EDIFACT UNH/UNT) of an input
+ * read by
+ * {@link EDIInputFactory#processTransactions(java.io.InputStream, EDITransactionProcessor)}.
+ * Transactions may be processed concurrently, implementations must be safe
+ * for use by multiple threads.
+ *
+ * @param <T>
+ *            the type of the result of processing a transaction
+ *
+ * @since 1.8
+ */
+@FunctionalInterface
+public interface EDITransactionProcessor<T> {
+
+    /**
+     * Process the transaction available from the reader. The reader is
+     * positioned at the {@link EDIStreamEvent#START_TRANSACTION
+     * START_TRANSACTION} event, allowing a transaction schema to be set using
+     * {@link EDIStreamReader#setTransactionSchema(io.xlate.edi.schema.Schema)}.
+     * When {@link EDIInputFactory#EDI_VALIDATE_CONTROL_STRUCTURE control
+     * structures are not validated}, no START_TRANSACTION event is reported
+     * and the reader is instead positioned at the
+     * {@link EDIStreamEvent#START_SEGMENT START_SEGMENT} event of the ST/UNH
+     * segment.
+     * The transaction's events are followed by the end of its functional
+     * group (if any) and interchange, no other transactions are read. The
+     * reader is closed once this method returns.
+     *
+     * @param reader
+     *            the reader of the transaction
+     * @return the result of processing the transaction
+     * @throws EDIStreamException
+     *             when the transaction can not be processed
+     */
+    T process(EDIStreamReader reader) throws EDIStreamException;
+
+}
@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright 2020 xlate.io LLC, http://www.xlate.io
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package io.xlate.edi.stream;
+
+/**
+ * A read-only view of a complete segment, obtained from
+ * {@link EDIStreamReader#nextSegment()}. The view is reused by the reader for
+ * each segment read and its contents, including the character sequences
+ * returned by its methods, are valid only until the reader is next advanced.
+ *
+ * Element positions, repetitions, and components are numbered from 1,
+ * consistent with {@link Location}.
+ *
+ * @since 1.8
+ */
+public interface SegmentView {
+
+    /**
+     * Return the tag of the segment.
+     *
+     * @return the segment tag
+     */
+    String getTag();
+
+    /**
+     * Return the number of element positions present in the segment, i.e. the
+     * position of the last element present.
+     *
+     * @return the number of element positions in the segment
+     */
+    int getElementCount();
+
+    /**
+     * Return the number of occurrences of the element at the given position,
+     * or 0 if the element is not present.
+     *
+     * @param position
+     *            the element position
+     * @return the number of occurrences of the element
+     */
+    int getRepetitionCount(int position);
+
+    /**
+     * Return the number of components of the first occurrence of the element
+     * at the given position. Returns 1 for a simple element and 0 if the
+     * element is not present.
+     *
+     * @param position
+     *            the element position
+     * @return the number of components of the element
+     */
+    int getComponentCount(int position);
+
+    /**
+     * Return the number of components of an occurrence of the element at the
+     * given position. Returns 1 for a simple element and 0 if the occurrence
+     * is not present.
+     *
+     * @param position
+     *            the element position
+     * @param repetition
+     *            the occurrence of the element
+     * @return the number of components of the occurrence
+     */
+    int getComponentCount(int position, int repetition);
+
+    /**
+     * Return the value of the element at the given position. For a composite
+     * or repeating element, the value of the first component of the first
+     * occurrence is returned.
+     *
+     * @param position
+     *            the element position
+     * @return the value of the element, or null if not present
+     */
+    CharSequence element(int position);
+
+    /**
+     * Return the value of a component of the first occurrence of the element
+     * at the given position. Component 1 of a simple element is the element's
+     * value.
+     *
+     * @param position
+     *            the element position
+     * @param component
+     *            the component position
+     * @return the value of the component, or null if not present
+     */
+    CharSequence component(int position, int component);
+
+    /**
+     * Return the value of a component of an occurrence of the element at the
+     * given position. Component 1 of a simple element is the element's value.
+     *
+     * @param position
+     *            the element position
+     * @param repetition
+     *            the occurrence of the element
+     * @param component
+     *            the component position
+     * @return the value of the component, or null if not present
+     */
+    CharSequence component(int position, int repetition, int component);
+
+    /**
+     * Return the value of an occurrence of the element at the given position.
+     * For a composite element, the value of the occurrence's first component
+     * is returned.
+     *
+     * @param position
+     *            the element position
+     * @param repetition
+     *            the occurrence of the element
+     * @return the value of the occurrence, or null if not present
+     */
+    CharSequence repetition(int position, int repetition);
+
+    /**
+     * Return the number of validation errors reported for the segment and its
+     * elements.
+     *
+     * @return the number of validation errors
+     */
+    int getErrorCount();
+
+    /**
+     * Return the type of a validation error reported for the segment.
+     *
+     * @param index
+     *            the index of the error, 0 through getErrorCount() - 1
+     * @return the type of the error
+     */
+    EDIStreamValidationError getErrorType(int index);
+
+    /**
+     * Return the reference code of the segment or element in error, as
+     * returned by {@link EDIStreamReader#getReferenceCode()} for the
+     * corresponding error event.
+     *
+     * @param index
+     *            the index of the error, 0 through getErrorCount() - 1
+     * @return the reference code of the error, may be null
+     */
+    String getErrorReferenceCode(int index);
+
+    /**
+     * Return the position of the element in error, or -1 for an error of the
+     * segment itself.
+     *
+     * @param index
+     *            the index of the error, 0 through getErrorCount() - 1
+     * @return the element position of the error
+     */
+    int getErrorElementPosition(int index);
+}
@@ -0,0 +1,304 @@
+/*******************************************************************************
+ * Copyright 2020 xlate.io LLC, http://www.xlate.io
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package io.xlate.edi.stream;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.xlate.edi.internal.stream.LocationView;
+
+/**
+ * A {@link Flow.Publisher} of the events of an {@link EDIStreamReader}. Events
+ * are published in batches, each a list of at most the configured number of
+ * immutable {@link Event}s. The reader is advanced only to satisfy the demand
+ * signaled by the subscriber via {@link Flow.Subscription#request(long)}, one
+ * batch per unit of demand, so that no more than a single batch of events is
+ * held in memory when the subscriber is slow to request more.
+ *
+ * Reading takes place on a thread of the executor given to the publisher,
+ * and only while there is outstanding demand. The reader is closed once all
+ * events have been published, when an error occurs, or when the subscription
+ * is cancelled. A publisher supports a single subscriber. The reader must not
+ * be an {@link EDIAsyncStreamReader}, and the data of binary elements is not
+ * included in the published events.
+ *
+ * @since 1.8
+ */
+public class EDIStreamPublisher implements Flow.Publisher<List<EDIStreamPublisher.Event>> {
+
+    private final EDIStreamReader reader;
+    private final Executor executor;
+    private final int batchSize;
+    private final AtomicBoolean subscribed = new AtomicBoolean(false);
+
+    /**
+     * Create a publisher of the events of a reader.
+     *
+     * @param reader
+     *            the reader of the events to publish
+     * @param executor
+     *            executor used to read and publish the events
+     * @param batchSize
+     *            the maximum number of events in each batch
+     * @throws IllegalArgumentException
+     *             when batchSize is less than 1
+     */
+    public EDIStreamPublisher(EDIStreamReader reader, Executor executor, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be greater than 0");
+        }
+
+        this.reader = Objects.requireNonNull(reader);
+        this.executor = Objects.requireNonNull(executor);
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super List<Event>> subscriber) {
+        Objects.requireNonNull(subscriber);
+
+        if (subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new ReaderSubscription(subscriber));
+        } else {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    // Nothing will be published
+                }
+
+                @Override
+                public void cancel() {
+                    // Nothing to cancel
+                }
+            });
+            subscriber.onError(new IllegalStateException("Publisher already has a subscriber"));
+        }
+    }
+
+    /**
+     * An immutable copy of the state of an {@link EDIStreamReader} at an
+     * event.
+     */
+    public static final class Event {
+        private final EDIStreamEvent type;
+        private final String text;
+        private final String referenceCode;
+        private final EDIStreamValidationError errorType;
+        private final Location location;
+
+        Event(EDIStreamReader reader, EDIStreamEvent type) {
+            this.type = type;
+            this.text = hasText(type) ? reader.getText() : null;
+            this.referenceCode = reader.getReferenceCode();
+            this.errorType = type.isError() ? reader.getErrorType() : null;
+            this.location = new LocationView(reader.getLocation());
+        }
+
+        static boolean hasText(EDIStreamEvent type) {
+            switch (type) {
+            case START_SEGMENT:
+            case END_SEGMENT:
+            case ELEMENT_DATA:
+            case ELEMENT_DATA_PARTIAL:
+            case ELEMENT_DATA_ERROR:
+            case SEGMENT_ERROR:
+                return true;
+            default:
+                return false;
+            }
+        }
+
+        /**
+         * @return the type of the event
+         */
+        public EDIStreamEvent getType() {
+            return type;
+        }
+
+        /**
+         * @return the text of the event as given by
+         *         {@link EDIStreamReader#getText()}, or null for events
+         *         without text
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * @return the reference code of the event as given by
+         *         {@link EDIStreamReader#getReferenceCode()}
+         */
+        public String getReferenceCode() {
+            return referenceCode;
+        }
+
+        /**
+         * @return the error of an error event, otherwise null
+         */
+        public EDIStreamValidationError getErrorType() {
+            return errorType;
+        }
+
+        /**
+         * @return the location of the event
+         */
+        public Location getLocation() {
+            return location;
+        }
+
+        @Override
+        public String toString() {
+            return type + (text != null ? " [" + text + ']' : "") + ' ' + location;
+        }
+    }
+
+    class ReaderSubscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super List<Event>> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        // Number of signals (requests or cancellation) not yet seen by the drain loop
+        private final AtomicInteger pending = new AtomicInteger();
+        private volatile boolean cancelled;
+        // Error from a non-positive request, signaled by the drain loop
+        private volatile Throwable requestError;
+        private boolean done;
+
+        ReaderSubscription(Flow.Subscriber<? super List<Event>> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n < 1) {
+                if (requestError == null) {
+                    requestError = new IllegalArgumentException("Requested demand must be positive: " + n);
+                }
+            } else {
+                demand.getAndAccumulate(n, (current, added) -> {
+                    long total = current + added;
+                    return total < 0 ? Long.MAX_VALUE : total;
+                });
+            }
+
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule();
+        }
+
+        void schedule() {
+            if (pending.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    pending.set(0);
+                    finish(e);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            int signals = pending.get();
+
+            do {
+                final Throwable error = requestError;
+
+                if (error != null) {
+                    finish(error);
+                }
+
+                while (!done && !cancelled && requestError == null && demand.get() > 0) {
+                    publishBatch();
+                }
+
+                if (!done && cancelled) {
+                    done = true;
+                    closeReader();
+                }
+
+                signals = pending.addAndGet(-signals);
+            } while (signals != 0);
+        }
+
+        void publishBatch() {
+            final List<Event> batch = new ArrayList<>(batchSize);
+
+            try {
+                while (batch.size() < batchSize && reader.hasNext()) {
+                    batch.add(new Event(reader, reader.next()));
+                }
+            } catch (Exception e) {
+                finish(e);
+                return;
+            }
+
+            if (batch.isEmpty()) {
+                finish(null);
+                return;
+            }
+
+            demand.decrementAndGet();
+            subscriber.onNext(Collections.unmodifiableList(batch));
+
+            try {
+                if (!reader.hasNext()) {
+                    finish(null);
+                }
+            } catch (Exception e) {
+                finish(e);
+            }
+        }
+
+        void finish(Throwable error) {
+            if (done) {
+                return;
+            }
+
+            done = true;
+            closeReader();
+
+            if (cancelled) {
+                return;
+            }
+
+            if (error != null) {
+                subscriber.onError(error);
+            } else {
+                subscriber.onComplete();
+            }
+        }
+
+        void closeReader() {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                // The events have already been published
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright 2020 xlate.io LLC, http://www.xlate.io
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package io.xlate.edi.internal.schema;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class CodeSetTest {
+
+    static final List<String> CODES = Arrays.asList("US", "CA", "MX", "DE", "FR", "GBR", "A", "ZZZZ", "AB");
+
+    @Test
+    void testContainsCharSequence() {
+        Set<String> codes = CodeSet.of(CODES);
+
+        for (String code : CODES) {
+            assertTrue(CodeSet.contains(codes, code));
+            assertTrue(CodeSet.contains(codes, new StringBuilder(code)));
+            assertTrue(CodeSet.contains(codes, CharBuffer.wrap(("*" + code + "*").toCharArray(), 1, code.length())));
+        }
+
+        for (String code : Arrays.asList("", "U", "USA", "us", "GB", "ZZZ", "B", "AC")) {
+            assertFalse(CodeSet.contains(codes, new StringBuilder(code)), code);
+            assertFalse(codes.contains(code), code);
+        }
+    }
+
+    @Test
+    void testSetOperations() {
+        Set<String> codes = CodeSet.of(CODES);
+
+        assertEquals(CODES, new ArrayList<>(codes));
+        assertEquals(new HashSet<>(CODES), codes);
+        assertEquals(new HashSet<>(CODES).hashCode(), codes.hashCode());
+        assertEquals(CODES.toString(), codes.toString());
+        assertSame(codes, CodeSet.of(codes));
+        assertThrows(UnsupportedOperationException.class, () -> codes.add("XX"));
+    }
+
+    @Test
+    void testEmptyAndOtherSets() {
+        assertSame(Collections.emptySet(), CodeSet.of(Collections.emptyList()));
+        assertTrue(CodeSet.contains(new HashSet<>(CODES), new StringBuilder("GBR")));
+        assertFalse(CodeSet.contains(new HashSet<>(CODES), new StringBuilder("GB")));
+    }
+}
@@ -1,6 +1,7 @@
 package io.xlate.edi.internal.schema;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 import java.util.Arrays;
 import java.util.Collections;
@@ -24,4 +25,54 @@ class ElementTest {
         assertEquals("id: E1, type: ELEMENT, base: STRING, code: 1, minLength: 0, maxLength: 5, values: [ABCDE, FGHIJ]", e.toString());
     }
 
+    @Test
+    void testElementVersionsResolved() {
+        ElementType e = new ElementType("E1", Base.STRING, "1", 1, 1L, 5L, new HashSet<>(Arrays.asList("A", "B")),
+                                        Arrays.asList(new ElementType.Version("", "004010", null, 3L, null),
+                                                      new ElementType.Version("005010", "", 2L, null, new HashSet<>(Arrays.asList("C")))));
+
+        assertEquals(1L, e.getMinLength("003040"));
+        assertEquals(3L, e.getMaxLength("003040"));
+        assertEquals(new HashSet<>(Arrays.asList("A", "B")), e.getValueSet("003040"));
+
+        assertEquals(1L, e.getMinLength("004020"));
+        assertEquals(5L, e.getMaxLength("004020"));
+        assertEquals(new HashSet<>(Arrays.asList("A", "B")), e.getValueSet("004020"));
+
+        assertEquals(2L, e.getMinLength("005010"));
+        assertEquals(5L, e.getMaxLength("005010"));
+        assertEquals(Collections.singleton("C"), e.getValueSet("005010"));
+
+        assertSame(e.resolveVersion("005010"), e.resolveVersion(new String("005010")));
+        assertSame(e.resolveVersion("005010"), e.resolveVersion("006020"));
+        assertSame(e.resolveVersion("004020"), e.resolveVersion("004030"));
+    }
+
+    @Test
+    void testReferenceVersionsResolved() {
+        Reference r = new Reference("E1", "element", 0, 1,
+                                    Arrays.asList(new Reference.Version("005010", "", 1, 2)));
+
+        assertEquals(0, r.getMinOccurs("004010"));
+        assertEquals(1, r.getMaxOccurs("004010"));
+        assertEquals(1, r.getMinOccurs("005010"));
+        assertEquals(2, r.getMaxOccurs("005010"));
+        assertSame(r.resolveVersion("005010"), r.resolveVersion("005010"));
+        assertSame(r.resolveVersion("005010"), r.resolveVersion("007030"));
+        assertSame(r.resolveVersion("003040"), r.resolveVersion("004010"));
+    }
+
+    @Test
+    void testAlternatingVersionsResolved() {
+        Reference r = new Reference("E1", "element", 0, 1,
+                                    Arrays.asList(new Reference.Version("005010", "", 1, 2)));
+
+        // The most recent resolution is replaced as the version changes
+        for (int i = 0; i < 3; i++) {
+            assertEquals(2, r.getMaxOccurs("005010"));
+            assertEquals(2, r.getMaxOccurs("005010"));
+            assertEquals(1, r.getMaxOccurs("004010"));
+            assertEquals(1, r.getMaxOccurs(new String("004010")));
+        }
+    }
 }
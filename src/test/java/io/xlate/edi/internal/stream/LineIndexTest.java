@@ -0,0 +1,63 @@
+package io.xlate.edi.internal.stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class LineIndexTest {
+
+    static StaEDIStreamLocation read(StaEDIStreamLocation location, String text) {
+        for (char c : text.toCharArray()) {
+            location.incrementOffset(c);
+        }
+        return location;
+    }
+
+    static String position(StaEDIStreamLocation location) {
+        return location.getLineNumber() + ":" + location.getColumnNumber() + ":" + location.getCharacterOffset();
+    }
+
+    @Test
+    void testIndexedLinesMatchTrackedLines() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            text.append("AB\n\nC");
+        }
+
+        StaEDIStreamLocation tracked = new StaEDIStreamLocation();
+        StaEDIStreamLocation indexed = new StaEDIStreamLocation();
+        indexed.setLinesIndexed(true);
+        assertEquals(position(tracked), position(indexed));
+
+        for (int i = 0; i < text.length(); i++) {
+            read(tracked, text.substring(i, i + 1));
+            read(indexed, text.substring(i, i + 1));
+            assertEquals(position(tracked), position(indexed));
+        }
+    }
+
+    @Test
+    void testIndexedLinesOfEarlierLocation() {
+        StaEDIStreamLocation location = new StaEDIStreamLocation();
+        location.setLinesIndexed(true);
+        StaEDIStreamLocation event = new StaEDIStreamLocation();
+
+        read(location, "AB\nCD");
+        event.set(location);
+        read(location, "\nEFG\n");
+
+        assertEquals("2:3:4", position(event));
+        assertEquals("4:1:9", position(location));
+        StaEDIStreamLocation copy = event.copy();
+
+        // Earlier offsets are no longer indexed once released
+        location.releaseLines();
+        read(location, "H\nI");
+        assertEquals("5:2:12", position(location));
+        assertEquals("2:3:4", position(copy));
+
+        location.reset();
+        read(location, "J\n");
+        assertEquals("2:1:1", position(location));
+    }
+}
@@ -22,6 +22,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.Arrays;
 
 import org.junit.jupiter.api.Test;
 
@@ -263,6 +264,47 @@ class SegmentValidationTest {
         assertTrue(!reader.hasNext(), "Unexpected segment errors exist");
     }
 
+    @Test
+    void testSegmentNotDefinedWithinLoop()
+            throws EDISchemaException,
+            EDIStreamException {
+        EDIInputFactory factory = EDIInputFactory.newFactory();
+        InputStream stream = new ByteArrayInputStream((""
+                + "ISA*00*          *00*          *ZZ*ReceiverID     *ZZ*Sender         *050812*1953*^*00501*508121953*0*P*:~"
+                + "S01*X~"
+                + "S11*X~"
+                + "S12*X~"
+                + "ZZ*X~"
+                + "S0B*X~"
+                + "S13*X~"
+                + "S0B*X~"
+                + "S19*X~"
+                + "S20*X~"
+                + "S21*X~"
+                + "S09*X~"
+                + "IEA*1*508121953~").getBytes());
+
+        SchemaFactory schemaFactory = SchemaFactory.newFactory();
+        URL schemaLocation = getClass().getResource("/x12/EDISchemaSegmentValidation.xml");
+        Schema schema = schemaFactory.createSchema(schemaLocation);
+
+        EDIStreamReader reader = factory.createEDIStreamReader(stream, schema);
+        reader = factory.createFilteredReader(reader, segmentErrorFilter);
+
+        assertEquals(EDIStreamEvent.START_TRANSACTION, reader.next(), "Expecting start of transaction");
+        reader.setTransactionSchema(schemaFactory.createSchema(getClass().getResource("/x12/EDISchemaSegmentValidationTx.xml")));
+
+        // Segments defined by neither schema are reported without leaving the current loop
+        for (String tag : Arrays.asList("ZZ", "S0B", "S0B")) {
+            assertTrue(reader.hasNext(), "Segment errors do not exist");
+            assertEquals(EDIStreamEvent.SEGMENT_ERROR, reader.next());
+            assertEquals(EDIStreamValidationError.SEGMENT_NOT_IN_DEFINED_TRANSACTION_SET, reader.getErrorType());
+            assertEquals(tag, reader.getText());
+        }
+
+        assertTrue(!reader.hasNext(), "Unexpected segment errors exist");
+    }
+
     @Test
     void testLoopMultiOccurrenceSingleSegment() throws EDISchemaException, EDIStreamException {
         EDIInputFactory factory = EDIInputFactory.newFactory();
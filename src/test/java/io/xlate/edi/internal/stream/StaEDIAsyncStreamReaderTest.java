@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * Copyright 2020 xlate.io LLC, http://www.xlate.io
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package io.xlate.edi.internal.stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import io.xlate.edi.stream.EDIAsyncStreamReader;
+import io.xlate.edi.stream.EDIInputFactory;
+import io.xlate.edi.stream.EDIStreamEvent;
+import io.xlate.edi.stream.EDIStreamException;
+import io.xlate.edi.stream.EDIStreamReader;
+
+class StaEDIAsyncStreamReaderTest {
+
+    static final String SIMPLE997 = ""
+            + "ISA*00*          *00*          *ZZ*ReceiverID     *ZZ*Sender         *050812*1953*^*00501*508121953*0*P*:~\n"
+            + "GS*FA*ReceiverDept*SenderDept*20050812*195335*000005*X*005010X230~\n"
+            + "ST*997*0001~\n"
+            + "AK1*HC*000001~\n"
+            + "AK2*837*0021~\n"
+            + "AK3*NM1*8**8~\n"
+            + "AK4*8*66*7*MI~\n"
+            + "AK5*R*5~\n"
+            + "AK9*R*1*1*0~\n"
+            + "SE*8*0001~\n"
+            + "GE*1*000005~\n"
+            + "IEA*1*508121953~\n";
+
+    static String describe(EDIStreamReader reader, EDIStreamEvent event) {
+        switch (event) {
+        case START_SEGMENT:
+        case ELEMENT_DATA:
+            return event + "=" + reader.getText() + "@" + reader.getLocation().getCharacterOffset();
+        default:
+            return event + "@" + reader.getLocation().getCharacterOffset();
+        }
+    }
+
+    static List<String> readBlocking(byte[] data) throws Exception {
+        return readBlocking(EDIInputFactory.newFactory(), data);
+    }
+
+    static List<String> readBlocking(EDIInputFactory factory, byte[] data) throws Exception {
+        EDIStreamReader reader = factory.createEDIStreamReader(new ByteArrayInputStream(data));
+        List<String> events = new ArrayList<>();
+
+        while (reader.hasNext()) {
+            events.add(describe(reader, reader.next()));
+        }
+
+        reader.close();
+        return events;
+    }
+
+    static List<String> readAsync(byte[] data, int chunkSize) throws Exception {
+        return readAsync(EDIInputFactory.newFactory(), data, chunkSize);
+    }
+
+    static List<String> readAsync(EDIInputFactory factory, byte[] data, int chunkSize) throws Exception {
+        EDIAsyncStreamReader reader = factory.createEDIAsyncStreamReader();
+        List<String> events = new ArrayList<>();
+        int offset = 0;
+
+        while (reader.hasNext()) {
+            EDIStreamEvent event = reader.next();
+
+            if (event == EDIStreamEvent.NEED_MORE_INPUT) {
+                int length = Math.min(chunkSize, data.length - offset);
+                reader.feedInput(data, offset, length);
+                offset += length;
+
+                if (offset == data.length) {
+                    reader.endOfInput();
+                }
+            } else {
+                events.add(describe(reader, event));
+            }
+        }
+
+        reader.close();
+        return events;
+    }
+
+    @Test
+    void testEventsMatchBlockingReader() throws Exception {
+        byte[] data = SIMPLE997.getBytes(StandardCharsets.UTF_8);
+        List<String> expected = readBlocking(data);
+        assertTrue(expected.size() > 50);
+
+        for (int chunkSize : new int[] { 1, 2, 7, 106, 4096 }) {
+            assertEquals(expected, readAsync(data, chunkSize), "chunk size " + chunkSize);
+        }
+    }
+
+    @Test
+    void testConcatenatedInterchangesMatchBlockingReader() throws Exception {
+        EDIInputFactory factory = EDIInputFactory.newFactory();
+        factory.setProperty(EDIInputFactory.EDI_CONCATENATED_INTERCHANGES, true);
+        String edifact = ""
+                + "UNB+UNOA:3+005435656:1+006415160:1+060515:1434+00000000000778'"
+                + "UNH+00000000000117+INVOIC:D:97B:UN'"
+                + "UNT+2+00000000000117'"
+                + "UNZ+1+00000000000778'";
+        byte[] data = (edifact + "\n" + edifact + edifact + "\r\n").getBytes(StandardCharsets.UTF_8);
+        List<String> expected = readBlocking(factory, data);
+        assertEquals(3, expected.stream().filter(event -> event.startsWith("END_INTERCHANGE")).count());
+
+        for (int chunkSize : new int[] { 1, 7, 4096 }) {
+            assertEquals(expected, readAsync(factory, data, chunkSize), "chunk size " + chunkSize);
+        }
+    }
+
+    @Test
+    void testConcatenatedInterchangesEndOfInputAfterInterchange() throws Exception {
+        EDIInputFactory factory = EDIInputFactory.newFactory();
+        factory.setProperty(EDIInputFactory.EDI_CONCATENATED_INTERCHANGES, true);
+        EDIAsyncStreamReader reader = factory.createEDIAsyncStreamReader();
+        byte[] data = SIMPLE997.getBytes(StandardCharsets.UTF_8);
+        reader.feedInput(data, 0, data.length);
+        EDIStreamEvent event;
+
+        while ((event = reader.next()) != EDIStreamEvent.END_INTERCHANGE) {
+            assertFalse(event == EDIStreamEvent.NEED_MORE_INPUT);
+        }
+
+        assertTrue(reader.hasNext());
+        assertEquals(EDIStreamEvent.NEED_MORE_INPUT, reader.next());
+        reader.feedInput(data, 0, data.length);
+        assertEquals(EDIStreamEvent.START_INTERCHANGE, reader.next());
+
+        while ((event = reader.next()) != EDIStreamEvent.END_INTERCHANGE) {
+            assertFalse(event == EDIStreamEvent.NEED_MORE_INPUT);
+        }
+
+        assertEquals(EDIStreamEvent.NEED_MORE_INPUT, reader.next());
+        reader.endOfInput();
+        assertFalse(reader.hasNext());
+        reader.close();
+    }
+
+    @Test
+    void testMultibyteCharacterSplitAcrossChunks() throws Exception {
+        byte[] data = SIMPLE997.replace("AK4*8*66*7*MI~", "AK4*8*66*7*MÉ~").getBytes(StandardCharsets.UTF_8);
+        List<String> expected = readBlocking(data);
+        assertTrue(expected.stream().anyMatch(event -> event.startsWith("ELEMENT_DATA=MÉ@")));
+        assertEquals(expected, readAsync(data, 1));
+    }
+
+    @Test
+    void testNeedMoreInputBeforeInput() throws Exception {
+        EDIAsyncStreamReader reader = EDIInputFactory.newFactory().createEDIAsyncStreamReader();
+        assertTrue(reader.hasNext());
+        assertEquals(EDIStreamEvent.NEED_MORE_INPUT, reader.next());
+        assertEquals(EDIStreamEvent.NEED_MORE_INPUT, reader.getEventType());
+        assertEquals(EDIStreamEvent.NEED_MORE_INPUT, reader.nextTag());
+
+        reader.feedInput(ByteBuffer.wrap(SIMPLE997.substring(0, 120).getBytes(StandardCharsets.UTF_8)));
+        assertEquals(EDIStreamEvent.START_INTERCHANGE, reader.next());
+        assertEquals(EDIStreamEvent.START_SEGMENT, reader.nextTag());
+        assertEquals("ISA", reader.getText());
+        reader.close();
+    }
+
+    @Test
+    void testIncompleteInputAtEnd() throws Exception {
+        EDIAsyncStreamReader reader = EDIInputFactory.newFactory().createEDIAsyncStreamReader();
+        byte[] data = SIMPLE997.substring(0, 200).getBytes(StandardCharsets.UTF_8);
+        reader.feedInput(data, 0, data.length);
+        reader.endOfInput();
+
+        assertThrows(EDIStreamException.class, () -> {
+            while (reader.hasNext()) {
+                assertFalse(reader.next() == EDIStreamEvent.NEED_MORE_INPUT);
+            }
+        });
+    }
+
+    @Test
+    void testFeedAfterEndOfInput() {
+        EDIAsyncStreamReader reader = EDIInputFactory.newFactory().createEDIAsyncStreamReader();
+        reader.endOfInput();
+        byte[] data = new byte[1];
+        assertThrows(IllegalStateException.class, () -> reader.feedInput(data, 0, 1));
+    }
+
+    @Test
+    void testFeedAfterClose() throws Exception {
+        EDIAsyncStreamReader reader = EDIInputFactory.newFactory().createEDIAsyncStreamReader();
+        reader.close();
+        byte[] data = new byte[1];
+        assertThrows(IllegalStateException.class, () -> reader.feedInput(data, 0, 1));
+    }
+}
@@ -24,7 +24,9 @@ import static org.junit.jupiter.api.Assertions.fail;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 import org.junit.jupiter.api.Test;
@@ -32,9 +34,11 @@ import org.junit.jupiter.api.Test;
 import io.xlate.edi.schema.EDISchemaException;
 import io.xlate.edi.schema.Schema;
 import io.xlate.edi.schema.SchemaFactory;
+import io.xlate.edi.stream.EDIEventFilter;
 import io.xlate.edi.stream.EDIInputFactory;
 import io.xlate.edi.stream.EDIStreamEvent;
 import io.xlate.edi.stream.EDIStreamException;
+import io.xlate.edi.stream.EDIStreamFilter;
 import io.xlate.edi.stream.EDIStreamReader;
 import io.xlate.edi.stream.Location;
 
@@ -249,4 +253,137 @@ class StaEDIFilteredStreamReaderTest implements ConstantsTest {
         filtered.getTextCharacters(filtered.getTextStart(), f_target, 0, filtered.getTextLength());
         assertArrayEquals(uf_target, f_target);
     }
+
+    List<String> readFiltered(EDIStreamFilter filter, boolean useReader) throws Exception {
+        EDIInputFactory factory = EDIInputFactory.newFactory();
+        SchemaFactory schemaFactory = SchemaFactory.newFactory();
+        Schema transaction = schemaFactory.createSchema(getClass().getResourceAsStream("/x12/EDISchema997.xml"));
+        InputStream stream = getClass().getResourceAsStream("/x12/invalid997.edi");
+        EDIStreamReader unfiltered = factory.createEDIStreamReader(stream);
+        EDIStreamReader reader = factory.createFilteredReader(unfiltered, filter);
+        List<String> events = new ArrayList<>();
+        // Read from the wrapped reader to observe the events discarded as they are parsed
+        EDIStreamReader source = useReader ? unfiltered : reader;
+
+        while (source.hasNext()) {
+            EDIStreamEvent event = source.next();
+
+            if (event == EDIStreamEvent.START_TRANSACTION) {
+                source.setTransactionSchema(transaction);
+            }
+
+            Location location = source.getLocation();
+            StringBuilder entry = new StringBuilder();
+            entry.append(event).append(' ').append(location).append(' ').append(location.getCharacterOffset());
+
+            if (event == EDIStreamEvent.ELEMENT_DATA || event == EDIStreamEvent.START_SEGMENT) {
+                entry.append(' ').append(source.getText());
+            } else if (event.isError()) {
+                entry.append(' ').append(source.getErrorType());
+            }
+
+            events.add(entry.toString());
+        }
+
+        return events;
+    }
+
+    void assertEventFilterMatchesUnoptimized(EDIEventFilter filter) throws Exception {
+        List<String> expected = readFiltered(filter::accept, false);
+        List<String> actual = readFiltered(filter, false);
+        assertTrue(expected.size() > 1);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void testEventFilterByTypeSegmentAndElement() throws Exception {
+        assertEventFilterMatchesUnoptimized(EDIEventFilter.of(EDIStreamEvent.START_SEGMENT, EDIStreamEvent.ELEMENT_DATA)
+                                                          .withSegments("AK1", "AK4")
+                                                          .withElements(1, 2));
+    }
+
+    @Test
+    void testEventFilterErrorsOnly() throws Exception {
+        // START_TRANSACTION is accepted for the transaction schema to be set
+        assertEventFilterMatchesUnoptimized(EDIEventFilter.of(EDIStreamEvent.START_TRANSACTION,
+                                                              EDIStreamEvent.SEGMENT_ERROR,
+                                                              EDIStreamEvent.ELEMENT_DATA_ERROR,
+                                                              EDIStreamEvent.ELEMENT_OCCURRENCE_ERROR));
+    }
+
+    @Test
+    void testEventFilterAllEventsInSegment() throws Exception {
+        assertEventFilterMatchesUnoptimized(EDIEventFilter.of().withSegments("AK4"));
+    }
+
+    @Test
+    void testEventFilterDiscardsRejectedEvents() throws Exception {
+        EDIEventFilter filter = EDIEventFilter.of(EDIStreamEvent.ELEMENT_DATA).withSegments("AK1").withElements(2);
+        List<String> events = readFiltered(filter, true);
+
+        // Only events required by the reader remain in addition to those accepted
+        assertEquals(1, events.stream().filter(e -> e.startsWith("ELEMENT_DATA ")).count());
+        assertTrue(events.stream().anyMatch(e -> e.startsWith("ELEMENT_DATA ") && e.endsWith(" 000001")));
+        assertTrue(events.stream().noneMatch(e -> e.startsWith("START_LOOP") || e.startsWith("START_COMPOSITE")));
+        assertTrue(events.stream().anyMatch(e -> e.startsWith("START_SEGMENT in segment AK4")));
+    }
+
+    @Test
+    void testEventFilterWithoutRejectedSegmentValidation() throws Exception {
+        EDIEventFilter filter = EDIEventFilter.of().withSegments("AK1", "AK4");
+        List<String> validated = readFiltered(filter, false);
+        List<String> unvalidated = readFiltered(filter.withoutRejectedSegmentValidation(), false);
+
+        // Errors in accepted segments are reported in either case
+        assertEquals(validated, unvalidated);
+        assertTrue(validated.stream().anyMatch(e -> e.contains("AK1") && e.endsWith(" INVALID_CODE_VALUE")));
+        assertTrue(validated.stream().anyMatch(e -> e.contains("AK4") && e.endsWith(" INVALID_CHARACTER_DATA")));
+
+        List<String> unvalidatedSource = readFiltered(EDIEventFilter.of().withSegments("AK4").withoutRejectedSegmentValidation(), true);
+        assertTrue(unvalidatedSource.stream().noneMatch(e -> e.endsWith(" INVALID_CODE_VALUE")));
+        assertTrue(unvalidatedSource.stream().anyMatch(e -> e.endsWith(" INVALID_CHARACTER_DATA")));
+    }
+
+    @Test
+    void testEventFilterAppliedOnce() throws Exception {
+        EDIInputFactory factory = EDIInputFactory.newFactory();
+        EDIStreamReader unfiltered = factory.createEDIStreamReader(getClass().getResourceAsStream("/x12/invalid997.edi"));
+        EDIStreamReader filtered = factory.createFilteredReader(unfiltered, EDIEventFilter.of().withSegments("AK1"));
+        EDIEventFilter other = EDIEventFilter.of().withSegments("AK4");
+
+        assertThrows(IllegalArgumentException.class, () -> factory.createFilteredReader(unfiltered, other));
+        // Filters other than EDIEventFilter and wrapping the filtered reader remain possible
+        factory.createFilteredReader(unfiltered, r -> true);
+        EDIStreamReader nested = factory.createFilteredReader(filtered, other);
+        int segments = 0;
+
+        while (nested.hasNext()) {
+            if (nested.next() == EDIStreamEvent.START_SEGMENT) {
+                segments++;
+            }
+        }
+
+        assertEquals(0, segments);
+        nested.close();
+    }
+
+    @Test
+    void testEventFilterRejectedOversizedElementBufferBounded() throws Exception {
+        for (boolean zeroCopyText : new boolean[] { false, true }) {
+            StaEDIStreamReader unfiltered = StaEDIStreamReaderTest.oversizedElementReader(zeroCopyText);
+            EDIStreamReader reader = EDIInputFactory.newFactory()
+                                                    .createFilteredReader(unfiltered, EDIEventFilter.of().withSegments("AK9"));
+            List<String> tags = new ArrayList<>();
+
+            while (reader.hasNext()) {
+                if (reader.next() == EDIStreamEvent.START_SEGMENT) {
+                    tags.add(reader.getText());
+                }
+            }
+
+            assertEquals(Arrays.asList("AK9"), tags);
+            StaEDIStreamReaderTest.assertBufferBounded(unfiltered);
+            reader.close();
+        }
+    }
 }
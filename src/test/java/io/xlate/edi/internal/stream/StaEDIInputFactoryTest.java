@@ -18,19 +18,44 @@ package io.xlate.edi.internal.stream;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import io.xlate.edi.schema.EDISchemaException;
 import io.xlate.edi.schema.Schema;
 import io.xlate.edi.schema.SchemaFactory;
 import io.xlate.edi.stream.EDIInputFactory;
+import io.xlate.edi.stream.EDIStreamConstants.Standards;
+import io.xlate.edi.stream.EDIStreamEvent;
 import io.xlate.edi.stream.EDIStreamException;
 import io.xlate.edi.stream.EDIStreamReader;
+import io.xlate.edi.stream.EDIStreamValidationError;
 
 @SuppressWarnings("resource")
 class StaEDIInputFactoryTest {
@@ -88,6 +113,78 @@ class StaEDIInputFactoryTest {
         assertNotNull(reader, "Reader was null");
     }
 
+    Path resourcePath(String name) throws URISyntaxException {
+        return Paths.get(getClass().getResource(name).toURI());
+    }
+
+    static List<String> readEvents(EDIStreamReader reader) throws EDIStreamException {
+        List<String> events = new ArrayList<>();
+
+        while (reader.hasNext()) {
+            EDIStreamEvent event = reader.next();
+            events.add(event == EDIStreamEvent.ELEMENT_DATA ? event + ":" + reader.getText() : event.toString());
+        }
+
+        return events;
+    }
+
+    @Test
+    void testCreateEDIStreamReaderPath() throws Exception {
+        EDIInputFactory factory = EDIInputFactory.newFactory();
+        List<String> expected = readEvents(factory.createEDIStreamReader(getClass().getResourceAsStream("/x12/simple997.edi")));
+        EDIStreamReader reader = factory.createEDIStreamReader(resourcePath("/x12/simple997.edi"));
+        assertEquals(expected, readEvents(reader));
+        reader.close();
+    }
+
+    @Test
+    void testCreateEDIStreamReaderPathEncodedValidated() throws Exception {
+        EDIInputFactory factory = EDIInputFactory.newFactory();
+        Schema schema = SchemaFactory.newFactory().createSchema(getClass().getResourceAsStream("/x12/EDISchema997.xml"));
+        EDIStreamReader reader = factory.createEDIStreamReader(resourcePath("/x12/simple997.edi"), "US-ASCII", schema);
+        assertEquals(EDIStreamEvent.START_INTERCHANGE, reader.next());
+        reader.close();
+    }
+
+    @Test
+    void testCreateEDIStreamReaderPathInvalidEncoding() throws Exception {
+        EDIInputFactory factory = EDIInputFactory.newFactory();
+        Path path = resourcePath("/x12/simple997.edi");
+        EDIStreamException e = assertThrows(EDIStreamException.class, () -> factory.createEDIStreamReader(path, "EBCDIC"));
+        assertEquals("Unsupported encoding: EBCDIC", e.getMessage());
+    }
+
+    @Test
+    void testCreateEDIStreamReaderPathMissing() {
+        EDIInputFactory factory = EDIInputFactory.newFactory();
+        Path path = Paths.get("does-not-exist.edi");
+        EDIStreamException e = assertThrows(EDIStreamException.class, () -> factory.createEDIStreamReader(path));
+        assertTrue(e.getCause() instanceof IOException);
+    }
+
+    @Test
+    void testCreateEDIStreamReaderFileChannel() throws Exception {
+        EDIInputFactory factory = EDIInputFactory.newFactory();
+        List<String> expected = readEvents(factory.createEDIStreamReader(getClass().getResourceAsStream("/x12/simple997.edi")));
+
+        try (FileChannel channel = FileChannel.open(resourcePath("/x12/simple997.edi"))) {
+            EDIStreamReader reader = factory.createEDIStreamReader(channel);
+            assertEquals(expected, readEvents(reader));
+            reader.close();
+            assertTrue(channel.isOpen(), "Channel was closed by the reader");
+            assertEquals(channel.size(), channel.position());
+        }
+    }
+
+    @Test
+    void testCreateEDIStreamReaderChannel() throws Exception {
+        EDIInputFactory factory = EDIInputFactory.newFactory();
+        List<String> expected = readEvents(factory.createEDIStreamReader(getClass().getResourceAsStream("/x12/simple997.edi")));
+        InputStream stream = getClass().getResourceAsStream("/x12/simple997.edi");
+        EDIStreamReader reader = factory.createEDIStreamReader(Channels.newChannel(stream), "UTF-8");
+        assertEquals(expected, readEvents(reader));
+    }
+
     @Test
     void testCreateFilteredReader() {
         EDIInputFactory factory = EDIInputFactory.newFactory();
@@ -114,4 +211,352 @@ class StaEDIInputFactoryTest {
         EDIInputFactory factory = EDIInputFactory.newFactory();
         assertThrows(IllegalArgumentException.class, () -> factory.setProperty("FOO", null));
     }
+
+    static StaEDIStreamReader pooled(EDIStreamReader reader) {
+        return ((StaEDIStreamReaderPool.PooledReader) reader).delegate;
+    }
+
+    @Test
+    void testPooledReaderReusedAfterClose() throws Exception {
+        StaEDIInputFactory factory = new StaEDIInputFactory();
+        byte[] data = readResource("/x12/simple997.edi");
+        List<String> expected = readTransactions(data);
+
+        EDIStreamReader first = factory.createPooledEDIStreamReader(new ByteArrayInputStream(data), null);
+        EDIStreamReader concurrent = factory.createPooledEDIStreamReader(new ByteArrayInputStream(data), null);
+        assertNotSame(pooled(first), pooled(concurrent));
+        assertEquals(expected, readTransactions(first));
+        first.close();
+        first.close(); // Returned to the pool only once
+        assertEquals(1, factory.pool().idleCount());
+
+        EDIStreamReader second = factory.createPooledEDIStreamReader(new ByteArrayInputStream(data), null);
+        assertNotSame(first, second);
+        assertSame(pooled(first), pooled(second));
+        assertEquals(0, factory.pool().idleCount());
+        assertEquals(expected, readTransactions(second));
+        assertEquals(expected, readTransactions(concurrent));
+        second.close();
+        concurrent.close();
+        assertEquals(2, factory.pool().idleCount());
+
+        // Changing the configuration discards pooled readers
+        factory.setProperty(EDIInputFactory.EDI_VALIDATE_CONTROL_STRUCTURE, false);
+        EDIStreamReader third = factory.createPooledEDIStreamReader(new ByteArrayInputStream(data), null);
+        assertNotSame(pooled(first), pooled(third));
+        assertNotSame(pooled(concurrent), pooled(third));
+        third.close();
+    }
+
+    @Test
+    void testPooledReaderUseAfterCloseThrows() throws Exception {
+        StaEDIInputFactory factory = new StaEDIInputFactory();
+        byte[] data = readResource("/x12/simple997.edi");
+        List<String> expected = readTransactions(data);
+
+        EDIStreamReader stale = factory.createPooledEDIStreamReader(new ByteArrayInputStream(data), null);
+        stale.close();
+
+        EDIStreamReader current = factory.createPooledEDIStreamReader(new ByteArrayInputStream(data), null);
+        assertSame(pooled(stale), pooled(current));
+
+        assertThrows(IllegalStateException.class, stale::hasNext);
+        assertThrows(IllegalStateException.class, stale::next);
+        assertThrows(IllegalStateException.class, stale::getEventType);
+        assertThrows(IllegalStateException.class, stale::getLocation);
+        assertThrows(IllegalStateException.class, () -> stale.reset(new ByteArrayInputStream(data)));
+        stale.close(); // No effect on the current owner
+
+        assertEquals(0, factory.pool().idleCount());
+        assertEquals(expected, readTransactions(current));
+        current.close();
+        assertEquals(1, factory.pool().idleCount());
+    }
+
+    @Test
+    void testPooledReaderGroupedBySchema() throws Exception {
+        StaEDIInputFactory factory = new StaEDIInputFactory();
+        Schema control = SchemaFactory.newFactory().getControlSchema(Standards.X12, new String[] { "00501" });
+        byte[] data = readResource("/x12/simple997.edi");
+
+        EDIStreamReader unvalidated = factory.createPooledEDIStreamReader(new ByteArrayInputStream(data), null);
+        StaEDIStreamReader unvalidatedReader = pooled(unvalidated);
+        unvalidated.close();
+        EDIStreamReader validated = factory.createPooledEDIStreamReader(new ByteArrayInputStream(data), "UTF-8", control);
+        StaEDIStreamReader validatedReader = pooled(validated);
+        assertNotSame(unvalidatedReader, validatedReader);
+        assertSame(control, validated.getControlSchema());
+        validated.close();
+
+        assertSame(validatedReader, pooled(factory.createPooledEDIStreamReader(new ByteArrayInputStream(data), "UTF-8", control)));
+        assertSame(unvalidatedReader, pooled(factory.createPooledEDIStreamReader(new ByteArrayInputStream(data), null)));
+    }
+
+    @Test
+    void testPooledReaderIdleCountLimited() throws Exception {
+        StaEDIInputFactory factory = new StaEDIInputFactory();
+        byte[] data = readResource("/x12/simple997.edi");
+        List<EDIStreamReader> readers = new ArrayList<>();
+
+        for (int i = 0; i < StaEDIStreamReaderPool.MAX_IDLE_PER_KEY + 2; i++) {
+            readers.add(factory.createPooledEDIStreamReader(new ByteArrayInputStream(data), null));
+        }
+        for (EDIStreamReader reader : readers) {
+            reader.close();
+        }
+
+        assertEquals(StaEDIStreamReaderPool.MAX_IDLE_PER_KEY, factory.pool().idleCount());
+    }
+
+    @Test
+    void testPooledReaderKeyCountLimited() throws Exception {
+        StaEDIInputFactory factory = new StaEDIInputFactory();
+        byte[] data = readResource("/x12/simple997.edi");
+        List<String> encodings = Charset.availableCharsets()
+                                        .keySet()
+                                        .stream()
+                                        .limit(StaEDIStreamReaderPool.MAX_KEYS + 3L)
+                                        .collect(Collectors.toList());
+
+        for (String encoding : encodings) {
+            factory.createPooledEDIStreamReader(new ByteArrayInputStream(data), encoding, null).close();
+        }
+
+        assertEquals(StaEDIStreamReaderPool.MAX_KEYS, factory.pool().keyCount());
+        assertEquals(StaEDIStreamReaderPool.MAX_KEYS, factory.pool().idleCount());
+    }
+
+    static List<String> readTransactions(EDIStreamReader reader) throws Exception {
+        List<String> transactions = new ArrayList<>();
+
+        while (reader.hasNext()) {
+            if (reader.next() == EDIStreamEvent.START_TRANSACTION) {
+                transactions.add(describeTransaction(reader));
+            }
+        }
+
+        return transactions;
+    }
+
+    static String describeTransaction(EDIStreamReader reader) throws EDIStreamException {
+        StringBuilder result = new StringBuilder();
+        EDIStreamEvent event = reader.getEventType();
+
+        while (event != EDIStreamEvent.END_TRANSACTION) {
+            result.append(event);
+
+            switch (event) {
+            case START_SEGMENT:
+            case ELEMENT_DATA:
+                result.append('=').append(reader.getText());
+                break;
+            case SEGMENT_ERROR:
+            case ELEMENT_DATA_ERROR:
+            case ELEMENT_OCCURRENCE_ERROR:
+                result.append('=').append(reader.getErrorType());
+                break;
+            default:
+                break;
+            }
+
+            result.append(';');
+            event = reader.next();
+        }
+
+        return result.toString();
+    }
+
+    static byte[] readResource(String name) throws IOException {
+        ByteBuffer buffer = StaEDIInputFactory.readFully(StaEDIInputFactoryTest.class.getResourceAsStream(name));
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return data;
+    }
+
+    static List<String> readTransactions(byte[] data) throws Exception {
+        EDIStreamReader reader = EDIInputFactory.newFactory().createEDIStreamReader(new ByteArrayInputStream(data));
+        List<String> transactions = new ArrayList<>();
+
+        while (reader.hasNext()) {
+            if (reader.next() == EDIStreamEvent.START_TRANSACTION) {
+                transactions.add(describeTransaction(reader));
+            }
+        }
+
+        reader.close();
+        return transactions;
+    }
+
+    static byte[] groupsOf997(int groups, int transactions) {
+        StringBuilder input = new StringBuilder("ISA*00*          *00*          *ZZ*ReceiverID     *ZZ*Sender         *050812*1953*^*00501*508121953*0*P*:~\n");
+
+        for (int group = 1; group <= groups; group++) {
+            input.append("GS*FA*ReceiverDept*SenderDept*20050812*195335*00000" + group + "*X*005010X230~\n");
+
+            for (int i = 1; i <= transactions; i++) {
+                input.append("ST*997*" + i + "~AK1*HC*" + group + "~AK2*837*" + i + "~AK5*A~AK9*A*1*1*1~SE*6*" + i + "~\n");
+            }
+
+            input.append("GE*" + transactions + "*00000" + group + "~\n");
+        }
+
+        input.append("IEA*" + groups + "*508121953~\n");
+        return input.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testProcessTransactionsInDocumentOrder() throws Exception {
+        byte[] data = groupsOf997(2, 250);
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        try {
+            List<String> expected = readTransactions(data);
+            List<String> actual = EDIInputFactory.newFactory()
+                                                 .processTransactions(new ByteArrayInputStream(data),
+                                                                      "UTF-8",
+                                                                      StaEDIInputFactoryTest::describeTransaction,
+                                                                      pool);
+            assertEquals(500, expected.size());
+            assertEquals(expected, actual);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testProcessTransactionsFromFile(@TempDir Path tempDir) throws Exception {
+        byte[] data = groupsOf997(3, 100);
+        Path file = tempDir.resolve("input.edi");
+        Files.write(file, data);
+
+        List<String> expected = readTransactions(data);
+        List<String> actual = EDIInputFactory.newFactory().processTransactions(file, StaEDIInputFactoryTest::describeTransaction);
+        assertEquals(300, expected.size());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void testProcessTransactionsSubmittedInWindow() throws Exception {
+        byte[] data = groupsOf997(1, 200);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        int limit = 2 * StaEDIInputFactory.TASKS_PER_THREAD;
+        AtomicInteger started = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        try {
+            // The first transaction is blocked, no more than the limit may be submitted in the meantime
+            ForkJoinTask<List<String>> processing = ForkJoinPool.commonPool().submit(() -> {
+                return EDIInputFactory.newFactory().processTransactions(new ByteArrayInputStream(data), "UTF-8", reader -> {
+                    started.incrementAndGet();
+                    String result = describeTransaction(reader);
+
+                    if (result.contains("START_SEGMENT=AK2;ELEMENT_DATA=837;ELEMENT_DATA=1;")) {
+                        try {
+                            assertTrue(release.await(10, TimeUnit.SECONDS));
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new EDIStreamException("Interrupted");
+                        }
+                    }
+
+                    return result;
+                }, pool);
+            });
+
+            for (int i = 0; i < 100 && started.get() < limit; i++) {
+                Thread.sleep(50);
+            }
+
+            Thread.sleep(100);
+            assertEquals(limit, started.get());
+            release.countDown();
+            assertEquals(200, processing.get().size());
+        } finally {
+            release.countDown();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testProcessTransactionsEDIFACT() throws Exception {
+        byte[] data = readResource("/EDIFACT/invoic_d97b_una.edi");
+        List<String> expected = readTransactions(data);
+        List<String> actual = EDIInputFactory.newFactory()
+                                             .processTransactions(new ByteArrayInputStream(data),
+                                                                  StaEDIInputFactoryTest::describeTransaction);
+        assertEquals(1, expected.size());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void testProcessTransactionsWithoutControlStructureValidation() throws Exception {
+        byte[] data = groupsOf997(2, 3);
+        EDIInputFactory factory = EDIInputFactory.newFactory();
+        factory.setProperty(EDIInputFactory.EDI_VALIDATE_CONTROL_STRUCTURE, false);
+
+        List<String> actual = factory.processTransactions(new ByteArrayInputStream(data), reader -> {
+            assertEquals(EDIStreamEvent.START_SEGMENT, reader.getEventType());
+            assertEquals("ST", reader.getText());
+            StringBuilder result = new StringBuilder();
+
+            while (reader.hasNext()) {
+                if (reader.next() == EDIStreamEvent.ELEMENT_DATA) {
+                    result.append(reader.getText()).append(';');
+                }
+            }
+
+            return result.toString();
+        });
+
+        assertEquals(6, actual.size());
+        assertTrue(actual.get(0).startsWith("997;1;HC;1;837;1;A;A;1;1;1;6;1;"), actual.get(0));
+        assertTrue(actual.get(5).startsWith("997;3;HC;2;837;3;A;A;1;1;1;6;3;"), actual.get(5));
+    }
+
+    @Test
+    void testProcessTransactionsProcessorException() {
+        EDIInputFactory factory = EDIInputFactory.newFactory();
+        InputStream stream = getClass().getResourceAsStream("/x12/invoice810_po850_dual.edi");
+        EDIStreamException thrown = assertThrows(EDIStreamException.class,
+                                                 () -> factory.processTransactions(stream, reader -> {
+                                                     throw new EDIStreamException("Processing failed");
+                                                 }));
+        assertEquals("Processing failed", thrown.getMessage());
+    }
+
+    @Test
+    void testProcessTransactionsUnsupportedEncoding() {
+        EDIInputFactory factory = EDIInputFactory.newFactory();
+        InputStream stream = getClass().getResourceAsStream("/x12/simple997.edi");
+        assertThrows(EDIStreamException.class,
+                     () -> factory.processTransactions(stream, "UTF-16", reader -> null, ForkJoinPool.commonPool()));
+    }
+
+    @Test
+    void testProcessTransactionsEncodingNotAsciiCompatible() {
+        EDIInputFactory factory = EDIInputFactory.newFactory();
+        InputStream stream = getClass().getResourceAsStream("/x12/simple997.edi");
+        EDIStreamException thrown = assertThrows(EDIStreamException.class,
+                                                 () -> factory.processTransactions(stream, "IBM037", reader -> null, ForkJoinPool.commonPool()));
+        assertEquals("Unsupported encoding for parallel processing: IBM037", thrown.getMessage());
+    }
+
+    @Test
+    void testProcessTransactionsMissingTrailer() throws Exception {
+        byte[] data = (""
+                + "ISA*00*          *00*          *ZZ*ReceiverID     *ZZ*Sender         *050812*1953*^*00501*508121953*0*P*:~\n"
+                + "GS*FA*ReceiverDept*SenderDept*20050812*195335*000005*X*005010X230~\n"
+                + "ST*997*0001~AK1*HC*000001~AK9*A*1*1*1~SE*4*0001~\n"
+                + "ST*997*0002~AK1*HC*000002~AK9*A*1*1*1~SE*4*0002~\n"
+                + "ST*997*0003~AK1*HC*000003~AK9*A*1*1*1~\n"
+                + "GE*3*000005~\n"
+                + "IEA*1*508121953~\n").getBytes(StandardCharsets.UTF_8);
+        List<String> expected = readTransactions(data);
+        List<String> actual = EDIInputFactory.newFactory()
+                                             .processTransactions(new ByteArrayInputStream(data),
+                                                                  StaEDIInputFactoryTest::describeTransaction);
+        assertEquals(3, expected.size());
+        assertTrue(expected.get(2).contains("=" + EDIStreamValidationError.MANDATORY_SEGMENT_MISSING), expected.get(2));
+        assertEquals(expected, actual);
+    }
 }
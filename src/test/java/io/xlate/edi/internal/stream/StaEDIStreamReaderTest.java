@@ -17,19 +17,31 @@ package io.xlate.edi.internal.stream;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
@@ -39,6 +51,7 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 
@@ -46,6 +59,7 @@ import io.xlate.edi.internal.schema.SchemaUtils;
 import io.xlate.edi.schema.EDISchemaException;
 import io.xlate.edi.schema.Schema;
 import io.xlate.edi.schema.SchemaFactory;
+import io.xlate.edi.stream.EDIEventFilter;
 import io.xlate.edi.stream.EDIInputFactory;
 import io.xlate.edi.stream.EDIStreamConstants.Delimiters;
 import io.xlate.edi.stream.EDIStreamEvent;
@@ -53,6 +67,7 @@ import io.xlate.edi.stream.EDIStreamException;
 import io.xlate.edi.stream.EDIStreamReader;
 import io.xlate.edi.stream.EDIStreamValidationError;
 import io.xlate.edi.stream.Location;
+import io.xlate.edi.stream.SegmentView;
 
 @SuppressWarnings({ "resource", "unused" })
 class StaEDIStreamReaderTest implements ConstantsTest {
@@ -1112,4 +1127,1263 @@ class StaEDIStreamReaderTest implements ConstantsTest {
 
         assertNull(thrown);
     }
+
+    @Test
+    void testElementDataChunked() throws Exception {
+        StringBuilder text = new StringBuilder();
+
+        for (int i = 0; i < 100; i++) {
+            text.append((char) ('A' + i % 26));
+        }
+
+        String input = "ISA*00*          *00*          *ZZ*ReceiverID     *ZZ*Sender         *050812*1953*^*00501*508121953*0*P*:~"
+                + "GS*FA*ReceiverDept*SenderDept*20050812*195335*000005*X*005010X230~"
+                + "ST*997*0001~"
+                + "AK1*HC*" + text + "~"
+                + "SE*3*0001~"
+                + "GE*1*000005~"
+                + "IEA*1*508121953~";
+
+        EDIInputFactory factory = EDIInputFactory.newFactory();
+        factory.setProperty(EDIInputFactory.EDI_ELEMENT_CHUNK_SIZE, 16);
+        EDIStreamReader reader = factory.createEDIStreamReader(new ByteArrayInputStream(input.getBytes()));
+        StringBuilder received = new StringBuilder();
+        int partialCount = 0;
+
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+            case ELEMENT_DATA_PARTIAL:
+                partialCount++;
+                assertEquals("AK1", reader.getLocation().getSegmentTag());
+                assertEquals(2, reader.getLocation().getElementPosition());
+                assertEquals(16, reader.getTextLength());
+                received.append(reader.getText());
+                break;
+            case ELEMENT_DATA:
+                if (received.length() > 0) {
+                    assertEquals(2, reader.getLocation().getElementPosition());
+                    received.append(reader.getText());
+                    assertEquals(text.toString(), received.toString());
+                    received.setLength(0);
+                }
+                break;
+            case SEGMENT_ERROR:
+            case ELEMENT_DATA_ERROR:
+            case ELEMENT_OCCURRENCE_ERROR:
+                fail("Unexpected error: " + reader.getErrorType());
+                break;
+            default:
+                break;
+            }
+        }
+
+        assertEquals(6, partialCount);
+        reader.close();
+    }
+
+    @Test
+    void testElementDataChunkedLengthValidated() throws Exception {
+        String input = "ISA*00*          *00*          *ZZ*ReceiverID     *ZZ*Sender         *050812*1953*^*00501*508121953*0*P*:~"
+                + "GS*FA*ReceiverDeptReceiverDept*SenderDept*20050812*195335*000005*X*005010X230~"
+                + "GE*0*000005~"
+                + "IEA*1*508121953~";
+
+        EDIInputFactory factory = EDIInputFactory.newFactory();
+        factory.setProperty(EDIInputFactory.EDI_ELEMENT_CHUNK_SIZE, "8");
+        EDIStreamReader reader = factory.createEDIStreamReader(new ByteArrayInputStream(input.getBytes()));
+        StringBuilder received = new StringBuilder();
+        EDIStreamValidationError error = null;
+
+        while (reader.hasNext()) {
+            EDIStreamEvent event = reader.next();
+
+            if ("GS".equals(reader.getLocation().getSegmentTag()) && reader.getLocation().getElementPosition() == 2) {
+                if (event == EDIStreamEvent.ELEMENT_DATA_PARTIAL || event == EDIStreamEvent.ELEMENT_DATA) {
+                    received.append(reader.getText());
+                } else if (event == EDIStreamEvent.ELEMENT_DATA_ERROR) {
+                    error = reader.getErrorType();
+                }
+            }
+        }
+
+        assertEquals("ReceiverDeptReceiverDept", received.toString());
+        assertEquals(EDIStreamValidationError.DATA_ELEMENT_TOO_LONG, error);
+        reader.close();
+    }
+
+    static final int OVERSIZED_ELEMENT_LENGTH = 200_000;
+
+    static String oversizedElementInput() {
+        StringBuilder text = new StringBuilder(OVERSIZED_ELEMENT_LENGTH);
+
+        for (int i = 0; i < OVERSIZED_ELEMENT_LENGTH; i++) {
+            text.append((char) ('A' + i % 26));
+        }
+
+        return "ISA*00*          *00*          *ZZ*ReceiverID     *ZZ*Sender         *050812*1953*^*00501*508121953*0*P*:~"
+                + "GS*FA*ReceiverDept*SenderDept*20050812*195335*000005*X*005010X230~"
+                + "ST*997*0001~"
+                + "AK1*HC*" + text + "~"
+                + "AK9*A*1*1*1~"
+                + "SE*4*0001~"
+                + "GE*1*000005~"
+                + "IEA*1*508121953~";
+    }
+
+    static StaEDIStreamReader oversizedElementReader(boolean zeroCopyText) {
+        EDIInputFactory factory = EDIInputFactory.newFactory();
+        factory.setProperty(EDIInputFactory.EDI_ELEMENT_CHUNK_SIZE, 64);
+        factory.setProperty(EDIInputFactory.EDI_ZERO_COPY_TEXT, zeroCopyText);
+        return (StaEDIStreamReader) factory.createEDIStreamReader(new ByteArrayInputStream(oversizedElementInput().getBytes()));
+    }
+
+    static void assertBufferBounded(StaEDIStreamReader reader) {
+        int capacity = reader.getLexer().getBufferCapacity();
+        assertTrue(capacity <= 4096, () -> "Buffer grew to " + capacity);
+    }
+
+    @Test
+    void testOversizedElementSkippedBufferBounded() throws Exception {
+        for (boolean zeroCopyText : new boolean[] { false, true }) {
+            StaEDIStreamReader reader = oversizedElementReader(zeroCopyText);
+
+            while (reader.next() != EDIStreamEvent.START_SEGMENT || !"AK1".equals(reader.getText())) {
+                assertTrue(reader.hasNext());
+            }
+
+            assertEquals(EDIStreamEvent.END_SEGMENT, reader.skipSegment());
+            assertEquals("AK1", reader.getLocation().getSegmentTag());
+            assertEquals(EDIStreamEvent.START_SEGMENT, reader.next());
+            assertEquals("AK9", reader.getText());
+            assertBufferBounded(reader);
+            reader.close();
+        }
+    }
+
+    @Test
+    void testOversizedElementCapturedBufferBounded() throws Exception {
+        for (boolean zeroCopyText : new boolean[] { false, true }) {
+            StaEDIStreamReader reader = oversizedElementReader(zeroCopyText);
+            SegmentView segment;
+
+            do {
+                segment = reader.nextSegment();
+            } while (!"AK1".equals(segment.getTag()));
+
+            assertEquals(OVERSIZED_ELEMENT_LENGTH, segment.element(2).length());
+            assertEquals("AK9", reader.nextSegment().getTag());
+            assertBufferBounded(reader);
+            reader.close();
+        }
+    }
+
+    @Test
+    void testNextSegmentOversizedRepeatedElementBufferBounded() throws Exception {
+        StringBuilder text = new StringBuilder(OVERSIZED_ELEMENT_LENGTH);
+
+        for (int i = 0; i < OVERSIZED_ELEMENT_LENGTH; i++) {
+            text.append((char) ('0' + i % 10));
+        }
+
+        String input = "ISA*00*          *00*          *ZZ*ReceiverID     *ZZ*Sender         *050812*1953*^*00501*508121953*0*P*:~"
+                + "S01*A*" + text + "^B:" + text + "*C~"
+                + "IEA*1*508121953~";
+
+        EDIInputFactory factory = EDIInputFactory.newFactory();
+        factory.setProperty(EDIInputFactory.EDI_ELEMENT_CHUNK_SIZE, 64);
+        StaEDIStreamReader reader = (StaEDIStreamReader) factory.createEDIStreamReader(new ByteArrayInputStream(input.getBytes()));
+
+        assertEquals("ISA", reader.nextSegment().getTag());
+        SegmentView s01 = reader.nextSegment();
+        assertBufferBounded(reader);
+        assertEquals("S01", s01.getTag());
+        assertEquals(text.toString(), s01.element(2).toString());
+        assertEquals(2, s01.getRepetitionCount(2));
+        assertEquals("B", s01.component(2, 2, 1).toString());
+        assertEquals(text.toString(), s01.component(2, 2, 2).toString());
+        assertEquals("C", s01.element(3).toString());
+        assertEquals("IEA", reader.nextSegment().getTag());
+        reader.close();
+    }
+
+    List<String> readEvents(boolean zeroCopyText) throws Exception {
+        EDIInputFactory factory = EDIInputFactory.newFactory();
+        factory.setProperty(EDIInputFactory.EDI_ZERO_COPY_TEXT, zeroCopyText);
+        InputStream stream = getClass().getResourceAsStream("/x12/sample837-small.edi");
+        EDIStreamReader reader = factory.createEDIStreamReader(stream);
+        Schema transaction = SchemaFactory.newFactory()
+                                          .createSchema(getClass().getResource("/x12/005010X222/837.xml"));
+        List<String> events = new ArrayList<>();
+
+        while (reader.hasNext()) {
+            EDIStreamEvent event = reader.next();
+            Location location = reader.getLocation();
+            StringBuilder result = new StringBuilder();
+            result.append(event)
+                  .append(' ')
+                  .append(location.getSegmentPosition())
+                  .append('.')
+                  .append(location.getElementPosition())
+                  .append('.')
+                  .append(location.getComponentPosition())
+                  .append(' ')
+                  .append(reader.getReferenceCode());
+
+            switch (event) {
+            case START_TRANSACTION:
+                reader.setTransactionSchema(transaction);
+                break;
+            case ELEMENT_DATA:
+            case ELEMENT_DATA_ERROR:
+            case START_SEGMENT:
+                char[] text = reader.getTextCharacters();
+                result.append(' ').append(text, reader.getTextStart(), reader.getTextLength());
+                assertEquals(reader.getText(), reader.getTextSequence().toString());
+                break;
+            default:
+                break;
+            }
+
+            events.add(result.toString());
+        }
+
+        reader.close();
+        return events;
+    }
+
+    List<String> readImplementationStructure(int chunkSize) throws Exception {
+        EDIInputFactory factory = EDIInputFactory.newFactory();
+        factory.setProperty(EDIInputFactory.EDI_ELEMENT_CHUNK_SIZE, chunkSize);
+        InputStream stream = getClass().getResourceAsStream("/x12/sample837-small.edi");
+        StaEDIStreamReader reader = (StaEDIStreamReader) factory.createEDIStreamReader(stream);
+        Schema transaction = SchemaFactory.newFactory()
+                                          .createSchema(getClass().getResource("/x12/005010X222/837.xml"));
+        List<String> events = new ArrayList<>();
+
+        while (reader.hasNext()) {
+            EDIStreamEvent event = reader.next();
+
+            switch (event) {
+            case START_TRANSACTION:
+                reader.setTransactionSchema(transaction);
+                assertEquals("X.005010X222", reader.getLexer().getDialect().getTransactionVersionString());
+                break;
+            case START_LOOP:
+            case START_SEGMENT:
+            case SEGMENT_ERROR:
+                events.add(event + " " + reader.getLocation().getSegmentPosition() + " " + reader.getReferenceCode());
+                break;
+            default:
+                break;
+            }
+        }
+
+        reader.close();
+        return events;
+    }
+
+    @Test
+    void testElementChunkingPreservesVersionAndImplementation() throws Exception {
+        List<String> expected = readImplementationStructure(0);
+        List<String> actual = readImplementationStructure(3);
+        assertTrue(expected.contains("START_LOOP 8 2010A"));
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void testZeroCopyTextMatchesCopiedText() throws Exception {
+        List<String> copied = readEvents(false);
+        List<String> referenced = readEvents(true);
+        assertTrue(copied.size() > 100);
+        assertEquals(copied, referenced);
+    }
+
+    @Test
+    void testZeroCopyTextCharacters() throws Exception {
+        EDIInputFactory factory = EDIInputFactory.newFactory();
+        factory.setProperty(EDIInputFactory.EDI_ZERO_COPY_TEXT, "true");
+        InputStream stream = getClass().getResourceAsStream("/x12/simple997.edi");
+        EDIStreamReader reader = factory.createEDIStreamReader(stream);
+
+        assertEquals(EDIStreamEvent.START_INTERCHANGE, reader.next());
+        assertEquals(EDIStreamEvent.START_SEGMENT, reader.nextTag());
+        assertEquals("ISA", reader.getText());
+        assertEquals(EDIStreamEvent.ELEMENT_DATA, reader.next());
+        assertEquals(EDIStreamEvent.ELEMENT_DATA, reader.next());
+        assertEquals(EDIStreamEvent.ELEMENT_DATA, reader.next());
+        assertEquals(EDIStreamEvent.ELEMENT_DATA, reader.next());
+
+        char[] buffer = reader.getTextCharacters();
+        int start = reader.getTextStart();
+        assertEquals("          ", new String(buffer, start, reader.getTextLength()));
+        assertEquals(EDIStreamEvent.ELEMENT_DATA, reader.next());
+        assertEquals("ZZ", reader.getTextSequence().toString());
+        // The reader's buffer is returned rather than a copy
+        assertSame(buffer, reader.getTextCharacters());
+        assertNotEquals(start, reader.getTextStart());
+
+        char[] target = new char[1];
+        assertEquals(1, reader.getTextCharacters(1, target, 0, 1));
+        assertEquals('Z', target[0]);
+        reader.close();
+    }
+
+    List<String> readLocations(String resource, boolean lazyLocation) throws Exception {
+        return readLocations(getClass().getResourceAsStream(resource), lazyLocation);
+    }
+
+    List<String> readLocations(InputStream stream, boolean lazyLocation) throws Exception {
+        EDIInputFactory factory = EDIInputFactory.newFactory();
+        factory.setProperty(EDIInputFactory.EDI_LAZY_LOCATION, lazyLocation);
+        EDIStreamReader reader = factory.createEDIStreamReader(stream);
+        List<String> locations = new ArrayList<>();
+
+        try {
+            while (reader.hasNext()) {
+                EDIStreamEvent event = reader.next();
+                Location location = reader.getLocation();
+                locations.add(event + " " + location.getLineNumber()
+                        + ":" + location.getColumnNumber()
+                        + ":" + location.getCharacterOffset()
+                        + " " + location);
+            }
+        } catch (EDIStreamException e) {
+            locations.add(e.getMessage());
+        } finally {
+            reader.close();
+        }
+
+        return locations;
+    }
+
+    List<String> readEvents(EDIStreamReader reader, Schema transactionSchema) throws Exception {
+        List<String> events = new ArrayList<>();
+
+        try {
+            while (reader.hasNext()) {
+                EDIStreamEvent event = reader.next();
+
+                if (event == EDIStreamEvent.START_TRANSACTION && transactionSchema != null) {
+                    reader.setTransactionSchema(transactionSchema);
+                }
+
+                events.add(describeEvent(reader, event));
+            }
+        } catch (EDIStreamException e) {
+            events.add(e.getMessage());
+        }
+
+        return events;
+    }
+
+    static String describeEvent(EDIStreamReader reader, EDIStreamEvent event) {
+        Location location = reader.getLocation();
+        StringBuilder entry = new StringBuilder();
+        entry.append(event).append(' ').append(location);
+        entry.append(' ').append(location.getCharacterOffset());
+
+        switch (event) {
+        case START_SEGMENT:
+        case ELEMENT_DATA:
+            entry.append(' ').append(reader.getText());
+            break;
+        case START_LOOP:
+        case END_LOOP:
+            entry.append(' ').append(reader.getReferenceCode());
+            break;
+        case SEGMENT_ERROR:
+        case ELEMENT_DATA_ERROR:
+        case ELEMENT_OCCURRENCE_ERROR:
+            entry.append(' ').append(reader.getErrorType());
+            break;
+        default:
+            break;
+        }
+
+        return entry.toString();
+    }
+
+    List<String> readEvents(String resource, Schema transactionSchema) throws Exception {
+        EDIStreamReader reader = EDIInputFactory.newFactory().createEDIStreamReader(getClass().getResourceAsStream(resource));
+
+        try {
+            return readEvents(reader, transactionSchema);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    void testResetReaderMatchesNewReader() throws Exception {
+        Schema schema997 = SchemaFactory.newFactory().createSchema(getClass().getResourceAsStream("/x12/EDISchema997.xml"));
+        List<String> expected837 = readEvents("/x12/sample837-small.edi", null);
+        List<String> expectedInvoic = readEvents("/EDIFACT/invoic_d97b.edi", null);
+        List<String> expected997 = readEvents("/x12/invalid997.edi", schema997);
+
+        EDIStreamReader reader = EDIInputFactory.newFactory()
+                                                .createEDIStreamReader(getClass().getResourceAsStream("/x12/sample837-small.edi"));
+
+        // Abandon the first stream part way through
+        for (int i = 0; i < 10; i++) {
+            reader.next();
+        }
+
+        reader.reset(getClass().getResourceAsStream("/EDIFACT/invoic_d97b.edi"));
+        assertEquals(expectedInvoic, readEvents(reader, null));
+
+        reader.reset(getClass().getResourceAsStream("/x12/invalid997.edi"));
+        assertEquals(expected997, readEvents(reader, schema997));
+
+        reader.close();
+        assertThrows(IllegalStateException.class, () -> reader.next());
+
+        reader.reset(getClass().getResourceAsStream("/x12/sample837-small.edi"));
+        assertEquals(expected837, readEvents(reader, null));
+
+        reader.reset(getClass().getResourceAsStream("/x12/invalid997.edi"));
+        assertEquals(expected997, readEvents(reader, schema997));
+        reader.close();
+
+        assertTrue(expected997.stream().anyMatch(e -> e.matches("^[A-Z_]+_ERROR .*")));
+    }
+
+    interface SkipOperation {
+        EDIStreamEvent skip(EDIStreamReader reader) throws EDIStreamException;
+    }
+
+    static final String X12_997_TRANSACTIONS = ""
+            + "ISA*00*          *00*          *ZZ*ReceiverID     *ZZ*Sender         *050812*1953*^*00501*508121953*0*P*:~"
+            + "GS*FA*ReceiverDept*SenderDept*20050812*195335*000005*X*005010X230~"
+            + "ST*997*0001~AK1*HC*000001~AK2*837*0021~AK3*NM1*8**8~AK4*8*66*7*MI~AK5*R*5~AK9*R*1*1*0~SE*8*0001~"
+            + "ST*997*0002~AK1*HCX*000001~AK2*837*0021~AK3*NM1*8**8~AK4*8:1:2*66*7*MI~AK3*NM1*9**8~AK5*R*5~AK2*837*0022~AK5*A~AK9*R*2*2*1*9~SE*12*0002~"
+            + "ST*997*0003~AK1*HC*000001~AK2*837*0021~AK5*A~AK9*A*1*1*1~SE*6*0003~"
+            + "GE*3*000005~"
+            + "IEA*1*508121953~";
+
+    /**
+     * Read the input in full, then again skipping at the event at index
+     * <code>skipAt</code>. The events of the second read must match those of
+     * the first, excepting the events skipped.
+     */
+    void assertSkipMatchesFullRead(int skipAt,
+                                   String startPrefix,
+                                   String endPrefix,
+                                   SkipOperation operation) throws Exception {
+        Schema schema997 = SchemaFactory.newFactory().createSchema(getClass().getResourceAsStream("/x12/EDISchema997.xml"));
+        EDIInputFactory factory = EDIInputFactory.newFactory();
+        List<String> full = readEvents(factory.createEDIStreamReader(new ByteArrayInputStream(X12_997_TRANSACTIONS.getBytes())),
+                                       schema997);
+
+        // Locate the end of the skipped structure, accounting for nesting
+        int end = skipAt + 1;
+        for (int depth = 1; depth > 0; end++) {
+            if (startPrefix != null && full.get(end).startsWith(startPrefix)) {
+                depth++;
+            } else if (full.get(end).startsWith(endPrefix)) {
+                depth--;
+            }
+        }
+
+        List<String> expected = new ArrayList<>(full.subList(0, skipAt + 1));
+        expected.addAll(full.subList(end - 1, full.size()));
+
+        EDIStreamReader reader = factory.createEDIStreamReader(new ByteArrayInputStream(X12_997_TRANSACTIONS.getBytes()));
+        List<String> actual = new ArrayList<>();
+
+        while (reader.hasNext()) {
+            EDIStreamEvent event = reader.next();
+
+            if (event == EDIStreamEvent.START_TRANSACTION) {
+                reader.setTransactionSchema(schema997);
+            }
+
+            actual.add(describeEvent(reader, event));
+
+            if (actual.size() == skipAt + 1) {
+                event = operation.skip(reader);
+                assertTrue(full.get(end - 1).startsWith(event.toString()));
+                actual.add(describeEvent(reader, event));
+            }
+        }
+
+        assertTrue(full.size() > expected.size());
+        assertEquals(expected, actual);
+    }
+
+    int indexOf(String prefix, int occurrence) throws Exception {
+        Schema schema997 = SchemaFactory.newFactory().createSchema(getClass().getResourceAsStream("/x12/EDISchema997.xml"));
+        List<String> full = readEvents(EDIInputFactory.newFactory()
+                                                      .createEDIStreamReader(new ByteArrayInputStream(X12_997_TRANSACTIONS.getBytes())),
+                                       schema997);
+        int found = 0;
+
+        for (int index = 0; index < full.size(); index++) {
+            if (full.get(index).startsWith(prefix) && ++found == occurrence) {
+                return index;
+            }
+        }
+
+        throw new NoSuchElementException(prefix);
+    }
+
+    @Test
+    void testSkipTransactionWithErrors() throws Exception {
+        // The second transaction contains errors that are not reported when skipped
+        assertSkipMatchesFullRead(indexOf("START_TRANSACTION", 2), null, "END_TRANSACTION", EDIStreamReader::skipTransaction);
+    }
+
+    @Test
+    void testSkipTransactionFromSegment() throws Exception {
+        assertSkipMatchesFullRead(indexOf("START_SEGMENT in segment AK1", 2), null, "END_TRANSACTION", EDIStreamReader::skipTransaction);
+    }
+
+    @Test
+    void testSkipTransactionFromTrailer() throws Exception {
+        assertSkipMatchesFullRead(indexOf("START_SEGMENT in segment SE", 3), null, "END_TRANSACTION", EDIStreamReader::skipTransaction);
+    }
+
+    @Test
+    void testSkipLoop() throws Exception {
+        assertSkipMatchesFullRead(indexOf("START_LOOP", 1), "START_LOOP", "END_LOOP", EDIStreamReader::skipLoop);
+    }
+
+    @Test
+    void testSkipNestedLoopWithErrors() throws Exception {
+        assertSkipMatchesFullRead(indexOf("START_LOOP", 3), "START_LOOP", "END_LOOP", EDIStreamReader::skipLoop);
+    }
+
+    @Test
+    void testSkipSegment() throws Exception {
+        assertSkipMatchesFullRead(indexOf("START_SEGMENT in segment AK4", 2), null, "END_SEGMENT", EDIStreamReader::skipSegment);
+    }
+
+    @Test
+    void testSkipSegmentFromElement() throws Exception {
+        assertSkipMatchesFullRead(indexOf("ELEMENT_DATA in segment AK1", 3), null, "END_SEGMENT", EDIStreamReader::skipSegment);
+    }
+
+    @Test
+    void testSkipOutsideStructureInvalid() throws Exception {
+        EDIStreamReader reader = EDIInputFactory.newFactory()
+                                                .createEDIStreamReader(new ByteArrayInputStream(X12_997_TRANSACTIONS.getBytes()));
+        assertEquals(EDIStreamEvent.START_INTERCHANGE, reader.next());
+        assertThrows(IllegalStateException.class, () -> reader.skipSegment());
+        assertThrows(IllegalStateException.class, () -> reader.skipTransaction());
+        assertEquals(EDIStreamEvent.START_SEGMENT, reader.next());
+        assertThrows(IllegalStateException.class, () -> reader.skipLoop());
+        assertEquals(EDIStreamEvent.END_SEGMENT, reader.skipSegment());
+        assertThrows(IllegalStateException.class, () -> reader.skipSegment());
+
+        while (reader.next() != EDIStreamEvent.START_TRANSACTION) {
+            assertThrows(IllegalStateException.class, () -> reader.skipTransaction());
+        }
+
+        assertEquals(EDIStreamEvent.END_TRANSACTION, reader.skipTransaction());
+        assertThrows(IllegalStateException.class, () -> reader.skipTransaction());
+        assertEquals(EDIStreamEvent.START_TRANSACTION, reader.next());
+        assertEquals(EDIStreamEvent.START_SEGMENT, reader.next());
+        assertEquals("ST", reader.getText());
+        assertEquals(EDIStreamEvent.ELEMENT_DATA, reader.next());
+        assertEquals(EDIStreamEvent.ELEMENT_DATA, reader.next());
+        assertEquals("0002", reader.getText());
+    }
+
+    @Test
+    void testSkipTransactionOversizedElementBufferBounded() throws Exception {
+        for (boolean zeroCopyText : new boolean[] { false, true }) {
+            StaEDIStreamReader reader = oversizedElementReader(zeroCopyText);
+
+            while (reader.next() != EDIStreamEvent.START_TRANSACTION) {
+                assertTrue(reader.hasNext());
+            }
+
+            assertEquals(EDIStreamEvent.END_TRANSACTION, reader.skipTransaction());
+            assertBufferBounded(reader);
+            assertEquals(EDIStreamEvent.START_SEGMENT, reader.next());
+            assertEquals("GE", reader.getText());
+            reader.close();
+        }
+    }
+
+    static final String X12_INTERCHANGE = ""
+            + "ISA*00*          *00*          *ZZ*ReceiverID     *ZZ*Sender         *050812*1953*^*00501*508121953*0*P*:~"
+            + "GS*FA*ReceiverDept*SenderDept*20050812*195335*000005*X*005010X230~"
+            + "ST*997*0001~AK1*HC*000001~AK9*A*1*1*1~SE*4*0001~"
+            + "GE*1*000005~"
+            + "IEA*1*508121953~";
+
+    static final String EDIFACT_INTERCHANGE = ""
+            + "UNB+UNOA:3+005435656:1+006415160:1+060515:1434+00000000000778'"
+            + "UNH+00000000000117+INVOIC:D:97B:UN'"
+            + "UNT+2+00000000000117'"
+            + "UNZ+1+00000000000778'";
+
+    List<String> readInterchanges(EDIStreamReader reader) throws Exception {
+        List<String> interchanges = new ArrayList<>();
+        StringBuilder current = null;
+
+        while (reader.hasNext()) {
+            EDIStreamEvent event = reader.next();
+
+            switch (event) {
+            case START_INTERCHANGE:
+                current = new StringBuilder(reader.getStandard());
+                current.append(' ').append(reader.getVersion()[0]);
+                break;
+            case END_INTERCHANGE:
+                current.append(reader.getControlSchema() != null ? " validated" : " unvalidated");
+                interchanges.add(current.toString());
+                break;
+            case START_TRANSACTION:
+                current.append(" txn");
+                break;
+            case SEGMENT_ERROR:
+            case ELEMENT_DATA_ERROR:
+            case ELEMENT_OCCURRENCE_ERROR:
+                current.append(' ').append(reader.getErrorType());
+                break;
+            default:
+                break;
+            }
+        }
+
+        return interchanges;
+    }
+
+    @Test
+    void testConcatenatedInterchangesRead() throws Exception {
+        assertConcatenatedInterchangesRead("UTF-8");
+    }
+
+    @Test
+    void testConcatenatedInterchangesReadDecoded() throws Exception {
+        assertConcatenatedInterchangesRead("UTF-16");
+    }
+
+    void assertConcatenatedInterchangesRead(String encoding) throws Exception {
+        EDIInputFactory factory = EDIInputFactory.newFactory();
+        factory.setProperty(EDIInputFactory.EDI_CONCATENATED_INTERCHANGES, true);
+        InputStream stream = new ByteArrayInputStream((X12_INTERCHANGE + "\r\n"
+                + EDIFACT_INTERCHANGE + "\n"
+                + X12_INTERCHANGE.replace("ISA*00*", "ISA*01*") + "\n\n \t"
+                + X12_INTERCHANGE + "\r\n").getBytes(encoding));
+        EDIStreamReader reader = factory.createEDIStreamReader(stream, encoding);
+
+        assertEquals(Arrays.asList("X12 00501 txn validated",
+                                   "EDIFACT UNOA txn validated",
+                                   "X12 00501 txn validated",
+                                   "X12 00501 txn validated"),
+                     readInterchanges(reader));
+        assertEquals(EDIStreamEvent.END_INTERCHANGE, reader.getEventType());
+        assertThrows(NoSuchElementException.class, () -> reader.next());
+    }
+
+    @Test
+    void testConcatenatedInterchangesValidatedIndividually() throws Exception {
+        EDIInputFactory factory = EDIInputFactory.newFactory();
+        factory.setProperty(EDIInputFactory.EDI_CONCATENATED_INTERCHANGES, true);
+        InputStream stream = new ByteArrayInputStream((X12_INTERCHANGE
+                + X12_INTERCHANGE.replace("IEA*1*508121953", "IEA*1*5081219530")
+                + X12_INTERCHANGE).getBytes());
+        EDIStreamReader reader = factory.createEDIStreamReader(stream);
+
+        assertEquals(Arrays.asList("X12 00501 txn validated",
+                                   "X12 00501 txn " + EDIStreamValidationError.DATA_ELEMENT_TOO_LONG + " validated",
+                                   "X12 00501 txn validated"),
+                     readInterchanges(reader));
+    }
+
+    @Test
+    void testConcatenatedInterchangesWithoutProperty() throws Exception {
+        EDIInputFactory factory = EDIInputFactory.newFactory();
+        InputStream stream = new ByteArrayInputStream((X12_INTERCHANGE + EDIFACT_INTERCHANGE).getBytes());
+        EDIStreamReader reader = factory.createEDIStreamReader(stream);
+
+        assertEquals(Arrays.asList("X12 00501 txn validated"), readInterchanges(reader));
+        assertFalse(reader.hasNext());
+    }
+
+    @Test
+    void testConcatenatedInterchangesInvalidTrailingInput() throws Exception {
+        EDIInputFactory factory = EDIInputFactory.newFactory();
+        factory.setProperty(EDIInputFactory.EDI_CONCATENATED_INTERCHANGES, true);
+        InputStream stream = new ByteArrayInputStream((X12_INTERCHANGE + "\nGARBAGE").getBytes());
+        EDIStreamReader reader = factory.createEDIStreamReader(stream);
+
+        assertThrows(EDIStreamException.class, () -> readInterchanges(reader));
+    }
+
+    @Test
+    void testLazyLocationMatchesEagerLocation() throws Exception {
+        List<String> eager = readLocations("/x12/sample837-small.edi", false);
+        List<String> lazy = readLocations("/x12/sample837-small.edi", true);
+        assertTrue(eager.size() > 100);
+        assertEquals(eager, lazy);
+    }
+
+    @Test
+    void testLazyLocationMatchesEagerLocationManyLines() throws Exception {
+        StringBuilder input = new StringBuilder();
+        input.append("ISA*00*          *00*          *ZZ*ReceiverID     *ZZ*Sender         *050812*1953*^*00501*508121953*0*P*:~\n");
+        input.append("GS*FA*ReceiverDept*SenderDept*20050812*195335*000005*X*005010X230~\n");
+        input.append("ST*997*0001~\n");
+        for (int i = 0; i < 50; i++) {
+            // Elements and segments spanning lines
+            input.append("S").append(i % 10).append(i / 10).append("*A\nB\n*\nC~\n\n");
+        }
+        input.append("SE*52*0001~\n");
+        input.append("GE*1*000005~\n");
+        input.append("IEA*1*508121953~\n");
+        byte[] data = input.toString().getBytes();
+
+        List<String> eager = readLocations(new ByteArrayInputStream(data), false);
+        List<String> lazy = readLocations(new ByteArrayInputStream(data), true);
+        assertEquals("END_INTERCHANGE 256:17:927 in segment IEA at position 56", eager.get(eager.size() - 1));
+        assertEquals(eager, lazy);
+    }
+
+    @Test
+    void testEagerLocationMultilineElement() throws Exception {
+        assertMultilineElementLocation(false);
+    }
+
+    @Test
+    void testLazyLocationMultilineElement() throws Exception {
+        assertMultilineElementLocation(true);
+    }
+
+    void assertMultilineElementLocation(boolean lazyLocation) throws Exception {
+        EDIInputFactory factory = EDIInputFactory.newFactory();
+        factory.setProperty(EDIInputFactory.EDI_LAZY_LOCATION, lazyLocation);
+        InputStream stream = new ByteArrayInputStream((""
+                + "ISA*00*          *00*          *ZZ*ReceiverID     *ZZ*Sender         *050812*1953*^*00501*508121953*0*P*:~\n"
+                + "S01*LINE1\nLINE2\nLINE3*X~\n"
+                + "IEA*1*508121953~").getBytes());
+        EDIStreamReader reader = factory.createEDIStreamReader(stream);
+
+        assertEquals(EDIStreamEvent.START_INTERCHANGE, reader.next());
+        assertEquals(EDIStreamEvent.START_SEGMENT, reader.nextTag());
+        assertEquals(EDIStreamEvent.START_SEGMENT, reader.nextTag());
+        assertEquals("S01", reader.getText());
+        assertEquals(2, reader.getLocation().getLineNumber());
+
+        assertEquals(EDIStreamEvent.ELEMENT_DATA, reader.next());
+        assertEquals("LINE1\nLINE2\nLINE3", reader.getText());
+        Location location = reader.getLocation();
+        assertEquals(4, location.getLineNumber());
+        assertEquals(7, location.getColumnNumber());
+        assertEquals(128, location.getCharacterOffset());
+
+        assertEquals(EDIStreamEvent.ELEMENT_DATA, reader.next());
+        assertEquals("X", reader.getText());
+        location = reader.getLocation();
+        assertEquals(4, location.getLineNumber());
+        assertEquals(9, location.getColumnNumber());
+        assertEquals(130, location.getCharacterOffset());
+        reader.close();
+    }
+
+    static StaEDIStreamReader manyLinesReader(boolean lazyLocation) {
+        StringBuilder input = new StringBuilder();
+        input.append("ISA*00*          *00*          *ZZ*ReceiverID     *ZZ*Sender         *050812*1953*^*00501*508121953*0*P*:~\n");
+        input.append("GS*FA*ReceiverDept*SenderDept*20050812*195335*000005*X*005010X230~\n");
+        input.append("ST*997*0001~\n");
+
+        for (int i = 0; i < 20_000; i++) {
+            input.append("AK1*HC*").append(i).append("~\n");
+        }
+
+        input.append("SE*20002*0001~\n");
+        input.append("GE*1*000005~\n");
+        input.append("IEA*1*508121953~\n");
+
+        EDIInputFactory factory = EDIInputFactory.newFactory();
+        factory.setProperty(EDIInputFactory.EDI_LAZY_LOCATION, lazyLocation);
+        return (StaEDIStreamReader) factory.createEDIStreamReader(new ByteArrayInputStream(input.toString().getBytes()));
+    }
+
+    @Test
+    void testLazyLocationSkipTransactionReleasesLines() throws Exception {
+        StaEDIStreamReader eager = manyLinesReader(false);
+
+        while (eager.next() != EDIStreamEvent.START_SEGMENT || !"GE".equals(eager.getText())) {
+            assertTrue(eager.hasNext());
+        }
+
+        StaEDIStreamReader reader = manyLinesReader(true);
+
+        while (reader.next() != EDIStreamEvent.START_TRANSACTION) {
+            assertTrue(reader.hasNext());
+        }
+
+        assertEquals(EDIStreamEvent.END_TRANSACTION, reader.skipTransaction());
+        assertTrue(reader.getStreamLocation().getIndexedLineBreaks() < 16);
+        assertEquals(EDIStreamEvent.START_SEGMENT, reader.next());
+        assertEquals("GE", reader.getText());
+        assertEquals(20_005, reader.getLocation().getLineNumber());
+        assertEquals(eager.getLocation().getLineNumber(), reader.getLocation().getLineNumber());
+        assertEquals(eager.getLocation().getColumnNumber(), reader.getLocation().getColumnNumber());
+        eager.close();
+        reader.close();
+    }
+
+    @Test
+    void testLazyLocationFilterReleasesLines() throws Exception {
+        StaEDIStreamReader unfiltered = manyLinesReader(true);
+        EDIStreamReader reader = EDIInputFactory.newFactory()
+                                                .createFilteredReader(unfiltered, EDIEventFilter.of().withSegments("GE"));
+        int maximum = 0;
+
+        while (reader.hasNext()) {
+            if (reader.next() == EDIStreamEvent.START_SEGMENT) {
+                assertEquals("GE", reader.getText());
+                assertEquals(20_005, reader.getLocation().getLineNumber());
+            }
+            maximum = Math.max(maximum, unfiltered.getStreamLocation().getIndexedLineBreaks());
+        }
+
+        assertTrue(maximum < 16);
+        reader.close();
+    }
+
+    @Test
+    void testLazyLocationNextSegmentReleasesLines() throws Exception {
+        StaEDIStreamReader reader = manyLinesReader(true);
+        SegmentView segment;
+
+        do {
+            segment = reader.nextSegment();
+            assertTrue(reader.getStreamLocation().getIndexedLineBreaks() < 16);
+        } while (!"GE".equals(segment.getTag()));
+
+        assertEquals(20_005, reader.getLocation().getLineNumber());
+        reader.close();
+    }
+
+    static byte[] edifactWithText(String syntaxId, String text, Charset charset) {
+        return (""
+                + "UNB+" + syntaxId + ":3+005435656:1+006415160:1+060515:1434+00000000000778'"
+                + "UNH+00000000000117+INVOIC:D:97B:UN'"
+                + "FTX+AAI+++" + text + "'"
+                + "UNT+3+00000000000117'"
+                + "UNZ+1+00000000000778'").getBytes(charset);
+    }
+
+    List<String> readFreeText(byte[] input, String encoding, boolean detectCharset) throws Exception {
+        EDIInputFactory factory = EDIInputFactory.newFactory();
+        factory.setProperty(EDIInputFactory.EDI_CONCATENATED_INTERCHANGES, true);
+        factory.setProperty(EDIInputFactory.EDI_DETECT_CHARSET, detectCharset);
+        EDIStreamReader reader = factory.createEDIStreamReader(new ByteArrayInputStream(input), encoding);
+        List<String> text = new ArrayList<>();
+        String tag = null;
+
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+            case START_SEGMENT:
+                tag = reader.getText();
+                break;
+            case ELEMENT_DATA:
+                if (("FTX".equals(tag) || "S01".equals(tag)) && reader.getTextLength() > 0) {
+                    text.add(reader.getText());
+                }
+                break;
+            default:
+                break;
+            }
+        }
+
+        reader.close();
+        return text;
+    }
+
+    @Test
+    void testDetectCharsetFromSyntaxIdentifier() throws Exception {
+        ByteArrayOutputStream input = new ByteArrayOutputStream();
+        input.write(edifactWithText("UNOW", "Gr\u00fc\u00dfe \u2713", StandardCharsets.UTF_8));
+        input.write(edifactWithText("UNOC", "Gr\u00fc\u00dfe", StandardCharsets.ISO_8859_1));
+        input.write(edifactWithText("UNOE", "\u041f\u0440\u0438\u0432\u0435\u0442", Charset.forName("ISO-8859-5")));
+
+        assertEquals(Arrays.asList("AAI", "Gr\u00fc\u00dfe \u2713",
+                                   "AAI", "Gr\u00fc\u00dfe",
+                                   "AAI", "\u041f\u0440\u0438\u0432\u0435\u0442"),
+                     readFreeText(input.toByteArray(), "ISO-8859-1", true));
+    }
+
+    @Test
+    void testDetectCharsetDisabled() throws Exception {
+        byte[] input = edifactWithText("UNOW", "Gr\u00fc\u00dfe", StandardCharsets.UTF_8);
+
+        assertEquals(Arrays.asList("AAI", "Gr\u00c3\u00bc\u00c3\u009fe"),
+                     readFreeText(input, "ISO-8859-1", false));
+    }
+
+    @Test
+    void testDetectCharsetUndeclaredUsesConfiguredEncoding() throws Exception {
+        byte[] input = (""
+                + "ISA*00*          *00*          *ZZ*ReceiverID     *ZZ*Sender         *050812*1953*^*00501*508121953*0*P*:~"
+                + "S01*Gr\u00fc\u00dfe~"
+                + "IEA*1*508121953~").getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(Arrays.asList("Gr\u00fc\u00dfe"), readFreeText(input, "UTF-8", true));
+    }
+
+        /**
+     * Describe each segment read by events: its tag, the position, occurrence,
+     * and component of each value, and the errors reported since the end of
+     * the previous segment.
+     */
+    List<String> readSegmentEvents(EDIStreamReader reader, Schema transactionSchema) throws Exception {
+        List<String> segments = new ArrayList<>();
+        StringBuilder values = new StringBuilder();
+        StringBuilder errors = new StringBuilder();
+
+        while (reader.hasNext()) {
+            EDIStreamEvent event = reader.next();
+            Location location = reader.getLocation();
+
+            switch (event) {
+            case START_TRANSACTION:
+                if (transactionSchema != null) {
+                    reader.setTransactionSchema(transactionSchema);
+                }
+                break;
+            case START_SEGMENT:
+                values.append(reader.getText());
+                break;
+            case ELEMENT_DATA:
+                values.append(' ').append(location.getElementPosition());
+                values.append('.').append(location.getElementOccurrence());
+                values.append('.').append(Math.max(location.getComponentPosition(), 1));
+                values.append('=').append(reader.getText());
+                break;
+            case SEGMENT_ERROR:
+            case ELEMENT_DATA_ERROR:
+            case ELEMENT_OCCURRENCE_ERROR:
+                errors.append(' ').append(reader.getErrorType()).append('@').append(location.getElementPosition());
+                break;
+            case END_SEGMENT:
+                segments.add(values.append(errors).toString());
+                values.setLength(0);
+                errors.setLength(0);
+                break;
+            default:
+                break;
+            }
+        }
+
+        return segments;
+    }
+
+    /**
+     * Describe each segment read with nextSegment, as readSegmentEvents. When
+     * a transaction schema is given, it is set for the next
+     * <code>transactions</code> transactions following the GS or SE segments.
+     */
+    List<String> readSegmentViews(EDIStreamReader reader, Schema transactionSchema, int transactions) throws Exception {
+        List<String> segments = new ArrayList<>();
+        SegmentView segment;
+        int remaining = transactions;
+
+        while ((segment = reader.nextSegment()) != null) {
+            assertEquals(EDIStreamEvent.END_SEGMENT, reader.getEventType());
+            StringBuilder entry = new StringBuilder(segment.getTag());
+
+            for (int p = 1; p <= segment.getElementCount(); p++) {
+                for (int r = 1; r <= segment.getRepetitionCount(p); r++) {
+                    for (int c = 1; c <= segment.getComponentCount(p, r); c++) {
+                        CharSequence value = segment.component(p, r, c);
+
+                        if (value != null) {
+                            entry.append(' ').append(p).append('.').append(r).append('.').append(c);
+                            entry.append('=').append(value);
+                        }
+                    }
+                }
+            }
+
+            for (int i = 0; i < segment.getErrorCount(); i++) {
+                entry.append(' ').append(segment.getErrorType(i)).append('@').append(segment.getErrorElementPosition(i));
+            }
+
+            segments.add(entry.toString());
+
+            if (transactionSchema != null && segment.getTag().matches("GS|SE") && remaining-- > 0) {
+                // The end of the prior transaction precedes the start of the next
+                while (reader.next() != EDIStreamEvent.START_TRANSACTION) {
+                    assertEquals(EDIStreamEvent.END_TRANSACTION, reader.getEventType());
+                }
+                reader.setTransactionSchema(transactionSchema);
+            }
+        }
+
+        return segments;
+    }
+
+    @Test
+    void testNextSegmentMatchesEvents() throws Exception {
+        Schema schema997 = SchemaFactory.newFactory().createSchema(getClass().getResourceAsStream("/x12/EDISchema997.xml"));
+        EDIInputFactory factory = EDIInputFactory.newFactory();
+        List<String> expected = readSegmentEvents(factory.createEDIStreamReader(new ByteArrayInputStream(X12_997_TRANSACTIONS.getBytes())),
+                                                  schema997);
+        List<String> actual = readSegmentViews(factory.createEDIStreamReader(new ByteArrayInputStream(X12_997_TRANSACTIONS.getBytes())),
+                                               schema997,
+                                               3);
+
+        assertEquals(expected, actual);
+        assertTrue(expected.contains("AK1 1.1.1=HCX 2.1.1=000001 DATA_ELEMENT_TOO_LONG@1 INVALID_CODE_VALUE@1"));
+        assertTrue(expected.contains("AK4 1.1.1=8 1.1.2=1 1.1.3=2 2.1.1=66 3.1.1=7 4.1.1=MI"));
+    }
+
+    String describeNextEvent(EDIStreamReader reader, Schema transactionSchema) throws Exception {
+        EDIStreamEvent event = reader.next();
+
+        switch (event) {
+        case START_TRANSACTION:
+            reader.setTransactionSchema(transactionSchema);
+            return event.name();
+        case START_SEGMENT:
+        case ELEMENT_DATA:
+            return event + ":" + reader.getText();
+        case SEGMENT_ERROR:
+        case ELEMENT_DATA_ERROR:
+        case ELEMENT_OCCURRENCE_ERROR:
+            return event + ":" + reader.getErrorType() + "@" + reader.getLocation().getElementPosition();
+        default:
+            return event.name();
+        }
+    }
+
+    @Test
+    void testInterleavedReadersShareSchema() throws Exception {
+        Schema schema997 = SchemaFactory.newFactory().createSchema(getClass().getResourceAsStream("/x12/EDISchema997.xml"));
+        EDIInputFactory factory = EDIInputFactory.newFactory();
+        List<String> expected = new ArrayList<>();
+        EDIStreamReader reader = factory.createEDIStreamReader(new ByteArrayInputStream(X12_997_TRANSACTIONS.getBytes()));
+
+        while (reader.hasNext()) {
+            expected.add(describeNextEvent(reader, schema997));
+        }
+
+        // Validation state of one reader must not be visible to the other
+        List<String> first = new ArrayList<>();
+        List<String> second = new ArrayList<>();
+        EDIStreamReader firstReader = factory.createEDIStreamReader(new ByteArrayInputStream(X12_997_TRANSACTIONS.getBytes()));
+        EDIStreamReader secondReader = factory.createEDIStreamReader(new ByteArrayInputStream(X12_997_TRANSACTIONS.getBytes()));
+        secondReader.next();
+
+        while (firstReader.hasNext() || secondReader.hasNext()) {
+            if (firstReader.hasNext()) {
+                first.add(describeNextEvent(firstReader, schema997));
+            }
+            if (secondReader.hasNext()) {
+                second.add(describeNextEvent(secondReader, schema997));
+            }
+        }
+
+        assertTrue(expected.contains("ELEMENT_DATA_ERROR:INVALID_CODE_VALUE@1"));
+        assertEquals(expected, first);
+        assertEquals(expected.subList(1, expected.size()), second);
+    }
+
+    @Test
+    void testNextSegmentMatchesEventsChunked() throws Exception {
+        EDIInputFactory factory = EDIInputFactory.newFactory();
+
+        for (String resource : Arrays.asList("/x12/sample837-small.edi", "/EDIFACT/invoic_d97b.edi")) {
+            List<String> expected = readSegmentEvents(factory.createEDIStreamReader(getClass().getResourceAsStream(resource)), null);
+            factory.setProperty(EDIInputFactory.EDI_ELEMENT_CHUNK_SIZE, 2);
+            List<String> actual = readSegmentViews(factory.createEDIStreamReader(getClass().getResourceAsStream(resource)), null, 0);
+            factory.setProperty(EDIInputFactory.EDI_ELEMENT_CHUNK_SIZE, null);
+
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    void testNextSegmentValues() throws Exception {
+        EDIStreamReader reader = EDIInputFactory.newFactory()
+                                                .createEDIStreamReader(new ByteArrayInputStream((""
+                                                        + "ISA*00*          *00*          *ZZ*ReceiverID     *ZZ*Sender         *050812*1953*^*00501*508121953*0*P*:~"
+                                                        + "S01*A*B:C^D:E^F**G~"
+                                                        + "IEA*1*508121953~").getBytes()));
+
+        SegmentView isa = reader.nextSegment();
+        assertEquals("ISA", isa.getTag());
+        assertEquals(16, isa.getElementCount());
+        assertEquals("508121953", isa.element(13).toString());
+        assertEquals(0, isa.getErrorCount());
+
+        SegmentView s01 = reader.nextSegment();
+        assertSame(isa, s01);
+        assertEquals("S01", s01.getTag());
+        assertEquals(4, s01.getElementCount());
+        assertEquals("A", s01.element(1).toString());
+        assertEquals(1, s01.getRepetitionCount(1));
+        assertEquals(1, s01.getComponentCount(1));
+        assertEquals("B", s01.element(2).toString());
+        assertEquals("C", s01.component(2, 2).toString());
+        assertEquals(3, s01.getRepetitionCount(2));
+        assertEquals(2, s01.getComponentCount(2));
+        assertEquals("D", s01.repetition(2, 2).toString());
+        assertEquals("E", s01.component(2, 2, 2).toString());
+        assertEquals("F", s01.repetition(2, 3).toString());
+        assertEquals(1, s01.getComponentCount(2, 3));
+        assertNull(s01.component(2, 3, 2));
+        assertEquals(0, s01.element(3).length());
+        assertEquals("G", s01.element(4).toString());
+        assertNull(s01.element(5));
+        assertEquals(0, s01.getRepetitionCount(5));
+        assertEquals(1, s01.getErrorCount());
+        assertEquals(EDIStreamValidationError.SEGMENT_NOT_IN_DEFINED_TRANSACTION_SET, s01.getErrorType(0));
+        assertEquals(-1, s01.getErrorElementPosition(0));
+        assertThrows(IndexOutOfBoundsException.class, () -> s01.getErrorType(1));
+
+        assertEquals("IEA", reader.nextSegment().getTag());
+        assertNull(reader.nextSegment());
+        assertFalse(reader.hasNext());
+    }
+
+    @Test
+    void testNextSegmentWithinSegmentInvalid() throws Exception {
+        EDIStreamReader reader = EDIInputFactory.newFactory()
+                                                .createEDIStreamReader(new ByteArrayInputStream(X12_INTERCHANGE.getBytes()));
+        assertEquals(EDIStreamEvent.START_INTERCHANGE, reader.next());
+        assertEquals(EDIStreamEvent.START_SEGMENT, reader.next());
+        assertThrows(IllegalStateException.class, () -> reader.nextSegment());
+        assertEquals(EDIStreamEvent.END_SEGMENT, reader.skipSegment());
+        assertEquals("GS", reader.nextSegment().getTag());
+    }
+
+    interface BinaryConsumer {
+        byte[] consume(EDIStreamReader reader) throws Exception;
+    }
+
+    /**
+     * Read the 275 sample, consuming its binary element with the given
+     * consumer. The bytes consumed are returned followed by the description of
+     * the events read after the binary element.
+     */
+    List<Object> readBinarySample(EDIStreamReader reader, BinaryConsumer consumer) throws Exception {
+        List<Object> results = new ArrayList<>();
+
+        try {
+            while (reader.hasNext()) {
+                EDIStreamEvent event = reader.next();
+
+                if (event == EDIStreamEvent.START_SEGMENT && "BIN".equals(reader.getText())) {
+                    assertEquals(EDIStreamEvent.ELEMENT_DATA, reader.next());
+                    reader.setBinaryDataLength(Long.parseLong(reader.getText()));
+                    assertEquals(EDIStreamEvent.ELEMENT_DATA_BINARY, reader.next());
+                    results.add(consumer.consume(reader));
+                    results.addAll(readEvents(reader, null));
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        return results;
+    }
+
+    static byte[] readBinaryBytewise(EDIStreamReader reader) throws IOException {
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        InputStream stream = reader.getBinaryData();
+        int input;
+
+        while ((input = stream.read()) > -1) {
+            binary.write(input);
+        }
+
+        return binary.toByteArray();
+    }
+
+    @Test
+    void testBinaryDataBulkReadMatchesBytewise() throws Exception {
+        assertBinaryDataBulkReadMatchesBytewise("UTF-8");
+    }
+
+    @Test
+    void testBinaryDataBulkReadMatchesBytewiseSingleByte() throws Exception {
+        assertBinaryDataBulkReadMatchesBytewise("ISO-8859-1");
+    }
+
+    void assertBinaryDataBulkReadMatchesBytewise(String encoding) throws Exception {
+        final String resource = "/x12/sample275_with_HL7_valid_BIN01.edi";
+        EDIInputFactory factory = EDIInputFactory.newFactory();
+        List<Object> expected = readBinarySample(factory.createEDIStreamReader(getClass().getResourceAsStream(resource), encoding),
+                                                 StaEDIStreamReaderTest::readBinaryBytewise);
+
+        assertEquals(2768, ((byte[]) expected.get(0)).length);
+        assertEquals("END_SEGMENT in segment BIN at position 17", expected.get(1).toString().substring(0, 41));
+
+        List<Object> bulk = readBinarySample(factory.createEDIStreamReader(getClass().getResourceAsStream(resource), encoding), reader -> {
+            ByteArrayOutputStream binary = new ByteArrayOutputStream();
+            InputStream stream = reader.getBinaryData();
+            byte[] chunk = new byte[100];
+            int count;
+
+            while ((count = stream.read(chunk, 1, 99)) > -1) {
+                binary.write(chunk, 1, count);
+            }
+
+            return binary.toByteArray();
+        });
+
+        List<Object> transferred = readBinarySample(factory.createEDIStreamReader(getClass().getResourceAsStream(resource), encoding), reader -> {
+            ByteArrayOutputStream binary = new ByteArrayOutputStream();
+            assertEquals(2768, reader.transferBinaryData(Channels.newChannel(binary)));
+            return binary.toByteArray();
+        });
+
+        // Partially read, the remainder is skipped by the reader
+        List<Object> partial = readBinarySample(factory.createEDIStreamReader(getClass().getResourceAsStream(resource), encoding), reader -> {
+            assertEquals(1000, reader.getBinaryData().skip(1000));
+            return new byte[0];
+        });
+
+        assertArrayEquals((byte[]) expected.get(0), (byte[]) bulk.get(0));
+        assertArrayEquals((byte[]) expected.get(0), (byte[]) transferred.get(0));
+        assertEquals(expected.subList(1, expected.size()), bulk.subList(1, bulk.size()));
+        assertEquals(expected.subList(1, expected.size()), transferred.subList(1, transferred.size()));
+        assertEquals(expected.subList(1, expected.size()), partial.subList(1, partial.size()));
+    }
+
+    @Test
+    void testBinaryDataTransferFileToFile(@TempDir Path tempDir) throws Exception {
+        assertBinaryDataTransferFileToFile(tempDir, "UTF-8");
+    }
+
+    @Test
+    void testBinaryDataTransferFileToFileSingleByte(@TempDir Path tempDir) throws Exception {
+        assertBinaryDataTransferFileToFile(tempDir, "ISO-8859-1");
+    }
+
+    void assertBinaryDataTransferFileToFile(Path tempDir, String encoding) throws Exception {
+        final String resource = "/x12/sample275_with_HL7_valid_BIN01.edi";
+        EDIInputFactory factory = EDIInputFactory.newFactory();
+        List<Object> expected = readBinarySample(factory.createEDIStreamReader(getClass().getResourceAsStream(resource), encoding),
+                                                 StaEDIStreamReaderTest::readBinaryBytewise);
+
+        Path input = tempDir.resolve("input.edi");
+        Path output = tempDir.resolve("binary.xml");
+        Files.copy(getClass().getResourceAsStream(resource), input);
+
+        List<Object> transferred = readBinarySample(factory.createEDIStreamReader(input, encoding), reader -> {
+            try (FileChannel target = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                assertEquals(2768, reader.transferBinaryData(target));
+            }
+            return Files.readAllBytes(output);
+        });
+
+        assertArrayEquals((byte[]) expected.get(0), (byte[]) transferred.get(0));
+        assertEquals(expected.subList(1, expected.size()), transferred.subList(1, transferred.size()));
+    }
+
+    @Test
+    void testTransferBinaryDataInvalid() throws Exception {
+        EDIStreamReader reader = EDIInputFactory.newFactory()
+                                                .createEDIStreamReader(new ByteArrayInputStream(X12_INTERCHANGE.getBytes()));
+        assertEquals(EDIStreamEvent.START_INTERCHANGE, reader.next());
+        assertThrows(IllegalStateException.class, () -> reader.transferBinaryData(Channels.newChannel(new ByteArrayOutputStream())));
+    }
 }
@@ -15,26 +15,34 @@
  ******************************************************************************/
 package io.xlate.edi.internal.stream;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mockito;
 
 import io.xlate.edi.internal.schema.SchemaUtils;
@@ -504,7 +512,7 @@ class StaEDIStreamWriterTest {
         EDIStreamWriter writer = factory.createEDIStreamWriter(stream);
         InputStream binaryStream = Mockito.mock(InputStream.class);
         IOException ioException = new IOException();
-        Mockito.when(binaryStream.read()).thenThrow(ioException);
+        Mockito.when(binaryStream.read(Mockito.any(byte[].class))).thenThrow(ioException);
         writer.startInterchange();
         writeHeader(writer);
         stream.reset();
@@ -565,6 +573,90 @@ class StaEDIStreamWriterTest {
         assertEquals("BIN*14*BUSTMYBUFFERS\n~", stream.toString());
     }
 
+    @Test
+    void testWriteBinaryDataDirectByteBuffer() throws EDIStreamException {
+        EDIOutputFactory factory = EDIOutputFactory.newFactory();
+        ByteArrayOutputStream stream = new ByteArrayOutputStream(4096);
+        EDIStreamWriter writer = factory.createEDIStreamWriter(stream);
+        byte[] binary = { (byte) 0xFF, (byte) 0x80, '~', '*', 0x00, '\n' };
+        ByteBuffer buffer = ByteBuffer.allocateDirect(binary.length);
+        buffer.put(binary);
+        buffer.flip();
+        writer.startInterchange();
+        writeHeader(writer);
+        writer.flush();
+        stream.reset();
+        writer.writeStartSegment("BIN");
+        writer.writeStartElement();
+        writer.writeElementData("6");
+        writer.endElement();
+        writer.writeStartElementBinary();
+        writer.writeBinaryData(buffer);
+        writer.endElement();
+        writer.writeEndSegment();
+        writer.flush();
+
+        assertFalse(buffer.hasRemaining());
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write('B');
+        expected.write('I');
+        expected.write('N');
+        expected.write('*');
+        expected.write('6');
+        expected.write('*');
+        expected.write(binary, 0, binary.length);
+        expected.write('~');
+        assertArrayEquals(expected.toByteArray(), stream.toByteArray());
+    }
+
+    /**
+     * Copy the BIN segment of the 275 sample from the reader to the writer.
+     */
+    void copyBinarySegment(EDIStreamReader reader, EDIStreamWriter writer) throws EDIStreamException {
+        writer.startInterchange();
+        writeHeader(writer);
+
+        while (reader.hasNext()) {
+            if (reader.next() == EDIStreamEvent.START_SEGMENT && "BIN".equals(reader.getText())) {
+                reader.next();
+                String length = reader.getText();
+                reader.setBinaryDataLength(Long.parseLong(length));
+                assertEquals(EDIStreamEvent.ELEMENT_DATA_BINARY, reader.next());
+                writer.writeStartSegment("BIN");
+                writer.writeElement(length);
+                writer.writeStartElementBinary();
+                writer.writeBinaryData(reader.getBinaryData());
+                writer.endElement();
+                writer.writeEndSegment();
+            }
+        }
+
+        writer.flush();
+    }
+
+    @Test
+    void testWriteBinaryDataFromReaderToFile(@TempDir Path tempDir) throws Exception {
+        final String resource = "/x12/sample275_with_HL7_valid_BIN01.edi";
+        EDIInputFactory inputFactory = EDIInputFactory.newFactory();
+        EDIOutputFactory outputFactory = EDIOutputFactory.newFactory();
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        copyBinarySegment(inputFactory.createEDIStreamReader(getClass().getResourceAsStream(resource)),
+                          outputFactory.createEDIStreamWriter(expected));
+
+        Path input = tempDir.resolve("input.edi");
+        Path output = tempDir.resolve("output.edi");
+        Files.copy(getClass().getResourceAsStream(resource), input);
+
+        try (EDIStreamReader reader = inputFactory.createEDIStreamReader(input);
+                FileOutputStream stream = new FileOutputStream(output.toFile())) {
+            copyBinarySegment(reader, outputFactory.createEDIStreamWriter(stream));
+        }
+
+        assertTrue(expected.toString().contains("BIN*2768*<levelone"));
+        assertArrayEquals(expected.toByteArray(), Files.readAllBytes(output));
+    }
+
     @Test
     void testInputEquivalenceX12() throws Exception {
         EDIInputFactory inputFactory = EDIInputFactory.newFactory();
@@ -1628,4 +1720,54 @@ class StaEDIStreamWriterTest {
         assertEquals("UNA:+.?*~UNB+UNOA:3+005435656:1+006415160:1+060515:1434+00000000000778~",
                      new String(stream.toByteArray()));
     }
+
+    @Test
+    void testLongElementDataWritten() throws EDIStreamException {
+        EDIOutputFactory factory = EDIOutputFactory.newFactory();
+        ByteArrayOutputStream result = new ByteArrayOutputStream(16384);
+        EDIStreamWriter writer = factory.createEDIStreamWriter(result);
+        StringBuilder text = new StringBuilder();
+
+        for (int i = 0; i < 2000; i++) {
+            text.append((char) ('A' + i % 26));
+        }
+
+        writer.startInterchange();
+        writeHeader(writer);
+        writer.writeStartSegment("NTE");
+        writer.writeStartElement();
+        writer.writeElementData(text.subSequence(0, 1000));
+        writer.writeElementData(text.subSequence(1000, 2000));
+        writer.endElement();
+        writer.writeEndSegment();
+        writer.flush();
+
+        assertTrue(result.toString().endsWith("~NTE*" + text + "~"));
+    }
+
+    @Test
+    void testLongElementDataLengthValidated() throws EDISchemaException, EDIStreamException {
+        EDIOutputFactory outputFactory = EDIOutputFactory.newFactory();
+        ByteArrayOutputStream result = new ByteArrayOutputStream(16384);
+        EDIStreamWriter writer = outputFactory.createEDIStreamWriter(result);
+
+        Schema control = SchemaUtils.getControlSchema("X12", new String[] { "00501" });
+        writer.setControlSchema(control);
+
+        char[] text = new char[600];
+        Arrays.fill(text, 'A');
+
+        writer.startInterchange();
+        writeHeader(writer);
+        writer.writeStartSegment("GS");
+        writer.writeStartElement();
+        writer.writeElementData(text, 0, text.length);
+        EDIValidationException e = assertThrows(EDIValidationException.class, () -> writer.endElement());
+
+        assertEquals(EDIStreamEvent.ELEMENT_DATA_ERROR, e.getEvent());
+        assertEquals(EDIStreamValidationError.DATA_ELEMENT_TOO_LONG, e.getError());
+        assertEquals(1, e.getLocation().getElementPosition());
+        // Content of the element is no longer available to check the code value
+        assertNull(e.getNextException());
+    }
 }
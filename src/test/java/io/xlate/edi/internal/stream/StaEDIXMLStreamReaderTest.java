@@ -895,4 +895,33 @@ class StaEDIXMLStreamReaderTest {
                 l.getColumnNumber() + "]\n" +
                 "Message: " + "Segment IK5 has error UNEXPECTED_SEGMENT", cause.getMessage());
     }
+
+    @Test
+    void testElementDataChunked() throws Exception {
+        EDIInputFactory factory = EDIInputFactory.newFactory();
+        factory.setProperty(EDIInputFactory.EDI_VALIDATE_CONTROL_STRUCTURE, "false");
+        factory.setProperty(EDIInputFactory.EDI_ELEMENT_CHUNK_SIZE, 4);
+        byte[] input = ("ISA*00*          *00*          *ZZ*ReceiverID     *ZZ*Sender         *050812*1953*^*00501*508121953*0*P*:~"
+                + "S01*ABCDEFGHIJ*XY~"
+                + "IEA*1*508121953~").getBytes();
+        ediReader = factory.createEDIStreamReader(new ByteArrayInputStream(input));
+        assertEquals(EDIStreamEvent.START_INTERCHANGE, ediReader.next());
+        XMLStreamReader xmlReader = new StaEDIXMLStreamReader(ediReader);
+
+        assertEquals(XMLStreamConstants.START_ELEMENT, xmlReader.next());
+        assertEquals("INTERCHANGE", xmlReader.getLocalName());
+        skipEvents(xmlReader, 3 * 16 + 2);
+
+        assertEquals(XMLStreamConstants.START_ELEMENT, xmlReader.next());
+        assertEquals("S01", xmlReader.getLocalName());
+        assertEquals(XMLStreamConstants.START_ELEMENT, xmlReader.next());
+        assertEquals("S0101", xmlReader.getLocalName());
+        assertEquals("ABCDEFGHIJ", xmlReader.getElementText());
+        assertEquals("S0101", xmlReader.getLocalName());
+        assertEquals(XMLStreamConstants.START_ELEMENT, xmlReader.next());
+        assertEquals("S0102", xmlReader.getLocalName());
+        assertEquals("XY", xmlReader.getElementText());
+        assertEquals(XMLStreamConstants.END_ELEMENT, xmlReader.next());
+        assertEquals("S01", xmlReader.getLocalName());
+    }
 }
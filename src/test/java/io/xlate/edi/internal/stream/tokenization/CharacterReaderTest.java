@@ -0,0 +1,264 @@
+/*******************************************************************************
+ * Copyright 2020 xlate.io LLC, http://www.xlate.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package io.xlate.edi.internal.stream.tokenization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CharacterReaderTest {
+
+    /**
+     * Stream returning at most one byte per read, forcing every multi-byte
+     * sequence to be split across blocks.
+     */
+    static class TrickleInputStream extends ByteArrayInputStream {
+        TrickleInputStream(byte[] buf) {
+            super(buf);
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, 1));
+        }
+    }
+
+    static String readAll(CharacterReader reader) throws IOException {
+        StringBuilder result = new StringBuilder();
+        int input;
+
+        while ((input = reader.read()) > -1) {
+            result.append((char) input);
+        }
+
+        return result.toString();
+    }
+
+    @Test
+    void testSplitMultiByteSequences() throws IOException {
+        String text = "UNB+UNOW:3+Bütner€'";
+        InputStream stream = new TrickleInputStream(text.getBytes(StandardCharsets.UTF_8));
+        CharacterReader reader = CharacterReader.getInstance(InputSource.of(stream), StandardCharsets.UTF_8);
+        assertEquals(text, readAll(reader));
+    }
+
+    @Test
+    void testSequenceSplitAtBlockBoundary() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < CharacterReader.BLOCK_SIZE - 1; i++) {
+            text.append('A');
+        }
+        text.append("ü€ü");
+
+        InputStream stream = new ByteArrayInputStream(text.toString().getBytes(StandardCharsets.UTF_8));
+        CharacterReader reader = CharacterReader.getInstance(InputSource.of(stream), StandardCharsets.UTF_8);
+        assertEquals(text.toString(), readAll(reader));
+    }
+
+    @Test
+    void testIncompleteSequenceAtEndOfStream() throws IOException {
+        byte[] data = { 'A', 'B', (byte) 0xC3 };
+        CharacterReader reader = CharacterReader.getInstance(InputSource.of(new ByteArrayInputStream(data)), StandardCharsets.UTF_8);
+        assertEquals("AB", readAll(reader));
+    }
+
+    @Test
+    void testMalformedInputReportedAfterPrecedingCharacters() throws IOException {
+        byte[] data = { 'A', 'B', (byte) 0xFF, 'C' };
+        CharacterReader reader = CharacterReader.getInstance(InputSource.of(new ByteArrayInputStream(data)), StandardCharsets.US_ASCII);
+        assertEquals('A', reader.read());
+        assertEquals('B', reader.read());
+        MalformedInputException thrown = assertThrows(MalformedInputException.class, reader::read);
+        assertEquals("Input length = 1", thrown.getMessage());
+    }
+
+    @Test
+    void testReleaseCharactersRepositionsBytes() throws IOException {
+        byte[] utf8Prefix = "Bü*".getBytes(StandardCharsets.UTF_8);
+        byte[] input = new byte[utf8Prefix.length + 3 + 1 + 2 + 1];
+        System.arraycopy(utf8Prefix, 0, input, 0, utf8Prefix.length);
+        int offset = utf8Prefix.length;
+        input[offset++] = 0x00;
+        input[offset++] = 0x01;
+        input[offset++] = (byte) 0xFF;
+        input[offset++] = '*';
+        input[offset++] = (byte) 0xC3;
+        input[offset++] = (byte) 0xBC;
+        input[offset] = '~';
+
+        CharacterReader reader = CharacterReader.getInstance(InputSource.of(new ByteArrayInputStream(input)), StandardCharsets.UTF_8);
+        assertEquals('B', reader.read());
+        assertEquals('ü', reader.read());
+        assertEquals('*', reader.read());
+
+        reader.releaseCharacters();
+        assertEquals(0x00, reader.readByte());
+        assertEquals(0x01, reader.readByte());
+        assertEquals(0xFF, reader.readByte());
+
+        assertEquals("*ü~", readAll(reader));
+    }
+
+    @Test
+    void testReaderSelectedByCharset() {
+        InputStream stream = new ByteArrayInputStream(new byte[0]);
+        assertTrue(CharacterReader.getInstance(InputSource.of(stream), StandardCharsets.US_ASCII) instanceof SingleByteCharacterReader);
+        assertTrue(CharacterReader.getInstance(InputSource.of(stream), StandardCharsets.ISO_8859_1) instanceof SingleByteCharacterReader);
+        assertTrue(CharacterReader.getInstance(InputSource.of(stream), Charset.forName("windows-1252")) instanceof SingleByteCharacterReader);
+        assertTrue(CharacterReader.getInstance(InputSource.of(stream), StandardCharsets.UTF_8) instanceof DecodingCharacterReader);
+        assertTrue(CharacterReader.getInstance(InputSource.of(stream), StandardCharsets.UTF_16) instanceof DecodingCharacterReader);
+    }
+
+    @Test
+    void testSingleByteReaderMatchesDecoder() throws IOException {
+        byte[] data = new byte[256];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+
+        CharacterReader reader = CharacterReader.getInstance(InputSource.of(new TrickleInputStream(data)), StandardCharsets.ISO_8859_1);
+        assertEquals(new String(data, StandardCharsets.ISO_8859_1), readAll(reader));
+    }
+
+    @Test
+    void testSingleByteReaderBinaryData() throws IOException {
+        byte[] data = { 'B', '*', (byte) 0xFF, (byte) 0x80, '*', 'C' };
+        CharacterReader reader = CharacterReader.getInstance(InputSource.of(new ByteArrayInputStream(data)), StandardCharsets.US_ASCII);
+        assertEquals('B', reader.read());
+        assertEquals('*', reader.read());
+        reader.releaseCharacters();
+        assertEquals(0xFF, reader.readByte());
+        assertEquals(0x80, reader.readByte());
+        assertEquals("*C", readAll(reader));
+    }
+
+    @Test
+    void testMappedWindowBoundaries(@TempDir Path tempDir) throws IOException {
+        String text = "UNB+UNOW:3+Bütner€'UNZ+0+1'";
+        Path file = tempDir.resolve("input.edi");
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // Window smaller than the longest sequence forces splits on every boundary
+            InputSource source = new InputSource.MappedFileSource(channel, false, 4);
+            CharacterReader reader = CharacterReader.getInstance(source, StandardCharsets.UTF_8);
+            assertEquals(text, readAll(reader));
+            reader.close();
+            assertTrue(channel.isOpen());
+            assertEquals(channel.size(), channel.position());
+        }
+    }
+
+    @Test
+    void testMappedFileFromChannelPosition(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("input.edi");
+        Files.write(file, "XXXISA*00*".getBytes(StandardCharsets.US_ASCII));
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.position(3);
+            CharacterReader reader = CharacterReader.getInstance(InputSource.of(channel), StandardCharsets.US_ASCII);
+            assertEquals("ISA*00*", readAll(reader));
+        }
+    }
+
+    @Test
+    void testMappedFileChannelPositionAdvanced(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("input.edi");
+        Files.write(file, "XXXISA*00*".getBytes(StandardCharsets.US_ASCII));
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.position(3);
+            CharacterReader reader = CharacterReader.getInstance(InputSource.of(channel), StandardCharsets.US_ASCII);
+            assertEquals('I', reader.read());
+            assertEquals('S', reader.read());
+            assertEquals(3, channel.position());
+            reader.close();
+            // Advanced past the bytes consumed when closed
+            assertEquals(5, channel.position());
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.position(3);
+            CharacterReader reader = CharacterReader.getInstance(InputSource.of(channel), StandardCharsets.US_ASCII);
+            assertEquals("ISA*00*", readAll(reader));
+            // Advanced to the end of the file once reached
+            assertEquals(10, channel.position());
+            reader.close();
+            assertEquals(10, channel.position());
+        }
+    }
+
+    @Test
+    void testMappedFileChannelPositionAdvancedMultiByte(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("input.edi");
+        // Each of the characters following the prefix is encoded with two bytes
+        Files.write(file, "XXX\u00c4\u00d6\u00dc*00*".getBytes(StandardCharsets.UTF_8));
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.position(3);
+            CharacterReader reader = CharacterReader.getInstance(InputSource.of(channel), StandardCharsets.UTF_8);
+            assertEquals('\u00c4', reader.read());
+            assertEquals('\u00d6', reader.read());
+            assertEquals(3, channel.position());
+            reader.close();
+            // Advanced past the bytes of the characters consumed, not those decoded ahead
+            assertEquals(7, channel.position());
+        }
+    }
+
+    @Test
+    void testMappedFileClosedWhenOwned(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("input.edi");
+        Files.write(file, "ISA*00*".getBytes(StandardCharsets.US_ASCII));
+
+        CharacterReader reader = CharacterReader.getInstance(InputSource.of(file), StandardCharsets.ISO_8859_1);
+        assertEquals("ISA*00*", readAll(reader));
+        reader.close();
+    }
+
+    @Test
+    void testEmptyMappedFile(@TempDir Path tempDir) throws IOException {
+        Path file = Files.createFile(tempDir.resolve("empty.edi"));
+
+        try (CharacterReader reader = CharacterReader.getInstance(InputSource.of(file), StandardCharsets.UTF_8)) {
+            assertEquals(-1, reader.read());
+            assertEquals(-1, reader.readByte());
+        }
+    }
+
+    @Test
+    void testChannelSource() throws IOException {
+        String text = "UNB+UNOW:3+Bütner€'";
+        InputStream stream = new TrickleInputStream(text.getBytes(StandardCharsets.UTF_8));
+        CharacterReader reader = CharacterReader.getInstance(InputSource.of(Channels.newChannel(stream)), StandardCharsets.UTF_8);
+        assertEquals(text, readAll(reader));
+    }
+}
@@ -74,4 +74,17 @@ class CharacterSetTest {
     void testIsValidUTF8() {
         assertTrue(CharacterSet.isValid('ü'));
     }
+
+    @Test
+    void testGetClassCodeMatchesClass() {
+        CharacterSet target = new CharacterSet();
+        target.setClass('~', CharacterClass.SEGMENT_DELIMITER);
+
+        for (int c = 0; c < 256; c++) {
+            assertEquals(target.getClass(c).code, target.getClassCode(c));
+        }
+
+        target.reset();
+        assertEquals(CharacterClass.OTHER.code, target.getClassCode('~'));
+    }
 }
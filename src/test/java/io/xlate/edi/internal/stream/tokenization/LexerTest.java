@@ -16,6 +16,8 @@
 package io.xlate.edi.internal.stream.tokenization;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -25,8 +27,15 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.MalformedInputException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
 
 import org.junit.jupiter.api.Test;
 
@@ -63,7 +72,7 @@ class LexerTest {
         }
 
         @Override
-        public boolean segmentBegin(String segmentTag) {
+        public boolean segmentBegin(String segmentTag, int segmentId) {
             content.put("LAST", "segmentBegin");
             content.put("SEGMENT", segmentTag);
             return true;
@@ -94,6 +103,12 @@ class LexerTest {
             return true;
         }
 
+        @Override
+        public boolean elementDataPartial(char[] text, int start, int length) {
+            content.put("LAST", "elementDataPartial");
+            return true;
+        }
+
         @Override
         public boolean binaryData(InputStream binary) {
             return true;
@@ -134,7 +149,7 @@ class LexerTest {
         }
 
         @Override
-        public boolean segmentBegin(String segmentTag) {
+        public boolean segmentBegin(String segmentTag, int segmentId) {
             segment = segmentTag;
             return true;
         }
@@ -162,6 +177,11 @@ class LexerTest {
             return true;
         }
 
+        @Override
+        public boolean elementDataPartial(char[] text, int start, int length) {
+            return true;
+        }
+
         @Override
         public boolean binaryData(InputStream binary) {
             return true;
@@ -189,6 +209,32 @@ class LexerTest {
     String segment;
     String element;
 
+    @Test
+    void testReaderReusedForEachCharset() throws IOException {
+        byte[] input = "AB\u00c4CDE".getBytes(StandardCharsets.UTF_8);
+        final Lexer lexer = new Lexer(new ByteArrayInputStream(input), StandardCharsets.UTF_8, handler, new StaEDIStreamLocation());
+        final CharacterReader utf8 = lexer.getCharacterReader();
+
+        assertEquals('A', utf8.read());
+        lexer.useCharset(StandardCharsets.ISO_8859_1);
+        final CharacterReader latin1 = lexer.getCharacterReader();
+        assertNotSame(utf8, latin1);
+        assertEquals('B', latin1.read());
+
+        lexer.useCharset(StandardCharsets.UTF_8);
+        assertSame(utf8, lexer.getCharacterReader());
+        assertEquals('\u00c4', utf8.read());
+
+        lexer.useCharset(StandardCharsets.ISO_8859_1);
+        assertSame(latin1, lexer.getCharacterReader());
+        assertEquals('C', latin1.read());
+
+        lexer.useCharset(StandardCharsets.UTF_8);
+        assertEquals('D', utf8.read());
+        assertEquals('E', utf8.read());
+        assertEquals(-1, utf8.read());
+    }
+
     @Test
     void testParseX12() throws EDIException, IOException {
         InputStream stream = getClass().getResourceAsStream("/x12/simple997.edi");
@@ -384,4 +430,253 @@ class LexerTest {
         MalformedInputException thrown = assertThrows(MalformedInputException.class, lexer::parse);
         assertEquals("Input length = 1", thrown.getMessage());
     }
+
+    @Test
+    void testQueuedEventsDeliveredInOrder() throws Exception {
+        StringBuilder input = new StringBuilder("ISA*00*          *00*          *ZZ*ReceiverID     *ZZ*Sender         *050812*1953*^*00501*508121953*0*P*:~");
+        List<String> expected = new ArrayList<>();
+        input.append("ABC");
+
+        for (int i = 0; i < 40; i++) {
+            input.append('*').append(i).append(":A:").append(i);
+            expected.add(String.valueOf(i));
+            expected.add("A");
+            expected.add(String.valueOf(i));
+        }
+
+        input.append("~IEA*1*508121953~");
+        List<String> received = new ArrayList<>();
+
+        EventHandler eventHandler = new TestLexerEventHandler() {
+            // Hold back the first events so that later events are queued
+            boolean ready() {
+                return received.size() > 40;
+            }
+
+            @Override
+            public boolean compositeBegin(boolean isNil) {
+                super.compositeBegin(isNil);
+                return ready();
+            }
+
+            @Override
+            public boolean compositeEnd(boolean isNil) {
+                super.compositeEnd(isNil);
+                return ready();
+            }
+
+            @Override
+            public boolean elementData(char[] text, int start, int length) {
+                super.elementData(text, start, length);
+                if ("ABC".equals(content.get("SEGMENT"))) {
+                    received.add(new String(text, start, length));
+                    return ready();
+                }
+                return true;
+            }
+        };
+
+        final StaEDIStreamLocation location = new StaEDIStreamLocation();
+        final Lexer lexer = new Lexer(new ByteArrayInputStream(input.toString().getBytes()), StandardCharsets.UTF_8, eventHandler, location);
+
+        do {
+            lexer.parse();
+        } while (!"interchangeEnd".equals(((TestLexerEventHandler) eventHandler).content.get("LAST")));
+
+        assertEquals(expected, received);
+    }
+
+    @Test
+    void testOversizedElementBuffered() throws Exception {
+        StringBuilder value = new StringBuilder();
+
+        for (int i = 0; i < 10000; i++) {
+            value.append((char) ('A' + i % 26));
+        }
+
+        String input = "ISA*00*          *00*          *ZZ*ReceiverID     *ZZ*Sender         *050812*1953*^*00501*508121953*0*P*:~"
+                + "ABC*" + value + "*XY~IEA*1*508121953~";
+        List<String> received = new ArrayList<>();
+
+        TestLexerEventHandler eventHandler = new TestLexerEventHandler() {
+            @Override
+            public boolean elementData(char[] text, int start, int length) {
+                super.elementData(text, start, length);
+                if ("ABC".equals(content.get("SEGMENT"))) {
+                    received.add(new String(text, start, length));
+                }
+                return true;
+            }
+        };
+
+        final StaEDIStreamLocation location = new StaEDIStreamLocation();
+        final Lexer lexer = new Lexer(new ByteArrayInputStream(input.getBytes()), StandardCharsets.UTF_8, eventHandler, location);
+
+        do {
+            lexer.parse();
+        } while (!"interchangeEnd".equals(eventHandler.content.get("LAST")));
+
+        assertEquals(Arrays.asList(value.toString(), "XY"), received);
+    }
+
+    @Test
+    void testElementDataChunked() throws Exception {
+        String input = "ISA*00*          *00*          *ZZ*ReceiverID     *ZZ*Sender         *050812*1953*^*00501*508121953*0*P*:~"
+                + "ABC*ABCDEFGHIJ*XY*1234^5678^ABCDEFGHI:Z*1:ABCDEFGHIJ~IEA*1*508121953~";
+        List<String> received = new ArrayList<>();
+        final StaEDIStreamLocation location = new StaEDIStreamLocation();
+
+        TestLexerEventHandler eventHandler = new TestLexerEventHandler() {
+            void add(String type, char[] text, int start, int length) {
+                if ("ABC".equals(content.get("SEGMENT"))) {
+                    received.add(type + ':' + new String(text, start, length) + '@'
+                            + location.getElementPosition() + '.'
+                            + location.getComponentPosition() + '.'
+                            + location.getElementOccurrence());
+                }
+            }
+
+            @Override
+            public boolean elementDataPartial(char[] text, int start, int length) {
+                super.elementDataPartial(text, start, length);
+                add("P", text, start, length);
+                return true;
+            }
+
+            @Override
+            public boolean elementData(char[] text, int start, int length) {
+                super.elementData(text, start, length);
+                add("E", text, start, length);
+                return true;
+            }
+        };
+
+        final Lexer lexer = new Lexer(new ByteArrayInputStream(input.getBytes()), StandardCharsets.UTF_8, eventHandler, location);
+        lexer.setElementChunkSize(4);
+
+        do {
+            lexer.parse();
+        } while (!"interchangeEnd".equals(eventHandler.content.get("LAST")));
+
+        assertEquals(Arrays.asList("P:ABCD@1.-1.1",
+                                   "P:EFGH@1.-1.1",
+                                   "E:IJ@1.-1.1",
+                                   "E:XY@2.-1.1",
+                                   "E:1234@3.-1.1",
+                                   "E:5678@3.-1.2",
+                                   "P:ABCD@3.-1.3",
+                                   "P:EFGH@3.-1.3",
+                                   "E:I@3.1.3",
+                                   "E:Z@3.2.3",
+                                   "E:1@4.1.1",
+                                   "P:ABCD@4.2.1",
+                                   "P:EFGH@4.2.1",
+                                   "E:IJ@4.2.1"),
+                     received);
+    }
+
+    @Test
+    void testElementChunkSizeNegative() {
+        final Lexer lexer = new Lexer(new ByteArrayInputStream(new byte[0]), StandardCharsets.UTF_8, handler, new StaEDIStreamLocation());
+        assertThrows(IllegalArgumentException.class, () -> lexer.setElementChunkSize(-1));
+    }
+
+    List<String> readOffsets(String input, boolean locationDeferred, int elementChunkSize) throws Exception {
+        List<String> received = new ArrayList<>();
+        final StaEDIStreamLocation location = new StaEDIStreamLocation();
+
+        TestLexerEventHandler eventHandler = new TestLexerEventHandler() {
+            void add(String type, char[] text, int start, int length) {
+                received.add(type + ':' + new String(text, start, length) + '@'
+                        + location.getLineNumber() + '.'
+                        + location.getColumnNumber() + '.'
+                        + location.getCharacterOffset());
+            }
+
+            @Override
+            public boolean elementDataPartial(char[] text, int start, int length) {
+                super.elementDataPartial(text, start, length);
+                add("P", text, start, length);
+                return true;
+            }
+
+            @Override
+            public boolean elementData(char[] text, int start, int length) {
+                super.elementData(text, start, length);
+                add("E", text, start, length);
+                return true;
+            }
+        };
+
+        final Lexer lexer = new Lexer(new ByteArrayInputStream(input.getBytes()), StandardCharsets.UTF_8, eventHandler, location);
+        lexer.setElementChunkSize(elementChunkSize);
+        lexer.setLocationDeferred(locationDeferred);
+        location.setLinesIndexed(locationDeferred);
+
+        do {
+            lexer.parse();
+        } while (!"interchangeEnd".equals(eventHandler.content.get("LAST")));
+
+        return received;
+    }
+
+    @Test
+    void testLocationDeferred() throws Exception {
+        String input = "ISA*00*          *00*          *ZZ*ReceiverID     *ZZ*Sender         *050812*1953*^*00501*508121953*0*P*:~\n"
+                + "ABC*ABCDEFGHIJ*X\nY*1234^5678^ABCDEFGHI:Z*1:ABC\nDEFGHIJ~\nIEA*1*508121953~";
+
+        List<String> eager = readOffsets(input, false, 0);
+        assertEquals(eager, readOffsets(input, true, 0));
+        assertTrue(eager.contains("E:X\nY@3.3.125"));
+    }
+
+    @Test
+    void testLocationDeferredChunked() throws Exception {
+        String input = "ISA*00*          *00*          *ZZ*ReceiverID     *ZZ*Sender         *050812*1953*^*00501*508121953*0*P*:~\n"
+                + "ABC*ABCDEFGHIJ*X\nY*1234^5678^ABCDEFGHI:Z*1:ABC\nDEFGHIJ~\nIEA*1*508121953~";
+
+        List<String> eager = readOffsets(input, false, 4);
+        assertEquals(eager, readOffsets(input, true, 4));
+        assertTrue(eager.contains("P:ABCD@2.10.115"));
+    }
+
+    @Test
+    void testStateTransitionsTraced() throws Exception {
+        Logger logger = Logger.getLogger(Lexer.class.getName());
+        Level level = logger.getLevel();
+        List<String> messages = new ArrayList<>();
+        Handler collector = new Handler() {
+            @Override
+            public void publish(LogRecord logRecord) {
+                messages.add(logRecord.getMessage());
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        logger.setLevel(Level.FINER);
+        logger.addHandler(collector);
+
+        try {
+            InputStream stream = getClass().getResourceAsStream("/x12/simple997.edi");
+            TestLexerEventHandler eventHandler = new TestLexerEventHandler();
+            final Lexer lexer = new Lexer(stream, StandardCharsets.UTF_8, eventHandler, new StaEDIStreamLocation());
+
+            do {
+                lexer.parse();
+            } while (!"interchangeEnd".equals(eventHandler.content.get("LAST")));
+        } finally {
+            logger.removeHandler(collector);
+            logger.setLevel(level);
+        }
+
+        assertTrue(messages.size() > 100);
+        assertEquals("State INITIAL(" + CharacterClass.LATIN_I.code + ") -> HEADER_TAG_I", messages.get(0));
+    }
 }
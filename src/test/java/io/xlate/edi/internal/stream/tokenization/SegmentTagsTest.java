@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright 2017 xlate.io LLC, http://www.xlate.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package io.xlate.edi.internal.stream.tokenization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+class SegmentTagsTest {
+
+    @Test
+    void testControlSegmentIds() {
+        assertEquals(SegmentTags.ISA, SegmentTags.of("ISA"));
+        assertEquals(SegmentTags.GS, SegmentTags.of("GS"));
+        assertEquals(SegmentTags.ST, SegmentTags.of("ST"));
+        assertEquals(SegmentTags.UNA, SegmentTags.of("UNA"));
+        assertEquals(SegmentTags.UNH, SegmentTags.of("UNH"));
+    }
+
+    @Test
+    void testUnrepresentableTags() {
+        assertEquals(SegmentTags.NONE, SegmentTags.of("S"));
+        assertEquals(SegmentTags.NONE, SegmentTags.of("SEGM"));
+        assertEquals(SegmentTags.NONE, SegmentTags.of("SÉ"));
+        assertNotEquals(SegmentTags.of("GS"), SegmentTags.of("GSA"));
+    }
+
+    @Test
+    void testInternReturnsSameInstance() {
+        SegmentTags table = new SegmentTags();
+        char[] text = "XXN1N1".toCharArray();
+
+        int first = table.intern(text, 2, 2);
+        String tag = table.getTag(first);
+        int second = table.intern(text, 4, 2);
+
+        assertEquals(first, second);
+        assertEquals("N1", tag);
+        assertSame(tag, table.getTag(second));
+        assertEquals(SegmentTags.of("N1"), first);
+    }
+
+    @Test
+    void testInternManyTags() {
+        SegmentTags table = new SegmentTags();
+
+        for (char a = 'A'; a <= 'Z'; a++) {
+            for (char b = '0'; b <= '9'; b++) {
+                char[] text = { a, b, 'X' };
+                table.intern(text, 0, 3);
+            }
+        }
+
+        for (char a = 'A'; a <= 'Z'; a++) {
+            for (char b = '0'; b <= '9'; b++) {
+                String expected = new String(new char[] { a, b, 'X' });
+                assertEquals(expected, table.getTag(SegmentTags.of(expected)));
+            }
+        }
+
+        assertNull(table.getTag(SegmentTags.of("ZZZ")));
+        assertNull(table.getTag(SegmentTags.NONE));
+    }
+}
@@ -0,0 +1,34 @@
+/*******************************************************************************
+ * Copyright 2020 xlate.io LLC, http://www.xlate.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package io.xlate.edi.internal.stream.tokenization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class StateTest {
+
+    @Test
+    void testPrimitiveTransitionsMatchTable() {
+        for (State state : State.values()) {
+            for (CharacterClass clazz : CharacterClass.values()) {
+                State expected = state == State.INVALID ? State.INVALID : state.transition(clazz);
+                assertEquals(expected, State.valueOf(State.transition(state.ordinal(), clazz.code)),
+                             state + " (" + clazz + ")");
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright 2020 xlate.io LLC, http://www.xlate.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package io.xlate.edi.internal.stream.tokenization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TransactionScannerTest {
+
+    @Test
+    void testSupportedCharsets() {
+        assertTrue(TransactionScanner.isSupported(StandardCharsets.UTF_8));
+        assertTrue(TransactionScanner.isSupported(StandardCharsets.US_ASCII));
+        assertTrue(TransactionScanner.isSupported(StandardCharsets.ISO_8859_1));
+        assertTrue(TransactionScanner.isSupported(Charset.forName("windows-1252")));
+    }
+
+    @Test
+    void testUnsupportedCharsets() {
+        assertFalse(TransactionScanner.isSupported(StandardCharsets.UTF_16));
+        assertFalse(TransactionScanner.isSupported(Charset.forName("IBM037")));
+        assertFalse(TransactionScanner.isSupported(Charset.forName("Shift_JIS")));
+    }
+
+    static final String ISA = "ISA*00*          *00*          *ZZ*ReceiverID     *ZZ*Sender         *050812*1953*^*00501*508121953*0*P*:~";
+    static final String GS = "GS*FA*ReceiverDept*SenderDept*20050812*195335*000005*X*005010X230~";
+    static final String UNA = "UNA:+.? '";
+    static final String UNB = "UNB+UNOA:3+005435656:1+006415160:1+060515:1434+00000000000778'";
+
+    static String x12Transaction(int number, int segments) {
+        StringBuilder transaction = new StringBuilder("ST*997*" + number + "~AK1*HC*000001~");
+
+        for (int i = 0; i < segments; i++) {
+            transaction.append("AK2*837*").append(i).append("~AK5*A~");
+        }
+
+        return transaction.append("AK9*A*1*1*1~SE*").append(segments * 2 + 4).append('*').append(number).append("~\n").toString();
+    }
+
+    static String edifactTransaction(int number) {
+        return "UNH+" + number + "+INVOIC:D:97B:UN'FTX+AAI+++Release ?' character'UNT+3+" + number + "'\n";
+    }
+
+    static List<String> scan(TransactionScanner scanner) throws Exception {
+        List<String> transactions = new ArrayList<>();
+
+        for (TransactionScanner.Transaction transaction : scanner.scan()) {
+            ByteArrayOutputStream result = new ByteArrayOutputStream();
+            InputStream input = transaction.getInput();
+            byte[] buffer = new byte[7];
+            int count;
+
+            while ((count = input.read(buffer)) > -1) {
+                result.write(buffer, 0, count);
+            }
+
+            transactions.add(new String(result.toByteArray(), StandardCharsets.UTF_8));
+        }
+
+        return transactions;
+    }
+
+    @Test
+    void testScanMappedFileInSmallWindows(@TempDir Path tempDir) throws Exception {
+        String x12Large = x12Transaction(2, 50);
+        String input = ISA + "\n" + GS + "\n"
+                + x12Transaction(1, 1) + x12Large + x12Transaction(3, 2)
+                + "GE*3*000005~\nIEA*1*508121953~\n"
+                + UNA + UNB + "\n" + edifactTransaction(4) + edifactTransaction(5)
+                + "UNZ+2+00000000000778'\n";
+        // Parts of the input are separated by the white space between them
+        List<String> expected = Arrays.asList(ISA + GS + x12Transaction(1, 1).trim() + "GE*3*000005~IEA*1*508121953~",
+                                              ISA + GS + x12Large.trim() + "GE*3*000005~IEA*1*508121953~",
+                                              ISA + GS + x12Transaction(3, 2).trim() + "GE*3*000005~IEA*1*508121953~",
+                                              UNA + UNB + edifactTransaction(4).trim() + "UNZ+2+00000000000778'",
+                                              UNA + UNB + edifactTransaction(5).trim() + "UNZ+2+00000000000778'");
+        byte[] data = input.getBytes(StandardCharsets.UTF_8);
+        Path file = tempDir.resolve("input.edi");
+        Files.write(file, data);
+
+        assertTrue(x12Large.length() > 512);
+        assertEquals(expected, scan(new TransactionScanner(ByteBuffer.wrap(data))));
+
+        for (long windowSize : new long[] { 1, 64, 512, 1 << 20 }) {
+            try (FileChannel channel = FileChannel.open(file)) {
+                assertEquals(expected, scan(new TransactionScanner(channel, windowSize)), "window size " + windowSize);
+            }
+        }
+    }
+
+    @Test
+    void testScanUnsupportedHeader() {
+        byte[] data = "GS*FA*ReceiverDept~".getBytes(StandardCharsets.UTF_8);
+        EDIException thrown = assertThrows(EDIException.class, () -> new TransactionScanner(ByteBuffer.wrap(data)).scan());
+        assertTrue(thrown.getMessage().startsWith("EDIE002"), thrown.getMessage());
+    }
+
+    @Test
+    void testScanInvalidX12Header() {
+        byte[] data = ISA.replace("*ZZ*Sender  ", "*ZZ*Sender**").getBytes(StandardCharsets.UTF_8);
+        EDIException thrown = assertThrows(EDIException.class, () -> new TransactionScanner(ByteBuffer.wrap(data)).scan());
+        assertTrue(thrown.getMessage().startsWith("EDIE003"), thrown.getMessage());
+    }
+
+    @Test
+    void testScanIncompleteX12Header() {
+        byte[] data = ISA.substring(0, 50).getBytes(StandardCharsets.UTF_8);
+        EDIException thrown = assertThrows(EDIException.class, () -> new TransactionScanner(ByteBuffer.wrap(data)).scan());
+        assertTrue(thrown.getMessage().startsWith("EDIE005"), thrown.getMessage());
+    }
+}
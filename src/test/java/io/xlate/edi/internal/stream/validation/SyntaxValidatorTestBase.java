@@ -17,6 +17,7 @@ abstract class SyntaxValidatorTestBase {
     protected UsageNode structure;
     protected EDIReference structureRef;
     protected EDIType structureType;
+    protected final int[] usage = new int[0];
 
     @BeforeEach
     void setUp() {
@@ -36,7 +37,7 @@ abstract class SyntaxValidatorTestBase {
     protected UsageNode mockUsageNode(String referenceCode, boolean used, int index) {
         UsageNode node = mock(UsageNode.class);
         when(node.getCode()).thenReturn(referenceCode);
-        when(node.isUsed()).thenReturn(used);
+        when(node.isUsed(usage)).thenReturn(used);
         when(node.getParent()).thenReturn(structure);
         when(node.getIndex()).thenReturn(index);
         return node;
@@ -0,0 +1,98 @@
+package io.xlate.edi.internal.stream.validation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import io.xlate.edi.internal.stream.tokenization.SegmentTags;
+
+class TagIndexTest {
+
+    static UsageNode node(String tag, int number) {
+        return new UsageNode(null, 1, UsageNodeTest.mockReference(tag, 1), number, number);
+    }
+
+    /**
+     * Find tags having the same initial slot as the first tag in an index
+     * with the given mask.
+     */
+    static List<String> colliding(int mask, int count) {
+        List<String> tags = new ArrayList<>();
+        int slot = -1;
+
+        for (int i = 0; tags.size() < count; i++) {
+            String tag = String.format("S%02d", i);
+            int tagSlot = TagIndex.hash(SegmentTags.of(tag)) & mask;
+
+            if (slot < 0) {
+                slot = tagSlot;
+            }
+            if (tagSlot == slot) {
+                tags.add(tag);
+            }
+        }
+
+        return tags;
+    }
+
+    @Test
+    void testCollidingTagsRetrieved() {
+        // Two nodes are indexed in 4 slots
+        List<String> tags = colliding(3, 3);
+        UsageNode first = node(tags.get(0), 0);
+        UsageNode second = node(tags.get(1), 1);
+        TagIndex index = new TagIndex(Arrays.asList(first, second), 2);
+
+        assertSame(first, index.get(SegmentTags.of(tags.get(0))));
+        assertSame(second, index.get(SegmentTags.of(tags.get(1))));
+        // Missing tag probing past the colliding entries
+        assertNull(index.get(SegmentTags.of(tags.get(2))));
+    }
+
+    @Test
+    void testMissingTagsNotRetrieved() {
+        List<UsageNode> nodes = new ArrayList<>();
+
+        for (int i = 0; i < 50; i++) {
+            nodes.add(node(String.format("A%02d", i), i));
+        }
+        nodes.add(null);
+
+        TagIndex index = new TagIndex(nodes, nodes.size());
+
+        for (int i = 0; i < 50; i++) {
+            assertSame(nodes.get(i), index.get(SegmentTags.of(String.format("A%02d", i))));
+        }
+        for (int i = 0; i < 100; i++) {
+            assertNull(index.get(SegmentTags.of(String.format("B%02d", i))));
+        }
+        assertNull(index.get(SegmentTags.of("A50")));
+    }
+
+    @Test
+    void testFirstNodeWithTagRetained() {
+        UsageNode first = node("S01", 0);
+        UsageNode repeated = node("S01", 1);
+        UsageNode other = node("S02", 2);
+        TagIndex index = new TagIndex(Arrays.asList(first, repeated, other), 3);
+
+        assertSame(first, index.get(SegmentTags.of("S01")));
+        assertSame(other, index.get(SegmentTags.of("S02")));
+        assertEquals(SegmentTags.of("S02"), index.get(SegmentTags.of("S02")).getTagId());
+    }
+
+    @Test
+    void testNodesWithoutTagIdNotIndexed() {
+        UsageNode untagged = node("LONGID", 0);
+        TagIndex index = new TagIndex(Arrays.asList(untagged), 1);
+
+        assertEquals(SegmentTags.NONE, untagged.getTagId());
+        assertNull(index.get(SegmentTags.of("LON")));
+    }
+}
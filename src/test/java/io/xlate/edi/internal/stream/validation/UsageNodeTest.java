@@ -0,0 +1,63 @@
+package io.xlate.edi.internal.stream.validation;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.xlate.edi.schema.EDIComplexType;
+import io.xlate.edi.schema.EDIReference;
+import io.xlate.edi.schema.EDIType;
+
+class UsageNodeTest {
+
+    UsageNode node;
+    UsageNode used;
+    UsageNode unused;
+
+    @BeforeEach
+    void setUp() {
+        node = new UsageNode(null, 0, mockReference("SEG", 1), 0, 0);
+        used = new UsageNode(node, 1, mockReference("E1", 1), 0, 1);
+        unused = new UsageNode(node, 1, mockReference("E2", 0), 1, 2);
+        node.getChildren().add(used);
+        node.getChildren().add(unused);
+    }
+
+    static EDIReference mockReference(String id, int maxOccurs) {
+        EDIComplexType type = mock(EDIComplexType.class);
+        when(type.getId()).thenReturn(id);
+        when(type.getType()).thenReturn(EDIType.Type.COMPOSITE);
+        EDIReference reference = mock(EDIReference.class);
+        when(reference.getReferencedType()).thenReturn(type);
+        when(reference.getMaxOccurs(anyString())).thenReturn(maxOccurs);
+        return reference;
+    }
+
+    @Test
+    void testGetChildrenCachedByVersion() {
+        UsageNode[] selected = node.getChildren("1");
+        assertArrayEquals(new UsageNode[] { used }, selected);
+        assertSame(selected, node.getChildren(new String("1")));
+        assertEquals(1, node.getCachedVersionCount());
+    }
+
+    @Test
+    void testGetChildrenCacheBounded() {
+        for (int i = 0; i < UsageNode.MAX_CACHED_VERSIONS * 4; i++) {
+            assertArrayEquals(new UsageNode[] { used }, node.getChildren(String.valueOf(i)));
+        }
+
+        assertEquals(UsageNode.MAX_CACHED_VERSIONS, node.getCachedVersionCount());
+
+        String uncached = String.valueOf(UsageNode.MAX_CACHED_VERSIONS);
+        assertNotSame(node.getChildren(uncached), node.getChildren(uncached));
+        assertSame(node.getChildren("0"), node.getChildren("0"));
+    }
+}